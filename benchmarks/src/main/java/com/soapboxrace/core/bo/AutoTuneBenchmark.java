@@ -0,0 +1,126 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.jpa.CarClassesEntity;
+import com.soapboxrace.core.jpa.ProductEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AutoTune part search ({@link AutoTuneBO#findOptimalPartsBatch}, which runs the serial DFS) on a fixed part table:
+ * 6 categories of 40 parts each, close to the performance part catalog of the live servers.
+ * The parts are precomputed once per priority, like the batch pre-generation does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AutoTuneBenchmark {
+
+    private static final String[] SUB_TYPES = {"engine", "turbo", "transmission", "suspension", "brakes", "tires"};
+
+    private static final int PARTS_PER_SUB_TYPE = 40;
+
+    @Param({"TOPSPEED", "HANDLING", "BALANCED"})
+    public AutoTuneBO.StatPriority priority;
+
+    // Le véhicule de test va de 423 (stock) à environ 510 avec les meilleures pièces
+    @Param({"450", "470", "490"})
+    public int targetRating;
+
+    @Param({"100000", "1000000"})
+    public int maxIterations;
+
+    private AutoTuneBO.PrecomputedParts precomputedParts;
+
+    private double[] physics;
+
+    @Setup
+    public void setup() {
+        precomputedParts = AutoTuneBO.precomputeForPriority(createPartTable(), priority);
+        physics = AutoTuneBO.cacheCarPhysics(createCarClass());
+    }
+
+    @Benchmark
+    public int[] findOptimalPartsBatch() {
+        return AutoTuneBO.findOptimalPartsBatch(physics, precomputedParts, targetRating, maxIterations);
+    }
+
+    @Benchmark
+    public AutoTuneBO.PrecomputedParts precomputeForPriority() {
+        return AutoTuneBO.precomputeForPriority(createPartTable(), priority);
+    }
+
+    private static Map<String, List<ProductEntity>> createPartTable() {
+        // Graine fixe : la table est identique d'une exécution à l'autre
+        Random random = new Random(42);
+        Map<String, List<ProductEntity>> partsBySubType = new LinkedHashMap<>();
+        int hash = 1;
+
+        for (String subType : SUB_TYPES) {
+            List<ProductEntity> parts = new ArrayList<>();
+            boolean drivetrain = subType.equals("engine") || subType.equals("turbo") || subType.equals("transmission");
+
+            for (int i = 0; i < PARTS_PER_SUB_TYPE; i++) {
+                // Les pièces de rang supérieur apportent plus de points au total
+                int tier = 1 + i / 8;
+                int budget = tier * 6 + random.nextInt(6);
+                int main = budget * (60 + random.nextInt(30)) / 100;
+                int second = (budget - main) * random.nextInt(100) / 100;
+
+                ProductEntity part = new ProductEntity();
+                part.setHash(hash++);
+                part.setProductId("SRV-PERF" + hash);
+                part.setSubType(subType);
+                part.setPrice(5000f * tier + random.nextInt(5000));
+
+                if (drivetrain) {
+                    part.setTopSpeed(random.nextBoolean() ? main : second);
+                    part.setAccel(part.getTopSpeed() == main ? second : main);
+                    part.setHandling(budget - main - second);
+                } else {
+                    part.setHandling(main);
+                    part.setTopSpeed(second);
+                    part.setAccel(budget - main - second);
+                }
+
+                parts.add(part);
+            }
+
+            partsBySubType.put(subType, parts);
+        }
+
+        return partsBySubType;
+    }
+
+    private static CarClassesEntity createCarClass() {
+        CarClassesEntity carClass = new CarClassesEntity();
+        carClass.setHash(-1681514783);
+        carClass.setTsStock(420);
+        carClass.setTsVar1(520);
+        carClass.setTsVar2(610);
+        carClass.setTsVar3(700);
+        carClass.setAcStock(400);
+        carClass.setAcVar1(500);
+        carClass.setAcVar2(590);
+        carClass.setAcVar3(690);
+        carClass.setHaStock(450);
+        carClass.setHaVar1(540);
+        carClass.setHaVar2(620);
+        carClass.setHaVar3(710);
+        return carClass;
+    }
+}
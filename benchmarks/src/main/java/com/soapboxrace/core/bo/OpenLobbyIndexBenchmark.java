@@ -0,0 +1,138 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.bo.util.OwnedCarConverterBenchmark;
+import com.soapboxrace.core.dao.LobbyDAO;
+import com.soapboxrace.core.events.LobbyOpened;
+import com.soapboxrace.core.jpa.EventEntity;
+import com.soapboxrace.core.jpa.LobbyEntity;
+import com.soapboxrace.core.jpa.LobbyEntrantEntity;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.event.Event;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Race Now lobby lookup: {@link OpenLobbyIndexBO#findOpen(int, int)} followed by the filtering pass of
+ * {@code LobbyBO.joinFastLobby} ({@link LobbyBO#filterAvailableLobbies}: ignored events and car restrictions), on an
+ * index filled with public lobbies spread over the car classes and level ranges of the event table. The default car
+ * comes from a stub instead of the garage cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenLobbyIndexBenchmark {
+
+    private static final int[] CAR_CLASS_HASHES = {607077938, -2142411446, -405837480, 1866825865, 415909161, 872416321};
+
+    // La voiture active (car_bmwm3gtre46) est autorisée sur la première restriction seulement
+    private static final String[] CAR_RESTRICTIONS = {"car_bmwm3gtre46, car_nissanskyline", "car_lamborghinimurcielago"};
+
+    @Param({"100", "1000", "10000"})
+    public int lobbyCount;
+
+    private OpenLobbyIndexBO openLobbyIndexBO;
+
+    private LobbyBO lobbyBO;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        openLobbyIndexBO = new OpenLobbyIndexBO();
+        openLobbyIndexBO.setLobbyDAO(new LobbyDAO() {
+            @Override
+            public int getLobbySearchWindowSeconds() {
+                return 60;
+            }
+        });
+        openLobbyIndexBO.setLobbyOpenedEvent((Event<LobbyOpened>) Proxy.newProxyInstance(Event.class.getClassLoader(),
+                new Class<?>[]{Event.class}, (proxy, method, args) -> null));
+
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < lobbyCount; i++) {
+            int eventId = i % 200;
+            int minLevel = random.nextInt(7) * 10;
+
+            EventEntity eventEntity = new EventEntity();
+            eventEntity.setId(eventId);
+            eventEntity.setCarClassHash(CAR_CLASS_HASHES[random.nextInt(CAR_CLASS_HASHES.length)]);
+            eventEntity.setMinLevel(minLevel);
+            eventEntity.setMaxLevel(Math.min(100, minLevel + 10 + random.nextInt(30)));
+            eventEntity.setMaxPlayers(8);
+
+            // Un événement sur dix est restreint, toujours avec la même liste pour un même événement
+            if (eventId % 10 == 0) {
+                eventEntity.setCarRestriction(CAR_RESTRICTIONS[(eventId / 10) % CAR_RESTRICTIONS.length]);
+            }
+
+            LobbyEntity lobbyEntity = new LobbyEntity();
+            lobbyEntity.setId((long) i + 1);
+            lobbyEntity.setEvent(eventEntity);
+            lobbyEntity.setIsPrivate(false);
+            lobbyEntity.setIsActive(true);
+            // Le lancement du benchmark doit rester dans la fenêtre de recherche
+            lobbyEntity.setStartedTime(now.minusSeconds(random.nextInt(20)));
+
+            List<LobbyEntrantEntity> entrants = new ArrayList<>();
+            for (int e = 1 + random.nextInt(8); e > 0; e--) {
+                LobbyEntrantEntity lobbyEntrantEntity = new LobbyEntrantEntity();
+                lobbyEntrantEntity.setLobby(lobbyEntity);
+                entrants.add(lobbyEntrantEntity);
+            }
+            lobbyEntity.setEntrants(entrants);
+
+            openLobbyIndexBO.update(lobbyEntity);
+        }
+
+        OwnedCarTrans defaultCar = OwnedCarConverterBenchmark.createOwnedCarTrans();
+        EventBO eventBO = new EventBO();
+        eventBO.setCarRestrictionIndexBO(new CarRestrictionIndexBO());
+        eventBO.setLogger(LoggerFactory.getLogger(EventBO.class));
+
+        lobbyBO = new LobbyBO();
+        lobbyBO.setEventBO(eventBO);
+        lobbyBO.setPersonaBO(new PersonaBO() {
+            @Override
+            public OwnedCarTrans getDefaultCar(Long personaId) {
+                return defaultCar;
+            }
+        });
+    }
+
+    @Benchmark
+    public List<OpenLobbyIndexBO.OpenLobby> findOpen() {
+        return openLobbyIndexBO.findOpen(-405837480, 35);
+    }
+
+    @Benchmark
+    public List<OpenLobbyIndexBO.OpenLobby> findOpenAndFilter() {
+        List<OpenLobbyIndexBO.OpenLobby> openLobbies = openLobbyIndexBO.findOpen(-405837480, 35);
+
+        int[] eventIds = new int[openLobbies.size()];
+        for (int i = 0; i < eventIds.length; i++) {
+            eventIds[i] = openLobbies.get(i).getEventId();
+        }
+        // Aucun événement ignoré : la résolution Redis n'est pas mesurée ici
+        BitSet ignoredEvents = new BitSet(eventIds.length);
+
+        return lobbyBO.filterAvailableLobbies(1L, openLobbies, ignoredEvents);
+    }
+}
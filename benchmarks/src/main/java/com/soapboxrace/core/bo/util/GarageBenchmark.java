@@ -0,0 +1,115 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import com.soapboxrace.core.jpa.*;
+import com.soapboxrace.jaxb.http.ArrayOfOwnedCarTrans;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the /personas/{id}/carslots car list of a full garage: from loaded entities
+ * ({@link OwnedCarConverter#entity2Trans(CarEntity)}) versus from the rows of the garage queries
+ * ({@link OwnedCarConverter#garageRows2Trans}). The database round trips are not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GarageBenchmark {
+
+    @Param({"50", "300"})
+    private int garageSize;
+
+    private List<CarEntity> carEntities;
+
+    private List<Object[]> cars;
+    private List<Object[]> paints;
+    private List<Object[]> performanceParts;
+    private List<Object[]> skillModParts;
+    private List<Object[]> vinyls;
+    private List<Object[]> visualParts;
+
+    @Setup
+    public void setup() {
+        carEntities = new ArrayList<>();
+        cars = new ArrayList<>();
+        paints = new ArrayList<>();
+        performanceParts = new ArrayList<>();
+        skillModParts = new ArrayList<>();
+        vinyls = new ArrayList<>();
+        visualParts = new ArrayList<>();
+
+        for (int i = 0; i < garageSize; i++) {
+            OwnedCarTrans ownedCarTrans = OwnedCarConverterBenchmark.createOwnedCarTrans();
+            ownedCarTrans.setId(1000L + i);
+            ownedCarTrans.getCustomCar().setId(1000 + i);
+
+            CarEntity carEntity = new CarEntity();
+            carEntity.setId(ownedCarTrans.getId());
+            OwnedCarConverter.trans2Entity(ownedCarTrans, carEntity);
+            OwnedCarConverter.details2NewEntity(ownedCarTrans, carEntity);
+            carEntities.add(carEntity);
+            addRows(carEntity);
+        }
+    }
+
+    @Benchmark
+    public ArrayOfOwnedCarTrans fromEntities() {
+        ArrayOfOwnedCarTrans arrayOfOwnedCarTrans = new ArrayOfOwnedCarTrans();
+        for (CarEntity carEntity : carEntities) {
+            arrayOfOwnedCarTrans.getOwnedCarTrans().add(OwnedCarConverter.entity2Trans(carEntity));
+        }
+        return arrayOfOwnedCarTrans;
+    }
+
+    @Benchmark
+    public ArrayOfOwnedCarTrans fromRows() {
+        ArrayOfOwnedCarTrans arrayOfOwnedCarTrans = new ArrayOfOwnedCarTrans();
+        arrayOfOwnedCarTrans.getOwnedCarTrans().addAll(OwnedCarConverter.garageRows2Trans(cars, paints,
+                performanceParts, skillModParts, vinyls, visualParts));
+        return arrayOfOwnedCarTrans;
+    }
+
+    /**
+     * Adds the rows the garage queries of CarDAO would return for the given car.
+     */
+    private void addRows(CarEntity car) {
+        Long carId = car.getId();
+
+        cars.add(new Object[]{carId, car.getDurability(), car.getHeat(), car.getExpirationDate(), car.getOwnershipType(),
+                car.getBaseCar(), car.getCarClassHash(), car.isPreset(), car.getLevel(), car.getName(),
+                car.getPhysicsProfileHash(), car.getRating(), car.getResalePrice(), car.getRideHeightDrop(),
+                car.getSkillModSlotCount(), car.getVersion()});
+
+        for (PaintEntity paint : car.getPaints()) {
+            paints.add(new Object[]{carId, paint.getGroup(), paint.getHue(), paint.getSat(), paint.getSlot(), paint.getVar()});
+        }
+        for (PerformancePartEntity part : car.getPerformanceParts()) {
+            performanceParts.add(new Object[]{carId, part.getPerformancePartAttribHash()});
+        }
+        for (SkillModPartEntity part : car.getSkillModParts()) {
+            skillModParts.add(new Object[]{carId, part.isFixed(), part.getSkillModPartAttribHash()});
+        }
+        for (VinylEntity vinyl : car.getVinyls()) {
+            vinyls.add(new Object[]{carId, vinyl.getHash(), vinyl.getHue1(), vinyl.getHue2(), vinyl.getHue3(),
+                    vinyl.getHue4(), vinyl.getLayer(), vinyl.isMir(), vinyl.getRot(), vinyl.getSat1(), vinyl.getSat2(),
+                    vinyl.getSat3(), vinyl.getSat4(), vinyl.getScalex(), vinyl.getScaley(), vinyl.getShear(),
+                    vinyl.getTranx(), vinyl.getTrany(), vinyl.getVar1(), vinyl.getVar2(), vinyl.getVar3(),
+                    vinyl.getVar4()});
+        }
+        for (VisualPartEntity part : car.getVisualParts()) {
+            visualParts.add(new Object[]{carId, part.getPartHash(), part.getSlotHash()});
+        }
+    }
+}
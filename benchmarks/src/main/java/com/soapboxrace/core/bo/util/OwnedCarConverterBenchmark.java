@@ -0,0 +1,173 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import com.soapboxrace.core.jpa.CarEntity;
+import com.soapboxrace.jaxb.http.*;
+import com.soapboxrace.jaxb.util.JAXBUtility;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a fully customized car between its entity and its {@link OwnedCarTrans}, in both directions,
+ * and computation of its setup hash.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OwnedCarConverterBenchmark {
+
+    private OwnedCarTrans ownedCarTrans;
+
+    private CarEntity carEntity;
+
+    @Setup
+    public void setup() {
+        ownedCarTrans = createOwnedCarTrans();
+        carEntity = trans2NewEntity(ownedCarTrans);
+    }
+
+    @Benchmark
+    public OwnedCarTrans entity2Trans() {
+        return OwnedCarConverter.entity2Trans(carEntity);
+    }
+
+    @Benchmark
+    public CarEntity trans2Entity() {
+        return trans2NewEntity(ownedCarTrans);
+    }
+
+    @Benchmark
+    public CarEntity roundTrip() {
+        return trans2NewEntity(OwnedCarConverter.entity2Trans(carEntity));
+    }
+
+    @Benchmark
+    public SetupCarTrans makeCarSetupTrans() {
+        return OwnedCarConverter.makeCarSetupTrans(carEntity);
+    }
+
+    @Benchmark
+    public String setupHashXml() {
+        return HelpingTools.calcHash(JAXBUtility.marshal(OwnedCarConverter.makeCarSetupTrans(carEntity)));
+    }
+
+    @Benchmark
+    public String setupHashBinary() {
+        return OwnedCarConverter.calcSetupHash(carEntity);
+    }
+
+    private static CarEntity trans2NewEntity(OwnedCarTrans ownedCarTrans) {
+        CarEntity entity = new CarEntity();
+        entity.setId(ownedCarTrans.getId());
+        OwnedCarConverter.trans2Entity(ownedCarTrans, entity);
+        OwnedCarConverter.details2NewEntity(ownedCarTrans, entity);
+        return entity;
+    }
+
+    /**
+     * Builds a car with the part counts of a typical fully tuned car: 6 performance parts, 5 skill mods,
+     * 12 visual parts, 6 paints and 20 vinyl layers.
+     *
+     * @return the car
+     */
+    public static OwnedCarTrans createOwnedCarTrans() {
+        CustomCarTrans customCarTrans = new CustomCarTrans();
+        customCarTrans.setBaseCar(-1681514783);
+        customCarTrans.setCarClassHash(-405837480);
+        customCarTrans.setId(1234567);
+        customCarTrans.setIsPreset(false);
+        customCarTrans.setLevel(0);
+        customCarTrans.setName("car_bmwm3gtre46");
+        customCarTrans.setPhysicsProfileHash(-1681514783);
+        customCarTrans.setRating(749);
+        customCarTrans.setResalePrice(187500f);
+        customCarTrans.setRideHeightDrop(0.1f);
+        customCarTrans.setSkillModSlotCount(5);
+        customCarTrans.setVersion(0);
+
+        ArrayOfPerformancePartTrans performanceParts = new ArrayOfPerformancePartTrans();
+        for (int i = 0; i < 6; i++) {
+            PerformancePartTrans performancePartTrans = new PerformancePartTrans();
+            performancePartTrans.setPerformancePartAttribHash(-1962598619 + i * 7919);
+            performanceParts.getPerformancePartTrans().add(performancePartTrans);
+        }
+        customCarTrans.setPerformanceParts(performanceParts);
+
+        ArrayOfSkillModPartTrans skillModParts = new ArrayOfSkillModPartTrans();
+        for (int i = 0; i < 5; i++) {
+            SkillModPartTrans skillModPartTrans = new SkillModPartTrans();
+            skillModPartTrans.setIsFixed(false);
+            skillModPartTrans.setSkillModPartAttribHash(1384236049 + i * 104729);
+            skillModParts.getSkillModPartTrans().add(skillModPartTrans);
+        }
+        customCarTrans.setSkillModParts(skillModParts);
+
+        ArrayOfVisualPartTrans visualParts = new ArrayOfVisualPartTrans();
+        for (int i = 0; i < 12; i++) {
+            VisualPartTrans visualPartTrans = new VisualPartTrans();
+            visualPartTrans.setPartHash(-541305606 + i * 15485863);
+            visualPartTrans.setSlotHash(1694991 + i);
+            visualParts.getVisualPartTrans().add(visualPartTrans);
+        }
+        customCarTrans.setVisualParts(visualParts);
+
+        ArrayOfCustomPaintTrans paints = new ArrayOfCustomPaintTrans();
+        for (int i = 0; i < 6; i++) {
+            CustomPaintTrans customPaintTrans = new CustomPaintTrans();
+            customPaintTrans.setGroup(-1480403439);
+            customPaintTrans.setHue(496032624 + i);
+            customPaintTrans.setSat(i * 10);
+            customPaintTrans.setSlot(i);
+            customPaintTrans.setVar(i * 5);
+            paints.getCustomPaintTrans().add(customPaintTrans);
+        }
+        customCarTrans.setPaints(paints);
+
+        ArrayOfCustomVinylTrans vinyls = new ArrayOfCustomVinylTrans();
+        List<CustomVinylTrans> vinylList = vinyls.getCustomVinylTrans();
+        for (int i = 0; i < 20; i++) {
+            CustomVinylTrans customVinylTrans = new CustomVinylTrans();
+            customVinylTrans.setHash(-1282944374 + i * 31);
+            customVinylTrans.setHue1(-799662319);
+            customVinylTrans.setHue2(-799662186);
+            customVinylTrans.setHue3(-799662187);
+            customVinylTrans.setHue4(-799662188);
+            customVinylTrans.setLayer(i);
+            customVinylTrans.setMir(i % 2 == 0);
+            customVinylTrans.setRot(i * 8);
+            customVinylTrans.setSat1(0);
+            customVinylTrans.setSat2(0);
+            customVinylTrans.setSat3(0);
+            customVinylTrans.setSat4(0);
+            customVinylTrans.setScaleX(7400 + i);
+            customVinylTrans.setScaleY(7400 - i);
+            customVinylTrans.setShear(0);
+            customVinylTrans.setTranX(i * 40);
+            customVinylTrans.setTranY(-i * 25);
+            customVinylTrans.setVar1(204);
+            customVinylTrans.setVar2(0);
+            customVinylTrans.setVar3(0);
+            customVinylTrans.setVar4(0);
+            vinylList.add(customVinylTrans);
+        }
+        customCarTrans.setVinyls(vinyls);
+
+        OwnedCarTrans ownedCarTrans = new OwnedCarTrans();
+        ownedCarTrans.setId(1234567L);
+        ownedCarTrans.setDurability(100);
+        ownedCarTrans.setHeat(1f);
+        ownedCarTrans.setOwnershipType("CustomizedCar");
+        ownedCarTrans.setCustomCar(customCarTrans);
+        return ownedCarTrans;
+    }
+}
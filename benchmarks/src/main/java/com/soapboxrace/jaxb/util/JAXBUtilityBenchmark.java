@@ -0,0 +1,96 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.jaxb.util;
+
+import com.soapboxrace.core.bo.util.OwnedCarConverterBenchmark;
+import com.soapboxrace.jaxb.http.ClientPhysicsMetrics;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
+import com.soapboxrace.jaxb.http.RouteArbitrationPacket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marshalling and unmarshalling of the packets exchanged on the hottest endpoints: the route arbitration packet
+ * posted at the end of every race and the owned car returned by the garage and the basket.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JAXBUtilityBenchmark {
+
+    private RouteArbitrationPacket routeArbitrationPacket;
+
+    private OwnedCarTrans ownedCarTrans;
+
+    private String routeArbitrationPacketXml;
+
+    private String ownedCarTransXml;
+
+    @Setup
+    public void setup() {
+        routeArbitrationPacket = createRouteArbitrationPacket();
+        ownedCarTrans = OwnedCarConverterBenchmark.createOwnedCarTrans();
+        routeArbitrationPacketXml = JAXBUtility.marshal(routeArbitrationPacket);
+        ownedCarTransXml = JAXBUtility.marshal(ownedCarTrans);
+    }
+
+    @Benchmark
+    public String marshalRouteArbitrationPacket() {
+        return JAXBUtility.marshal(routeArbitrationPacket);
+    }
+
+    @Benchmark
+    public RouteArbitrationPacket unMarshalRouteArbitrationPacket() {
+        return JAXBUtility.unMarshal(routeArbitrationPacketXml, RouteArbitrationPacket.class);
+    }
+
+    @Benchmark
+    public String marshalOwnedCarTrans() {
+        return JAXBUtility.marshal(ownedCarTrans);
+    }
+
+    @Benchmark
+    public byte[] marshalOwnedCarTransToBytes() {
+        return JAXBUtility.marshalToBytes(ownedCarTrans);
+    }
+
+    @Benchmark
+    public OwnedCarTrans unMarshalOwnedCarTrans() {
+        return JAXBUtility.unMarshal(ownedCarTransXml, OwnedCarTrans.class);
+    }
+
+    private static RouteArbitrationPacket createRouteArbitrationPacket() {
+        ClientPhysicsMetrics physicsMetrics = new ClientPhysicsMetrics();
+        physicsMetrics.setAccelerationAverage(9.3f);
+        physicsMetrics.setAccelerationMaximum(24.1f);
+        physicsMetrics.setAccelerationMedian(8.7f);
+        physicsMetrics.setSpeedAverage(48.2f);
+        physicsMetrics.setSpeedMaximum(91.6f);
+        physicsMetrics.setSpeedMedian(51.0f);
+
+        RouteArbitrationPacket packet = new RouteArbitrationPacket();
+        packet.setCarId(1234567L);
+        packet.setEventDurationInMilliseconds(152_340L);
+        packet.setAlternateEventDurationInMilliseconds(152_338L);
+        packet.setFinishReason(22);
+        packet.setHacksDetected(0L);
+        packet.setRank(1);
+        packet.setPhysicsMetrics(physicsMetrics);
+        packet.setBestLapDurationInMilliseconds(50_112L);
+        packet.setFractionCompleted(1.0f);
+        packet.setLongestJumpDurationInMilliseconds(1_200L);
+        packet.setNumberOfCollisions(3);
+        packet.setPerfectStart(1);
+        packet.setSumOfJumpsDurationInMilliseconds(2_450L);
+        packet.setTopSpeed(91.6f);
+        return packet;
+    }
+}
@@ -6,7 +6,10 @@
 
 package com.soapboxrace.core.api;
 
+import com.soapboxrace.core.api.util.CachedXmlResponse;
 import com.soapboxrace.core.api.util.Secured;
+import com.soapboxrace.core.bo.ParameterBO;
+import com.soapboxrace.core.bo.ResponseCacheBO;
 import com.soapboxrace.core.dao.CarClassListDAO;
 import com.soapboxrace.core.jpa.CarClassListEntity;
 import com.soapboxrace.jaxb.http.ArrayOfCarClass;
@@ -16,17 +19,40 @@ import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 
 @Path("/carclasses")
 public class CarClasses {
+    public static final String RESPONSE_CACHE_NAME = "carclasses";
+
     @Inject
     private CarClassListDAO CarClassListDAO;
 
+    @Inject
+    private ResponseCacheBO responseCacheBO;
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    @Context
+    private Request request;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
     @GET
     @Secured
     @Produces(MediaType.APPLICATION_XML)
-    public ArrayOfCarClass carClasses() {
+    public Response carClasses() {
+        ResponseCacheBO.CachedResponse cachedResponse = responseCacheBO.get(RESPONSE_CACHE_NAME, "all", this::loadCarClasses);
+        return CachedXmlResponse.build(cachedResponse, request, httpHeaders, parameterBO.getBoolParam("SBRWR_XML_RESPONSE_GZIP"));
+    }
+
+    private ArrayOfCarClass loadCarClasses() {
         ArrayOfCarClass arrayOfCarClass = new ArrayOfCarClass();
 
         for (CarClassListEntity CarClassLists : CarClassListDAO.findAll()) {
@@ -6,72 +6,75 @@
 
 package com.soapboxrace.core.api;
 
+import com.soapboxrace.core.api.util.CachedXmlResponse;
 import com.soapboxrace.core.api.util.Secured;
-import com.soapboxrace.core.bo.ProductBO;
+import com.soapboxrace.core.bo.CatalogSnapshotBO;
+import com.soapboxrace.core.bo.ParameterBO;
 import com.soapboxrace.core.bo.RequestSessionInfo;
-import com.soapboxrace.core.jpa.CategoryEntity;
-import com.soapboxrace.core.jpa.ProductEntity;
+import com.soapboxrace.core.bo.ResponseCacheBO;
 import com.soapboxrace.jaxb.http.ArrayOfCategoryTrans;
 import com.soapboxrace.jaxb.http.ArrayOfProductTrans;
-import com.soapboxrace.jaxb.http.CategoryTrans;
-import com.soapboxrace.jaxb.http.ProductTrans;
 
 import javax.inject.Inject;
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import java.util.List;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 
 @Path("/catalog")
 public class Catalog {
 
     @Inject
-    private ProductBO productBO;
+    private CatalogSnapshotBO catalogSnapshotBO;
+
+    @Inject
+    private ResponseCacheBO responseCacheBO;
+
+    @Inject
+    private ParameterBO parameterBO;
 
     @Inject
     private RequestSessionInfo requestSessionInfo;
 
+    @Context
+    private Request request;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
     @GET
     @Secured
     @Path("/productsInCategory")
     @Produces(MediaType.APPLICATION_XML)
-    public ArrayOfProductTrans productsInCategory(@HeaderParam("securityToken") String securityToken, @QueryParam(
+    public Response productsInCategory(@HeaderParam("securityToken") String securityToken, @QueryParam(
             "categoryName") String categoryName,
                                                   @QueryParam("clientProductType") String clientProductType) {
-        ArrayOfProductTrans arrayOfProductTrans = new ArrayOfProductTrans();
-        Long activePersonaId = requestSessionInfo.getActivePersonaId();
-        List<ProductEntity> productsInCategory = productBO.productsInCategory(categoryName, clientProductType,
-                activePersonaId);
-        List<ProductTrans> productTransList = productBO.getProductTransList(productsInCategory, activePersonaId);
-        arrayOfProductTrans.getProductTrans().addAll(productTransList);
-        return arrayOfProductTrans;
+        CatalogSnapshotBO.CatalogView view = catalogSnapshotBO.getView(requestSessionInfo.getTokenSessionEntity());
+        ResponseCacheBO.CachedResponse cachedResponse = responseCacheBO.get(CatalogSnapshotBO.RESPONSE_CACHE_NAME,
+                "products|" + categoryName + "|" + clientProductType + "|" + view.getKey(), () -> {
+                    ArrayOfProductTrans arrayOfProductTrans = new ArrayOfProductTrans();
+                    arrayOfProductTrans.getProductTrans().addAll(catalogSnapshotBO.getProductsInCategory(categoryName,
+                            clientProductType, view));
+                    return arrayOfProductTrans;
+                });
+        return CachedXmlResponse.build(cachedResponse, request, httpHeaders, parameterBO.getBoolParam("SBRWR_XML_RESPONSE_GZIP"));
     }
 
     @GET
     @Secured
     @Path("/categories")
     @Produces(MediaType.APPLICATION_XML)
-    public ArrayOfCategoryTrans categories(@HeaderParam("securityToken") String securityToken) {
-        Long activePersonaId = requestSessionInfo.getActivePersonaId();
-        ArrayOfCategoryTrans arrayOfCategoryTrans = new ArrayOfCategoryTrans();
-        List<CategoryEntity> listCategoryEntity = productBO.categories();
-        for (CategoryEntity entity : listCategoryEntity) {
-            CategoryTrans categoryTrans = new CategoryTrans();
-            categoryTrans.setCatalogVersion(Integer.parseInt(entity.getCatalogVersion()));
-            categoryTrans.setDisplayName(entity.getDisplayName());
-            categoryTrans.setFilterType(entity.getFilterType());
-            categoryTrans.setIcon(entity.getIcon());
-            categoryTrans.setId(entity.getIdentifiant().toString());
-            categoryTrans.setLongDescription(entity.getLongDescription());
-            categoryTrans.setName(entity.getName());
-            categoryTrans.setPriority(entity.getPriority());
-            categoryTrans.setProducts(productBO.getVinylByCategory(entity, activePersonaId));
-            categoryTrans.setShortDescription(entity.getShortDescription());
-            categoryTrans.setShowInNavigationPane(entity.getShowInNavigationPane());
-            categoryTrans.setShowPromoPage(entity.getShowPromoPage());
-            categoryTrans.setWebIcon(entity.getWebIcon());
-            arrayOfCategoryTrans.getCategoryTrans().add(categoryTrans);
-        }
-        return arrayOfCategoryTrans;
+    public Response categories(@HeaderParam("securityToken") String securityToken) {
+        CatalogSnapshotBO.CatalogView view = catalogSnapshotBO.getView(requestSessionInfo.getTokenSessionEntity());
+        ResponseCacheBO.CachedResponse cachedResponse = responseCacheBO.get(CatalogSnapshotBO.RESPONSE_CACHE_NAME,
+                "categories|" + view.getKey(), () -> {
+                    ArrayOfCategoryTrans arrayOfCategoryTrans = new ArrayOfCategoryTrans();
+                    arrayOfCategoryTrans.getCategoryTrans().addAll(catalogSnapshotBO.getCategories(view));
+                    return arrayOfCategoryTrans;
+                });
+        return CachedXmlResponse.build(cachedResponse, request, httpHeaders, parameterBO.getBoolParam("SBRWR_XML_RESPONSE_GZIP"));
     }
 }
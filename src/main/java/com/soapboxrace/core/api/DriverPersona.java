@@ -6,6 +6,7 @@
 
 package com.soapboxrace.core.api;
 
+import com.soapboxrace.core.api.util.CachedXmlResponse;
 import com.soapboxrace.core.api.util.Secured;
 import com.soapboxrace.core.bo.*;
 import com.soapboxrace.core.engine.EngineException;
@@ -19,13 +20,18 @@ import org.slf4j.Logger;
 import javax.inject.Inject;
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import java.io.InputStream;
 import java.util.Objects;
 import java.util.regex.Pattern;
 
 @Path("/DriverPersona")
 public class DriverPersona {
+    public static final String LEVELS_RESPONSE_CACHE_NAME = "levels";
 
     private final Pattern NAME_PATTERN = Pattern.compile("^[A-Z0-9]{3,15}$");
 
@@ -44,6 +50,18 @@ public class DriverPersona {
     @Inject
     private RequestSessionInfo requestSessionInfo;
 
+    @Inject
+    private ResponseCacheBO responseCacheBO;
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    @Context
+    private Request request;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
     @Inject
     private Logger logger;
 
@@ -51,8 +69,10 @@ public class DriverPersona {
     @Secured
     @Path("/GetExpLevelPointsMap")
     @Produces(MediaType.APPLICATION_XML)
-    public ArrayOfInt getExpLevelPointsMap() {
-        return driverPersonaBO.getExpLevelPointsMap();
+    public Response getExpLevelPointsMap() {
+        ResponseCacheBO.CachedResponse cachedResponse = responseCacheBO.get(LEVELS_RESPONSE_CACHE_NAME, "expLevelPointsMap",
+                driverPersonaBO::getExpLevelPointsMap);
+        return CachedXmlResponse.build(cachedResponse, request, httpHeaders, parameterBO.getBoolParam("SBRWR_XML_RESPONSE_GZIP"));
     }
 
     @GET
@@ -108,7 +128,7 @@ public class DriverPersona {
         }
 
         long personaId = persona.getPersonaId();
-        requestSessionInfo.getTokenSessionEntity().getAllowedPersonaIds().add(personaId);
+        tokenSessionBo.addAllowedPersonaId(requestSessionInfo.getTokenSessionEntity(), personaId);
         userBo.createXmppUser(personaId, securityToken.substring(0, 16));
         return persona;
     }
@@ -120,7 +140,7 @@ public class DriverPersona {
     public String deletePersona(@QueryParam("personaId") Long personaId) {
         tokenSessionBo.verifyPersonaOwnership(requestSessionInfo.getTokenSessionEntity(), personaId);
         driverPersonaBO.deletePersona(personaId);
-        requestSessionInfo.getTokenSessionEntity().getAllowedPersonaIds().remove(personaId);
+        tokenSessionBo.removeAllowedPersonaId(requestSessionInfo.getTokenSessionEntity(), personaId);
         return "<long>0</long>";
     }
 
@@ -136,7 +136,7 @@ public class Event {
         logger.info("EVENT_LAUNCHED: EventData created successfully for PersonaId={}", activePersonaId);
         
         tokenBO.setEventSessionId(requestSessionInfo.getTokenSessionEntity(), eventSessionId);
-        requestSessionInfo.getTokenSessionEntity().setInSafehouse(false);
+        tokenBO.setInSafehouse(requestSessionInfo.getTokenSessionEntity(), false);
 
         // Mettre le statut de présence à "en course" (-1)
         if (activePersonaId != null && !activePersonaId.equals(0L)) {
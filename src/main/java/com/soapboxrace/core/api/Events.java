@@ -50,8 +50,9 @@ public class Events {
     @Produces(MediaType.APPLICATION_XML)
     public EventsPacket availableAtLevel() {
         Long activePersonaId = requestSessionInfo.getActivePersonaId();
+        // Voiture active lue une seule fois (garage en cache) pour tous les événements
         OwnedCarTrans defaultCar = personaBO.getDefaultCar(activePersonaId);
-        int carClassHash = defaultCar.getCustomCar().getCarClassHash();
+        int carClassHash = defaultCar.getCustomCar() != null ? defaultCar.getCustomCar().getCarClassHash() : 0;
 
         EventsPacket eventsPacket = new EventsPacket();
         ArrayOfEventDefinition arrayOfEventDefinition = new ArrayOfEventDefinition();
@@ -63,9 +64,9 @@ public class Events {
             boolean isLocked = false;
             
             // 1. Vérification des restrictions de voitures spécifiques (PRIORITÉ)
-            if (eventEntity.getCarRestriction() != null && !eventEntity.getCarRestriction().trim().isEmpty()) {
+            if (eventBO.isCarRestricted(eventEntity)) {
                 // S'il y a une restriction spécifique, elle remplace la restriction de classe
-                if (!eventBO.hasAllowedCarForEvent(activePersonaId, eventEntity)) {
+                if (!eventBO.hasAllowedCarForEvent(defaultCar, eventEntity)) {
                     isLocked = true;
                 }
             } else {
@@ -8,6 +8,7 @@ package com.soapboxrace.core.api;
 
 import com.soapboxrace.core.api.util.Secured;
 import com.soapboxrace.core.bo.ParameterBO;
+import com.soapboxrace.core.bo.TokenSessionBO;
 import com.soapboxrace.jaxb.http.ArrayOfUdpRelayInfo;
 import com.soapboxrace.jaxb.http.UdpRelayInfo;
 
@@ -33,12 +34,15 @@ public class GetRebroadcasters {
     @Inject
     private RequestSessionInfo requestSessionInfo;
 
+    @Inject
+    private TokenSessionBO tokenSessionBO;
+
     @GET
     @Secured
     @Produces(MediaType.APPLICATION_XML)
     public ArrayOfUdpRelayInfo getRebroadcasters() {
         // Player is connecting to UDP freeroam relay = definitely in the open world, not safehouse
-        requestSessionInfo.getTokenSessionEntity().setInSafehouse(false);
+        tokenSessionBO.setInSafehouse(requestSessionInfo.getTokenSessionEntity(), false);
         ArrayOfUdpRelayInfo arrayOfUdpRelayInfo = new ArrayOfUdpRelayInfo();
         UdpRelayInfo udpRelayInfo = new UdpRelayInfo();
         udpRelayInfo.setHost(parameterBO.getStrParam("UDP_FREEROAM_IP"));
@@ -81,7 +81,7 @@ public class MatchMaking {
     @Produces(MediaType.APPLICATION_XML)
     public String joinQueueRaceNow() {
         Long activePersonaId = requestSessionInfo.getActivePersonaId();
-        requestSessionInfo.getTokenSessionEntity().setInSafehouse(false);
+        tokenSessionBO.setInSafehouse(requestSessionInfo.getTokenSessionEntity(), false);
         logger.info("RACENOW ENDPOINT: PersonaId={} is requesting to join RaceNow queue", activePersonaId);
         
         OwnedCarTrans defaultCar = personaBO.getDefaultCar(activePersonaId);
@@ -100,7 +100,7 @@ public class MatchMaking {
     @Path("/joinqueueevent/{eventId}")
     @Produces(MediaType.APPLICATION_XML)
     public String joinQueueEvent(@PathParam("eventId") int eventId) {
-        requestSessionInfo.getTokenSessionEntity().setInSafehouse(false);
+        tokenSessionBO.setInSafehouse(requestSessionInfo.getTokenSessionEntity(), false);
         lobbyBO.joinQueueEvent(requestSessionInfo.getActivePersonaId(), eventId);
         return "";
     }
@@ -6,6 +6,7 @@
 
 package com.soapboxrace.core.api;
 
+import com.soapboxrace.core.api.util.CachedXmlResponse;
 import com.soapboxrace.core.api.util.Secured;
 import com.soapboxrace.core.bo.*;
 import com.soapboxrace.core.bo.util.OwnedCarConverter;
@@ -19,7 +20,11 @@ import com.soapboxrace.jaxb.util.JAXBUtility;
 
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -36,7 +41,7 @@ public class Personas {
     private PersonaBO personaBO;
 
     @Inject
-    private CarSlotBO carSlotBO;
+    private GarageCacheBO garageCacheBO;
 
     @Inject
     private CommerceBO commerceBO;
@@ -56,6 +61,12 @@ public class Personas {
     @Inject
     private RequestSessionInfo requestSessionInfo;
 
+    @Context
+    private Request request;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
     @POST
     @Secured
     @Path("/{personaId}/commerce")
@@ -143,16 +154,11 @@ public class Personas {
     @Produces(MediaType.APPLICATION_XML)
     public CarSlotInfoTrans carslots(@PathParam(value = "personaId") Long personaId) {
         sessionBO.verifyPersonaOwnership(requestSessionInfo.getTokenSessionEntity(), personaId);
-        requestSessionInfo.getTokenSessionEntity().setInSafehouse(true);
-        requestSessionInfo.getTokenSessionEntity().setSafehouseEnteredAt(System.currentTimeMillis());
+        sessionBO.setInSafehouse(requestSessionInfo.getTokenSessionEntity(), true);
 
         PersonaEntity personaEntity = personaBO.getPersonaById(personaId);
-        List<CarEntity> personasCar = carSlotBO.getPersonasCar(personaId);
         ArrayOfOwnedCarTrans arrayOfOwnedCarTrans = new ArrayOfOwnedCarTrans();
-        for (CarEntity carEntity : personasCar) {
-            OwnedCarTrans ownedCarTrans = OwnedCarConverter.entity2Trans(carEntity);
-            arrayOfOwnedCarTrans.getOwnedCarTrans().add(ownedCarTrans);
-        }
+        arrayOfOwnedCarTrans.getOwnedCarTrans().addAll(garageCacheBO.get(personaId).getCars());
 
         CarSlotInfoTrans carSlotInfoTrans = new CarSlotInfoTrans();
         carSlotInfoTrans.setCarsOwnedByPersona(arrayOfOwnedCarTrans);
@@ -246,14 +252,9 @@ public class Personas {
     @Secured
     @Path("/{personaId}/cars")
     @Produces(MediaType.APPLICATION_XML)
-    public ArrayOfOwnedCarTrans carsGet(@PathParam(value = "personaId") Long personaId) {
-        ArrayOfOwnedCarTrans arrayOfOwnedCarTrans = new ArrayOfOwnedCarTrans();
-        List<CarEntity> personasCar = carSlotBO.getPersonasCar(personaId);
-        for (CarEntity carEntity : personasCar) {
-            OwnedCarTrans ownedCarTrans = OwnedCarConverter.entity2Trans(carEntity);
-            arrayOfOwnedCarTrans.getOwnedCarTrans().add(ownedCarTrans);
-        }
-        return arrayOfOwnedCarTrans;
+    public Response carsGet(@PathParam(value = "personaId") Long personaId) {
+        return CachedXmlResponse.build(garageCacheBO.get(personaId).getCarsResponse(), request, httpHeaders,
+                parameterBO.getBoolParam("SBRWR_XML_RESPONSE_GZIP"));
     }
 
     @GET
@@ -284,8 +285,9 @@ public class Personas {
     @Secured
     @Path("/{personaId}/defaultcar")
     @Produces(MediaType.APPLICATION_XML)
-    public OwnedCarTrans defaultcarGet(@PathParam(value = "personaId") Long personaId) {
-        return personaBO.getDefaultCar(personaId);
+    public Response defaultcarGet(@PathParam(value = "personaId") Long personaId) {
+        return CachedXmlResponse.build(garageCacheBO.get(personaId).getDefaultCarResponse(), request, httpHeaders,
+                parameterBO.getBoolParam("SBRWR_XML_RESPONSE_GZIP"));
     }
 
     @PUT
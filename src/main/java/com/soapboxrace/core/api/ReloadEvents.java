@@ -0,0 +1,49 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.api;
+
+import com.soapboxrace.core.bo.CarRestrictionIndexBO;
+import com.soapboxrace.core.bo.LeaderboardBO;
+import com.soapboxrace.core.bo.ParameterBO;
+
+import javax.inject.Inject;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+@Path("/ReloadEvents")
+public class ReloadEvents {
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    @Inject
+    private CarRestrictionIndexBO carRestrictionIndexBO;
+
+    @Inject
+    private LeaderboardBO leaderboardBO;
+
+    @POST
+    @Produces(MediaType.TEXT_HTML)
+    public String reloadEvents(@FormParam("adminAuth") String token) {
+        String adminToken = parameterBO.getStrParam("ADMIN_AUTH");
+
+        if (adminToken == null) {
+            return "ERROR! no admin token set in DB";
+        }
+
+        if (adminToken.equals(token)) {
+            carRestrictionIndexBO.reload();
+            leaderboardBO.clear();
+            return "SUCCESS! reloaded event car restrictions and leaderboards";
+        } else {
+            return "ERROR! invalid admin token";
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.api;
+
+import com.soapboxrace.core.bo.ParameterBO;
+import com.soapboxrace.core.bo.ResponseCacheBO;
+
+import javax.inject.Inject;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+@Path("/ReloadGameData")
+public class ReloadGameData {
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    @Inject
+    private ResponseCacheBO responseCacheBO;
+
+    @POST
+    @Produces(MediaType.TEXT_HTML)
+    public String reloadGameData(@FormParam("adminAuth") String token) {
+        String adminToken = parameterBO.getStrParam("ADMIN_AUTH");
+
+        if (adminToken == null) {
+            return "ERROR! no admin token set in DB";
+        }
+
+        if (adminToken.equals(token)) {
+            // Les réponses en cache sont reconstruites depuis CAR_CLASSLIST et LEVEL_REP à la prochaine requête
+            responseCacheBO.bumpVersion(CarClasses.RESPONSE_CACHE_NAME);
+            responseCacheBO.bumpVersion(DriverPersona.LEVELS_RESPONSE_CACHE_NAME);
+            return "SUCCESS! reloaded car classes and levels";
+        } else {
+            return "ERROR! invalid admin token";
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.api;
+
+import com.soapboxrace.core.bo.CatalogSnapshotBO;
+import com.soapboxrace.core.bo.ParameterBO;
+
+import javax.inject.Inject;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+@Path("/ReloadProducts")
+public class ReloadProducts {
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    @Inject
+    private CatalogSnapshotBO catalogSnapshotBO;
+
+    @POST
+    @Produces(MediaType.TEXT_HTML)
+    public String reloadProducts(@FormParam("adminAuth") String token) {
+        String adminToken = parameterBO.getStrParam("ADMIN_AUTH");
+
+        if (adminToken == null) {
+            return "ERROR! no admin token set in DB";
+        }
+
+        if (adminToken.equals(token)) {
+            // Le catalogue est construit depuis le registre des produits : les deux sont rechargés ensemble
+            catalogSnapshotBO.reload();
+            return "SUCCESS! reloaded products and catalog";
+        } else {
+            return "ERROR! invalid admin token";
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.soapboxrace.core.api.util.Secured;
 import com.soapboxrace.core.bo.HardwareInfoBO;
 import com.soapboxrace.core.bo.RequestSessionInfo;
 import com.soapboxrace.core.bo.TokenSessionBO;
+import com.soapboxrace.core.bo.UserWriteBehindBO;
 import com.soapboxrace.core.dao.UserDAO;
 import com.soapboxrace.core.jpa.HardwareInfoEntity;
 import com.soapboxrace.core.jpa.UserEntity;
@@ -37,6 +38,9 @@ public class Reporting {
     @Inject
     private UserDAO userDAO;
 
+    @Inject
+    private UserWriteBehindBO userWriteBehindBO;
+
     @Inject
     private RequestSessionInfo requestSessionInfo;
     
@@ -51,7 +55,7 @@ public class Reporting {
         HardwareInfo hardwareInfo = JAXBUtility.unMarshal(is, HardwareInfo.class);
         HardwareInfoEntity hardwareInfoEntity = hardwareInfoBO.save(hardwareInfo);
         UserEntity user = requestSessionInfo.getUser();
-        userDAO.updateGameHardwareHashAndState(user.getId(), hardwareInfoEntity.getHardwareHash(), "ONLINE");
+        userWriteBehindBO.updateGameHardwareHashAndState(user.getId(), hardwareInfoEntity.getHardwareHash(), "ONLINE");
 
         HardwareInfoEntity checkBannedHWID = hardwareInfoDAO.findBannedByHardwareHash(hardwareInfoEntity.getHardwareHash());
         if(checkBannedHWID != null) {
@@ -0,0 +1,62 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.api.util;
+
+import com.soapboxrace.core.bo.ResponseCacheBO;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+/**
+ * Builds responses from {@link ResponseCacheBO} entries: {@code 304 Not Modified} when the client already has the
+ * content ({@code If-None-Match}), otherwise the serialized bytes, compressed if allowed and accepted.
+ */
+public final class CachedXmlResponse {
+
+    private CachedXmlResponse() {
+    }
+
+    public static Response build(ResponseCacheBO.CachedResponse cachedResponse, Request request, HttpHeaders headers,
+                                 boolean gzipEnabled) {
+        boolean gzip = gzipEnabled && acceptsGzip(headers);
+        EntityTag entityTag = new EntityTag(gzip ? cachedResponse.getEtag() + "-gz" : cachedResponse.getEtag());
+        Response.ResponseBuilder builder = request.evaluatePreconditions(entityTag);
+
+        if (builder == null) {
+            builder = Response.ok(gzip ? cachedResponse.getGzipBody() : cachedResponse.getBody(),
+                    MediaType.APPLICATION_XML_TYPE);
+
+            if (gzip) {
+                builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+        }
+
+        if (gzipEnabled) {
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        return builder.tag(entityTag).build();
+    }
+
+    private static boolean acceptsGzip(HttpHeaders headers) {
+        List<String> acceptEncoding = headers.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptEncoding != null) {
+            for (String value : acceptEncoding) {
+                if (value != null && value.toLowerCase().contains("gzip")) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -7,6 +7,7 @@
 package com.soapboxrace.core.api.util;
 
 import com.soapboxrace.core.bo.ParameterBO;
+import com.soapboxrace.core.bo.UserWriteBehindBO;
 import com.soapboxrace.core.dao.UserDAO;
 import com.soapboxrace.core.jpa.UserEntity;
 import com.soapboxrace.jaxb.login.LoginStatusVO;
@@ -36,6 +37,9 @@ public class LaunchFilter implements ContainerRequestFilter {
     @Inject
     private UserDAO userDao;
 
+    @Inject
+    private UserWriteBehindBO userWriteBehindBO;
+
     public static int compareVersions(String v1, String v2) {
         String[] components1 = v1.split("\\.");
         String[] components2 = v2.split("\\.");
@@ -56,7 +60,7 @@ public class LaunchFilter implements ContainerRequestFilter {
 
         UserEntity userEntity = userDao.findByEmail(email);
         if (userEntity != null && hwid != null && !hwid.equals(userEntity.getHwid())) {
-            userDao.updateHwid(userEntity.getId(), hwid);
+            userWriteBehindBO.updateHwid(userEntity.getId(), hwid);
         }
 
         if (parameterBO.getBoolParam("ENABLE_WHITELISTED_LAUNCHERS_ONLY")) {
@@ -7,6 +7,8 @@
 package com.soapboxrace.core.api.util;
 
 import com.soapboxrace.jaxb.util.JAXBUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
@@ -23,6 +25,7 @@ import java.lang.reflect.Type;
 @Provider
 @Produces(MediaType.APPLICATION_XML)
 public class MarshallerInterceptor implements MessageBodyWriter<Object> {
+    private static final Logger logger = LoggerFactory.getLogger(MarshallerInterceptor.class);
 
     @Context
     protected Providers providers;
@@ -38,8 +41,15 @@ public class MarshallerInterceptor implements MessageBodyWriter<Object> {
                         OutputStream entityStream) throws WebApplicationException {
         if (object != null) {
             try {
-                entityStream.write(JAXBUtility.marshal(object).getBytes());
+                if (object instanceof byte[]) {
+                    // Réponse déjà sérialisée (voir CachedXmlResponse)
+                    entityStream.write((byte[]) object);
+                } else {
+                    // Sérialisé entièrement avant d'écrire : un échec donne une erreur, pas une réponse 200 tronquée
+                    entityStream.write(JAXBUtility.marshalToBytes(object));
+                }
             } catch (Exception e) {
+                logger.error("Failed to write {} response: {}", type.getSimpleName(), e.getMessage(), e);
                 throw new WebApplicationException(e);
             }
         }
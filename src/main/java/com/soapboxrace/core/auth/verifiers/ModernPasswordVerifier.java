@@ -8,6 +8,7 @@ package com.soapboxrace.core.auth.verifiers;
 
 import com.google.common.base.Charsets;
 import com.google.common.hash.Hashing;
+import com.soapboxrace.core.auth.AuthException;
 import com.soapboxrace.core.auth.AuthUtil;
 import com.soapboxrace.core.bo.Argon2BO;
 import com.soapboxrace.core.jpa.UserEntity;
@@ -22,12 +23,12 @@ public class ModernPasswordVerifier implements PasswordVerifier {
     }
 
     @Override
-    public String createHash() {
+    public String createHash() throws AuthException {
         return argon2.hash(password);
     }
 
     @Override
-    public boolean verifyHash(UserEntity user) {
+    public boolean verifyHash(UserEntity user) throws AuthException {
         String dbHash = user.getPassword();
         boolean needsRehash = false;
         if (dbHash.length() == 40) {
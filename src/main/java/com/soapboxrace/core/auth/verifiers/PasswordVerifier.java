@@ -6,9 +6,10 @@
 
 package com.soapboxrace.core.auth.verifiers;
 
+import com.soapboxrace.core.auth.AuthException;
 import com.soapboxrace.core.jpa.UserEntity;
 
 public interface PasswordVerifier {
-    String createHash();
-    boolean verifyHash(UserEntity user);
+    String createHash() throws AuthException;
+    boolean verifyHash(UserEntity user) throws AuthException;
 }
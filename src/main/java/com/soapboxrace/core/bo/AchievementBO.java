@@ -16,6 +16,7 @@ import javax.ejb.TransactionAttributeType;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.soapboxrace.core.bo.util.AchievementProgressionContext;
+import com.soapboxrace.core.bo.util.AchievementTriggerCompiler;
 import com.soapboxrace.core.bo.util.AchievementUpdateInfo;
 import com.soapboxrace.core.dao.*;
 import com.soapboxrace.core.engine.EngineException;
@@ -28,6 +29,8 @@ import com.soapboxrace.jaxb.xmpp.AchievementAwarded;
 import com.soapboxrace.jaxb.xmpp.AchievementProgress;
 import com.soapboxrace.jaxb.xmpp.AchievementsAwarded;
 import com.soapboxrace.jaxb.xmpp.XMPP_ResponseTypeAchievementsAwarded;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
 import javax.script.ScriptException;
@@ -40,6 +43,7 @@ import java.util.stream.Collectors;
 @Singleton
 @Lock(LockType.READ)
 public class AchievementBO {
+    private static final Logger logger = LoggerFactory.getLogger(AchievementBO.class);
     public static final DateTimeFormatter RANK_COMPLETED_AT_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'hh:mm:ss");
     @Inject
     private ItemRewardBO itemRewardBO;
@@ -71,6 +75,7 @@ public class AchievementBO {
     private List<AchievementEntity> achievementEntities;
     private List<BadgeDefinitionEntity> badgeDefinitionEntities;
     private Multimap<String, AchievementEntity> achievementCategoryMap;
+    private Map<Long, AchievementTriggerCompiler.CompiledTrigger> compiledTriggers;
 
     @PostConstruct
     @Lock(LockType.WRITE)
@@ -79,6 +84,62 @@ public class AchievementBO {
         this.badgeDefinitionEntities = badgeDefinitionDAO.findAll();
         this.achievementCategoryMap = ArrayListMultimap.create();
         this.achievementEntities.forEach(a -> this.achievementCategoryMap.put(a.getCategory(), a));
+        this.compiledTriggers = compileTriggers(this.achievementEntities);
+        this.scriptingBO.invalidate();
+    }
+
+    /**
+     * Compiles the update triggers that fit {@link AchievementTriggerCompiler}'s subset to Java predicates.
+     * The others are evaluated by {@link ScriptingBO}.
+     */
+    private Map<Long, AchievementTriggerCompiler.CompiledTrigger> compileTriggers(List<AchievementEntity> achievements) {
+        Map<Long, AchievementTriggerCompiler.CompiledTrigger> compiled = new HashMap<>();
+
+        if (!parameterBO.getBoolParam("SBRWR_NATIVE_ACHIEVEMENT_TRIGGERS")) {
+            return compiled;
+        }
+
+        List<String> scripted = new ArrayList<>();
+        int withTrigger = 0;
+
+        for (AchievementEntity achievementEntity : achievements) {
+            String updateTrigger = achievementEntity.getUpdateTrigger();
+
+            if (updateTrigger == null || updateTrigger.trim().isEmpty()) {
+                continue;
+            }
+
+            withTrigger++;
+            AchievementTriggerCompiler.CompiledTrigger trigger = AchievementTriggerCompiler.compile(updateTrigger);
+
+            if (trigger != null) {
+                compiled.put(achievementEntity.getId(), trigger);
+            } else {
+                scripted.add(achievementEntity.getId() + ":" + achievementEntity.getName());
+            }
+        }
+
+        logger.info("Compiled {}/{} achievement triggers to Java", compiled.size(), withTrigger);
+
+        if (!scripted.isEmpty()) {
+            logger.info("Achievement triggers left to the script engine: {}", scripted);
+        }
+
+        return compiled;
+    }
+
+    private Boolean evaluateTrigger(AchievementEntity achievementEntity, Map<String, Object> bindings) throws ScriptException {
+        AchievementTriggerCompiler.CompiledTrigger trigger = compiledTriggers.get(achievementEntity.getId());
+
+        if (trigger != null) {
+            Boolean result = trigger.test(bindings);
+
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return (Boolean) scriptingBO.eval(achievementEntity.getUpdateTrigger(), bindings);
     }
 
     @Schedule(minute = "*/30", hour = "*")
@@ -410,8 +471,7 @@ public class AchievementBO {
             properties.put("personaAchievement", personaAchievementEntity);
 
             try {
-                Boolean shouldUpdate = (Boolean) scriptingBO.eval(achievementEntity.getUpdateTrigger(),
-                        properties);
+                Boolean shouldUpdate = evaluateTrigger(achievementEntity, properties);
                 if (shouldUpdate) {
                     if (insert) {
                         personaAchievementDAO.insert(personaAchievementEntity);
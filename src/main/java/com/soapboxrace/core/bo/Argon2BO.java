@@ -7,21 +7,57 @@
 package com.soapboxrace.core.bo;
 
 import com.google.common.base.Charsets;
+import com.soapboxrace.core.auth.AuthException;
 import de.mkammerer.argon2.Argon2;
 import de.mkammerer.argon2.Argon2Factory;
 import de.mkammerer.argon2.Argon2Helper;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import javax.inject.Inject;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Hachage et vérification des mots de passe Argon2.
+ * <p>
+ * Les calculs sont exécutés sur un pool dédié, dimensionné sur le nombre de coeurs et borné par un budget mémoire
+ * (chaque calcul en cours alloue memoryCost Ko). Les appels sont donc concurrents sans pouvoir saturer le CPU ni la
+ * mémoire. Quand la file d'attente est pleine (afflux de connexions après un redémarrage), la demande est refusée
+ * immédiatement plutôt que de laisser le client attendre un timeout.
+ */
 @Startup
 @Singleton
+@Lock(LockType.READ)
 public class Argon2BO {
+    private static final Logger logger = LoggerFactory.getLogger(Argon2BO.class);
+
     @Inject
     private ParameterBO parameterBO;
 
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Resource
+    private ManagedThreadFactory managedThreadFactory;
+
     private Argon2 argon2 = Argon2Factory.create();
     private String paramString;
     private int timeCost;
@@ -29,6 +65,12 @@ public class Argon2BO {
     private int parallelism;
     private Integer iterations;
 
+    private ThreadPoolExecutor hashingPool;
+
+    private Counter rejectedCounter;
+
+    private Timer hashingTimer;
+
     private void loadParameters() {
         paramString = parameterBO.getStrParam("ARGON2_PARAMS", "500:16384:1");
         String[] splits = paramString.split(":");
@@ -55,23 +97,83 @@ public class Argon2BO {
             paramString += ":" + iterations.toString();
             parameterBO.setParameter("ARGON2_PARAMS", paramString);
         }
+
+        // Nombre de calculs simultanés : un par coeur (chaque calcul utilise parallelism lanes), dans la limite du budget mémoire
+        int threads = parameterBO.getIntParam("SBRWR_ARGON2_THREADS",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, parallelism)));
+        int memoryBudget = parameterBO.getIntParam("SBRWR_ARGON2_MEMORY_BUDGET_KB", 262144);
+        int concurrency = Math.max(1, Math.min(threads, memoryBudget / Math.max(1, memoryCost)));
+        int queueSize = parameterBO.getIntParam("SBRWR_ARGON2_QUEUE_SIZE", 256);
+
+        this.hashingPool = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), managedThreadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+        this.rejectedCounter = metricRegistry.counter("argon2.rejected");
+        this.hashingTimer = metricRegistry.timer("argon2.hashing");
+        metricRegistry.register("argon2.queue_depth", (Gauge<Integer>) () -> hashingPool.getQueue().size());
+        metricRegistry.register("argon2.active", (Gauge<Integer>) hashingPool::getActiveCount);
+
+        logger.info("Argon2 pool: {} concurrent hash(es) of {}KB, queue size {}", concurrency, memoryCost, queueSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (this.hashingPool != null) {
+            this.hashingPool.shutdown();
+        }
     }
 
-    public String hash(String password) {
-        byte[] bytes = password.getBytes(Charsets.UTF_8);
-        String hash = argon2.hash(iterations, memoryCost, parallelism, bytes);
-        argon2.wipeArray(bytes);
-        return hash;
+    public String hash(String password) throws AuthException {
+        return execute(() -> {
+            byte[] bytes = password.getBytes(Charsets.UTF_8);
+            String hash = argon2.hash(iterations, memoryCost, parallelism, bytes);
+            argon2.wipeArray(bytes);
+            return hash;
+        });
     }
 
-    public boolean verify(String password, String hash) {
-        byte[] bytes = password.getBytes(Charsets.UTF_8);
-        boolean verifyResult = argon2.verify(hash, bytes);
-        argon2.wipeArray(bytes);
-        return verifyResult;
+    public boolean verify(String password, String hash) throws AuthException {
+        return execute(() -> {
+            byte[] bytes = password.getBytes(Charsets.UTF_8);
+            boolean verifyResult = argon2.verify(hash, bytes);
+            argon2.wipeArray(bytes);
+            return verifyResult;
+        });
     }
 
     public boolean needsRehash(String hash) {
         return argon2.needsRehash(hash, iterations, memoryCost, parallelism);
     }
-}
\ No newline at end of file
+
+    private <T> T execute(Callable<T> task) throws AuthException {
+        Future<T> future;
+
+        try {
+            future = hashingPool.submit(() -> {
+                Timer.Context context = hashingTimer.time();
+                try {
+                    return task.call();
+                } finally {
+                    context.stop();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.inc();
+            throw new AuthException("Server is busy, please try again in a few seconds.");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthException("Authentication was interrupted, please try again.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -90,7 +90,8 @@ public class AutoTuneBO {
     private static final int DEFAULT_RELOAD_MAX_ITERATIONS = 10_000_000;
 
     // Precomputed per-priority data (immutable, shared across all cars/classes in batch)
-    private static class PrecomputedParts {
+    // Package-private, like the DFS entry points below, for the benchmarks project
+    static class PrecomputedParts {
         final int[][][] partStats;
         final boolean[] isPriorityCat;
         final int[][] maxRemaining;
@@ -696,7 +697,7 @@ public class AutoTuneBO {
      * Precompute sorted/deduped parts data for a given priority.
      * Called once per priority in batch mode, shared across all cars/classes.
      */
-    private static PrecomputedParts precomputeForPriority(Map<String, List<ProductEntity>> partsBySubType, StatPriority priority) {
+    static PrecomputedParts precomputeForPriority(Map<String, List<ProductEntity>> partsBySubType, StatPriority priority) {
         List<String> subTypes = new ArrayList<>(partsBySubType.keySet());
         Map<String, List<ProductEntity>> deduped = new LinkedHashMap<>();
         for (String subType : subTypes) {
@@ -828,7 +829,7 @@ public class AutoTuneBO {
      * [4]=acBase [5]=dac_th [6]=dac_ta [7]=dac_tt
      * [8]=haBase [9]=dha_th [10]=dha_ta [11]=dha_tt
      */
-    private static double[] cacheCarPhysics(CarClassesEntity c) {
+    static double[] cacheCarPhysics(CarClassesEntity c) {
         double tsBase = c.getTsStock().doubleValue();
         double acBase = c.getAcStock().doubleValue();
         double haBase = c.getHaStock().doubleValue();
@@ -888,7 +889,7 @@ public class AutoTuneBO {
      * Find optimal parts for batch pre-generation. Uses precomputed data + serial DFS.
      * No ForkJoinPool overhead per call - parallelism is at the job level.
      */
-    private static int[] findOptimalPartsBatch(double[] physics, PrecomputedParts pp, int targetRating, int maxIterations) {
+    static int[] findOptimalPartsBatch(double[] physics, PrecomputedParts pp, int targetRating, int maxIterations) {
         int n = pp.n;
         int[][][] partStats = pp.partStats;
         boolean[] isPrioCat = pp.isPriorityCat;
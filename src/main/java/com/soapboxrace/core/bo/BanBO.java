@@ -26,6 +26,9 @@ public class BanBO {
     @Inject
     private HardwareInfoDAO hardwareInfoDAO;
 
+    @Inject
+    private UserWriteBehindBO userWriteBehindBO;
+
     @Schedule(minute = "*", hour = "*")
     public void checkExpiredBans() {
         List<BanEntity> expiredBans = banDAO.findAllExpired();
@@ -73,8 +76,15 @@ public class BanBO {
         Objects.requireNonNull(banEntity);
         UserEntity userEntity = banEntity.getUserEntity();
 
-        if (userEntity.getGameHardwareHash() != null) {
-            HardwareInfoEntity hardwareInfoEntity = hardwareInfoDAO.findByHardwareHash(userEntity.getGameHardwareHash());
+        // Le hash écrit au dernier login peut être encore en attente dans le buffer. Seul le buffer de ce nœud est
+        // connu : si le login a eu lieu sur un autre nœud, la colonne peut avoir jusqu'à une seconde de retard
+        String gameHardwareHash = userWriteBehindBO.getPendingGameHardwareHash(userEntity.getId());
+        if (gameHardwareHash == null) {
+            gameHardwareHash = userEntity.getGameHardwareHash();
+        }
+
+        if (gameHardwareHash != null) {
+            HardwareInfoEntity hardwareInfoEntity = hardwareInfoDAO.findByHardwareHash(gameHardwareHash);
             hardwareInfoEntity.setBanned(false);
             hardwareInfoDAO.update(hardwareInfoEntity);
         }
@@ -47,7 +47,7 @@ public class BasketBO {
     private CardPackDAO cardPackDAO;
 
     @Inject
-    private ProductDAO productDao;
+    private ProductRegistryBO productRegistryBO;
 
     @Inject
     private PersonaDAO personaDao;
@@ -95,14 +95,14 @@ public class BasketBO {
     private UserDAO userDao;
 
     public ProductEntity findProduct(String productId) {
-        return productDao.findByProductId(productId);
+        return productRegistryBO.findByProductId(productId);
     }
 
     public CommerceResultStatus repairCar(String productId, PersonaEntity personaEntity) {
         CarEntity defaultCarEntity = personaBo.getDefaultCarEntity(personaEntity.getPersonaId());
         int price =
-                (int) (productDao.findByProductId(productId).getPrice() * (100 - defaultCarEntity.getDurability()));
-        ProductEntity repairProduct = productDao.findByProductId(productId);
+                (int) (productRegistryBO.findByProductId(productId).getPrice() * (100 - defaultCarEntity.getDurability()));
+        ProductEntity repairProduct = productRegistryBO.findByProductId(productId);
 
         if (repairProduct == null) {
             return CommerceResultStatus.FAIL_INVALID_BASKET;
@@ -123,7 +123,7 @@ public class BasketBO {
             return CommerceResultStatus.FAIL_INSUFFICIENT_FUNDS;
         }
 
-        ProductEntity powerupProduct = productDao.findByProductId(productId);
+        ProductEntity powerupProduct = productRegistryBO.findByProductId(productId);
         if(powerupProduct == null) {
             return CommerceResultStatus.FAIL_INVALID_BASKET;
         }
@@ -149,7 +149,7 @@ public class BasketBO {
         if (!parameterBO.getBoolParam("ENABLE_ECONOMY")) {
             return CommerceResultStatus.FAIL_INSUFFICIENT_FUNDS;
         }
-        ProductEntity powerupProduct = productDao.findByProductId(productId);
+        ProductEntity powerupProduct = productRegistryBO.findByProductId(productId);
 
         if (powerupProduct == null) {
             return CommerceResultStatus.FAIL_INVALID_BASKET;
@@ -195,7 +195,7 @@ public class BasketBO {
     }
 
     public CommerceResultStatus buyBundle(String productId, PersonaEntity personaEntity, CommerceResultTrans commerceResultTrans) {
-        ProductEntity bundleProduct = productDao.findByProductId(productId);
+        ProductEntity bundleProduct = productRegistryBO.findByProductId(productId);
 
         if (bundleProduct == null) {
             return CommerceResultStatus.FAIL_INVALID_BASKET;
@@ -245,7 +245,7 @@ public class BasketBO {
     }
 
     public CommerceResultStatus reviveTreasureHunt(String productId, PersonaEntity personaEntity) {
-        ProductEntity productEntity = productDao.findByProductId(productId);
+        ProductEntity productEntity = productRegistryBO.findByProductId(productId);
 
         if (canPurchaseProduct(personaEntity, productEntity)) {
             TreasureHuntEntity treasureHuntEntity = treasureHuntDAO.find(personaEntity.getPersonaId());
@@ -261,7 +261,7 @@ public class BasketBO {
     }
 
     public CommerceResultStatus buyAmplifier(PersonaEntity personaEntity, String productId) {
-        ProductEntity productEntity = productDao.findByProductId(productId);
+        ProductEntity productEntity = productRegistryBO.findByProductId(productId);
 
         if (!canAddAmplifier(personaEntity.getPersonaId(), productEntity.getEntitlementTag())) {
             return CommerceResultStatus.FAIL_MAX_ALLOWED_PURCHASES_FOR_THIS_PRODUCT;
@@ -313,7 +313,7 @@ public class BasketBO {
         CarClassesEntity carClassesEntity = performanceBO.calcNewCarClass(carEntity);
 
         if (isRental && canAddAmplifier(personaEntity.getPersonaId(), "INSURANCE_AMPLIFIER")) {
-            addAmplifier(personaEntity, productDao.findByEntitlementTag("INSURANCE_AMPLIFIER"));
+            addAmplifier(personaEntity, productRegistryBO.findByEntitlementTag("INSURANCE_AMPLIFIER"));
         }
 
         AchievementTransaction transaction = achievementBO.createTransaction(personaEntity.getPersonaId());
@@ -0,0 +1,159 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.dao.EventDAO;
+import com.soapboxrace.core.jpa.EventEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed car restrictions of the events (EVENT.CAR_RESTRICTION, comma-separated car names).
+ * <p>
+ * Each restriction is split once into a set of normalized names (trimmed, lower case), so that checking a car
+ * against an event is a single set lookup. The sets are built at startup and on {@link #reload()}; an entry whose
+ * raw restriction no longer matches the event is parsed again on use.
+ */
+@Startup
+@Singleton
+@Lock(LockType.READ)
+public class CarRestrictionIndexBO {
+    private static final Logger logger = LoggerFactory.getLogger(CarRestrictionIndexBO.class);
+
+    private final Map<Integer, CarRestriction> restrictions = new ConcurrentHashMap<>();
+
+    @Inject
+    private EventDAO eventDAO;
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Parses the restrictions of every event again.
+     */
+    public void reload() {
+        Map<Integer, CarRestriction> parsed = new ConcurrentHashMap<>();
+
+        for (EventEntity eventEntity : eventDAO.findAll()) {
+            CarRestriction restriction = parse(eventEntity.getCarRestriction());
+
+            if (restriction != null) {
+                parsed.put(eventEntity.getId(), restriction);
+            }
+        }
+
+        restrictions.keySet().retainAll(parsed.keySet());
+        restrictions.putAll(parsed);
+
+        logger.info("Car restrictions loaded: {} restricted events", parsed.size());
+    }
+
+    /**
+     * @param eventEntity the event
+     * @return {@code true} if only some cars may enter the event
+     */
+    public boolean isRestricted(EventEntity eventEntity) {
+        return getRestriction(eventEntity) != null;
+    }
+
+    /**
+     * Checks whether the given car may enter the given event.
+     *
+     * @param eventEntity the event
+     * @param carName     the name of the car, may be {@code null}
+     * @return {@code true} if the event has no restriction or the car is one of the allowed cars
+     */
+    public boolean isAllowed(EventEntity eventEntity, String carName) {
+        CarRestriction restriction = getRestriction(eventEntity);
+
+        if (restriction == null) {
+            return true;
+        }
+
+        return carName != null && restriction.allowedNames.contains(normalize(carName));
+    }
+
+    /**
+     * @param eventEntity the event
+     * @return the normalized names of the allowed cars, empty if the event has no restriction
+     */
+    public Set<String> getAllowedNames(EventEntity eventEntity) {
+        CarRestriction restriction = getRestriction(eventEntity);
+
+        return restriction != null ? restriction.allowedNames : Collections.emptySet();
+    }
+
+    private CarRestriction getRestriction(EventEntity eventEntity) {
+        String raw = eventEntity.getCarRestriction();
+
+        if (raw == null) {
+            return null;
+        }
+
+        CarRestriction restriction = restrictions.get(eventEntity.getId());
+
+        // Restriction modifiée depuis le dernier chargement : la relire
+        if (restriction == null || !restriction.raw.equals(raw)) {
+            restriction = parse(raw);
+
+            if (restriction != null) {
+                restrictions.put(eventEntity.getId(), restriction);
+            } else {
+                restrictions.remove(eventEntity.getId());
+            }
+        }
+
+        return restriction;
+    }
+
+    private static CarRestriction parse(String raw) {
+        if (raw == null || raw.trim().isEmpty()) {
+            return null;
+        }
+
+        Set<String> allowedNames = new HashSet<>();
+
+        for (String name : raw.split(",")) {
+            String normalized = normalize(name);
+
+            if (!normalized.isEmpty()) {
+                allowedNames.add(normalized);
+            }
+        }
+
+        return new CarRestriction(raw, Collections.unmodifiableSet(allowedNames));
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class CarRestriction {
+        private final String raw;
+        private final Set<String> allowedNames;
+
+        CarRestriction(String raw, Set<String> allowedNames) {
+            this.raw = raw;
+            this.allowedNames = allowedNames;
+        }
+    }
+}
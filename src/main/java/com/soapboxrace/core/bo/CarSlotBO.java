@@ -12,8 +12,10 @@ import javax.ejb.Singleton;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 
+import com.soapboxrace.core.bo.util.OwnedCarConverter;
 import com.soapboxrace.core.dao.CarDAO;
 import com.soapboxrace.core.jpa.CarEntity;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
@@ -60,6 +62,32 @@ public class CarSlotBO {
         return ownedCarEntities;
     }
 
+    /**
+     * Loads the garage of a persona for display: one query per table (cars, paints, performance parts, skill mods,
+     * vinyls, visual parts) for the whole garage, without loading the entities.
+     *
+     * @param personaId the persona ID
+     * @return the cars, in the same order as {@link #getPersonasCar(Long)}
+     */
+    public List<OwnedCarTrans> getPersonasCarTrans(Long personaId) {
+        List<Object[]> cars = carDAO.findGarageCars(personaId);
+
+        for (Object[] car : cars) {
+            if ((Integer) car[6] == 0) {
+                // CarClassHash can be set to 0 to recalculate rating/class
+                CarEntity carEntity = carDAO.find((Long) car[0]);
+                performanceBO.calcNewCarClass(carEntity);
+                carDAO.update(carEntity);
+                car[6] = carEntity.getCarClassHash();
+                car[11] = carEntity.getRating();
+            }
+        }
+
+        return OwnedCarConverter.garageRows2Trans(cars, carDAO.findGaragePaints(personaId),
+                carDAO.findGaragePerformanceParts(personaId), carDAO.findGarageSkillModParts(personaId),
+                carDAO.findGarageVinyls(personaId), carDAO.findGarageVisualParts(personaId));
+    }
+
     @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public int countPersonasCar(Long personaId) {
         return carDAO.findNumByPersonaId(personaId);
@@ -0,0 +1,354 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.dao.CategoryDAO;
+import com.soapboxrace.core.dao.PersonaDAO;
+import com.soapboxrace.core.dao.VinylProductDAO;
+import com.soapboxrace.core.jpa.CategoryEntity;
+import com.soapboxrace.core.jpa.PersonaEntity;
+import com.soapboxrace.core.jpa.ProductEntity;
+import com.soapboxrace.core.jpa.TokenSessionEntity;
+import com.soapboxrace.core.jpa.VinylProductEntity;
+import com.soapboxrace.jaxb.http.ArrayOfProductTrans;
+import com.soapboxrace.jaxb.http.CategoryTrans;
+import com.soapboxrace.jaxb.http.ProductTrans;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.DependsOn;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable snapshot of the store catalog (products and vinyl categories).
+ * <p>
+ * Every enabled product is converted to its {@link ProductTrans} once when the snapshot is built; the lists served
+ * for a given (category, product type, level, premium, admin, prestige) combination are computed on first use and
+ * kept with the snapshot. Browsing the store therefore never queries the catalog tables.
+ * The products come from {@link ProductRegistryBO}: {@link #reload()} reloads the registry, then builds a new snapshot
+ * from it and swaps it atomically, so the store and the basket, rewards and inventory always see the same products.
+ * The {@link ProductTrans} instances are shared between responses and must not be modified.
+ * Reloading also invalidates the serialized catalog responses held by {@link ResponseCacheBO}.
+ * <p>
+ * The level and prestige of the personas browsing the store are kept for a short time
+ * (SBRWR_CATALOG_VIEW_TTL_SECONDS), so that a level-up shows up in the store shortly after.
+ */
+@Startup
+@Singleton
+@DependsOn("ProductRegistryBO")
+@Lock(LockType.READ)
+public class CatalogSnapshotBO {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotBO.class);
+
+    public static final String RESPONSE_CACHE_NAME = "catalog";
+
+    // Niveau utilisé pour les joueurs prestigés, qui débloquent tous les items
+    private static final int PRESTIGE_LEVEL = 60;
+
+    private static final int MAX_PERSONA_SUMMARIES = 16384;
+
+    private static final CatalogView DEFAULT_VIEW = new CatalogView(1, false, false, false);
+
+    @Inject
+    private ProductRegistryBO productRegistryBO;
+
+    @Inject
+    private VinylProductDAO vinylProductDAO;
+
+    @Inject
+    private CategoryDAO categoryDAO;
+
+    @Inject
+    private PersonaDAO personaDAO;
+
+    @Inject
+    private ProductBO productBO;
+
+    @Inject
+    private ResponseCacheBO responseCacheBO;
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    private volatile CatalogSnapshot snapshot;
+
+    private final Map<Long, PersonaSummary> personaSummaries = new ConcurrentHashMap<>();
+
+    private long summaryTtlMillis;
+
+    @PostConstruct
+    public void init() {
+        summaryTtlMillis = parameterBO.getIntParam("SBRWR_CATALOG_VIEW_TTL_SECONDS", 30) * 1000L;
+
+        // Le registre est déjà chargé à son démarrage
+        build();
+    }
+
+    /**
+     * Reloads the product registry and rebuilds the catalog snapshot from the database.
+     */
+    public void reload() {
+        productRegistryBO.reload();
+        build();
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        CatalogSnapshot newSnapshot = new CatalogSnapshot();
+
+        for (ProductEntity productEntity : productRegistryBO.getAll()) {
+            if (!productEntity.isEnabled()) {
+                continue;
+            }
+
+            newSnapshot.products.computeIfAbsent(productKey(productEntity.getCategoryName(), productEntity.getProductType()),
+                    k -> new ArrayList<>()).add(new ProductEntry(productEntity,
+                    productBO.productEntityToProductTrans(productEntity, false),
+                    productBO.productEntityToProductTrans(productEntity, true)));
+        }
+
+        Map<Long, List<VinylEntry>> vinylsByCategory = new HashMap<>();
+
+        for (VinylProductEntity vinylProductEntity : vinylProductDAO.findAllEnabled()) {
+            if (vinylProductEntity.getCategory() != null) {
+                vinylsByCategory.computeIfAbsent(vinylProductEntity.getCategory().getId(), k -> new ArrayList<>())
+                        .add(new VinylEntry(vinylProductEntity, productBO.vinylProductEntityToProductTrans(vinylProductEntity)));
+            }
+        }
+
+        for (CategoryEntity categoryEntity : categoryDAO.getAll()) {
+            newSnapshot.categories.add(new CategoryEntry(categoryEntity,
+                    vinylsByCategory.getOrDefault(categoryEntity.getId(), Collections.emptyList())));
+        }
+
+        this.snapshot = newSnapshot;
+        responseCacheBO.bumpVersion(RESPONSE_CACHE_NAME);
+
+        logger.info("Catalog snapshot built in {}ms: {} product lists, {} categories", System.currentTimeMillis() - start,
+                newSnapshot.products.size(), newSnapshot.categories.size());
+    }
+
+    /**
+     * Gets the products of the given category and type available to the given persona.
+     *
+     * @param categoryName the category name
+     * @param productType  the product type
+     * @param view         the catalog view of the persona
+     * @return the products, shared between calls
+     */
+    public List<ProductTrans> getProductsInCategory(String categoryName, String productType, CatalogView view) {
+        CatalogSnapshot current = this.snapshot;
+        String productKey = productKey(categoryName, productType);
+        List<ProductEntry> entries = current.products.get(productKey);
+
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+
+        return current.productViews.computeIfAbsent(productKey + '\u0000' + view.getKey(), k -> {
+            List<ProductTrans> result = new ArrayList<>();
+
+            for (ProductEntry entry : entries) {
+                if (entry.minLevel <= view.level && (!entry.premium || view.premium) && (!entry.adminOnly || view.admin)) {
+                    result.add(view.prestige ? entry.prestigeProductTrans : entry.productTrans);
+                }
+            }
+
+            return Collections.unmodifiableList(result);
+        });
+    }
+
+    /**
+     * Gets the store categories, with the vinyls available to the given persona.
+     *
+     * @param view the catalog view of the persona
+     * @return the categories, shared between calls
+     */
+    public List<CategoryTrans> getCategories(CatalogView view) {
+        CatalogSnapshot current = this.snapshot;
+
+        return current.categoryViews.computeIfAbsent(view.level * 2 + (view.premium ? 1 : 0), k -> {
+            List<CategoryTrans> result = new ArrayList<>();
+
+            for (CategoryEntry entry : current.categories) {
+                result.add(entry.toCategoryTrans(view));
+            }
+
+            return Collections.unmodifiableList(result);
+        });
+    }
+
+    /**
+     * Gets the attributes of the active persona of the given session the catalog depends on. Premium and admin come
+     * from the session, the level and prestige from a short-lived summary of the persona.
+     *
+     * @param tokenSessionEntity the session
+     * @return the catalog view (the default view if there is no active persona, or if it no longer exists)
+     */
+    public CatalogView getView(TokenSessionEntity tokenSessionEntity) {
+        Long personaId = tokenSessionEntity.getActivePersonaId();
+
+        if (personaId == null || personaId.equals(0L)) {
+            return DEFAULT_VIEW;
+        }
+
+        PersonaSummary summary = getPersonaSummary(personaId);
+
+        if (summary == null) {
+            return DEFAULT_VIEW;
+        }
+
+        return new CatalogView(summary.prestige ? PRESTIGE_LEVEL : summary.level, tokenSessionEntity.isPremium(),
+                tokenSessionEntity.getUserEntity().isAdmin(), summary.prestige);
+    }
+
+    private PersonaSummary getPersonaSummary(Long personaId) {
+        long now = System.currentTimeMillis();
+        PersonaSummary summary = personaSummaries.get(personaId);
+
+        if (summary != null && now < summary.validUntil) {
+            return summary;
+        }
+
+        PersonaEntity personaEntity = personaDAO.find(personaId);
+
+        if (personaEntity == null) {
+            personaSummaries.remove(personaId);
+            return null;
+        }
+
+        if (personaSummaries.size() >= MAX_PERSONA_SUMMARIES) {
+            personaSummaries.clear();
+        }
+
+        summary = new PersonaSummary(personaEntity.getLevel(), personaEntity.getPrestige() > 0, now + summaryTtlMillis);
+        personaSummaries.put(personaId, summary);
+        return summary;
+    }
+
+    private static String productKey(String categoryName, String productType) {
+        return categoryName + '\u0000' + productType;
+    }
+
+    private static class CatalogSnapshot {
+        private final Map<String, List<ProductEntry>> products = new HashMap<>();
+
+        private final List<CategoryEntry> categories = new ArrayList<>();
+
+        private final Map<String, List<ProductTrans>> productViews = new ConcurrentHashMap<>();
+
+        private final Map<Integer, List<CategoryTrans>> categoryViews = new ConcurrentHashMap<>();
+    }
+
+    private static class PersonaSummary {
+        private final int level;
+        private final boolean prestige;
+        private final long validUntil;
+
+        PersonaSummary(int level, boolean prestige, long validUntil) {
+            this.level = level;
+            this.prestige = prestige;
+            this.validUntil = validUntil;
+        }
+    }
+
+    /**
+     * The persona attributes the catalog depends on.
+     */
+    public static class CatalogView {
+        private final int level;
+        private final boolean premium;
+        private final boolean admin;
+        private final boolean prestige;
+
+        CatalogView(int level, boolean premium, boolean admin, boolean prestige) {
+            this.level = level;
+            this.premium = premium;
+            this.admin = admin;
+            this.prestige = prestige;
+        }
+
+        public String getKey() {
+            return level + (premium ? "P" : "") + (admin ? "A" : "") + (prestige ? "S" : "");
+        }
+    }
+
+    private static class ProductEntry {
+        private final int minLevel;
+        private final boolean premium;
+        private final boolean adminOnly;
+        private final ProductTrans productTrans;
+        private final ProductTrans prestigeProductTrans;
+
+        ProductEntry(ProductEntity productEntity, ProductTrans productTrans, ProductTrans prestigeProductTrans) {
+            this.minLevel = productEntity.getMinLevel();
+            this.premium = productEntity.isPremium();
+            this.adminOnly = productEntity.isAdminOnly();
+            this.productTrans = productTrans;
+            this.prestigeProductTrans = prestigeProductTrans;
+        }
+    }
+
+    private static class VinylEntry {
+        private final int minLevel;
+        private final boolean premium;
+        private final ProductTrans productTrans;
+
+        VinylEntry(VinylProductEntity vinylProductEntity, ProductTrans productTrans) {
+            this.minLevel = vinylProductEntity.getMinLevel();
+            this.premium = vinylProductEntity.isPremium();
+            this.productTrans = productTrans;
+        }
+    }
+
+    private static class CategoryEntry {
+        private final CategoryEntity category;
+        private final List<VinylEntry> vinyls;
+
+        CategoryEntry(CategoryEntity category, List<VinylEntry> vinyls) {
+            this.category = category;
+            this.vinyls = vinyls;
+        }
+
+        CategoryTrans toCategoryTrans(CatalogView view) {
+            ArrayOfProductTrans products = new ArrayOfProductTrans();
+
+            for (VinylEntry vinyl : vinyls) {
+                if (vinyl.minLevel <= view.level && (!vinyl.premium || view.premium)) {
+                    products.getProductTrans().add(vinyl.productTrans);
+                }
+            }
+
+            CategoryTrans categoryTrans = new CategoryTrans();
+            categoryTrans.setCatalogVersion(Integer.parseInt(category.getCatalogVersion()));
+            categoryTrans.setDisplayName(category.getDisplayName());
+            categoryTrans.setFilterType(category.getFilterType());
+            categoryTrans.setIcon(category.getIcon());
+            categoryTrans.setId(category.getIdentifiant().toString());
+            categoryTrans.setLongDescription(category.getLongDescription());
+            categoryTrans.setName(category.getName());
+            categoryTrans.setPriority(category.getPriority());
+            categoryTrans.setProducts(products);
+            categoryTrans.setShortDescription(category.getShortDescription());
+            categoryTrans.setShowInNavigationPane(category.getShowInNavigationPane());
+            categoryTrans.setShowPromoPage(category.getShowPromoPage());
+            categoryTrans.setWebIcon(category.getWebIcon());
+            return categoryTrans;
+        }
+    }
+}
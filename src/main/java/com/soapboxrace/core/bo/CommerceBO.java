@@ -38,7 +38,7 @@ public class CommerceBO {
     private PersonaDAO personaDAO;
 
     @Inject
-    private ProductDAO productDAO;
+    private ProductRegistryBO productRegistryBO;
 
     @Inject
     private VinylProductDAO vinylProductDAO;
@@ -62,7 +62,8 @@ public class CommerceBO {
         List<BasketItemTrans> basketItems = commerceSessionTrans.getBasket().getItems().getBasketItemTrans();
         PersonaEntity personaEntity = personaDAO.find(personaId);
         CarEntity carEntity = personaBO.getDefaultCarEntity(personaId);
-        OwnedCarTrans ownedCarTrans = personaBO.getDefaultCar(personaId);
+        // Voiture déjà chargée : pas de relecture du garage, dont le cache est invalidé par l'achat
+        OwnedCarTrans ownedCarTrans = OwnedCarConverter.entity2Trans(carEntity);
         CustomCarTrans customCarTrans = ownedCarTrans.getCustomCar();
         CustomCarTrans commerceCustomCar = commerceSessionTrans.getUpdatedCar().getCustomCar();
 
@@ -139,7 +140,7 @@ public class CommerceBO {
                     return commerceSessionResultTrans;
                 }
             } else {
-                ProductEntity productEntity = productDAO.findByHash(addedItem.getKey());
+                ProductEntity productEntity = productRegistryBO.findByHash(addedItem.getKey());
 
                 if (productEntity != null) {
                     InventoryItemEntity inventoryItemEntity = inventoryItemDAO.findByInventoryIdAndEntitlementTag(inventoryEntity.getId(), productEntity.getEntitlementTag());
@@ -189,7 +190,7 @@ public class CommerceBO {
 
         for (Map.Entry<Integer, Object> removedItem : removedItems.entries()) {
             if (!(removedItem.getValue() instanceof CustomVinylTrans)) {
-                ProductEntity productEntity = productDAO.findByHash(removedItem.getKey());
+                ProductEntity productEntity = productRegistryBO.findByHash(removedItem.getKey());
 
                 if (productEntity != null) {
                     if ("CASH".equals(productEntity.getCurrency()))
@@ -216,7 +217,7 @@ public class CommerceBO {
 
         if (finalCash < 0 || finalBoost < 0) {
             commerceSessionResultTrans.setStatus(CommerceResultStatus.FAIL_INSUFFICIENT_FUNDS);
-            commerceSessionResultTrans.setUpdatedCar(personaBO.getDefaultCar(personaId));
+            commerceSessionResultTrans.setUpdatedCar(OwnedCarConverter.entity2Trans(carEntity));
             return commerceSessionResultTrans;
         }
 
@@ -232,7 +233,7 @@ public class CommerceBO {
         personaEntity.setBoost(finalBoost);
         driverPersonaBO.updateCash(personaEntity, finalCash);
 
-        commerceSessionResultTrans.setUpdatedCar(personaBO.getDefaultCar(personaId));
+        commerceSessionResultTrans.setUpdatedCar(OwnedCarConverter.entity2Trans(carEntity));
         commerceSessionResultTrans.setInvalidBasket(new InvalidBasketTrans());
         commerceSessionResultTrans.setStatus(CommerceResultStatus.SUCCESS);
         commerceSessionResultTrans.setInventoryItems(new ArrayOfInventoryItemTrans());
@@ -259,14 +260,14 @@ public class CommerceBO {
             customizationContext = new AchievementCustomizationContext(AchievementCustomizationContext.Type.PERF);
             customizationContext.setPerformancePartsAdded(perfPartsAdded.stream()
                     .map(p -> {
-                        ProductEntity product = productDAO.findByHash(p.getPerformancePartAttribHash());
+                        ProductEntity product = productRegistryBO.findByHash(p.getPerformancePartAttribHash());
                         return new AchievementCustomizationContext.WrappedPart<>(p, product);
                     }).collect(Collectors.toList()));
         } else if (!skillModsAdded.isEmpty()) {
             customizationContext = new AchievementCustomizationContext(AchievementCustomizationContext.Type.SKILLS);
             customizationContext.setSkillModPartsAdded(skillModsAdded.stream()
                     .map(p -> {
-                        ProductEntity product = productDAO.findByHash(p.getSkillModPartAttribHash());
+                        ProductEntity product = productRegistryBO.findByHash(p.getSkillModPartAttribHash());
                         return new AchievementCustomizationContext.WrappedPart<>(p, product);
                     }).collect(Collectors.toList()));
         } else if (!visualPartsAdded.isEmpty()) {
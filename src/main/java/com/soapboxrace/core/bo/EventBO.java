@@ -15,6 +15,7 @@ import com.soapboxrace.core.dao.CarDAO;
 import com.soapboxrace.core.engine.EngineException;
 import com.soapboxrace.core.engine.EngineExceptionCode;
 import com.soapboxrace.core.jpa.*;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
 import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 
@@ -50,9 +51,21 @@ public class EventBO {
     @Inject
     private PersonaBO personaBO;
 
+    @Inject
+    private CarRestrictionIndexBO carRestrictionIndexBO;
+
     @Inject
     private Logger logger;
 
+    // Injection hors conteneur (benchmarks)
+    void setCarRestrictionIndexBO(CarRestrictionIndexBO carRestrictionIndexBO) {
+        this.carRestrictionIndexBO = carRestrictionIndexBO;
+    }
+
+    void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
     public List<EventEntity> availableAtLevel(Long personaId) {
         PersonaEntity personaEntity = personaDao.find(personaId);
         return eventDao.findByLevel(personaEntity.getLevel());
@@ -73,68 +86,49 @@ public class EventBO {
      * @return true si le joueur peut participer, false sinon
      */
     public boolean hasAllowedCarForEvent(Long personaId, EventEntity eventEntity) {
-        String carRestriction = eventEntity.getCarRestriction();
-        
-        // Pas de restriction = accès libre
-        if (carRestriction == null || carRestriction.trim().isEmpty()) {
-            logger.debug("No car restriction for event {}, access granted", eventEntity.getId());
+        // Pas de restriction = accès libre, sans charger la voiture
+        if (!carRestrictionIndexBO.isRestricted(eventEntity)) {
             return true;
         }
 
-        // Option 1: Vérifier toutes les voitures possédées (comportement actuel)
-        // List<CarEntity> playerCars = carDAO.findByPersonaId(personaId);
-        
-        // Option 2: Vérifier seulement la voiture active/par défaut
-        CarEntity defaultCar = personaBO.getDefaultCarEntity(personaId);
-        List<CarEntity> playerCars = new java.util.ArrayList<>();
-        if (defaultCar != null) {
-            playerCars.add(defaultCar);
-        }
-        
-        logger.debug("Event {} has car restriction: '{}', checking ACTIVE car only: {}", 
-            eventEntity.getId(), carRestriction, 
-            defaultCar != null ? defaultCar.getName() : "none");
-        
-        // Séparer les noms de voitures autorisées
-        String[] allowedCarNames = carRestriction.split(",");
-        logger.debug("Allowed car names: {}", java.util.Arrays.toString(allowedCarNames));
-        
-        // Afficher toutes les voitures du joueur
-        for (CarEntity playerCar : playerCars) {
-            String playerCarName = playerCar.getName();
-            logger.debug("Player has car: '{}' (ID: {})", playerCarName, playerCar.getId());
-        }
-        
-        // Vérifier si le joueur possède au moins une voiture autorisée
-        for (CarEntity playerCar : playerCars) {
-            String playerCarName = playerCar.getName();
-            if (playerCarName != null) {
-                for (String allowedCarName : allowedCarNames) {
-                    String trimmedAllowed = allowedCarName.trim();
-                    String trimmedPlayer = playerCarName.trim();
-                    logger.debug("Comparing '{}' vs '{}' (ignoreCase)", trimmedPlayer, trimmedAllowed);
-                    if (trimmedAllowed.equalsIgnoreCase(trimmedPlayer)) {
-                        logger.info("Car restriction match found! Player car '{}' matches allowed car '{}'", 
-                            trimmedPlayer, trimmedAllowed);
-                        return true;
-                    }
-                }
-            }
+        return hasAllowedCarForEvent(personaBO.getDefaultCar(personaId), eventEntity);
+    }
+
+    /**
+     * Vérifie si la voiture active du joueur est autorisée pour l'événement.
+     * À utiliser quand plusieurs événements sont vérifiés pour le même joueur : la voiture n'est chargée qu'une fois.
+     * @param defaultCar La voiture active du joueur, lue depuis le garage en cache (peut être null)
+     * @param eventEntity L'événement à vérifier
+     * @return true si le joueur peut participer, false sinon
+     */
+    public boolean hasAllowedCarForEvent(OwnedCarTrans defaultCar, EventEntity eventEntity) {
+        String carName = defaultCar != null && defaultCar.getCustomCar() != null ? defaultCar.getCustomCar().getName() : null;
+
+        if (carRestrictionIndexBO.isAllowed(eventEntity, carName)) {
+            return true;
         }
-        
-        logger.debug("Car restriction failed for PersonaId={}, Event={}, restriction='{}' - no matching cars found", 
-            personaId, eventEntity.getId(), carRestriction);
+
+        logger.debug("Car restriction failed for car '{}', Event={}, restriction='{}' - no matching cars found",
+            carName != null ? carName : "none", eventEntity.getId(), eventEntity.getCarRestriction());
         return false;
     }
 
+    /**
+     * @param eventEntity L'événement à vérifier
+     * @return true si seules certaines voitures peuvent participer à l'événement
+     */
+    public boolean isCarRestricted(EventEntity eventEntity) {
+        return carRestrictionIndexBO.isRestricted(eventEntity);
+    }
+
     public void createEventDataSession(Long personaId, Long eventSessionId) {
         EventDataEntity existingEventData = eventDataDao.findByPersonaAndEventSessionId(personaId, eventSessionId);
         if (existingEventData != null) {
             return;
         }
 
-        CarEntity carEntity = personaBO.getDefaultCarEntity(personaId);
-        if (carEntity == null) {
+        OwnedCarTrans defaultCar = personaBO.getDefaultCar(personaId);
+        if (defaultCar.getCustomCar() == null) {
             logger.warn("EVENT_DATA_CREATE: Default car not found for PersonaId={}, EventSessionId={}", personaId, eventSessionId);
             return;
         }
@@ -150,8 +144,8 @@ public class EventBO {
         eventDataEntity.setEventSessionId(eventSessionId);
         eventDataEntity.setEvent(eventSessionEntity.getEvent());
         eventDataEntity.setServerTimeStarted(System.currentTimeMillis());
-        eventDataEntity.setCarClassHash(carEntity.getCarClassHash());
-        eventDataEntity.setCarRating(carEntity.getRating());
+        eventDataEntity.setCarClassHash(defaultCar.getCustomCar().getCarClassHash());
+        eventDataEntity.setCarRating(defaultCar.getCustomCar().getRating());
         eventDataEntity.setLeftRace(false);
         eventDataEntity.setRacerStatus(RacerStatus.IN_RACE);
         eventDataDao.insert(eventDataEntity);
@@ -180,17 +174,18 @@ public class EventBO {
         }
 
         // SÉCURITÉ : Vérifier les restrictions de voitures spécifiques
-        if (!hasAllowedCarForEvent(activePersonaId, eventEntity)) {
+        OwnedCarTrans defaultCar = personaBO.getDefaultCar(activePersonaId);
+
+        if (!hasAllowedCarForEvent(defaultCar, eventEntity)) {
             logger.warn("Car restriction violation blocked: PersonaId={} tried to launch EventId={} but doesn't own required cars ({})", 
                 activePersonaId, eventId, eventEntity.getCarRestriction());
             throw new EngineException(EngineExceptionCode.CarDataInvalid, true);
         }
 
-        CarEntity carEntity = personaBO.getDefaultCarEntity(activePersonaId);
-
         // Vérification du niveau du joueur et de la classe de voiture - traiter comme une restriction de classe
-        if (carEntity.getCarClassHash() == 0 || 
-            (eventEntity.getCarClassHash() != 607077938 && carEntity.getCarClassHash() != eventEntity.getCarClassHash()) ||
+        int carClassHash = defaultCar.getCustomCar() != null ? defaultCar.getCustomCar().getCarClassHash() : 0;
+        if (carClassHash == 0 ||
+            (eventEntity.getCarClassHash() != 607077938 && carClassHash != eventEntity.getCarClassHash()) ||
             (personaEntity.getLevel() < eventEntity.getMinLevel() || personaEntity.getLevel() > eventEntity.getMaxLevel())) {
             // The client UI does not allow you to join events outside your current car's class or level range
             throw new EngineException(EngineExceptionCode.CarDataInvalid, false);
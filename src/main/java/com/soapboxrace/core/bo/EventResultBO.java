@@ -11,10 +11,10 @@ import com.soapboxrace.jaxb.http.ClientPhysicsMetrics;
 import com.soapboxrace.jaxb.http.EventResult;
 import com.soapboxrace.jaxb.http.ExitPath;
 import com.soapboxrace.core.bo.util.OwnedCarConverter;
-import com.soapboxrace.jaxb.util.JAXBUtility;
-import com.soapboxrace.core.bo.util.HelpingTools;
 
 import javax.inject.Inject;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -26,6 +26,19 @@ public abstract class EventResultBO<TA extends ArbitrationPacket, TR extends Eve
     
     private static final java.util.concurrent.ConcurrentHashMap<String, RaceAgainLobbyInfo> raceAgainLobbies 
         = new java.util.concurrent.ConcurrentHashMap<>();
+
+    private static final int KNOWN_SETUP_HASHES_SIZE = 10000;
+
+    // Setups déjà présents en base (LRU borné) : un joueur qui enchaîne les courses avec la même voiture
+    // ne refait pas la requête EVENT_DATA_SETUPS à chaque résultat. Lu avec get() pour que chaque hit
+    // mette à jour l'ordre d'accès.
+    private static final Map<String, Boolean> knownSetupHashes = Collections.synchronizedMap(
+        new LinkedHashMap<String, Boolean>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > KNOWN_SETUP_HASHES_SIZE;
+            }
+        });
     
     private static class RaceAgainLobbyInfo {
         final LobbyEntity lobby;
@@ -137,9 +150,17 @@ public abstract class EventResultBO<TA extends ArbitrationPacket, TR extends Eve
         }
 
         CarEntity carInfo = carDAO.find(packet.getCarId());
-        String carHash = HelpingTools.calcHash(JAXBUtility.marshal(OwnedCarConverter.makeCarSetupTrans(carInfo)));
+        String carHash = OwnedCarConverter.calcSetupHash(carInfo);
+        if (knownSetupHashes.get(carHash) != null) {
+            eventDataEntity.setEventDataSetupHash(carHash);
+            return;
+        }
+
         EventDataSetupEntity carSetup = eventDataSetupDAO.findByHash(carHash);
-        if(carSetup == null) {
+        if (carSetup != null) {
+            // Mis en cache uniquement une fois trouvé en base : une insertion annulée (rollback) n'y entre jamais
+            knownSetupHashes.put(carHash, Boolean.TRUE);
+        } else {
             EventDataSetupEntity carSetupTmp = new EventDataSetupEntity();
             carSetupTmp.setCarId(packet.getCarId());
             carSetupTmp.setHash(carHash);
@@ -0,0 +1,302 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.dao.PersonaDAO;
+import com.soapboxrace.core.events.GarageChanged;
+import com.soapboxrace.core.jpa.PersonaEntity;
+import com.soapboxrace.jaxb.http.ArrayOfOwnedCarTrans;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
+import com.soapboxrace.jaxb.util.JAXBUtility;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache of the garage of each persona: the cars as served by the carslots endpoint, the default car, and their
+ * serialized XML.
+ * <p>
+ * Every write to a car or to its vinyls goes through {@link com.soapboxrace.core.dao.CarDAO} or
+ * {@link com.soapboxrace.core.dao.VinylDAO}, which fire {@link GarageChanged}: the entry is dropped immediately, and
+ * again once the transaction completes, so that a garage read by a concurrent transaction before the commit is not
+ * kept. A garage holding a rental car is only kept until the car expires.
+ * <p>
+ * When the sessions are shared between several nodes (SBRWR_SESSION_STORE=redis), each committed change is also
+ * published on {@value #INVALIDATION_CHANNEL} and the other nodes drop their copy.
+ * The {@link OwnedCarTrans} instances are shared between requests and must not be modified.
+ */
+@Startup
+@Singleton
+@Lock(LockType.READ)
+public class GarageCacheBO {
+
+    public static final String INVALIDATION_CHANNEL = "game_garage_invalidations";
+
+    // Compteurs de version par groupe de personas : une invalidation pendant un chargement empêche de le garder
+    private static final int VERSION_STRIPES = 1024;
+
+    private final Map<Long, Garage> garages = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    @Inject
+    private CarSlotBO carSlotBO;
+
+    @Inject
+    private PersonaDAO personaDAO;
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private RedisBO redisBO;
+
+    @Inject
+    private Logger logger;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private StatefulRedisPubSubConnection<String, String> pubSubConnection;
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    private int maxEntries;
+
+    private long ttlMillis;
+
+    @PostConstruct
+    public void init() {
+        maxEntries = parameterBO.getIntParam("SBRWR_GARAGE_CACHE_MAX_ENTRIES", 4096);
+        ttlMillis = parameterBO.getIntParam("SBRWR_GARAGE_CACHE_TTL_SECONDS", 300) * 1000L;
+        hitCounter = metricRegistry.counter("garage_cache.hits");
+        missCounter = metricRegistry.counter("garage_cache.misses");
+
+        if ("redis".equalsIgnoreCase(parameterBO.getStrParam("SBRWR_SESSION_STORE", "memory"))
+                && parameterBO.getBoolParam("ENABLE_REDIS")) {
+            pubSubConnection = redisBO.createPubSub();
+            pubSubConnection.addListener(new RedisPubSubAdapter<String, String>() {
+                @Override
+                public void message(String channel, String message) {
+                    onInvalidation(message);
+                }
+            });
+            pubSubConnection.sync().subscribe(INVALIDATION_CHANNEL);
+            logger.info("Garage cache invalidations are shared through Redis");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pubSubConnection != null) {
+            pubSubConnection.close();
+        }
+    }
+
+    /**
+     * Gets the garage of the given persona, loading it if needed.
+     *
+     * @param personaId the persona ID
+     * @return the garage
+     */
+    public Garage get(Long personaId) {
+        long now = System.currentTimeMillis();
+        Garage garage = garages.get(personaId);
+
+        if (garage != null && now < garage.validUntil) {
+            hitCounter.inc();
+            return garage;
+        }
+
+        missCounter.inc();
+
+        int stripe = stripe(personaId);
+        long version = versions.get(stripe);
+        garage = load(personaId, now);
+
+        // Le garage a pu être modifié pendant le chargement
+        if (versions.get(stripe) == version) {
+            if (garages.size() >= maxEntries) {
+                garages.clear();
+            }
+
+            garages.put(personaId, garage);
+        }
+
+        return garage;
+    }
+
+    /**
+     * @param personaId the persona ID
+     * @return the default car of the given persona, or {@code null} if the garage is empty
+     */
+    public OwnedCarTrans getDefaultCar(Long personaId) {
+        return get(personaId).getDefaultCar();
+    }
+
+    /**
+     * Drops the cached garage of the given persona.
+     *
+     * @param personaId the persona ID
+     */
+    public void invalidate(Long personaId) {
+        versions.incrementAndGet(stripe(personaId));
+        garages.remove(personaId);
+    }
+
+    public void onGarageChanged(@Observes GarageChanged event) {
+        invalidate(event.getPersonaId());
+    }
+
+    public void afterGarageChanged(@Observes(during = TransactionPhase.AFTER_COMPLETION) GarageChanged event) {
+        invalidate(event.getPersonaId());
+
+        if (pubSubConnection != null) {
+            // Publié après la transaction : les autres nœuds rechargent la version validée
+            redisBO.getConnection().async().publish(INVALIDATION_CHANNEL, nodeId + '|' + event.getPersonaId());
+        }
+    }
+
+    public int size() {
+        return garages.size();
+    }
+
+    private void onInvalidation(String message) {
+        int separator = message.indexOf('|');
+
+        if (separator < 0 || message.startsWith(nodeId + '|')) {
+            return;
+        }
+
+        try {
+            invalidate(Long.valueOf(message.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid garage invalidation message: {}", message);
+        }
+    }
+
+    private Garage load(Long personaId, long now) {
+        List<OwnedCarTrans> cars = carSlotBO.getPersonasCarTrans(personaId);
+        PersonaEntity personaEntity = personaDAO.find(personaId);
+        int curCarIndex = personaEntity != null ? personaEntity.getCurCarIndex() : 0;
+        long validUntil = now + ttlMillis;
+
+        for (OwnedCarTrans car : cars) {
+            if (car.getExpirationDate() != null) {
+                validUntil = Math.min(validUntil, car.getExpirationDate().toGregorianCalendar().getTimeInMillis());
+            }
+        }
+
+        return new Garage(Collections.unmodifiableList(cars), curCarIndex, validUntil);
+    }
+
+    private static int stripe(Long personaId) {
+        return (int) (personaId & (VERSION_STRIPES - 1));
+    }
+
+    private static ResponseCacheBO.CachedResponse marshal(Object object) {
+        return new ResponseCacheBO.CachedResponse(0, JAXBUtility.marshalToBytes(object));
+    }
+
+    /**
+     * The garage of a persona, with the default car resolved like {@link PersonaBO#getDefaultCarEntity(Long)}.
+     */
+    public static class Garage {
+        private final List<OwnedCarTrans> cars;
+        private final int curCarIndex;
+        private final long validUntil;
+
+        private volatile ResponseCacheBO.CachedResponse carsResponse;
+        private volatile ResponseCacheBO.CachedResponse defaultCarResponse;
+
+        Garage(List<OwnedCarTrans> cars, int curCarIndex, long validUntil) {
+            this.cars = cars;
+            this.curCarIndex = curCarIndex;
+            this.validUntil = validUntil;
+        }
+
+        public List<OwnedCarTrans> getCars() {
+            return cars;
+        }
+
+        /**
+         * @return the index of the default car, the last car if CurCarIndex is out of range, or -1 if the garage is
+         * empty
+         */
+        public int getDefaultCarIndex() {
+            return Math.min(curCarIndex, cars.size() - 1);
+        }
+
+        /**
+         * @return the default car, or {@code null} if the garage is empty
+         */
+        public OwnedCarTrans getDefaultCar() {
+            int index = getDefaultCarIndex();
+            return index >= 0 ? cars.get(index) : null;
+        }
+
+        /**
+         * @return true if the CurCarIndex of the persona must be corrected
+         */
+        public boolean isCurCarIndexOutOfRange() {
+            return !cars.isEmpty() && curCarIndex >= cars.size();
+        }
+
+        /**
+         * @return the serialized {@link ArrayOfOwnedCarTrans} of the garage
+         */
+        public ResponseCacheBO.CachedResponse getCarsResponse() {
+            ResponseCacheBO.CachedResponse response = carsResponse;
+
+            if (response == null) {
+                ArrayOfOwnedCarTrans arrayOfOwnedCarTrans = new ArrayOfOwnedCarTrans();
+                arrayOfOwnedCarTrans.getOwnedCarTrans().addAll(cars);
+                response = marshal(arrayOfOwnedCarTrans);
+                carsResponse = response;
+            }
+
+            return response;
+        }
+
+        /**
+         * @return the serialized default car (an empty {@link OwnedCarTrans} if the garage is empty)
+         */
+        public ResponseCacheBO.CachedResponse getDefaultCarResponse() {
+            ResponseCacheBO.CachedResponse response = defaultCarResponse;
+
+            if (response == null) {
+                OwnedCarTrans defaultCar = getDefaultCar();
+                response = marshal(defaultCar != null ? defaultCar : new OwnedCarTrans());
+                defaultCarResponse = response;
+            }
+
+            return response;
+        }
+    }
+}
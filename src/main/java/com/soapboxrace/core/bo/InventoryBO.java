@@ -52,6 +52,9 @@ public class InventoryBO {
     @Inject
     private ProductDAO productDAO;
 
+    @Inject
+    private ProductRegistryBO productRegistryBO;
+
     @Inject
     private ParameterBO parameterBO;
 
@@ -265,7 +268,7 @@ public class InventoryBO {
      */
     public InventoryItemEntity addInventoryItem(InventoryEntity inventoryEntity, String productId, int quantity,
                                                 LocalDateTime expirationDate, boolean ignoreLimits) {
-        ProductEntity productEntity = productDAO.findByProductId(productId);
+        ProductEntity productEntity = productRegistryBO.findByProductId(productId);
 
         // Validation
         if (productEntity == null)
@@ -287,7 +290,8 @@ public class InventoryBO {
         int realquantity = productEntity.getProductType().equals("POWERUP") ? quantity : 1;
 
         InventoryItemEntity inventoryItemEntity = new InventoryItemEntity();
-        inventoryItemEntity.setProductEntity(productEntity);
+        // Le produit du registre est détaché : on rattache une référence gérée
+        inventoryItemEntity.setProductEntity(productDAO.getReference(productEntity.getId()));
         inventoryItemEntity.setRemainingUseCount(realquantity);
         inventoryItemEntity.setExpirationDate(expirationDate);
         inventoryItemEntity.setStatus("ACTIVE");
@@ -330,7 +334,7 @@ public class InventoryBO {
     @SuppressWarnings("UnusedReturnValue")
     public InventoryItemEntity addStackedInventoryItem(InventoryEntity inventoryEntity, String productId,
                                                        int quantity, boolean ignoreLimits) {
-        ProductEntity productEntity = productDAO.findByProductId(productId);
+        ProductEntity productEntity = productRegistryBO.findByProductId(productId);
 
         // Validation
         if (productEntity == null)
@@ -364,7 +368,7 @@ public class InventoryBO {
      * @throws EngineException if no item with the entitlement tag can be found.
      */
     public InventoryItemEntity decreaseItemCount(InventoryEntity inventoryEntity, Integer hash) {
-        return decreaseItemCount(inventoryEntity, productDAO.findByHash(hash).getEntitlementTag());
+        return decreaseItemCount(inventoryEntity, productRegistryBO.findByHash(hash).getEntitlementTag());
     }
 
     /**
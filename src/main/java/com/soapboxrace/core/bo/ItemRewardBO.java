@@ -34,6 +34,9 @@ public class ItemRewardBO {
     @Inject
     private ProductDAO productDAO;
 
+    @Inject
+    private ProductRegistryBO productRegistryBO;
+
     @Inject
     private RewardTableDAO rewardTableDAO;
 
@@ -372,7 +375,7 @@ public class ItemRewardBO {
         }
 
         public ItemRewardProduct generateSingleItem(String entitlementTag) {
-            ProductEntity byEntitlementTag = productDAO.findByEntitlementTag(entitlementTag);
+            ProductEntity byEntitlementTag = productRegistryBO.findByEntitlementTag(entitlementTag);
 
             if (byEntitlementTag == null) {
                 throw new IllegalArgumentException("Invalid entitlementTag: " + entitlementTag);
@@ -497,7 +500,7 @@ public class ItemRewardBO {
         @Override
         public ItemRewardQuantityProduct build() {
             if (this.entitlementTag != null && !this.entitlementTag.isEmpty()) {
-                return new ItemRewardQuantityProduct(productDAO.findByEntitlementTag(this.entitlementTag),
+                return new ItemRewardQuantityProduct(productRegistryBO.findByEntitlementTag(this.entitlementTag),
                         this.quantity);
             }
 
@@ -1,17 +1,24 @@
 package com.soapboxrace.core.bo;
 
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
 import javax.inject.Inject;
 import javax.enterprise.context.ApplicationScoped;
 import javax.transaction.Transactional;
 
 import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
-import com.soapboxrace.core.bo.util.HelpingTools;
+import com.soapboxrace.core.bo.util.BestTimeIndex;
 import com.soapboxrace.core.dao.BanDAO;
 import com.soapboxrace.core.dao.EventDataDAO;
 import com.soapboxrace.core.dao.PersonaDAO;
@@ -22,100 +29,173 @@ import com.soapboxrace.core.xmpp.OpenFireSoapBoxCli;
 import com.soapboxrace.core.xmpp.XmppChat;
 import com.soapboxrace.jaxb.http.*;
 
+/**
+ * Classement des meilleurs temps par événement.
+ * Chaque classement est chargé une seule fois depuis la base (meilleur temps par persona),
+ * puis mis à jour à chaque résultat. Les personas bannis sont mis en cache et exclus à la lecture.
+ * Au plus SBRWR_LEADERBOARD_MAX_EVENTS classements sont gardés : le moins récemment utilisé est retiré au-delà,
+ * et tous sont vidés au rechargement des événements.
+ */
 @ApplicationScoped
 
 @Transactional
 public class LeaderboardBO {
+    private static final Logger logger = LoggerFactory.getLogger(LeaderboardBO.class);
+
+    private static final long BAN_CACHE_TTL_MS = 60_000;
+
     @Inject
     private OpenFireSoapBoxCli openFireSoapBoxCli;
 
     @Inject
     private ParameterBO parameterBO;
-    
+
     @Inject
     private EventDataDAO eventDataDAO;
 
-    @Inject 
+    @Inject
     private PersonaDAO personaDAO;
-    
-    @Inject 
+
+    @Inject
     private BanDAO banDAO;
 
+    @Resource
+    private ManagedScheduledExecutorService scheduledExecutorService;
+
+    private final Map<Integer, EventLeaderboard> leaderboards = new ConcurrentHashMap<>();
+
+    private volatile Set<Long> bannedPersonaIds = Collections.emptySet();
+
+    private volatile long bannedPersonaIdsLoadedAt;
+
     public void setupLeaderboard(Long activePersonaId, ArbitrationPacket arbitrationPacket, EventSessionEntity sessionEntity, EventDataEntity dataEntity) {
         if(parameterBO.getBoolParam("SBRWR_ENABLE_LEADERBOARD")) {
-            new java.util.Timer().schedule( 
-                new java.util.TimerTask() {
-                    @Override
-                    public void run() {
-                        // Get the query for stats
-                        int current_ranking = 1;
-                        Long top_player_id = 0L;
-                        String top_player_time = null;
-                        boolean send_message = true;
-
-                        //Lock certain values
-                        if(dataEntity.getBustedCount() != 0) send_message = false;
-                        if(dataEntity.getCarClassHash() == 0) send_message = false;
-
-                        if(send_message) {
-                            List<EventDataEntity> unsorted_ranking = eventDataDAO.getRankings(dataEntity.getEvent().getId());
-                            Map<Long, Long> map = new HashMap<>();
-
-                            map.put(activePersonaId, dataEntity.getEventDurationInMilliseconds());
-
-                            for (EventDataEntity entity : unsorted_ranking) {
-                                if(entity.getBustedCount() != 0) continue;
-                                if(entity.getCarClassHash() == 0) continue;
-                                if(banDAO.findByUser(personaDAO.find(entity.getPersonaId()).getUser()) != null) continue;
-
-                                if(!map.containsKey(entity.getPersonaId())) {
-                                    map.put(entity.getPersonaId(), 999999999999999L);
-                                }
-                                
-                                if(map.get(entity.getPersonaId()) >= entity.getEventDurationInMilliseconds()) {
-                                    map.put(entity.getPersonaId(), entity.getEventDurationInMilliseconds());
-                                }
-                            }
-
-                            for (EventDataEntity entity : unsorted_ranking) {
-                                if(entity.getBustedCount() != 0) continue;
-                                if(entity.getCarClassHash() == 0) continue;
-                                if(banDAO.findByUser(personaDAO.find(entity.getPersonaId()).getUser()) != null) continue;
-
-                                //First result is always the top1 player
-                                if(top_player_id.equals(0L)) {
-                                    top_player_id = entity.getPersonaId();
-                                    top_player_time = DurationFormatUtils.formatDurationHMS(entity.getEventDurationInMilliseconds());
-                                }
-                                continue;
-                            }
-
-                            Map<Long, Long> sorted_ranking = HelpingTools.sortByValue(map);
-
-                            for(Entry<Long, Long> pair : sorted_ranking.entrySet()) {
-                                if(activePersonaId.equals(pair.getKey())) {   
-                                    String time_formatted = DurationFormatUtils.formatDurationHMS(pair.getValue());
-
-                                    openFireSoapBoxCli.send(XmppChat.createSystemMessage(String.format("SBRWR_LEADERBOARD_INFO,%s,%s", current_ranking, time_formatted)), activePersonaId);
-
-                                    //Top stat
-                                    PersonaEntity topPersonaEntity = personaDAO.find(top_player_id);
-                                    if(topPersonaEntity != null) {
-                                        openFireSoapBoxCli.send(XmppChat.createSystemMessage(String.format("SBRWR_LEADERBOARD_TOP_INFO,%s,%s", topPersonaEntity.getName(), top_player_time)), activePersonaId);
-                                    }
-                                    
-                                    continue;
-                                }
-                                current_ranking++;
-                            }
-
-                            sorted_ranking = null;
-                            map = null;
-                            unsorted_ranking = null;
-                        }
-                    }
-                }, (2000)
-            );
+            //Lock certain values
+            if(dataEntity.getBustedCount() != 0) return;
+            if(dataEntity.getCarClassHash() == 0) return;
+
+            scheduledExecutorService.schedule(() -> {
+                try {
+                    sendLeaderboardInfo(activePersonaId, dataEntity);
+                } catch (Exception e) {
+                    logger.error("Failed to send leaderboard info to PersonaId={}: {}", activePersonaId, e.getMessage(), e);
+                }
+            }, 2000, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sendLeaderboardInfo(Long activePersonaId, EventDataEntity dataEntity) {
+        int eventId = dataEntity.getEvent().getId();
+        long eventDuration = dataEntity.getEventDurationInMilliseconds();
+        EventLeaderboard leaderboard = getLeaderboard(eventId);
+
+        // Seuls les résultats retenus par le classement y sont ajoutés ; le temps affiché reste celui de la course s'il est meilleur
+        if (dataEntity.isLegit() && dataEntity.getFinishReason() == 22 && isRankedHacksDetected(dataEntity.getHacksDetected())) {
+            leaderboard.offer(activePersonaId, eventDuration);
+        }
+
+        Set<Long> banned = getBannedPersonaIds();
+        Long bestTime = leaderboard.getBestTime(activePersonaId);
+        long displayedTime = bestTime != null ? Math.min(bestTime, eventDuration) : eventDuration;
+        int currentRanking = leaderboard.getRank(activePersonaId, displayedTime, banned);
+
+        openFireSoapBoxCli.send(XmppChat.createSystemMessage(String.format("SBRWR_LEADERBOARD_INFO,%s,%s", currentRanking,
+                DurationFormatUtils.formatDurationHMS(displayedTime))), activePersonaId);
+
+        //Top stat
+        long[] top = leaderboard.getTop(banned);
+        if (top != null) {
+            PersonaEntity topPersonaEntity = personaDAO.find(top[1]);
+            if(topPersonaEntity != null) {
+                openFireSoapBoxCli.send(XmppChat.createSystemMessage(String.format("SBRWR_LEADERBOARD_TOP_INFO,%s,%s", topPersonaEntity.getName(),
+                        DurationFormatUtils.formatDurationHMS(top[0]))), activePersonaId);
+            }
+        }
+    }
+
+    /**
+     * Drops every loaded leaderboard; they are reloaded from the database on the next result.
+     */
+    public void clear() {
+        leaderboards.clear();
+    }
+
+    private EventLeaderboard getLeaderboard(Integer eventId) {
+        EventLeaderboard leaderboard = leaderboards.get(eventId);
+
+        if (leaderboard == null) {
+            int maxEvents = parameterBO.getIntParam("SBRWR_LEADERBOARD_MAX_EVENTS", 256);
+
+            if (leaderboards.size() >= maxEvents) {
+                evictLeastRecentlyUsed();
+            }
+
+            leaderboard = leaderboards.computeIfAbsent(eventId, this::loadLeaderboard);
+        }
+
+        leaderboard.lastUsed = System.currentTimeMillis();
+        return leaderboard;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Map.Entry<Integer, EventLeaderboard> oldest = null;
+
+        for (Map.Entry<Integer, EventLeaderboard> entry : leaderboards.entrySet()) {
+            if (oldest == null || entry.getValue().lastUsed < oldest.getValue().lastUsed) {
+                oldest = entry;
+            }
+        }
+
+        if (oldest != null) {
+            leaderboards.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private EventLeaderboard loadLeaderboard(Integer eventId) {
+        EventLeaderboard leaderboard = new EventLeaderboard();
+
+        for (Object[] row : eventDataDAO.getBestTimes(eventId)) {
+            leaderboard.offer((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        return leaderboard;
+    }
+
+    private Set<Long> getBannedPersonaIds() {
+        if (System.currentTimeMillis() - bannedPersonaIdsLoadedAt > BAN_CACHE_TTL_MS) {
+            bannedPersonaIds = new HashSet<>(banDAO.findBannedPersonaIds());
+            bannedPersonaIdsLoadedAt = System.currentTimeMillis();
+        }
+
+        return bannedPersonaIds;
+    }
+
+    private static boolean isRankedHacksDetected(long hacksDetected) {
+        return hacksDetected == 0 || hacksDetected == 22 || hacksDetected == 32;
+    }
+
+    /**
+     * Classement d'un événement : index des meilleurs temps, partagé entre les threads.
+     */
+    private static class EventLeaderboard {
+        private final BestTimeIndex index = new BestTimeIndex();
+
+        private volatile long lastUsed;
+
+        synchronized void offer(Long personaId, long time) {
+            index.offer(personaId, time);
+        }
+
+        synchronized Long getBestTime(Long personaId) {
+            return index.getBestTime(personaId);
+        }
+
+        synchronized int getRank(Long personaId, long time, Set<Long> banned) {
+            return index.getRank(personaId, time, banned);
+        }
+
+        synchronized long[] getTop(Set<Long> banned) {
+            return index.getTop(banned);
         }
     }
 }
@@ -22,6 +22,7 @@ import com.soapboxrace.jaxb.http.ArrayOfLobbyEntrantInfo;
 import com.soapboxrace.jaxb.http.LobbyCountdown;
 import com.soapboxrace.jaxb.http.LobbyEntrantInfo;
 import com.soapboxrace.jaxb.http.LobbyInfo;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
 import com.soapboxrace.jaxb.xmpp.XMPP_ResponseTypeLobbyCountdown;
 
 import org.slf4j.Logger;
@@ -33,7 +34,9 @@ import javax.transaction.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -89,6 +92,18 @@ public class LobbyBO {
     @Inject
     private EventSessionDAO eventSessionDAO;
 
+    @Inject
+    private OpenLobbyIndexBO openLobbyIndexBO;
+
+    // Injection hors conteneur (benchmarks)
+    void setEventBO(EventBO eventBO) {
+        this.eventBO = eventBO;
+    }
+
+    void setPersonaBO(PersonaBO personaBO) {
+        this.personaBO = personaBO;
+    }
+
     public void joinFastLobby(Long personaId, int carClassHash) {
         logger.info("JOINFAST: PersonaId={} attempting to join fast lobby with carClass={}", personaId, carClassHash);
         
@@ -100,152 +115,86 @@ public class LobbyBO {
         
         logger.info("JOINFAST: PersonaId={} found, level={}", personaId, personaEntity.getLevel());
         
-        List<LobbyEntity> allLobbys = lobbyDao.findAllOpen(carClassHash, personaEntity.getLevel());
+        // Les lobbies ouverts sont servis par l'index en mémoire (classe, niveau, verrou de classe, places
+        // et fenêtre de recherche déjà vérifiés) : aucune requête SQL tant qu'aucun lobby n'est choisi.
+        List<OpenLobbyIndexBO.OpenLobby> openLobbies = openLobbyIndexBO.findOpen(carClassHash, personaEntity.getLevel());
         logger.info("JOINFAST: Found {} open lobbies for PersonaId={} (carClass={}, level={})", 
-                    allLobbys.size(), personaId, carClassHash, personaEntity.getLevel());
-        
-        // DIAGNOSTIC: Afficher les détails de TOUS les lobbies trouvés par SQL
-        if (!allLobbys.isEmpty()) {
-            logger.info("JOINFAST DIAGNOSTIC: SQL returned {} lobbies:", allLobbys.size());
-            for (LobbyEntity lobby : allLobbys) {
-                logger.info("  - LobbyId={}, EventId={}, EventName={}, EventClass={}, LockedClass={}, IsPrivate={}, Entrants={}/{}", 
-                    lobby.getId(), 
-                    lobby.getEvent().getId(), 
-                    lobby.getEvent().getName(),
-                    lobby.getEvent().getCarClassHash(),
-                    lobby.getLockedCarClassHash(),
-                    lobby.getIsPrivate(),
-                    lobby.getEntrants().size(),
-                    lobby.getEvent().getMaxPlayers());
-            }
-        }
+                    openLobbies.size(), personaId, carClassHash, personaEntity.getLevel());
 
-        // SÉCURITÉ : Double-vérification des niveaux après la requête SQL
-        // pour s'assurer qu'aucun lobby avec restriction de niveau inappropriée n'est retourné
-        List<LobbyEntity> levelFilteredLobbys = new ArrayList<>();
-        for (LobbyEntity lobby : allLobbys) {
-            EventEntity event = lobby.getEvent();
-            if (personaEntity.getLevel() >= event.getMinLevel() && personaEntity.getLevel() <= event.getMaxLevel()) {
-                levelFilteredLobbys.add(lobby);
-            } else {
-                logger.warn("JOINFAST: SECURITY - SQL query returned inappropriate lobby: PersonaId={} (Level={}) got EventId={} (MinLevel={}, MaxLevel={})", 
-                           personaId, personaEntity.getLevel(), event.getId(), event.getMinLevel(), event.getMaxLevel());
-            }
+        // Filtrer les lobbies pour exclure les événements ignorés et les restrictions de voiture
+        // Les événements ignorés sont résolus en un seul aller-retour Redis pour tous les lobbies
+        int[] eventIds = new int[openLobbies.size()];
+        for (int i = 0; i < eventIds.length; i++) {
+            eventIds[i] = openLobbies.get(i).getEventId();
         }
+        BitSet ignoredEvents = matchmakingBO.findIgnoredEvents(personaId, eventIds);
+
+        List<OpenLobbyIndexBO.OpenLobby> availableLobbys = filterAvailableLobbies(personaId, openLobbies, ignoredEvents);
         
-        if (levelFilteredLobbys.size() != allLobbys.size()) {
-            logger.error("JOINFAST: CRITICAL - SQL level filtering failed! {} lobbies filtered out by level check", 
-                        allLobbys.size() - levelFilteredLobbys.size());
-            // Afficher les lobbies filtrés
-            for (LobbyEntity lobby : allLobbys) {
-                EventEntity event = lobby.getEvent();
-                if (personaEntity.getLevel() < event.getMinLevel() || personaEntity.getLevel() > event.getMaxLevel()) {
-                    logger.error("  - FILTERED BY LEVEL: LobbyId={}, EventId={}, PlayerLevel={}, EventMinLevel={}, EventMaxLevel={}", 
-                        lobby.getId(), event.getId(), personaEntity.getLevel(), event.getMinLevel(), event.getMaxLevel());
-                }
-            }
+        logger.info("JOINFAST: PersonaId={} - After filtering ignored events: {} available lobbies (was {} open)", 
+                    personaId, availableLobbys.size(), openLobbies.size());
+
+        boolean joined = false;
+        if (!availableLobbys.isEmpty()) {
+            Collections.shuffle(availableLobbys);
+            joined = joinIndexedLobby(personaEntity, availableLobbys);
         }
 
-        // SÉCURITÉ : Double-vérification que le lobby n'est pas verrouillé à une autre classe de voiture
-        // NOTE : On ne filtre PLUS par event.carClassHash pour permettre un matchmaking ouvert
-        //        Seul le lockedCarClassHash compte (et il est NULL pour les lobbies publics depuis notre fix)
-        List<LobbyEntity> carClassFilteredLobbys = new ArrayList<>();
-        for (LobbyEntity lobby : levelFilteredLobbys) {
-            EventEntity event = lobby.getEvent();
-            Integer lobbyLockedClass = lobby.getLockedCarClassHash();
-            
-            // Pour les lobbies publics (retournés par findAllOpenByLevel), lockedCarClassHash devrait être NULL
-            // On vérifie quand même par sécurité
-            boolean lobbyLockOK = (lobbyLockedClass == null) || (lobbyLockedClass == carClassHash);
-            
-            if (lobbyLockOK) {
-                carClassFilteredLobbys.add(lobby);
-            } else {
-                logger.warn("JOINFAST: SECURITY - Lobby locked to different car class: PersonaId={} (CarClass={}) got LobbyId={} (LobbyLock={})", 
-                           personaId, carClassHash, lobby.getId(), lobbyLockedClass);
-            }
+        if (!joined) {
+            // Aucun lobby disponible (soit il n'y en a pas, soit tous sont ignorés) : ajouter le joueur à la file d'attente RaceNow persistante
+            logger.info("JOINFAST: No available lobby for PersonaId={}, adding to RaceNow queue", personaId);
+            matchmakingBO.addPlayerToRaceNowQueue(personaId, carClassHash, personaEntity.getLevel());
+            // Note: addPlayerToRaceNowQueue() publie RaceNowQueueJoined, traité aussitôt par le matchmaker
+        } else {
+            // Si le joueur rejoint un lobby avec succès, le retirer de la file RaceNow
+            logger.info("JOINFAST: PersonaId={} joined lobby successfully, removing from RaceNow queue", personaId);
+            matchmakingBO.removePlayerFromRaceNowQueue(personaId);
         }
         
-        if (carClassFilteredLobbys.size() != levelFilteredLobbys.size()) {
-            logger.error("JOINFAST: {} lobbies filtered out by lobby lock check (should be 0 for public lobbies)", 
-                        levelFilteredLobbys.size() - carClassFilteredLobbys.size());
-            // Afficher les lobbies filtrés
-            for (LobbyEntity lobby : levelFilteredLobbys) {
-                Integer lobbyLockedClass = lobby.getLockedCarClassHash();
-                
-                boolean lobbyLockOK = (lobbyLockedClass == null) || (lobbyLockedClass == carClassHash);
-                
-                if (!lobbyLockOK) {
-                    logger.error("  - FILTERED BY LOBBY LOCK: LobbyId={}, LockedClass={}, PlayerClass={}", 
-                        lobby.getId(), lobbyLockedClass, carClassHash);
-                }
-            }
-        }
+        logger.info("JOINFAST: PersonaId={} joinFastLobby completed", personaId);
+    }
 
-        // Filtrer les lobbies pour exclure les événements ignorés
-        List<LobbyEntity> availableLobbys = new ArrayList<>();
-        for (LobbyEntity lobby : carClassFilteredLobbys) {
+    /**
+     * Garde les lobbies ouverts que le persona peut rejoindre : événement non ignoré et, pour un événement restreint,
+     * voiture active autorisée. La voiture active est lue au plus une fois.
+     *
+     * @param personaId     the persona ID
+     * @param openLobbies   the open lobbies, as returned by {@link OpenLobbyIndexBO#findOpen(int, int)}
+     * @param ignoredEvents bit i is set if the persona ignores the event of lobby i
+     * @return the lobbies the persona can join, in the same order
+     */
+    List<OpenLobbyIndexBO.OpenLobby> filterAvailableLobbies(Long personaId, List<OpenLobbyIndexBO.OpenLobby> openLobbies,
+                                                            BitSet ignoredEvents) {
+        // Voiture active lue au plus une fois, au premier événement restreint
+        OwnedCarTrans defaultCar = null;
+        List<OpenLobbyIndexBO.OpenLobby> availableLobbys = new ArrayList<>();
+        for (int i = 0; i < openLobbies.size(); i++) {
+            OpenLobbyIndexBO.OpenLobby lobby = openLobbies.get(i);
             EventEntity event = lobby.getEvent();
             
             // Vérifier si l'événement est ignoré par le joueur
-            if (matchmakingBO.isEventIgnored(personaId, event.getId())) {
-                logger.debug("JOINFAST: PersonaId={} - Skipping ignored event {} ({})", 
-                            personaId, event.getId(), event.getName());
+            if (ignoredEvents.get(i)) {
+                logger.debug("JOINFAST: PersonaId={} - Skipping ignored event {} ({}) in LobbyId={}", 
+                            personaId, event.getId(), event.getName(), lobby.getLobbyId());
                 continue;
             }
             
             // Vérifier les restrictions de voiture
-            if (event.getCarRestriction() != null && !event.getCarRestriction().trim().isEmpty()) {
-                if (!eventBO.hasAllowedCarForEvent(personaId, event)) {
-                    logger.debug("JOINFAST: PersonaId={} - Skipping car-restricted event {} ({}) - restriction: {}", 
-                                personaId, event.getId(), event.getName(), event.getCarRestriction());
+            if (eventBO.isCarRestricted(event)) {
+                if (defaultCar == null) {
+                    defaultCar = personaBO.getDefaultCar(personaId);
+                }
+                if (!eventBO.hasAllowedCarForEvent(defaultCar, event)) {
+                    logger.debug("JOINFAST: PersonaId={} - Skipping car-restricted event {} ({}) in LobbyId={} - restriction: {}", 
+                                personaId, event.getId(), event.getName(), lobby.getLobbyId(), event.getCarRestriction());
                     continue;
                 }
             }
             
             availableLobbys.add(lobby);
         }
-        
-        logger.info("JOINFAST: PersonaId={} - After filtering ignored events: {} available lobbies (was {} after car class check, {} after level check, {} from SQL)", 
-                    personaId, availableLobbys.size(), carClassFilteredLobbys.size(), levelFilteredLobbys.size(), allLobbys.size());
-        
-        // DIAGNOSTIC: Afficher les lobbies filtrés par événements ignorés ou restrictions
-        if (availableLobbys.size() != carClassFilteredLobbys.size()) {
-            logger.warn("JOINFAST: {} lobbies filtered out by ignored events or car restrictions", 
-                carClassFilteredLobbys.size() - availableLobbys.size());
-            for (LobbyEntity filteredLobby : carClassFilteredLobbys) {
-                EventEntity filteredEvent = filteredLobby.getEvent();
-                
-                if (matchmakingBO.isEventIgnored(personaId, filteredEvent.getId())) {
-                    logger.warn("  - FILTERED BY IGNORED EVENT: LobbyId={}, EventId={}, EventName={}", 
-                        filteredLobby.getId(), filteredEvent.getId(), filteredEvent.getName());
-                    continue;
-                }
-                
-                if (filteredEvent.getCarRestriction() != null && !filteredEvent.getCarRestriction().trim().isEmpty()) {
-                    if (!eventBO.hasAllowedCarForEvent(personaId, filteredEvent)) {
-                        logger.warn("  - FILTERED BY CAR RESTRICTION: LobbyId={}, EventId={}, Restriction={}", 
-                            filteredLobby.getId(), filteredEvent.getId(), filteredEvent.getCarRestriction());
-                    }
-                }
-            }
-        }
 
-        if (availableLobbys.isEmpty()) {
-            // Aucun lobby disponible (soit il n'y en a pas, soit tous sont ignorés) : ajouter le joueur à la file d'attente RaceNow persistante
-            logger.info("JOINFAST: No available lobby for PersonaId={}, adding to RaceNow queue", personaId);
-            matchmakingBO.addPlayerToRaceNowQueue(personaId, carClassHash, personaEntity.getLevel());
-            // Note: addPlayerToRaceNowQueue() déclenche automatiquement un scan immédiat
-        } else {
-            logger.info("JOINFAST: Available lobby found, joining PersonaId={} to existing lobby", personaId);
-            Collections.shuffle(availableLobbys);
-            joinLobby(personaEntity, availableLobbys, false); // Ne pas re-vérifier les événements ignorés, on l'a déjà fait
-            // Si le joueur rejoint un lobby avec succès, le retirer de la file RaceNow
-            logger.info("JOINFAST: PersonaId={} joined lobby successfully, removing from RaceNow queue", personaId);
-            matchmakingBO.removePlayerFromRaceNowQueue(personaId);
-        }
-        
-        logger.info("JOINFAST: PersonaId={} joinFastLobby completed", personaId);
+        return availableLobbys;
     }
 
     public void joinQueueEvent(Long personaId, int eventId) {
@@ -268,22 +217,21 @@ public class LobbyBO {
             return; // Ignorer silencieusement la demande
         }
         
+        OwnedCarTrans defaultCar = personaBO.getDefaultCar(personaId);
+
         // SÉCURITÉ : Vérifier les restrictions de voiture
-        if (eventEntity.getCarRestriction() != null && !eventEntity.getCarRestriction().trim().isEmpty()) {
-            if (!eventBO.hasAllowedCarForEvent(personaId, eventEntity)) {
-                logger.info("Car restriction: PersonaId={} cannot access EventId={} (restriction: {}) - request ignored", 
-                    personaId, eventId, eventEntity.getCarRestriction());
-                return; // Ignorer silencieusement la demande
-            }
+        if (!eventBO.hasAllowedCarForEvent(defaultCar, eventEntity)) {
+            logger.info("Car restriction: PersonaId={} cannot access EventId={} (restriction: {}) - request ignored", 
+                personaId, eventId, eventEntity.getCarRestriction());
+            return; // Ignorer silencieusement la demande
         }
-
-        CarEntity carEntity = personaBO.getDefaultCarEntity(personaId);
-        if (carEntity == null) {
-            logger.error("JOINQUEUE: CarEntity not found for PersonaId={}", personaId);
+        if (defaultCar.getCustomCar() == null) {
+            logger.error("JOINQUEUE: Default car not found for PersonaId={}", personaId);
             throw new EngineException(EngineExceptionCode.CarDataInvalid, true);
         }
 
-        if (carEntity.getCarClassHash() == 0 || (eventEntity.getCarClassHash() != 607077938 && carEntity.getCarClassHash() != eventEntity.getCarClassHash())) {
+        int carClassHash = defaultCar.getCustomCar().getCarClassHash();
+        if (carClassHash == 0 || (eventEntity.getCarClassHash() != 607077938 && carClassHash != eventEntity.getCarClassHash())) {
             // The client UI does not allow you to join events outside your current car's class
             throw new EngineException(EngineExceptionCode.CarDataInvalid, true);
         }
@@ -332,9 +280,9 @@ public class LobbyBO {
                             continue;
                         }
 
-                        CarEntity carEntity = personaBO.getDefaultCarEntity(recipientPersonaEntity.getPersonaId());
+                        OwnedCarTrans recipientCar = personaBO.getDefaultCar(recipientPersonaEntity.getPersonaId());
                         
-                        if (carEntity == null) {
+                        if (recipientCar.getCustomCar() == null) {
                             logger.warn(String.format("Default car not found for PersonaId=%d", recipientPersonaId));
                             continue;
                         }
@@ -365,14 +313,14 @@ public class LobbyBO {
                         // OPTIMISATION: Ne plus vérifier Redis - XMPP gère la livraison selon la connexion réelle
                         // Si le joueur est offline, XMPP ignorera le message automatiquement
                         
-                        if(eventEntity.getCarClassHash() == 607077938 || carEntity.getCarClassHash() == eventEntity.getCarClassHash()) {
+                        if(eventEntity.getCarClassHash() == 607077938 || recipientCar.getCustomCar().getCarClassHash() == eventEntity.getCarClassHash()) {
                             lobbyMessagingBO.sendLobbyInvitation(lobbyEntity, recipientPersonaEntity, eventEntity.getLobbyCountdownTime());
                             invitationsSent++;
                             logger.info("Sent private lobby invitation to PersonaId={} for EventId={}", 
                                 recipientPersonaId, eventEntity.getId());
                         } else {
                             logger.warn(String.format("Car class mismatch for PersonaId=%d: Event requires %d, player has %d", 
-                                recipientPersonaId, eventEntity.getCarClassHash(), carEntity.getCarClassHash()));
+                                recipientPersonaId, eventEntity.getCarClassHash(), recipientCar.getCustomCar().getCarClassHash()));
                         }
                     }
                 }
@@ -445,9 +393,9 @@ public class LobbyBO {
         // Éviter qu'un créateur reste listé dans un ancien lobby actif.
         ensurePersonaSingleActiveLobby(personaId, lobbyEntity.getId());
         
-        CarEntity carEntity = personaBO.getDefaultCarEntity(personaId);
-        if (carEntity == null) {
-            logger.error("CREATELOBBY: CarEntity not found for PersonaId={}", personaId);
+        OwnedCarTrans defaultCar = personaBO.getDefaultCar(personaId);
+        if (defaultCar.getCustomCar() == null) {
+            logger.error("CREATELOBBY: Default car not found for PersonaId={}", personaId);
             throw new EngineException(EngineExceptionCode.CarDataInvalid, true);
         }
         
@@ -460,7 +408,7 @@ public class LobbyBO {
         
         // Envoyer l'invitation au créateur
         // Il devra appeler acceptinvite() pour rejoindre effectivement le lobby
-        if (eventEntity.getCarClassHash() == 607077938 || carEntity.getCarClassHash() == eventEntity.getCarClassHash()) {
+        if (eventEntity.getCarClassHash() == 607077938 || defaultCar.getCustomCar().getCarClassHash() == eventEntity.getCarClassHash()) {
             lobbyMessagingBO.sendLobbyInvitation(lobbyEntity, personaEntity, 10000);
         }
         
@@ -593,6 +541,8 @@ public class LobbyBO {
         ensurePersonaSingleActiveLobby(personaEntity.getPersonaId(), null);
 
         LobbyEntity lobbyEntity = null;
+        // Voiture active lue au plus une fois pour tous les lobbies
+        OwnedCarTrans playerCar = null;
         for (LobbyEntity lobbyEntityTmp : lobbys) {
             if (lobbyEntityTmp.getIsPrivate()) continue;
 
@@ -608,8 +558,11 @@ public class LobbyBO {
             }
             
             // SECURITY CHECK: Vérifier les restrictions de voiture
-            if (event.getCarRestriction() != null && !event.getCarRestriction().trim().isEmpty()) {
-                if (!eventBO.hasAllowedCarForEvent(personaEntity.getPersonaId(), event)) {
+            if (eventBO.isCarRestricted(event)) {
+                if (playerCar == null) {
+                    playerCar = personaBO.getDefaultCar(personaEntity.getPersonaId());
+                }
+                if (!eventBO.hasAllowedCarForEvent(playerCar, event)) {
                     logger.warn("RaceNow car restriction bypass attempt blocked: PersonaId={} tried to join EventId={} (restriction: {})", 
                         personaEntity.getPersonaId(), event.getId(), event.getCarRestriction());
                     continue;
@@ -618,10 +571,12 @@ public class LobbyBO {
             
             // SECURITY CHECK: Vérifier le verrouillage de classe de voiture du lobby
             if (lobbyEntityTmp.getLockedCarClassHash() != null) {
-                CarEntity playerCar = personaBO.getDefaultCarEntity(personaEntity.getPersonaId());
-                if (playerCar != null && playerCar.getCarClassHash() != lobbyEntityTmp.getLockedCarClassHash()) {
+                if (playerCar == null) {
+                    playerCar = personaBO.getDefaultCar(personaEntity.getPersonaId());
+                }
+                if (playerCar.getCustomCar() != null && playerCar.getCustomCar().getCarClassHash() != lobbyEntityTmp.getLockedCarClassHash()) {
                     logger.warn("RaceNow car class lock bypass attempt blocked: PersonaId={} (CarClass={}) tried to join lobby locked to CarClass={}", 
-                        personaEntity.getPersonaId(), playerCar.getCarClassHash(), lobbyEntityTmp.getLockedCarClassHash());
+                        personaEntity.getPersonaId(), playerCar.getCustomCar().getCarClassHash(), lobbyEntityTmp.getLockedCarClassHash());
                     continue;
                 }
             }
@@ -659,6 +614,41 @@ public class LobbyBO {
         }
     }
 
+    /**
+     * Invite le joueur dans le premier lobby de l'index qui a encore de la place en base.
+     * Seul le lobby retenu est relu depuis la base ; une entrée d'index périmée est rafraîchie
+     * et le lobby suivant est essayé.
+     *
+     * @return true si une invitation a été envoyée
+     */
+    private boolean joinIndexedLobby(PersonaEntity personaEntity, List<OpenLobbyIndexBO.OpenLobby> lobbys) {
+        // Nettoyer d'abord toute appartenance a d'autres lobbies actifs pour éviter les doubles affectations.
+        ensurePersonaSingleActiveLobby(personaEntity.getPersonaId(), null);
+
+        for (OpenLobbyIndexBO.OpenLobby openLobby : lobbys) {
+            LobbyEntity freshLobby = lobbyDao.find(openLobby.getLobbyId());
+            if (freshLobby == null || !freshLobby.getIsActive()) {
+                openLobbyIndexBO.remove(openLobby.getLobbyId());
+                continue;
+            }
+
+            List<LobbyEntrantEntity> lobbyEntrants = freshLobby.getEntrants();
+            int maxEntrants = freshLobby.getEvent().getMaxPlayers();
+
+            if (lobbyEntrants.size() >= maxEntrants) {
+                logger.info("JOIN_LOBBY FULL: Persona {} not invited to lobby {} (entrants={}/{})",
+                    personaEntity.getPersonaId(), freshLobby.getId(), lobbyEntrants.size(), maxEntrants);
+                openLobbyIndexBO.update(freshLobby);
+                continue;
+            }
+
+            lobbyMessagingBO.sendLobbyInvitation(freshLobby, personaEntity, 10000);
+            return true;
+        }
+
+        return false;
+    }
+
     /**
      * Garantit qu'un persona n'appartient qu'a un seul lobby actif.
      */
@@ -687,6 +677,27 @@ public class LobbyBO {
         ensurePersonaSingleActiveLobby(personaId, null);
     }
 
+    /**
+     * Retire plusieurs personas de tous leurs lobbies actifs. Les lobbies concernés sont lus en une seule requête.
+     */
+    public void removePersonasFromAllActiveLobbies(Collection<Long> personaIds) {
+        if (personaIds.isEmpty()) {
+            return;
+        }
+
+        for (Object[] membership : lobbyEntrantDao.findActiveLobbyMemberships(personaIds)) {
+            Long personaId = (Long) membership[0];
+            Long lobbyId = (Long) membership[1];
+
+            try {
+                removeEntrantFromLobby(personaId, lobbyId);
+            } catch (Exception e) {
+                logger.warn("Failed to remove PersonaId={} from LobbyId={} (continuing): {}",
+                    personaId, lobbyId, e.getMessage());
+            }
+        }
+    }
+
     /**
      * Vérifie si un persona appartient déjà à un autre lobby actif.
      */
@@ -734,6 +745,7 @@ public class LobbyBO {
             logger.info("DECLINE_INVITE: Removing PersonaId={} from Lobby {} entrants", activePersonaId, lobbyInviteId);
             lobbyEntity.getEntrants().remove(entrantToRemove);
             lobbyEntrantDao.delete(entrantToRemove);
+            openLobbyIndexBO.update(lobbyEntity);
             
             // Si le lobby devient complètement vide après le départ, le supprimer (avec délai pour Race Again)
             long remainingEntrants = lobbyEntrantDao.countByLobby(lobbyInviteId);
@@ -796,8 +808,8 @@ public class LobbyBO {
         }
         
         // SECURITY CHECK: Vérifier la classe de voiture du joueur par rapport au verrouillage de lobby
-        CarEntity playerCar = personaBO.getDefaultCarEntity(personaId);
-        int playerCarClass = (playerCar != null) ? playerCar.getCarClassHash() : 0;
+        OwnedCarTrans playerCar = personaBO.getDefaultCar(personaId);
+        int playerCarClass = (playerCar.getCustomCar() != null) ? playerCar.getCustomCar().getCarClassHash() : 0;
 
         if (lobbyEntity.getLockedCarClassHash() != null && !isCarClassCompatible(playerCarClass, lobbyEntity.getLockedCarClassHash())) {
             logger.warn("Lobby car class lock bypass blocked: PersonaId={} (CarClass={}) tried to accept invitation for lobby locked to CarClass={}",
@@ -859,6 +871,7 @@ public class LobbyBO {
             
             lobbyEntrantDao.insert(lobbyEntrantEntity);
             lobbyEntity.getEntrants().add(lobbyEntrantEntity);
+            openLobbyIndexBO.update(lobbyEntity);
             
             // RACE_AGAIN : Annuler tout timer de suppression différée car le lobby n'est plus vide
             lobbyCountdownBO.cancelEmptyLobbyDeletion(lobbyInviteId);
@@ -1064,6 +1077,7 @@ public class LobbyBO {
 
         // Supprimer l'entrant de la base de données
         lobbyEntrantDao.deleteByPersonaAndLobby(personaEntity, lobbyEntity);
+        openLobbyIndexBO.update(lobbyEntity);
 
         // Vérification de cohérence: s'assurer que la ligne est bien supprimée.
         long stillPresent = lobbyEntrantDao.countByPersonaAndLobby(personaId, lobbyId);
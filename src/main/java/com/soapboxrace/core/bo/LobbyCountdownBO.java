@@ -1,5 +1,6 @@
 package com.soapboxrace.core.bo;
 
+import com.soapboxrace.core.bo.util.HashedWheelTimer;
 import com.soapboxrace.core.dao.EventSessionDAO;
 import com.soapboxrace.core.dao.LobbyDAO;
 import com.soapboxrace.core.dao.LobbyEntrantDAO;
@@ -14,11 +15,17 @@ import com.soapboxrace.jaxb.http.LobbyEntrantInfo;
 import com.soapboxrace.jaxb.http.LobbyEntrantState;
 import com.soapboxrace.jaxb.xmpp.*;
 
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.ejb.*;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import javax.inject.Inject;
 import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
@@ -27,21 +34,56 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Décomptes des lobbies et suppressions différées des lobbies Race Again vides.
+ * <p>
+ * Les décomptes sont gérés par une roue de timers en mémoire ({@link HashedWheelTimer}) : programmation et annulation
+ * en O(1), sans timer EJB ni verrou WRITE. L'annulation et le déclenchement se départagent par un retrait atomique
+ * de la map des timers actifs : un décompte annulé ne peut plus lancer la course. Le lancement est exécuté sur un
+ * pool dédié, via la vue métier du bean pour garder une transaction conteneur.
+ */
 @Singleton
 @Lock(LockType.READ)
 public class LobbyCountdownBO {
     private static final Logger logger = LoggerFactory.getLogger(LobbyCountdownBO.class);
 
+    // Retard de lancement au-delà duquel un avertissement est loggé
+    private static final long LATE_LAUNCH_WARN_MS = 250;
+
+    // Délai avant une nouvelle tentative de lancement après un échec
+    private static final int LAUNCH_RETRY_DELAY_MS = 1000;
+
     // Timers actifs par lobbyId — permet d'annuler un timer si le nombre de joueurs redescend à 1
-    private final ConcurrentHashMap<Long, Timer> activeTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, HashedWheelTimer.Timeout> activeTimers = new ConcurrentHashMap<>();
     
     // Timers de suppression différée pour les lobbies Race Again vides
     // Utilisé pour donner un délai de grâce avant de supprimer un lobby Race Again qui devient vide
-    private final ConcurrentHashMap<Long, Timer> emptyLobbyDeletionTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, HashedWheelTimer.Timeout> emptyLobbyDeletionTimers = new ConcurrentHashMap<>();
+
+    private HashedWheelTimer wheelTimer;
+
+    private ThreadPoolExecutor launchPool;
+
+    private Histogram latenessHistogram;
+
+    private Counter cancelledCounter;
+
+    private Counter launchFailedCounter;
+
+    private int launchMaxAttempts;
 
     @Resource
-    private TimerService timerService;
+    private SessionContext sessionContext;
+
+    @Resource
+    private ManagedThreadFactory managedThreadFactory;
+
+    @Inject
+    private MetricRegistry metricRegistry;
 
     @Inject
     private LobbyDAO lobbyDAO;
@@ -58,12 +100,41 @@ public class LobbyCountdownBO {
     @Inject
     private ParameterBO parameterBO;
 
+    @Inject
+    private OpenLobbyIndexBO openLobbyIndexBO;
+
     @Inject
     private LobbyMessagingBO lobbyMessagingBO;
 
     @Inject
     private OpenFireSoapBoxCli openFireSoapBoxCli;
 
+    @PostConstruct
+    public void init() {
+        int launchThreads = parameterBO.getIntParam("SBRWR_LOBBY_TIMER_THREADS", 4);
+        int tickMs = parameterBO.getIntParam("SBRWR_LOBBY_TIMER_TICK_MS", 10);
+
+        this.latenessHistogram = metricRegistry.histogram("lobby.countdown.lateness_ms");
+        this.cancelledCounter = metricRegistry.counter("lobby.countdown.cancelled");
+        this.launchFailedCounter = metricRegistry.counter("lobby.countdown.launch_failed");
+        this.launchMaxAttempts = Math.max(1, parameterBO.getIntParam("SBRWR_LOBBY_LAUNCH_MAX_ATTEMPTS", 3));
+
+        this.launchPool = new ThreadPoolExecutor(launchThreads, launchThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), managedThreadFactory);
+        this.wheelTimer = new HashedWheelTimer("lobby-countdown", managedThreadFactory, launchPool, tickMs,
+                TimeUnit.MILLISECONDS, 512);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (this.wheelTimer != null) {
+            this.wheelTimer.stop();
+        }
+        if (this.launchPool != null) {
+            this.launchPool.shutdown();
+        }
+    }
+
     /**
      * Repasse le lobby en mode "en attente" lorsqu'il ne reste qu'un seul joueur :
      * annule le timer serveur, rafraîchit startedTime (visibilité dans les recherches),
@@ -142,46 +213,89 @@ public class LobbyCountdownBO {
     }
     
     public void scheduleLobbyStart(LobbyEntity lobbyEntity) {
-        Timer existing = activeTimers.get(lobbyEntity.getId());
-        if (existing != null) {
-            logger.info("Schedule request ignored for lobby {}: timer already active", lobbyEntity.getId());
+        Long lobbyId = lobbyEntity.getId();
+        if (activeTimers.containsKey(lobbyId)) {
+            logger.info("Schedule request ignored for lobby {}: timer already active", lobbyId);
             return;
         }
 
-        cancelLobbyTimer(lobbyEntity.getId());
-        TimerConfig timerConfig = new TimerConfig();
-        timerConfig.setInfo(lobbyEntity.getId());
         int countdownTime = getCountdownTimeForLobby(lobbyEntity);
-        Timer timer = timerService.createSingleActionTimer(countdownTime, timerConfig);
-        activeTimers.put(lobbyEntity.getId(), timer);
+        HashedWheelTimer.Timeout timeout = newLaunchTimeout(lobbyId, countdownTime);
+
+        // Deux demandes simultanées : seule la première est gardée
+        if (activeTimers.putIfAbsent(lobbyId, timeout) != null) {
+            timeout.cancel();
+            logger.info("Schedule request ignored for lobby {}: timer already active", lobbyId);
+            return;
+        }
+
         long expectedLaunchAt = System.currentTimeMillis() + countdownTime;
-        logger.info("Scheduled lobby start for lobby {} in {} ms (ExpectedLaunchAt={})", lobbyEntity.getId(), countdownTime, expectedLaunchAt);
+        logger.info("Scheduled lobby start for lobby {} in {} ms (ExpectedLaunchAt={})", lobbyId, countdownTime, expectedLaunchAt);
     }
 
     public void scheduleLobbyStart(LobbyEntity lobbyEntity, Integer countdownTime) {
-        cancelLobbyTimer(lobbyEntity.getId());
-        TimerConfig timerConfig = new TimerConfig();
-        timerConfig.setInfo(lobbyEntity.getId());
-        Timer timer = timerService.createSingleActionTimer(countdownTime, timerConfig);
-        activeTimers.put(lobbyEntity.getId(), timer);
+        Long lobbyId = lobbyEntity.getId();
+        HashedWheelTimer.Timeout previous = activeTimers.put(lobbyId, newLaunchTimeout(lobbyId, countdownTime));
+        if (previous != null && previous.cancel()) {
+            cancelledCounter.inc();
+        }
         long expectedLaunchAt = System.currentTimeMillis() + countdownTime;
-        logger.info("Scheduled lobby start (full) for lobby {} in {} ms (ExpectedLaunchAt={})", lobbyEntity.getId(), countdownTime, expectedLaunchAt);
+        logger.info("Scheduled lobby start (full) for lobby {} in {} ms (ExpectedLaunchAt={})", lobbyId, countdownTime, expectedLaunchAt);
+    }
+
+    private HashedWheelTimer.Timeout newLaunchTimeout(Long lobbyId, int countdownTime) {
+        return newLaunchTimeout(lobbyId, countdownTime, 1);
+    }
+
+    private HashedWheelTimer.Timeout newLaunchTimeout(Long lobbyId, int delayMs, int attempt) {
+        // Vue métier : chaque tentative de lancement s'exécute dans sa propre transaction conteneur
+        LobbyCountdownBO businessObject = sessionContext.getBusinessObject(LobbyCountdownBO.class);
+
+        return wheelTimer.newTimeout(timeout -> {
+            try {
+                businessObject.launchLobby(lobbyId, timeout);
+            } catch (Exception e) {
+                retryLaunch(lobbyId, attempt, e);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Réarme le lancement d'un lobby après un échec (transaction annulée), dans la limite de
+     * SBRWR_LOBBY_LAUNCH_MAX_ATTEMPTS tentatives. Le timer échoué a déjà été retiré de la map des timers actifs :
+     * si un autre timer a été programmé entre-temps, c'est lui qui est gardé.
+     */
+    private void retryLaunch(Long lobbyId, int attempt, Exception e) {
+        launchFailedCounter.inc();
+
+        if (attempt >= launchMaxAttempts) {
+            logger.error("LOBBY_LAUNCH: Lobby {} launch failed (attempt {}/{}), giving up: {}", lobbyId, attempt,
+                    launchMaxAttempts, e.getMessage(), e);
+            return;
+        }
+
+        logger.warn("LOBBY_LAUNCH: Lobby {} launch failed (attempt {}/{}), retrying in {} ms: {}", lobbyId, attempt,
+                launchMaxAttempts, LAUNCH_RETRY_DELAY_MS, e.getMessage(), e);
+
+        HashedWheelTimer.Timeout retry = newLaunchTimeout(lobbyId, LAUNCH_RETRY_DELAY_MS, attempt + 1);
+        if (activeTimers.putIfAbsent(lobbyId, retry) != null) {
+            retry.cancel();
+        }
     }
 
     /**
      * Annule le timer d'un lobby (ex: quand le nombre de joueurs redescend à 1).
      * Sans effet si aucun timer n'est actif pour ce lobby.
-     * @Lock(WRITE) sérialise cette méthode avec onTimeout pour éviter la race condition.
+     * Le retrait de la map départage l'annulation et le déclenchement (voir {@link #launchLobby}).
      */
-    @Lock(LockType.WRITE)
     public void cancelLobbyTimer(Long lobbyId) {
-        Timer existing = activeTimers.remove(lobbyId);
+        HashedWheelTimer.Timeout existing = activeTimers.remove(lobbyId);
         if (existing != null) {
-            try {
-                existing.cancel();
+            if (existing.cancel()) {
+                cancelledCounter.inc();
                 logger.info("Cancelled countdown timer for lobby {}", lobbyId);
-            } catch (Exception e) {
-                logger.debug("Could not cancel timer for lobby {} (may have already fired): {}", lobbyId, e.getMessage());
+            } else {
+                logger.debug("Could not cancel timer for lobby {} (already fired)", lobbyId);
             }
         }
     }
@@ -203,23 +317,15 @@ public class LobbyCountdownBO {
      * @param delayInMs Le délai en millisecondes avant suppression (typiquement 30000 = 30 secondes)
      */
     public void scheduleRaceAgainLobbyDeletion(Long lobbyId, int delayInMs) {
-        // Annuler un éventuel timer de suppression existant pour ce lobby
-        Timer existing = emptyLobbyDeletionTimers.remove(lobbyId);
-        if (existing != null) {
-            try {
-                existing.cancel();
-                logger.debug("RACE_AGAIN: Cancelled previous deletion timer for lobby {}", lobbyId);
-            } catch (Exception e) {
-                logger.debug("Could not cancel previous deletion timer for lobby {}: {}", lobbyId, e.getMessage());
-            }
+        // Créer un nouveau timer de suppression différée, en remplaçant un éventuel timer existant pour ce lobby
+        LobbyCountdownBO businessObject = sessionContext.getBusinessObject(LobbyCountdownBO.class);
+        HashedWheelTimer.Timeout timeout = wheelTimer.newTimeout(t -> businessObject.deleteEmptyRaceAgainLobby(lobbyId, t),
+                delayInMs, TimeUnit.MILLISECONDS);
+        HashedWheelTimer.Timeout existing = emptyLobbyDeletionTimers.put(lobbyId, timeout);
+        if (existing != null && existing.cancel()) {
+            logger.debug("RACE_AGAIN: Cancelled previous deletion timer for lobby {}", lobbyId);
         }
         
-        // Créer un nouveau timer de suppression différée
-        TimerConfig timerConfig = new TimerConfig();
-        timerConfig.setInfo("DELETE_EMPTY_" + lobbyId);  // String pour distinguer du timer de démarrage
-        Timer timer = timerService.createSingleActionTimer(delayInMs, timerConfig);
-        emptyLobbyDeletionTimers.put(lobbyId, timer);
-        
         logger.info("RACE_AGAIN: Scheduled deletion of empty lobby {} in {} ms", lobbyId, delayInMs);
     }
 
@@ -230,17 +336,27 @@ public class LobbyCountdownBO {
      * @param lobbyId L'ID du lobby dont on annule la suppression
      */
     public void cancelEmptyLobbyDeletion(Long lobbyId) {
-        Timer timer = emptyLobbyDeletionTimers.remove(lobbyId);
-        if (timer != null) {
-            try {
-                timer.cancel();
-                logger.info("RACE_AGAIN: Cancelled scheduled deletion of lobby {} (player joined)", lobbyId);
-            } catch (Exception e) {
-                logger.debug("Could not cancel deletion timer for lobby {}: {}", lobbyId, e.getMessage());
-            }
+        HashedWheelTimer.Timeout timeout = emptyLobbyDeletionTimers.remove(lobbyId);
+        if (timeout != null && timeout.cancel()) {
+            logger.info("RACE_AGAIN: Cancelled scheduled deletion of lobby {} (player joined)", lobbyId);
         }
     }
 
+    /**
+     * Déclenchement du timer de suppression différée d'un lobby Race Again vide.
+     * Appelé par la roue de timers via la vue métier du bean (transaction conteneur).
+     *
+     * @param lobbyId L'ID du lobby
+     * @param timeout Le timer déclenché
+     */
+    public void deleteEmptyRaceAgainLobby(Long lobbyId, HashedWheelTimer.Timeout timeout) {
+        // Remplacé ou annulé entre-temps : un autre timer (ou aucun) est responsable du lobby
+        if (!emptyLobbyDeletionTimers.remove(lobbyId, timeout)) {
+            return;
+        }
+        handleEmptyRaceAgainLobbyDeletion(lobbyId);
+    }
+
     /**
      * Gère la suppression effective d'un lobby Race Again vide après le délai de grâce.
      * Vérifie que le lobby est toujours vide avant de le supprimer (un joueur a pu rejoindre entre-temps).
@@ -273,21 +389,17 @@ public class LobbyCountdownBO {
     @Lock(LockType.READ)
     public void cleanupEmptyLobbies() {
         // Nettoyer les lobbies vides de plus de 5 minutes
+        // Candidats pris dans l'ensemble des lobbies en attente, puis revérifiés en base
         LocalDateTime cutoffEmpty = LocalDateTime.now().minusMinutes(5);
-        List<LobbyEntity> emptyLobbies = lobbyDAO.findAllEmptyOlderThan(cutoffEmpty);
-        for (LobbyEntity lobby : emptyLobbies) {
+        for (Long lobbyId : openLobbyIndexBO.findEmptyStartedBefore(cutoffEmpty)) {
+            LobbyEntity lobby = findActiveLobby(lobbyId);
+            if (lobby == null || lobby.getStartedTime() == null || !lobby.getStartedTime().isBefore(cutoffEmpty)
+                    || lobbyEntrantDAO.countByLobby(lobbyId) > 0) {
+                continue;
+            }
             logger.info("Periodic cleanup: marking empty lobby {} as deleted (started: {})", 
                 lobby.getId(), lobby.getStartedTime());
-            // Annuler directement le timer sans passer par cancelLobbyTimer (@Lock WRITE) pour
-            // éviter un upgrade READ→WRITE depuis la même transaction (cause du rollback cross-thread).
-            Timer existing = activeTimers.remove(lobby.getId());
-            if (existing != null) {
-                try {
-                    existing.cancel();
-                } catch (Exception e) {
-                    logger.debug("Could not cancel timer for lobby {} during cleanup: {}", lobby.getId(), e.getMessage());
-                }
-            }
+            cancelLobbyTimer(lobby.getId());
             eventSessionDAO.nullifyLobbyReferences(lobby.getId());
             lobbyDAO.markAsDeleted(lobby);
         }
@@ -295,22 +407,18 @@ public class LobbyCountdownBO {
         // Nettoyer aussi les lobbies TRÈS anciens (30 minutes) même avec des entrants
         // Car ça indique probablement des joueurs déconnectés qui n'ont jamais quitté proprement
         LocalDateTime cutoffAbandoned = LocalDateTime.now().minusMinutes(30);
-        List<LobbyEntity> abandonedLobbies = lobbyDAO.findAllOlderThan(cutoffAbandoned);
-        for (LobbyEntity lobby : abandonedLobbies) {
+        for (Long lobbyId : openLobbyIndexBO.findStartedBefore(cutoffAbandoned)) {
+            LobbyEntity lobby = findActiveLobby(lobbyId);
+            if (lobby == null || lobby.getStartedTime() == null || !lobby.getStartedTime().isBefore(cutoffAbandoned)) {
+                continue;
+            }
             // Vérifier qu'il n'y a pas de course active (EventSession)
             // Si une course est en cours, ne pas supprimer le lobby
             if (lobby.getEvent() != null) {
                 logger.info("Periodic cleanup: marking abandoned lobby {} with {} entrants as deleted (started: {})", 
                     lobby.getId(), lobby.getEntrants().size(), lobby.getStartedTime());
                 
-                Timer existing = activeTimers.remove(lobby.getId());
-                if (existing != null) {
-                    try {
-                        existing.cancel();
-                    } catch (Exception e) {
-                        logger.debug("Could not cancel timer for lobby {} during cleanup: {}", lobby.getId(), e.getMessage());
-                    }
-                }
+                cancelLobbyTimer(lobby.getId());
                 eventSessionDAO.nullifyLobbyReferences(lobby.getId());
                 lobbyDAO.markAsDeleted(lobby);
             }
@@ -334,16 +442,19 @@ public class LobbyCountdownBO {
         try {
             logger.info("REFRESH_WAITING: Job started - searching for waiting lobbies");
             
-            // Trouver tous les lobbies publics avec 0 ou 1 joueur
-            List<LobbyEntity> waitingLobbies = lobbyDAO.findAllWithOnePlayer();
+            // Lobbies publics avec 0 ou 1 joueur, tenus à jour en mémoire à chaque arrivée/départ
+            List<Long> waitingLobbyIds = openLobbyIndexBO.findWaitingPublic();
             
-            logger.info("REFRESH_WAITING: Found {} lobbies with 0-1 player(s)", waitingLobbies.size());
+            logger.info("REFRESH_WAITING: Found {} lobbies with 0-1 player(s)", waitingLobbyIds.size());
             
             int refreshedCount = 0;
             int deletedCount = 0;
             
-            for (LobbyEntity lobby : waitingLobbies) {
-                Long lobbyId = lobby.getId();
+            for (Long lobbyId : waitingLobbyIds) {
+                LobbyEntity lobby = findActiveLobby(lobbyId);
+                if (lobby == null) {
+                    continue;
+                }
                 
                 // CRITIQUE : Double-vérification du nombre réel d'entrants en base
                 // Car le cache JPA peut être périmé (joueur qui a quitté/décliné)
@@ -408,6 +519,21 @@ public class LobbyCountdownBO {
         }
     }
     
+    /**
+     * Relit un lobby de l'index en base. Un lobby supprimé ou désactivé entre-temps est retiré de l'index.
+     *
+     * @param lobbyId L'ID du lobby
+     * @return le lobby, ou null s'il n'est plus actif
+     */
+    private LobbyEntity findActiveLobby(Long lobbyId) {
+        LobbyEntity lobby = lobbyDAO.find(lobbyId);
+        if (lobby == null || !Boolean.TRUE.equals(lobby.getIsActive())) {
+            openLobbyIndexBO.remove(lobbyId);
+            return null;
+        }
+        return lobby;
+    }
+
     /**
      * Nettoie périodiquement les lobbies Race Again expirés.
      * S'exécute toutes les 30 secondes pour éviter l'accumulation de lobbies fantômes.
@@ -423,33 +549,30 @@ public class LobbyCountdownBO {
         }
     }
 
-    @Timeout
-    @Lock(LockType.READ)
-    public void onTimeout(Timer timer) {
-        Object info = timer.getInfo();
-        
-        // Distinguer entre les timers de démarrage de lobby (Long) et de suppression différée (String)
-        if (info instanceof String && ((String) info).startsWith("DELETE_EMPTY_")) {
-            // Timer de suppression différée d'un lobby Race Again vide
-            String infoStr = (String) info;
-            Long lobbyId = Long.parseLong(infoStr.substring("DELETE_EMPTY_".length()));
-            emptyLobbyDeletionTimers.remove(lobbyId);
-            handleEmptyRaceAgainLobbyDeletion(lobbyId);
-            return;
-        }
-        
-        // Timer de démarrage de lobby normal
-        Long lobbyId = (Long) info;
-
-        // SENTINEL : si cancelLobbyTimer a déjà retiré ce lobbyId de la map,
+    /**
+     * Fin du décompte d'un lobby : lance la course si assez de joueurs sont encore présents.
+     * Appelé par la roue de timers via la vue métier du bean (transaction conteneur) ; en cas d'exception, la
+     * transaction est annulée et le lancement est réarmé (voir {@link #retryLaunch}).
+     *
+     * @param lobbyId L'ID du lobby
+     * @param timeout Le timer déclenché
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void launchLobby(Long lobbyId, HashedWheelTimer.Timeout timeout) {
+        // SENTINEL : si cancelLobbyTimer a déjà retiré ce timer de la map (ou l'a remplacé),
         // cela signifie que le timer a été annulé juste avant (ou pendant) son déclenchement.
         // On abandonne immédiatement pour éviter de lancer la course après un départ de joueur.
-        Timer self = activeTimers.remove(lobbyId);
-        if (self == null) {
+        if (!activeTimers.remove(lobbyId, timeout)) {
             logger.info("Lobby {} timer was cancelled before running — aborting launch", lobbyId);
             return;
         }
 
+        long lateness = timeout.getLatenessMillis();
+        latenessHistogram.update(lateness);
+        if (lateness > LATE_LAUNCH_WARN_MS) {
+            logger.warn("LOBBY_LAUNCH: Lobby {} countdown fired {} ms late", lobbyId, lateness);
+        }
+
         LobbyEntity lobbyEntity = lobbyDAO.find(lobbyId);
 
         if (lobbyEntity == null) {
@@ -11,20 +11,28 @@ import javax.ejb.Lock;
 import javax.ejb.LockType;
 
 import com.soapboxrace.core.events.PersonaPresenceUpdated;
+import com.soapboxrace.core.events.RaceNowQueueJoined;
+import com.soapboxrace.core.events.RaceNowQueueLeft;
 import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisFuture;
 import io.lettuce.core.ScanIterator;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.ejb.Asynchronous;
+import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.soapboxrace.core.jpa.EventEntity;
 import com.soapboxrace.core.xmpp.XmppChat;
@@ -45,6 +53,8 @@ import com.soapboxrace.core.xmpp.OpenFireSoapBoxCli;
 @Lock(LockType.READ)
 public class MatchmakingBO {
 
+    private static final long REDIS_TIMEOUT_MS = 2000;
+
     @Inject
     private RedisBO redisBO;
 
@@ -57,6 +67,12 @@ public class MatchmakingBO {
     @Inject
     private Logger logger;
 
+    @Inject
+    private Event<RaceNowQueueJoined> raceNowQueueJoinedEvent;
+
+    @Inject
+    private Event<RaceNowQueueLeft> raceNowQueueLeftEvent;
+
     private StatefulRedisConnection<String, String> redisConnection;
 
     @PostConstruct
@@ -199,6 +215,49 @@ public class MatchmakingBO {
         return false;
     }
 
+    /**
+     * Checks which of the given event IDs are ignored by the given persona ID.
+     * Both the temporary keys and the legacy set are fetched with one MGET and one SMEMBERS,
+     * sent together on the async API so the whole lookup costs a single round-trip.
+     *
+     * @param personaId the persona ID
+     * @param eventIds  the event IDs to check
+     * @return a bit set where bit {@code i} is set if {@code eventIds[i]} is ignored
+     */
+    public BitSet findIgnoredEvents(long personaId, int[] eventIds) {
+        BitSet ignored = new BitSet(eventIds.length);
+
+        if (this.redisConnection == null || eventIds.length == 0) {
+            return ignored;
+        }
+
+        try {
+            String[] temporaryKeys = new String[eventIds.length];
+            for (int i = 0; i < eventIds.length; i++) {
+                temporaryKeys[i] = "ignored_event." + personaId + "." + eventIds[i];
+            }
+
+            RedisAsyncCommands<String, String> async = this.redisConnection.async();
+            RedisFuture<List<KeyValue<String, String>>> temporaryFuture = async.mget(temporaryKeys);
+            RedisFuture<Set<String>> legacyFuture = async.smembers("ignored_events." + personaId);
+
+            List<KeyValue<String, String>> temporaryValues = temporaryFuture.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            Set<String> legacyIgnored = legacyFuture.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+            for (int i = 0; i < eventIds.length; i++) {
+                if (temporaryValues.get(i).hasValue() || legacyIgnored.contains(Integer.toString(eventIds[i]))) {
+                    ignored.set(i);
+                }
+            }
+
+            logger.debug("PersonaId={} ignored {}/{} events (batched check)", personaId, ignored.cardinality(), eventIds.length);
+        } catch (Exception e) {
+            logger.error("Redis error in findIgnoredEvents for PersonaId={}: {}", personaId, e.getMessage());
+        }
+
+        return ignored;
+    }
+
     /**
      * Ignore temporairement un événement pour un joueur (sans message de chat).
      * Utilisé quand un joueur quitte explicitement un lobby : empêche un re-match immédiat
@@ -261,20 +320,21 @@ public class MatchmakingBO {
                 
                 // Stocker les informations du joueur dans une hash map Redis dédiée à RaceNow
                 String raceNowKey = "racenow_queue:" + personaId;
+                long queuedAt = System.currentTimeMillis();
                 Map<String, String> data = new HashMap<>();
                 data.put("carClass", carClass.toString());
                 data.put("level", level.toString());
-                data.put("timestamp", String.valueOf(System.currentTimeMillis()));
+                data.put("timestamp", String.valueOf(queuedAt));
                 
                 this.redisConnection.sync().hmset(raceNowKey, data);
                 
                 // Ajouter à un set pour un accès rapide
                 this.redisConnection.sync().sadd("racenow_active_players", personaId.toString());
                 
-                // Déclencher un scan immédiat pour ce joueur
-                triggerImmediateScanForPlayer(personaId);
+                // Le matchmaker traite le joueur dès l'événement, sans attendre le balayage de secours
+                this.raceNowQueueJoinedEvent.fire(new RaceNowQueueJoined(personaId, carClass, level, queuedAt));
                 
-                logger.info("RACENOW: SUCCESS - PersonaId={} added to RaceNow queue with immediate scan triggered", personaId);
+                logger.info("RACENOW: SUCCESS - PersonaId={} added to RaceNow queue", personaId);
                 
                 // Diagnostic pour vérifier que l'ajout a bien fonctionné
                 diagnoseRaceNowQueueState(personaId);
@@ -301,6 +361,8 @@ public class MatchmakingBO {
                 logger.error("Redis error in removePlayerFromRaceNowQueue for PersonaId={}: {}", personaId, e.getMessage());
             }
         }
+
+        this.raceNowQueueLeftEvent.fire(new RaceNowQueueLeft(personaId));
     }
 
     /**
@@ -354,42 +416,33 @@ public class MatchmakingBO {
     }
 
     /**
-     * Force un scan immédiat pour un joueur spécifique qui vient de se mettre en queue RaceNow
-     * Ceci évite d'attendre le prochain cycle automatique de 5 secondes
+     * Gets the RaceNow queue data of every queued player.
+     * The per-player HGETALL commands are sent together on the async API.
      *
-     * @param personaId The ID of the persona to scan immediately
+     * @return Map of persona ID (as stored in the queue set) to its queue data; players without data map to an empty map
      */
-    public void triggerImmediateScanForPlayer(Long personaId) {
-        if (this.redisConnection != null) {
-            try {
-                this.redisConnection.sync().sadd("racenow_immediate_scan", personaId.toString());
-                this.redisConnection.sync().expire("racenow_immediate_scan", 30);
-                logger.debug("PersonaId={} marked for immediate RaceNow scan", personaId);
-            } catch (Exception e) {
-                logger.error("Redis error in triggerImmediateScanForPlayer for PersonaId={}: {}", personaId, e.getMessage());
-            }
-        }
-    }
+    public Map<String, Map<String, String>> getRaceNowQueueEntries() {
+        Map<String, Map<String, String>> entries = new HashMap<>();
 
-    /**
-     * Vérifie et traite les joueurs marqués pour un scan immédiat
-     *
-     * @return Set des joueurs à scanner immédiatement
-     */
-    public Set<String> getAndClearImmediateScanPlayers() {
         if (this.redisConnection != null) {
             try {
-                Set<String> players = this.redisConnection.sync().smembers("racenow_immediate_scan");
-                if (!players.isEmpty()) {
-                    this.redisConnection.sync().del("racenow_immediate_scan");
-                    logger.debug("Found {} players for immediate scan: {}", players.size(), players);
+                Set<String> players = this.redisConnection.sync().smembers("racenow_active_players");
+                RedisAsyncCommands<String, String> async = this.redisConnection.async();
+                Map<String, RedisFuture<Map<String, String>>> futures = new HashMap<>();
+
+                for (String player : players) {
+                    futures.put(player, async.hgetall("racenow_queue:" + player));
+                }
+
+                for (Map.Entry<String, RedisFuture<Map<String, String>>> future : futures.entrySet()) {
+                    entries.put(future.getKey(), future.getValue().get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS));
                 }
-                return players;
             } catch (Exception e) {
-                logger.error("Redis error in getAndClearImmediateScanPlayers: {}", e.getMessage());
+                logger.error("Redis error in getRaceNowQueueEntries: {}", e.getMessage());
             }
         }
-        return new HashSet<>();
+
+        return entries;
     }
 
     /**
@@ -436,15 +489,8 @@ public class MatchmakingBO {
                 } else {
                     logger.info("DIAGNOSTIC: PersonaId={} queue data: {}", personaId, queueData);
                 }
-                
-                boolean inImmediateScan = this.redisConnection.sync().sismember("racenow_immediate_scan", personaId.toString());
-                logger.info("DIAGNOSTIC: PersonaId={} in immediate scan: {}", personaId, inImmediateScan);
             }
             
-            // Vérifier les scans immédiats
-            Set<String> immediatePlayers = this.redisConnection.sync().smembers("racenow_immediate_scan");
-            logger.info("DIAGNOSTIC: Players in immediate scan queue: {} ({})", immediatePlayers.size(), immediatePlayers);
-            
         } catch (Exception e) {
             logger.error("DIAGNOSTIC: Exception while checking queue state: {}", e.getMessage(), e);
         }
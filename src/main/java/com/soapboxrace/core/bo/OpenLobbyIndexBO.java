@@ -0,0 +1,452 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.dao.LobbyDAO;
+import com.soapboxrace.core.events.LobbyOpened;
+import com.soapboxrace.core.jpa.EventEntity;
+import com.soapboxrace.core.jpa.LobbyEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the open public lobbies, bucketed by event car class and level band.
+ * <p>
+ * The index is maintained by {@link LobbyDAO} (insert/update/soft delete) and by {@link LobbyBO}
+ * (entrant join/leave), so that Race Now matchmaking can be answered without querying the LOBBY table.
+ * The same updates maintain the set of waiting lobbies (active lobbies with 0 or 1 entrant, private ones included),
+ * used by the {@link LobbyCountdownBO} maintenance jobs.
+ * Entries are only hints: the lobby is always re-read from the database before an invitation is sent.
+ * A {@link LobbyOpened} event is fired whenever a lobby gains a free seat, so that queued players can be matched
+ * without waiting for the RaceNow sweep.
+ * A periodic resync rebuilds the index from the database to recover from rolled back transactions.
+ */
+@Startup
+@Singleton
+@Lock(LockType.READ)
+public class OpenLobbyIndexBO {
+    private static final Logger logger = LoggerFactory.getLogger(OpenLobbyIndexBO.class);
+
+    private static final int OPEN_CLASS_HASH = 607077938;
+
+    private static final int LEVEL_BAND_SIZE = 10;
+
+    private final Map<Long, OpenLobby> lobbiesById = new ConcurrentHashMap<>();
+
+    private final Map<Long, Set<Long>> buckets = new ConcurrentHashMap<>();
+
+    private final Map<Long, WaitingLobby> waitingLobbies = new ConcurrentHashMap<>();
+
+    @Inject
+    private LobbyDAO lobbyDAO;
+
+    @Inject
+    private Event<LobbyOpened> lobbyOpenedEvent;
+
+    @PostConstruct
+    public void init() {
+        resync();
+    }
+
+    // Injection hors conteneur (tests, benchmarks)
+    void setLobbyDAO(LobbyDAO lobbyDAO) {
+        this.lobbyDAO = lobbyDAO;
+    }
+
+    void setLobbyOpenedEvent(Event<LobbyOpened> lobbyOpenedEvent) {
+        this.lobbyOpenedEvent = lobbyOpenedEvent;
+    }
+
+    /**
+     * Rebuilds the index from the database.
+     */
+    @Schedule(minute = "*", hour = "*", persistent = false)
+    public void resync() {
+        try {
+            List<LobbyEntity> lobbies = new ArrayList<>(lobbyDAO.findAllActivePublic());
+            lobbies.addAll(lobbyDAO.findAllActivePrivateWaiting());
+            Set<Long> seen = ConcurrentHashMap.newKeySet();
+
+            for (LobbyEntity lobbyEntity : lobbies) {
+                update(lobbyEntity);
+                seen.add(lobbyEntity.getId());
+            }
+
+            for (Long lobbyId : new ArrayList<>(lobbiesById.keySet())) {
+                if (!seen.contains(lobbyId)) {
+                    remove(lobbyId);
+                }
+            }
+
+            for (Long lobbyId : new ArrayList<>(waitingLobbies.keySet())) {
+                if (!seen.contains(lobbyId)) {
+                    remove(lobbyId);
+                }
+            }
+
+            logger.debug("OPEN_LOBBY_INDEX: Resynced {} public lobbies, {} waiting lobbies", lobbiesById.size(),
+                    waitingLobbies.size());
+        } catch (Exception e) {
+            logger.error("OPEN_LOBBY_INDEX: Resync failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Inserts or refreshes the index entry of the given lobby from its current state.
+     * Inactive lobbies are removed from the index, private lobbies are only kept in the waiting set.
+     *
+     * @param lobbyEntity the lobby
+     */
+    public void update(LobbyEntity lobbyEntity) {
+        if (lobbyEntity == null || lobbyEntity.getId() == null) {
+            return;
+        }
+
+        if (Boolean.FALSE.equals(lobbyEntity.getIsActive())) {
+            remove(lobbyEntity.getId());
+            return;
+        }
+
+        if (lobbyEntity.getEntrants().size() <= 1) {
+            waitingLobbies.put(lobbyEntity.getId(), new WaitingLobby(lobbyEntity));
+        } else {
+            waitingLobbies.remove(lobbyEntity.getId());
+        }
+
+        if (Boolean.TRUE.equals(lobbyEntity.getIsPrivate()) || lobbyEntity.getEvent() == null) {
+            removeOpen(lobbyEntity.getId());
+            return;
+        }
+
+        OpenLobby openLobby = new OpenLobby(lobbyEntity);
+        OpenLobby previous = lobbiesById.put(openLobby.getLobbyId(), openLobby);
+
+        if (previous == null || previous.getEventId() != openLobby.getEventId()) {
+            if (previous != null) {
+                unbucket(previous);
+            }
+
+            for (int band = levelBand(openLobby.getMinLevel()); band <= levelBand(openLobby.getMaxLevel()); band++) {
+                buckets.computeIfAbsent(bucketKey(openLobby.getCarClassHash(), band), k -> ConcurrentHashMap.newKeySet())
+                        .add(openLobby.getLobbyId());
+            }
+        }
+
+        if (openLobby.hasFreeSeat() && (previous == null || !previous.hasFreeSeat())) {
+            lobbyOpenedEvent.fire(new LobbyOpened(openLobby.getLobbyId()));
+        }
+    }
+
+    /**
+     * Removes the given lobby from the index.
+     *
+     * @param lobbyId the lobby ID
+     */
+    public void remove(Long lobbyId) {
+        if (lobbyId == null) {
+            return;
+        }
+
+        waitingLobbies.remove(lobbyId);
+        removeOpen(lobbyId);
+    }
+
+    /**
+     * Finds the open lobbies a persona of the given level can join with the given car class.
+     * Matches the semantics of {@code LobbyEntity.findAllOpenByCarClass}: event class must be open or equal
+     * to the car class, the lobby must not be locked to another class, and it must have between 1 and
+     * {@code maxPlayers - 1} entrants and have been started within the search window.
+     *
+     * @param carClassHash the car class hash
+     * @param level        the persona level
+     * @return the matching lobbies
+     */
+    public List<OpenLobby> findOpen(int carClassHash, int level) {
+        long windowStart = System.currentTimeMillis() - lobbyDAO.getLobbySearchWindowSeconds() * 1000L;
+        List<OpenLobby> result = new ArrayList<>();
+
+        collect(bucketKey(carClassHash, levelBand(level)), level, level, windowStart, result);
+
+        if (carClassHash != OPEN_CLASS_HASH) {
+            collect(bucketKey(OPEN_CLASS_HASH, levelBand(level)), level, level, windowStart, result);
+        }
+
+        result.removeIf(l -> l.getLockedCarClassHash() != null && l.getLockedCarClassHash() != carClassHash);
+
+        return result;
+    }
+
+    /**
+     * Finds the open lobbies a persona of the given level can join, regardless of car class.
+     * Matches the semantics of {@code LobbyEntity.findAllOpenByLevel}.
+     *
+     * @param level the persona level
+     * @return the matching lobbies
+     */
+    public List<OpenLobby> findOpenByLevel(int level) {
+        return findOpenInBand(levelBand(level), level, level);
+    }
+
+    /**
+     * Finds the open lobbies accepting at least one level of the level band containing the given level,
+     * regardless of car class. The caller is responsible for checking each persona's level against the event.
+     *
+     * @param level any level of the band
+     * @return the matching lobbies
+     */
+    public List<OpenLobby> findOpenByLevelBand(int level) {
+        int band = levelBand(level);
+
+        return findOpenInBand(band, band * LEVEL_BAND_SIZE, band * LEVEL_BAND_SIZE + LEVEL_BAND_SIZE - 1);
+    }
+
+    /**
+     * Gets the index entry of the given lobby.
+     *
+     * @param lobbyId the lobby ID
+     * @return the entry, or {@code null} if the lobby is not indexed
+     */
+    public OpenLobby get(Long lobbyId) {
+        return lobbyId == null ? null : lobbiesById.get(lobbyId);
+    }
+
+    /**
+     * Finds the public lobbies waiting for players (0 or 1 entrant).
+     *
+     * @return the lobby IDs
+     */
+    public List<Long> findWaitingPublic() {
+        List<Long> result = new ArrayList<>();
+
+        for (WaitingLobby waitingLobby : waitingLobbies.values()) {
+            if (!waitingLobby.isPrivate) {
+                result.add(waitingLobby.lobbyId);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds the lobbies without entrants, private ones included, started before the given time.
+     *
+     * @param cutoff the cutoff time
+     * @return the lobby IDs
+     */
+    public List<Long> findEmptyStartedBefore(LocalDateTime cutoff) {
+        long cutoffMillis = toEpochMilli(cutoff);
+        List<Long> result = new ArrayList<>();
+
+        for (WaitingLobby waitingLobby : waitingLobbies.values()) {
+            if (waitingLobby.entrantCount == 0 && waitingLobby.startedAt < cutoffMillis) {
+                result.add(waitingLobby.lobbyId);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds the indexed public lobbies started before the given time, whatever their number of entrants.
+     *
+     * @param cutoff the cutoff time
+     * @return the lobby IDs
+     */
+    public List<Long> findStartedBefore(LocalDateTime cutoff) {
+        long cutoffMillis = toEpochMilli(cutoff);
+        List<Long> result = new ArrayList<>();
+
+        for (OpenLobby openLobby : lobbiesById.values()) {
+            if (openLobby.startedAt < cutoffMillis) {
+                result.add(openLobby.lobbyId);
+            }
+        }
+
+        return result;
+    }
+
+    public int size() {
+        return lobbiesById.size();
+    }
+
+    public int getWaitingCount() {
+        return waitingLobbies.size();
+    }
+
+    private void removeOpen(Long lobbyId) {
+        OpenLobby previous = lobbiesById.remove(lobbyId);
+
+        if (previous != null) {
+            unbucket(previous);
+        }
+    }
+
+    private List<OpenLobby> findOpenInBand(int band, int fromLevel, int toLevel) {
+        long windowStart = System.currentTimeMillis() - lobbyDAO.getLobbySearchWindowSeconds() * 1000L;
+        List<OpenLobby> result = new ArrayList<>();
+
+        for (Map.Entry<Long, Set<Long>> bucket : buckets.entrySet()) {
+            if ((int) (bucket.getKey() & 0xFFFFFFFFL) == band) {
+                collect(bucket.getKey(), fromLevel, toLevel, windowStart, result);
+            }
+        }
+
+        return result;
+    }
+
+    private void collect(long bucketKey, int fromLevel, int toLevel, long windowStart, List<OpenLobby> result) {
+        Set<Long> lobbyIds = buckets.getOrDefault(bucketKey, Collections.emptySet());
+
+        for (Long lobbyId : lobbyIds) {
+            OpenLobby openLobby = lobbiesById.get(lobbyId);
+
+            if (openLobby != null && openLobby.isJoinable(fromLevel, toLevel, windowStart)) {
+                result.add(openLobby);
+            }
+        }
+    }
+
+    private void unbucket(OpenLobby openLobby) {
+        for (int band = levelBand(openLobby.getMinLevel()); band <= levelBand(openLobby.getMaxLevel()); band++) {
+            Set<Long> bucket = buckets.get(bucketKey(openLobby.getCarClassHash(), band));
+
+            if (bucket != null) {
+                bucket.remove(openLobby.getLobbyId());
+            }
+        }
+    }
+
+    private static int levelBand(int level) {
+        return Math.max(0, level) / LEVEL_BAND_SIZE;
+    }
+
+    private static long bucketKey(int carClassHash, int band) {
+        return ((long) carClassHash << 32) | (band & 0xFFFFFFFFL);
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+    }
+
+    /**
+     * Lobby waiting for players, as stored in the waiting set.
+     */
+    private static class WaitingLobby {
+        private final Long lobbyId;
+        private final boolean isPrivate;
+        private final int entrantCount;
+        private final long startedAt;
+
+        WaitingLobby(LobbyEntity lobbyEntity) {
+            this.lobbyId = lobbyEntity.getId();
+            this.isPrivate = Boolean.TRUE.equals(lobbyEntity.getIsPrivate());
+            this.entrantCount = lobbyEntity.getEntrants().size();
+            this.startedAt = toEpochMilli(lobbyEntity.getStartedTime());
+        }
+    }
+
+    /**
+     * Immutable snapshot of an open lobby, as stored in the index.
+     */
+    public static class OpenLobby {
+        private final Long lobbyId;
+        private final EventEntity event;
+        private final int eventId;
+        private final int carClassHash;
+        private final int minLevel;
+        private final int maxLevel;
+        private final int maxPlayers;
+        private final Integer lockedCarClassHash;
+        private final int entrantCount;
+        private final long startedAt;
+
+        OpenLobby(LobbyEntity lobbyEntity) {
+            EventEntity eventEntity = lobbyEntity.getEvent();
+
+            this.lobbyId = lobbyEntity.getId();
+            this.event = eventEntity;
+            this.eventId = eventEntity.getId();
+            this.carClassHash = eventEntity.getCarClassHash();
+            this.minLevel = eventEntity.getMinLevel();
+            this.maxLevel = eventEntity.getMaxLevel();
+            this.maxPlayers = eventEntity.getMaxPlayers();
+            this.lockedCarClassHash = lobbyEntity.getLockedCarClassHash();
+            this.entrantCount = lobbyEntity.getEntrants().size();
+            this.startedAt = toEpochMilli(lobbyEntity.getStartedTime());
+        }
+
+        boolean hasFreeSeat() {
+            return entrantCount > 0 && entrantCount < maxPlayers;
+        }
+
+        public boolean acceptsLevel(int level) {
+            return level >= minLevel && level <= maxLevel;
+        }
+
+        boolean isJoinable(int fromLevel, int toLevel, long windowStart) {
+            return toLevel >= minLevel && fromLevel <= maxLevel && hasFreeSeat()
+                    && startedAt >= windowStart && startedAt <= System.currentTimeMillis();
+        }
+
+        public Long getLobbyId() {
+            return lobbyId;
+        }
+
+        public EventEntity getEvent() {
+            return event;
+        }
+
+        public int getEventId() {
+            return eventId;
+        }
+
+        public int getCarClassHash() {
+            return carClassHash;
+        }
+
+        public int getMinLevel() {
+            return minLevel;
+        }
+
+        public int getMaxLevel() {
+            return maxLevel;
+        }
+
+        public int getMaxPlayers() {
+            return maxPlayers;
+        }
+
+        public Integer getLockedCarClassHash() {
+            return lockedCarClassHash;
+        }
+
+        public int getEntrantCount() {
+            return entrantCount;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+    }
+}
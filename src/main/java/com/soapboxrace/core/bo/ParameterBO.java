@@ -75,6 +75,7 @@ public class ParameterBO {
         DEFAULT_PARAMETERS.put("SBRWR_NOPU_ENABLE_WARNING_ONFREEROAM", "false");
         DEFAULT_PARAMETERS.put("SBRWR_NOPU_SHOW_NOTENOUGHVOTES", "false");
         DEFAULT_PARAMETERS.put("SBRWR_NR_ENABLECREW", "false");
+        DEFAULT_PARAMETERS.put("SBRWR_NATIVE_ACHIEVEMENT_TRIGGERS", "true");
         DEFAULT_PARAMETERS.put("SBRWR_RACENOW_PERSISTENT_ENABLED", "false");
         DEFAULT_PARAMETERS.put("SBRWR_READY_ENABLE_VOTEMESSAGES", "false");
         DEFAULT_PARAMETERS.put("SBRWR_SEND_ADMIN_ACTION", "false");
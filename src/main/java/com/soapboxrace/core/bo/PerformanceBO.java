@@ -7,7 +7,6 @@
 package com.soapboxrace.core.bo;
 
 import com.soapboxrace.core.dao.CarClassesDAO;
-import com.soapboxrace.core.dao.ProductDAO;
 import com.soapboxrace.core.dao.CarClassListDAO;
 import com.soapboxrace.core.jpa.*;
 
@@ -25,7 +24,7 @@ public class PerformanceBO {
     private CarClassesDAO carClassesDAO;
 
     @Inject
-    private ProductDAO productDAO;
+    private ProductRegistryBO productRegistryBO;
 
     @Inject
     private CarClassListDAO carClassListDAO;
@@ -47,7 +46,7 @@ public class PerformanceBO {
             Set<PerformancePartEntity> performanceParts = carEntity.getPerformanceParts();
             for (PerformancePartEntity performancePartEntity : performanceParts) {
                 int perfHash = performancePartEntity.getPerformancePartAttribHash();
-                ProductEntity productEntity = productDAO.findByHash(perfHash);
+                ProductEntity productEntity = productRegistryBO.findByHash(perfHash);
                 topSpeed = productEntity.getTopSpeed() + topSpeed;
                 accel = productEntity.getAccel() + accel;
                 handling = productEntity.getHandling() + handling;
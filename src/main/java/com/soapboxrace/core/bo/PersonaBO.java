@@ -6,11 +6,11 @@
 
 package com.soapboxrace.core.bo;
 
-import com.soapboxrace.core.bo.util.OwnedCarConverter;
 import com.soapboxrace.core.dao.BadgeDefinitionDAO;
 import com.soapboxrace.core.dao.CarDAO;
 import com.soapboxrace.core.dao.PersonaBadgeDAO;
 import com.soapboxrace.core.dao.PersonaDAO;
+import com.soapboxrace.core.events.GarageChanged;
 import com.soapboxrace.core.jpa.BadgeDefinitionEntity;
 import com.soapboxrace.core.jpa.CarEntity;
 import com.soapboxrace.core.jpa.PersonaBadgeEntity;
@@ -21,6 +21,7 @@ import com.soapboxrace.jaxb.http.OwnedCarTrans;
 
 import javax.inject.Inject;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.transaction.Transactional;
 import java.util.List;
 
@@ -47,6 +48,12 @@ public class PersonaBO {
     @Inject
     private CarSlotBO carSlotBO;
 
+    @Inject
+    private GarageCacheBO garageCacheBO;
+
+    @Inject
+    private Event<GarageChanged> garageChangedEvent;
+
     public void updateBadges(Long personaId, BadgeBundle badgeBundle) {
         PersonaEntity personaEntity = personaDAO.find(personaId);
 
@@ -83,15 +90,16 @@ public class PersonaBO {
     }
 
     public void changeDefaultCar(PersonaEntity personaEntity, Long defaultCarId) {
-        List<CarEntity> carSlotList = carDAO.findByPersonaId(personaEntity.getPersonaId());
+        List<OwnedCarTrans> carSlotList = garageCacheBO.get(personaEntity.getPersonaId()).getCars();
         int i = 0;
-        for (CarEntity carSlotEntity : carSlotList) {
-            if (carSlotEntity.getId().equals(defaultCarId)) {
+        for (OwnedCarTrans carSlot : carSlotList) {
+            if (defaultCarId.equals(carSlot.getId())) {
                 break;
             }
             i++;
         }
         personaEntity.setCurCarIndex(i);
+        garageChangedEvent.fire(new GarageChanged(personaEntity.getPersonaId()));
     }
 
     public PersonaEntity getPersonaById(Long personaId) {
@@ -99,38 +107,54 @@ public class PersonaBO {
     }
 
     public CarEntity getDefaultCarEntity(Long personaId) {
-        int carSlotCount = carSlotBO.countPersonasCar(personaId);
+        GarageCacheBO.Garage garage = garageCacheBO.get(personaId);
+        OwnedCarTrans defaultCar = garage.getDefaultCar();
+
+        if (defaultCar == null) {
+            return null;
+        }
 
-        if (carSlotCount > 0) {
+        if (garage.isCurCarIndexOutOfRange()) {
             PersonaEntity personaEntity = personaDAO.find(personaId);
-            int curCarIndex = personaEntity.getCurCarIndex();
+            personaEntity.setCurCarIndex(garage.getDefaultCarIndex());
+            personaDAO.update(personaEntity);
+            garageChangedEvent.fire(new GarageChanged(personaId));
+        }
 
-            if (curCarIndex >= carSlotCount) {
-                curCarIndex = carSlotCount - 1;
-                personaEntity.setCurCarIndex(curCarIndex);
-                personaDAO.update(personaEntity);
-            }
+        // L'ID vient du garage en cache, la voiture elle-même est toujours lue en base
+        CarEntity carEntity = carDAO.find(defaultCar.getId());
 
-            CarEntity carEntity = carDAO.findByPersonaIdEager(personaId, curCarIndex);
-            carEntity.getPaints().size();
-            carEntity.getPerformanceParts().size();
-            carEntity.getSkillModParts().size();
-            carEntity.getVinyls().size();
-            carEntity.getVisualParts().size();
+        if (carEntity == null) {
+            // Garage en cache périmé : rechargement
+            garageCacheBO.invalidate(personaId);
+            defaultCar = garageCacheBO.getDefaultCar(personaId);
+            carEntity = defaultCar != null ? carDAO.find(defaultCar.getId()) : null;
 
-            return carEntity;
+            if (carEntity == null) {
+                return null;
+            }
         }
 
-        return null;
+        carEntity.getPaints().size();
+        carEntity.getPerformanceParts().size();
+        carEntity.getSkillModParts().size();
+        carEntity.getVinyls().size();
+        carEntity.getVisualParts().size();
+
+        return carEntity;
     }
 
+    /**
+     * @param personaId the persona ID
+     * @return the default car, shared between requests (must not be modified), or an empty car if the garage is empty
+     */
     public OwnedCarTrans getDefaultCar(Long personaId) {
-        CarEntity carEntity = getDefaultCarEntity(personaId);
-        if (carEntity == null) {
+        OwnedCarTrans defaultCar = garageCacheBO.getDefaultCar(personaId);
+        if (defaultCar == null) {
             return new OwnedCarTrans();
         }
 
-        return OwnedCarConverter.entity2Trans(carEntity);
+        return defaultCar;
     }
 
     public void repairAllCars(PersonaEntity personaEntity) {
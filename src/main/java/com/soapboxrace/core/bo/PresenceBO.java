@@ -6,12 +6,20 @@
 
 package com.soapboxrace.core.bo;
 import javax.ejb.Asynchronous;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 
 import com.soapboxrace.core.events.PersonaPresenceUpdated;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScanIterator;
+import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import org.slf4j.Logger;
 
@@ -19,8 +27,22 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Présence des personas, stockée dans Redis sous la forme :
+ * <ul>
+ *     <li>un hash {@code game_presence} : personaId -> "presence|expiration (epoch ms)"</li>
+ *     <li>un sorted set {@code game_presence_expiry} : personaId scoré par son expiration</li>
+ * </ul>
+ * Une lecture (ou la lecture d'une liste d'amis) est un seul HGET/HMGET, et le nettoyage ne parcourt
+ * que les entrées expirées grâce au sorted set.
+ */
 @Startup
 @Singleton
 public class PresenceBO {
@@ -29,6 +51,32 @@ public class PresenceBO {
     public static final Long PRESENCE_ONLINE = 1L;
     public static final Long PRESENCE_IN_RACE = 2L;
 
+    private static final String PRESENCE_HASH = "game_presence";
+    private static final String PRESENCE_EXPIRY = "game_presence_expiry";
+    private static final long REDIS_TIMEOUT_MS = 2000;
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+
+    // Prolonge une présence encore valide, sans toucher à son état (atomique vis-à-vis des mises à jour)
+    private static final String REFRESH_SCRIPT =
+            "local v = redis.call('HGET', KEYS[1], ARGV[1]) " +
+            "if not v then return -1 end " +
+            "local sep = string.find(v, '|', 1, true) " +
+            "if not sep then return -1 end " +
+            "local expiresAt = tonumber(string.sub(v, sep + 1)) " +
+            "if expiresAt <= tonumber(ARGV[2]) then return -1 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], string.sub(v, 1, sep) .. ARGV[3]) " +
+            "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1]) " +
+            "return math.floor((expiresAt - tonumber(ARGV[2])) / 1000)";
+
+    // Retire un lot de présences expirées des deux structures
+    private static final String CLEANUP_SCRIPT =
+            "local ids = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "if #ids > 0 then " +
+            "redis.call('ZREM', KEYS[2], unpack(ids)) " +
+            "redis.call('HDEL', KEYS[1], unpack(ids)) " +
+            "end " +
+            "return ids";
+
     @Inject
     private RedisBO redisBO;
 
@@ -59,9 +107,7 @@ public class PresenceBO {
     @PreDestroy
     public void shutdown() {
         if (this.connection != null) {
-            List<String> keys = this.connection.sync().keys("game_presence.*");
-            if (!keys.isEmpty())
-                this.connection.sync().del(keys.toArray(new String[0]));
+            this.connection.sync().del(PRESENCE_HASH, PRESENCE_EXPIRY);
             this.pubSubConnection.close();
         }
     }
@@ -80,11 +126,7 @@ public class PresenceBO {
                     return;
                 }
                 
-                this.connection.sync().setex(
-                    getPresenceKey(personaId),
-                    this.parameterBO.getIntParam("SBRWR_PRESENCEEXPIRATIONTIME", 300),
-                    presence.toString()
-                );
+                storePresence(personaId, presence);
                 if (this.pubSubConnection != null) {
                     this.pubSubConnection.sync().publish("game_presence_updates", personaId + "|" + presence);
                 }
@@ -158,11 +200,9 @@ public class PresenceBO {
      */
     public void refreshPresence(long personaId) {
         if (this.connection != null) {
-            String presenceKey = getPresenceKey(personaId);
-            Long ttl = this.connection.sync().ttl(presenceKey);
+            long ttl = extendPresence(personaId);
             
-            if (ttl != null && ttl > 0) {
-                this.connection.sync().expire(presenceKey, this.parameterBO.getIntParam("SBRWR_PRESENCEEXPIRATIONTIME", 300));
+            if (ttl >= 0) {
                 logger.debug("Refreshed presence TTL for persona {}, was {} seconds", personaId, ttl);
             } else {
                 logger.debug("Presence key missing for persona {}, not restoring automatically", personaId);
@@ -179,11 +219,9 @@ public class PresenceBO {
      */
     public boolean refreshPresenceIfExists(long personaId) {
         if (this.connection != null) {
-            String presenceKey = getPresenceKey(personaId);
-            Long ttl = this.connection.sync().ttl(presenceKey);
+            long ttl = extendPresence(personaId);
             
-            if (ttl != null && ttl > 0) {
-                this.connection.sync().expire(presenceKey, this.parameterBO.getIntParam("SBRWR_PRESENCEEXPIRATIONTIME", 300));
+            if (ttl >= 0) {
                 logger.debug("Refreshed presence TTL for persona {}, was {} seconds", personaId, ttl);
                 return true;
             } else {
@@ -194,11 +232,75 @@ public class PresenceBO {
         return false;
     }
 
+    /**
+     * Rafraîchit en une seule série de commandes pipelinées la présence de plusieurs personas,
+     * seulement pour ceux qui ont déjà une présence active.
+     * @param personaIds IDs des personas
+     * @return nombre de présences rafraîchies
+     */
+    @Lock(LockType.READ)
+    public int refreshPresencesIfExist(Collection<Long> personaIds) {
+        if (this.connection == null || personaIds.isEmpty()) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        String expiresAt = String.valueOf(now + this.parameterBO.getIntParam("SBRWR_PRESENCEEXPIRATIONTIME", 300) * 1000L);
+        String[] keys = {PRESENCE_HASH, PRESENCE_EXPIRY};
+        RedisAsyncCommands<String, String> async = this.connection.async();
+        List<RedisFuture<Long>> futures = new ArrayList<>(personaIds.size());
+
+        for (Long personaId : personaIds) {
+            futures.add(async.eval(REFRESH_SCRIPT, ScriptOutputType.INTEGER, keys,
+                    String.valueOf(personaId), String.valueOf(now), expiresAt));
+        }
+
+        int refreshed = 0;
+
+        for (RedisFuture<Long> future : futures) {
+            try {
+                Long ttl = future.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+                if (ttl != null && ttl >= 0) {
+                    refreshed++;
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to refresh a presence: {}", e.getMessage());
+            }
+        }
+
+        return refreshed;
+    }
+
+    /**
+     * Liste les personas ayant une présence non expirée, d'après le sorted set des expirations.
+     * @return IDs des personas en ligne
+     */
+    @Lock(LockType.READ)
+    public List<Long> getOnlinePersonaIds() {
+        List<Long> personaIds = new ArrayList<>();
+
+        if (this.connection == null) {
+            return personaIds;
+        }
+
+        for (String member : this.connection.sync().zrangebyscore(PRESENCE_EXPIRY,
+                Range.create((double) System.currentTimeMillis(), Double.POSITIVE_INFINITY))) {
+            try {
+                personaIds.add(Long.parseLong(member));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid persona ID in presence expiry set: {}", member);
+            }
+        }
+
+        return personaIds;
+    }
+
     public void removePresence(Long personaId) {
         if (this.connection != null && !personaId.equals(0L)) {
             logger.info("Removing presence for persona {}", personaId);
             updatePresence(personaId, PRESENCE_OFFLINE);
-            this.connection.sync().del(getPresenceKey(personaId));
+            deletePresence(personaId);
         } else {
             logger.warn("Cannot remove presence: invalid personaId {} or Redis connection null", personaId);
         }
@@ -242,8 +344,8 @@ public class PresenceBO {
             logger.warn("Forcing presence offline for persona {} (was: {})", 
                        personaId, getPresenceDescription(currentPresence));
             
-            // Supprimer directement la clé Redis sans passer par updatePresence
-            this.connection.sync().del(getPresenceKey(personaId));
+            // Supprimer directement la présence Redis sans passer par updatePresence
+            deletePresence(personaId);
             
             // Publier la notification de déconnexion
             if (this.pubSubConnection != null) {
@@ -259,6 +361,38 @@ public class PresenceBO {
         }
     }
 
+    /**
+     * Force la mise hors ligne de plusieurs joueurs (expiration des sessions) : une seule suppression Redis pour
+     * tout le lot, puis une notification par persona comme {@link #forcePresenceOffline(Long)}.
+     * @param personaIds IDs des personas
+     */
+    public void forcePresencesOffline(Collection<Long> personaIds) {
+        if (this.connection == null || personaIds.isEmpty()) {
+            return;
+        }
+
+        String[] members = personaIds.stream().map(String::valueOf).toArray(String[]::new);
+        RedisAsyncCommands<String, String> async = this.connection.async();
+        RedisFuture<Long> hdel = async.hdel(PRESENCE_HASH, members);
+        RedisFuture<Long> zrem = async.zrem(PRESENCE_EXPIRY, members);
+
+        try {
+            hdel.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            zrem.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.error("Failed to delete presence for {} personas: {}", members.length, e.getMessage());
+        }
+
+        for (Long personaId : personaIds) {
+            if (this.pubSubConnection != null) {
+                this.pubSubConnection.async().publish("game_presence_updates", personaId + "|" + PRESENCE_OFFLINE);
+            }
+            this.personaPresenceUpdatedEvent.fire(new PersonaPresenceUpdated(personaId, PRESENCE_OFFLINE));
+        }
+
+        logger.info("Forcefully set {} personas to OFFLINE", personaIds.size());
+    }
+
     /**
      * Vérifie si un joueur est actuellement en course
      * @param personaId ID du persona
@@ -301,31 +435,109 @@ public class PresenceBO {
         }
     }
 
+    @Lock(LockType.READ)
     public Long getPresence(Long personaId) {
         if (this.connection == null) {
             logger.warn("Cannot get presence for persona {}: Redis connection is null", personaId);
             return PRESENCE_OFFLINE;
         }
 
-        String value = this.connection.sync().get(getPresenceKey(personaId));
+        String value = this.connection.sync().hget(PRESENCE_HASH, personaId.toString());
+        Long presence = parsePresence(personaId, value, System.currentTimeMillis());
+        logger.debug("Retrieved presence for persona {}: {}", personaId, presence);
+        return presence;
+    }
+
+    /**
+     * Récupère la présence de plusieurs personas (liste d'amis) en un seul HMGET.
+     * @param personaIds IDs des personas
+     * @return présence par persona ID (OFFLINE si absente ou expirée)
+     */
+    @Lock(LockType.READ)
+    public Map<Long, Long> getPresences(Collection<Long> personaIds) {
+        Map<Long, Long> presences = new HashMap<>();
 
+        if (personaIds.isEmpty()) {
+            return presences;
+        }
+
+        if (this.connection == null) {
+            personaIds.forEach(id -> presences.put(id, PRESENCE_OFFLINE));
+            return presences;
+        }
+
+        String[] fields = personaIds.stream().map(String::valueOf).toArray(String[]::new);
+        long now = System.currentTimeMillis();
+
+        for (KeyValue<String, String> keyValue : this.connection.sync().hmget(PRESENCE_HASH, fields)) {
+            Long personaId = Long.parseLong(keyValue.getKey());
+            presences.put(personaId, parsePresence(personaId, keyValue.getValueOrElse(null), now));
+        }
+
+        return presences;
+    }
+
+    private Long parsePresence(Long personaId, String value, long now) {
         if (value == null || value.trim().isEmpty()) {
-            logger.debug("No presence found for persona {}, returning offline", personaId);
             return PRESENCE_OFFLINE;
         }
 
+        int separator = value.indexOf('|');
+
         try {
-            Long presence = Long.parseLong(value);
-            logger.debug("Retrieved presence for persona {}: {}", personaId, presence);
-            return presence;
+            // Entrée expirée mais pas encore nettoyée
+            if (separator < 0 || Long.parseLong(value.substring(separator + 1)) <= now) {
+                return PRESENCE_OFFLINE;
+            }
+
+            return Long.parseLong(value.substring(0, separator));
         } catch (NumberFormatException e) {
             logger.error("Invalid presence value '{}' for persona {}, returning offline", value, personaId);
             return PRESENCE_OFFLINE;
         }
     }
 
-    private String getPresenceKey(Long personaId) {
-        return "game_presence." + personaId;
+    private void storePresence(Long personaId, Long presence) {
+        long expiresAt = System.currentTimeMillis() + this.parameterBO.getIntParam("SBRWR_PRESENCEEXPIRATIONTIME", 300) * 1000L;
+        String member = personaId.toString();
+        RedisAsyncCommands<String, String> async = this.connection.async();
+        RedisFuture<Boolean> hset = async.hset(PRESENCE_HASH, member, presence + "|" + expiresAt);
+        RedisFuture<Long> zadd = async.zadd(PRESENCE_EXPIRY, (double) expiresAt, member);
+
+        try {
+            hset.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            zadd.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.error("Failed to store presence for persona {}: {}", personaId, e.getMessage());
+        }
+    }
+
+    /**
+     * Prolonge la présence d'un persona si elle existe et n'a pas expiré.
+     * @return le TTL restant (en secondes) avant prolongation, ou -1 si aucune présence active
+     */
+    private long extendPresence(long personaId) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + this.parameterBO.getIntParam("SBRWR_PRESENCEEXPIRATIONTIME", 300) * 1000L;
+        Long ttl = this.connection.sync().eval(REFRESH_SCRIPT, ScriptOutputType.INTEGER,
+                new String[]{PRESENCE_HASH, PRESENCE_EXPIRY},
+                String.valueOf(personaId), String.valueOf(now), String.valueOf(expiresAt));
+
+        return ttl != null ? ttl : -1;
+    }
+
+    private void deletePresence(Long personaId) {
+        String member = personaId.toString();
+        RedisAsyncCommands<String, String> async = this.connection.async();
+        RedisFuture<Long> hdel = async.hdel(PRESENCE_HASH, member);
+        RedisFuture<Long> zrem = async.zrem(PRESENCE_EXPIRY, member);
+
+        try {
+            hdel.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            zrem.get(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.error("Failed to delete presence for persona {}: {}", personaId, e.getMessage());
+        }
     }
 
     /**
@@ -343,38 +555,26 @@ public class PresenceBO {
         logger.debug("Starting presence cleanup task");
         
         try {
-            // Récupérer toutes les clés de présence actives
-            List<String> activeKeys = this.connection.sync().keys("game_presence.*");
-            
-            if (activeKeys.isEmpty()) {
-                logger.debug("No active presence keys found");
-                return;
-            }
-            
+            long now = System.currentTimeMillis();
             int expiredCount = 0;
-            int activeCount = 0;
-            
-            for (String key : activeKeys) {
-                Long ttl = this.connection.sync().ttl(key);
-                String personaIdStr = key.substring("game_presence.".length());
-                
-                try {
-                    Long personaId = Long.parseLong(personaIdStr);
+            List<String> expired;
 
-                    if (ttl != null && ttl <= 30L) {
-                        logger.warn("Presence key {} for persona {} has low TTL: {} seconds", key, personaId, ttl);
-                    }
+            // Seules les entrées expirées sont parcourues, par lots
+            do {
+                expired = this.connection.sync().eval(CLEANUP_SCRIPT, ScriptOutputType.MULTI,
+                        new String[]{PRESENCE_HASH, PRESENCE_EXPIRY}, String.valueOf(now), String.valueOf(CLEANUP_BATCH_SIZE));
+                expiredCount += expired.size();
 
-                    if (ttl != null && ttl > 0) {
-                        activeCount++;
-                    } else {
-                        expiredCount++;
-                        logger.info("Removing expired presence key: {}", key);
-                        this.connection.sync().del(key);
-                    }
-                } catch (NumberFormatException e) {
-                    logger.warn("Invalid persona ID in presence key: {}", key);
+                for (String personaId : expired) {
+                    logger.info("Removed expired presence for persona {}", personaId);
                 }
+            } while (expired.size() >= CLEANUP_BATCH_SIZE);
+
+            Long lowTTLCount = this.connection.sync().zcount(PRESENCE_EXPIRY, Range.create((double) now, (double) now + 30_000));
+            Long activeCount = this.connection.sync().zcard(PRESENCE_EXPIRY);
+
+            if (lowTTLCount != null && lowTTLCount > 0) {
+                logger.warn("{} presences have a low TTL (<= 30 seconds)", lowTTLCount);
             }
 
             logger.debug("Presence cleanup completed: {} active, {} expired/removed", activeCount, expiredCount);
@@ -393,10 +593,18 @@ public class PresenceBO {
         }
 
         try {
-            List<String> activeKeys = this.connection.sync().keys("game_presence.*");
+            long now = System.currentTimeMillis();
+            Map<Long, String> entries = new HashMap<>();
+            ScanIterator<KeyValue<String, String>> iterator = ScanIterator.hscan(this.connection.sync(), PRESENCE_HASH);
+
+            while (iterator.hasNext()) {
+                KeyValue<String, String> keyValue = iterator.next();
+                entries.put(Long.parseLong(keyValue.getKey()), keyValue.getValue());
+            }
+
             StringBuilder info = new StringBuilder();
             info.append("Presence Debug Info:\n");
-            info.append("Total active presence keys: ").append(activeKeys.size()).append("\n");
+            info.append("Total active presence keys: ").append(entries.size()).append("\n");
             
             // Statistiques par état
             int onlineCount = 0;
@@ -404,25 +612,31 @@ public class PresenceBO {
             int unknownCount = 0;
             int lowTTLCount = 0;
             
-            if (!activeKeys.isEmpty()) {
-                for (String key : activeKeys) {
-                    String value = this.connection.sync().get(key);
-                    if (value != null) {
-                        Long presenceValue = Long.parseLong(value);
-                        Long ttl = this.connection.sync().ttl(key);
-                        
-                        if (PRESENCE_ONLINE.equals(presenceValue)) {
-                            onlineCount++;
-                        } else if (PRESENCE_IN_RACE.equals(presenceValue)) {
-                            inRaceCount++;
-                        } else {
-                            unknownCount++;
-                        }
-                        
-                        if (ttl != null && ttl <= 30L) {
-                            lowTTLCount++;
-                        }
+            if (!entries.isEmpty()) {
+                StringBuilder details = new StringBuilder();
+
+                for (Map.Entry<Long, String> entry : entries.entrySet()) {
+                    String value = entry.getValue();
+                    int separator = value.indexOf('|');
+                    Long presenceValue = parsePresence(entry.getKey(), value, now);
+                    Long ttl = separator >= 0 ? (Long.parseLong(value.substring(separator + 1)) - now) / 1000 : -1L;
+
+                    if (PRESENCE_ONLINE.equals(presenceValue)) {
+                        onlineCount++;
+                    } else if (PRESENCE_IN_RACE.equals(presenceValue)) {
+                        inRaceCount++;
+                    } else {
+                        unknownCount++;
+                    }
+
+                    if (ttl <= 30L) {
+                        lowTTLCount++;
                     }
+
+                    String ttlWarning = ttl <= 30L ? " [LOW TTL WARNING]" : "";
+                    details.append("  Persona ").append(entry.getKey()).append(": ")
+                        .append(getPresenceDescription(presenceValue))
+                        .append(" (TTL: ").append(ttl).append("s)").append(ttlWarning).append("\n");
                 }
                 
                 info.append("\nStatistics by status:\n");
@@ -432,17 +646,7 @@ public class PresenceBO {
                 info.append("  Low TTL (<30s): ").append(lowTTLCount).append("\n");
                 
                 info.append("\nDetailed presences:\n");
-                for (String key : activeKeys) {
-                    String personaIdStr = key.substring("game_presence.".length());
-                    String value = this.connection.sync().get(key);
-                    Long ttl = this.connection.sync().ttl(key);
-                    Long presenceValue = value != null ? Long.parseLong(value) : 0L;
-                    
-                    String ttlWarning = (ttl != null && ttl <= 30L) ? " [LOW TTL WARNING]" : "";
-                    info.append("  Persona ").append(personaIdStr).append(": ")
-                        .append(getPresenceDescription(presenceValue))
-                        .append(" (TTL: ").append(ttl).append("s)").append(ttlWarning).append("\n");
-                }
+                info.append(details);
             }
             
             return info.toString();
@@ -70,7 +70,7 @@ public class ProductBO {
         return productEntityToProductTrans(productEntity, false);
     }
 
-    private ProductTrans productEntityToProductTrans(ProductEntity productEntity, boolean hasPrestige) {
+    public ProductTrans productEntityToProductTrans(ProductEntity productEntity, boolean hasPrestige) {
         ProductTrans productTrans = new ProductTrans();
         productTrans.setBundleItems(new ArrayOfProductTrans());
         productTrans.setCurrency(productEntity.getCurrency());
@@ -185,25 +185,29 @@ public class ProductBO {
         List<VinylProductEntity> vinylProductEntity = vinylProductDao.findByCategoryLevelEnabled(categoryEntity,
                 level, true, premium);
         for (VinylProductEntity entity : vinylProductEntity) {
-            ProductTrans productTrans = new ProductTrans();
-            productTrans.setCurrency(entity.getCurrency());
-            productTrans.setDurationMinute(entity.getDurationMinute());
-            productTrans.setHash(entity.getHash());
-            productTrans.setIcon(entity.getIcon());
-            productTrans.setSecondaryIcon(entity.getSecondaryIcon());
-            // Toujours envoyer le niveau réel du produit au client
-            productTrans.setLevel(entity.getLevel());
-            productTrans.setPrice(entity.getPrice());
-            productTrans.setPriority(entity.getPriority());
-            productTrans.setProductId(entity.getProductId());
-            productTrans.setProductTitle(entity.getProductTitle());
-            productTrans.setProductType(entity.getProductType());
-            productTrans.setUseCount(entity.getUseCount());
-            arrayOfProductTrans.getProductTrans().add(productTrans);
+            arrayOfProductTrans.getProductTrans().add(vinylProductEntityToProductTrans(entity));
         }
         return arrayOfProductTrans;
     }
 
+    public ProductTrans vinylProductEntityToProductTrans(VinylProductEntity entity) {
+        ProductTrans productTrans = new ProductTrans();
+        productTrans.setCurrency(entity.getCurrency());
+        productTrans.setDurationMinute(entity.getDurationMinute());
+        productTrans.setHash(entity.getHash());
+        productTrans.setIcon(entity.getIcon());
+        productTrans.setSecondaryIcon(entity.getSecondaryIcon());
+        // Toujours envoyer le niveau réel du produit au client
+        productTrans.setLevel(entity.getLevel());
+        productTrans.setPrice(entity.getPrice());
+        productTrans.setPriority(entity.getPriority());
+        productTrans.setProductId(entity.getProductId());
+        productTrans.setProductTitle(entity.getProductTitle());
+        productTrans.setProductType(entity.getProductType());
+        productTrans.setUseCount(entity.getUseCount());
+        return productTrans;
+    }
+
     private double getDropWeight(ProductEntity p, List<ProductEntity> productEntities) {
         if (p.getDropWeight() == null) {
             return 1.0d / productEntities.size();
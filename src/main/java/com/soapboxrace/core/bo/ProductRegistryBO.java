@@ -0,0 +1,189 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.dao.ProductDAO;
+import com.soapboxrace.core.jpa.ProductEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory registry of the PRODUCT table, indexed by hash, product ID and entitlement tag.
+ * <p>
+ * The whole table (bundle items included) is loaded at startup and on {@link #reload()}, and the indexes are swapped
+ * atomically. Lookups never query the database.
+ * The returned entities are detached and shared between threads: they must not be modified, and must be replaced by
+ * {@link ProductDAO#getReference(Long)} before being attached to a managed entity.
+ * The store catalog ({@link CatalogSnapshotBO}) is built from this registry; reload both through
+ * {@link CatalogSnapshotBO#reload()}.
+ */
+@Startup
+@Singleton
+@Lock(LockType.READ)
+public class ProductRegistryBO {
+    private static final Logger logger = LoggerFactory.getLogger(ProductRegistryBO.class);
+
+    @Inject
+    private ProductDAO productDAO;
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    private volatile Registry registry = new Registry(Collections.emptyList(), new int[0], new ProductEntity[0],
+            new HashMap<>(), new HashMap<>());
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Reloads the registry from the database.
+     */
+    public void reload() {
+        long start = System.currentTimeMillis();
+        List<ProductEntity> products = productDAO.findAllWithBundleItems();
+        Map<Integer, ProductEntity> byHash = new HashMap<>();
+        Map<String, ProductEntity> byProductId = new HashMap<>();
+        Map<String, ProductEntity> byEntitlementTag = new HashMap<>();
+
+        // Produits triés par ID : en cas de doublon, le premier trouvé l'emporte comme avec les requêtes
+        for (ProductEntity productEntity : products) {
+            if (productEntity.getHash() != null) {
+                byHash.putIfAbsent(productEntity.getHash(), productEntity);
+            }
+            byProductId.putIfAbsent(productEntity.getProductId(), productEntity);
+            byEntitlementTag.putIfAbsent(productEntity.getEntitlementTag(), productEntity);
+        }
+
+        int[] hashes = new int[byHash.size()];
+        int i = 0;
+        for (Integer hash : byHash.keySet()) {
+            hashes[i++] = hash;
+        }
+        Arrays.sort(hashes);
+
+        ProductEntity[] productsByHash = new ProductEntity[hashes.length];
+        for (i = 0; i < hashes.length; i++) {
+            productsByHash[i] = byHash.get(hashes[i]);
+        }
+
+        this.registry = new Registry(Collections.unmodifiableList(products), hashes, productsByHash, byProductId,
+                byEntitlementTag);
+
+        logger.info("Product registry loaded in {}ms: {} products, {} hashes", System.currentTimeMillis() - start,
+                products.size(), hashes.length);
+    }
+
+    /**
+     * Finds the product with the given hash.
+     * If SBRWR_BYPASS_MISSING_HASH is enabled, an unknown hash gives a new empty product with that hash.
+     *
+     * @param hash the product hash
+     * @return the product
+     * @throws RuntimeException if no product has the given hash
+     */
+    public ProductEntity findByHash(Integer hash) {
+        ProductEntity productEntity = hash != null ? registry.findByHash(hash) : null;
+
+        if (productEntity == null) {
+            if (parameterBO.getBoolParam("SBRWR_BYPASS_MISSING_HASH")) {
+                ProductEntity entity = new ProductEntity();
+                entity.setHash(hash);
+
+                return entity;
+            }
+
+            throw new RuntimeException("Could not find product with hash: " + hash);
+        }
+
+        return productEntity;
+    }
+
+    /**
+     * Finds the product with the given product ID.
+     *
+     * @param productId the product ID
+     * @return the product
+     * @throws RuntimeException if no product has the given ID
+     */
+    public ProductEntity findByProductId(String productId) {
+        ProductEntity productEntity = registry.byProductId.get(productId);
+
+        if (productEntity == null) {
+            throw new RuntimeException("Could not find product with ID: " + productId);
+        }
+
+        return productEntity;
+    }
+
+    /**
+     * Finds the product with the given entitlement tag.
+     *
+     * @param entitlementTag the entitlement tag
+     * @return the product
+     * @throws RuntimeException if no product has the given tag
+     */
+    public ProductEntity findByEntitlementTag(String entitlementTag) {
+        ProductEntity productEntity = registry.byEntitlementTag.get(entitlementTag);
+
+        if (productEntity == null) {
+            throw new RuntimeException("Could not find product with tag: " + entitlementTag);
+        }
+
+        return productEntity;
+    }
+
+    /**
+     * @return every product, bundle items loaded, ordered by ID
+     */
+    public List<ProductEntity> getAll() {
+        return registry.products;
+    }
+
+    public int size() {
+        return registry.byProductId.size();
+    }
+
+    /**
+     * Immutable indexes. Hashes are kept in a sorted int array (binary search, no boxing).
+     */
+    private static class Registry {
+        private final List<ProductEntity> products;
+        private final int[] hashes;
+        private final ProductEntity[] productsByHash;
+        private final Map<String, ProductEntity> byProductId;
+        private final Map<String, ProductEntity> byEntitlementTag;
+
+        Registry(List<ProductEntity> products, int[] hashes, ProductEntity[] productsByHash,
+                 Map<String, ProductEntity> byProductId, Map<String, ProductEntity> byEntitlementTag) {
+            this.products = products;
+            this.hashes = hashes;
+            this.productsByHash = productsByHash;
+            this.byProductId = byProductId;
+            this.byEntitlementTag = byEntitlementTag;
+        }
+
+        ProductEntity findByHash(int hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+
+            return index >= 0 ? productsByHash[index] : null;
+        }
+    }
+}
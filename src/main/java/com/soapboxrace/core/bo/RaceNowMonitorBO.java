@@ -6,21 +6,31 @@
 
 package com.soapboxrace.core.bo;
 import javax.inject.Inject;
+import javax.ejb.Asynchronous;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.SessionContext;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.Timer;
 import javax.ejb.TimerConfig;
 import javax.ejb.TimerService;
 import javax.ejb.Timeout;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
 
 import com.soapboxrace.core.dao.CarClassListDAO;
 import com.soapboxrace.core.dao.EventDAO;
 import com.soapboxrace.core.dao.LobbyDAO;
 import com.soapboxrace.core.dao.PersonaDAO;
+import com.soapboxrace.core.events.LobbyOpened;
+import com.soapboxrace.core.events.RaceNowQueueJoined;
+import com.soapboxrace.core.events.RaceNowQueueLeft;
 import com.soapboxrace.core.jpa.CarClassListEntity;
 import com.soapboxrace.core.jpa.EventEntity;
 import com.soapboxrace.core.jpa.LobbyEntity;
 import com.soapboxrace.core.jpa.PersonaEntity;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,28 +38,51 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Service de surveillance pour RaceNow persistant.
- * Vérifie périodiquement s'il y a de nouveaux lobbies disponibles 
- * pour les joueurs en file d'attente RaceNow.
+ * Service de matchmaking pour RaceNow persistant.
+ * Les joueurs en file d'attente RaceNow sont appariés dès qu'un événement le justifie
+ * (entrée en file, lobby public qui gagne une place libre). Les joueurs concernés sont
+ * regroupés par (classe de voiture, tranche de niveau) et chaque groupe est traité en une passe.
+ * Un timer ponctuel reconsidère chaque joueur quand il atteint le délai de création automatique de lobby.
+ * Le balayage périodique ne sert plus que de secours (resynchronisation avec Redis, délais dépassés,
+ * création automatique) : il ne repasse que les joueurs nouveaux, modifiés ou en attente de création.
  * 
  * @author SBRW Core Team
  */
 @Startup
 @Singleton
+@Lock(LockType.READ)
 public class RaceNowMonitorBO {
     private static final Logger logger = LoggerFactory.getLogger(RaceNowMonitorBO.class);
-    
-    // Compteur pour le heartbeat (log toutes les 10 exécutions)
-    private volatile long executionCounter = 0;
+
+    private static final int OPEN_CLASS_HASH = 607077938;
+
+    private static final int LEVEL_BAND_SIZE = 10;
+
+    // Copie en mémoire de la file RaceNow (Redis reste la référence, resynchronisée par le balayage)
+    private final Map<Long, QueuedPlayer> queuedPlayers = new ConcurrentHashMap<>();
+
+    // Joueurs à (re)considérer lors de la prochaine passe
+    private final Set<Long> dirtyPlayers = ConcurrentHashMap.newKeySet();
+
+    // Une seule passe de matchmaking à la fois
+    private final AtomicBoolean draining = new AtomicBoolean();
     
     @Resource
     private TimerService timerService;
+
+    @Resource
+    private SessionContext sessionContext;
     
     @Inject
     private MatchmakingBO matchmakingBO;
@@ -75,283 +108,374 @@ public class RaceNowMonitorBO {
     @Inject
     private EventBO eventBO;
 
+    @Inject
+    private PersonaBO personaBO;
+
     @Inject
     private CarClassListDAO carClassListDAO;
+
+    @Inject
+    private OpenLobbyIndexBO openLobbyIndexBO;
     
     @PostConstruct
     public void initialize() {
         try {
-            // RaceNow monitor initializing...
-            
-            // Démarrer la surveillance toutes les 5 secondes par défaut
+            // Balayage de secours : les appariements sont normalement déclenchés par événement
             TimerConfig timerConfig = new TimerConfig();
             timerConfig.setInfo("RaceNowMonitor");
             timerConfig.setPersistent(false);
-            
-            // Délai initial de 3 secondes, puis intervalle de 5 secondes par défaut (plus réactif)
+
             long initialDelay = 3000; // 3 secondes
-            long interval = 5000; // 5 secondes par défaut
-            
-            // Essayer de lire la configuration, sinon utiliser la valeur par défaut
-            try {
-                int configInterval = parameterBO.getIntParam("SBRWR_RACENOW_MONITOR_INTERVAL");
-                interval = configInterval * 1000;
-                // Interval configured from database
-            } catch (Exception e) {
-                // Could not read SBRWR_RACENOW_MONITOR_INTERVAL parameter, using default 5s
-            }
-            
+            long interval = parameterBO.getIntParam("SBRWR_RACENOW_SWEEP_INTERVAL", 60) * 1000L;
+
             timerService.createIntervalTimer(initialDelay, interval, timerConfig);
-            
-            // RaceNow monitor initialized successfully
-            
         } catch (Exception e) {
             logger.error("CRITICAL: Failed to initialize RaceNow monitor: {}", e.getMessage(), e);
             logger.error("RaceNow persistent system will NOT work!");
         }
     }
+
+    /**
+     * Un joueur vient d'entrer dans la file RaceNow : il est apparié sans attendre le balayage.
+     */
+    public void onRaceNowQueueJoined(@Observes RaceNowQueueJoined event) {
+        queuedPlayers.put(event.getPersonaId(), new QueuedPlayer(event.getPersonaId(), event.getCarClassHash(),
+                event.getLevel(), event.getQueuedAt()));
+        dirtyPlayers.add(event.getPersonaId());
+        requestDrain();
+
+        // Reconsidéré dès qu'il peut obtenir un lobby créé automatiquement, sans attendre le balayage
+        long delay = event.getQueuedAt() + getAutoCreateDelay() - System.currentTimeMillis();
+        if (delay > 0) {
+            timerService.createSingleActionTimer(delay, new TimerConfig(event.getPersonaId(), false));
+        }
+    }
+
+    /**
+     * Un joueur a quitté la file RaceNow (lobby rejoint, annulation, délai dépassé).
+     */
+    public void onRaceNowQueueLeft(@Observes RaceNowQueueLeft event) {
+        queuedPlayers.remove(event.getPersonaId());
+        dirtyPlayers.remove(event.getPersonaId());
+    }
+
+    /**
+     * Un lobby public vient de gagner une place libre : seuls les joueurs en file compatibles
+     * (niveau, classe de voiture) sont reconsidérés.
+     */
+    public void onLobbyOpened(@Observes(during = TransactionPhase.AFTER_SUCCESS) LobbyOpened event) {
+        if (queuedPlayers.isEmpty()) {
+            return;
+        }
+
+        OpenLobbyIndexBO.OpenLobby openLobby = openLobbyIndexBO.get(event.getLobbyId());
+        if (openLobby == null) {
+            return;
+        }
+
+        boolean allowAdjacentClasses = isAdjacentClassesAllowed();
+        boolean marked = false;
+
+        for (QueuedPlayer queuedPlayer : queuedPlayers.values()) {
+            if (!openLobby.acceptsLevel(queuedPlayer.getLevel())) {
+                continue;
+            }
+
+            Integer lockedClass = openLobby.getLockedCarClassHash();
+            boolean lobbyLockOK = lockedClass == null || lockedClass == OPEN_CLASS_HASH || lockedClass == queuedPlayer.getCarClassHash();
+            boolean eventClassOK = openLobby.getCarClassHash() == OPEN_CLASS_HASH || openLobby.getCarClassHash() == queuedPlayer.getCarClassHash();
+
+            // Les classes adjacentes sont vérifiées pendant la passe
+            if (lobbyLockOK && (eventClassOK || allowAdjacentClasses)) {
+                dirtyPlayers.add(queuedPlayer.getPersonaId());
+                marked = true;
+            }
+        }
+
+        if (marked) {
+            requestDrain();
+        }
+    }
+
+    /**
+     * Exécute les passes de matchmaking tant qu'il reste des joueurs à traiter.
+     * Appelée de façon asynchrone pour ne pas bloquer la requête qui a déclenché l'événement.
+     */
+    @Asynchronous
+    public void drain() {
+        drainDirtyPlayers();
+    }
     
+    /**
+     * Timers du moniteur : délai de création automatique atteint pour un joueur, ou balayage de secours.
+     */
     @Timeout
-        public void monitorRaceNowQueue(Timer timer) {
-        long startTime = System.currentTimeMillis();
-        executionCounter++;
-        
+    public void onTimeout(Timer timer) {
         try {
-            // Log heartbeat toutes les 10 exécutions ou s'il y a des joueurs en file
-            boolean shouldLogDetails = (executionCounter % 10 == 0);
-            
-            if (shouldLogDetails) {
-                // Heartbeat tick
-            } else {
-                // Monitor tick
-            }
-            
-            // Vérifier si le système RaceNow persistant est activé
-            boolean isEnabled = true; // Par défaut activé
-            try {
-                isEnabled = parameterBO.getBoolParam("SBRWR_RACENOW_PERSISTENT_ENABLED");
-                if (shouldLogDetails) {
-                    // RaceNow persistent system status checked
-                }
-            } catch (Exception e) {
-                // Could not read SBRWR_RACENOW_PERSISTENT_ENABLED parameter, assuming enabled
-            }
-            
-            if (!isEnabled) {
-                // RaceNow persistent system is disabled
+            if (!isPersistentEnabled()) {
                 return; // Système désactivé
             }
-            
-            // Récupérer tous les joueurs en attente RaceNow
-            Set<String> playersInQueue = matchmakingBO.getRaceNowQueuePlayers();
-            
-            // Debug: Afficher les détails de la queue récupérée
-            if (!playersInQueue.isEmpty() || shouldLogDetails) {
-                // Queue data retrieved
-            }
-            
-            // Vérifier s'il y a des joueurs à scanner immédiatement
-            Set<String> immediateScanPlayers = matchmakingBO.getAndClearImmediateScanPlayers();
-            
-            // Combiner les joueurs en attente normale et ceux demandant un scan immédiat
-            Set<String> allPlayersToProcess = new HashSet<>(playersInQueue);
-            if (!immediateScanPlayers.isEmpty()) {
-                // Ajouter les joueurs du scan immédiat (éviter les doublons avec addAll)
-                allPlayersToProcess.addAll(immediateScanPlayers);
-                // Processing immediate scan requests
-            }
-            
-            // Si il y a des joueurs en file, toujours logger les détails
-            if (!allPlayersToProcess.isEmpty()) {
-                shouldLogDetails = true;
-                // Monitor active
-            }
-            
-            // Queue status logging removed to reduce log noise
-            
-            if (allPlayersToProcess.isEmpty()) {
-                if (shouldLogDetails) {
-                    // No players in queue
-                }
-                return; // Rien à faire
-            }
-            
-            // Processing players from queue
-            
-            int playersProcessed = 0;
-            for (String personaIdStr : allPlayersToProcess) {
-                try {
-                    Long personaId = Long.parseLong(personaIdStr);
-                    // Processing persona
-                    checkForAvailableLobbies(personaId);
-                } catch (NumberFormatException e) {
-                    // Invalid persona ID removed
-                    try {
-                        matchmakingBO.removePlayerFromRaceNowQueue(Long.parseLong(personaIdStr));
-                        // Invalid persona removed from queue
-                    } catch (Exception ex) {
-                        logger.error("Failed to remove invalid persona ID from queue: {}", personaIdStr);
-                    }
+
+            if (timer.getInfo() instanceof Long) {
+                Long personaId = (Long) timer.getInfo();
+
+                if (queuedPlayers.containsKey(personaId)) {
+                    dirtyPlayers.add(personaId);
+                    drainDirtyPlayers();
                 }
-            }
-            
-            long duration = System.currentTimeMillis() - startTime;
-            // RaceNow monitor cycle completed
-            
-        } catch (Exception e) {
-            logger.error("CRITICAL ERROR in RaceNow monitor (execution #{}): {}", executionCounter, e.getMessage(), e);
-            logger.error("Stack trace:", e);
-        } finally {
-            long totalDuration = System.currentTimeMillis() - startTime;
-            if (executionCounter % 10 == 0 || totalDuration > 1000) { // Log si c'est un heartbeat ou si l'exécution prend du temps
-                // Monitor tick finished
             } else {
-                // Monitor tick finished
+                monitorRaceNowQueue();
             }
+        } catch (Exception e) {
+            logger.error("CRITICAL ERROR in RaceNow monitor: {}", e.getMessage(), e);
         }
     }
-    
+
     /**
-     * Vérifie s'il y a des lobbies disponibles pour un joueur spécifique
-     * 
-     * @param personaId ID du persona à vérifier
+     * Balayage de secours : resynchronise la copie en mémoire avec la file Redis, retire les joueurs
+     * qui attendent depuis trop longtemps, et ne repasse que les joueurs dont l'entrée est nouvelle
+     * ou modifiée (file alimentée par un autre nœud) et ceux qui attendent une création automatique.
      */
-    private void checkForAvailableLobbies(Long personaId) {
-        try {
-            Map<String, String> queueData = matchmakingBO.getRaceNowQueueData(personaId);
-            if (queueData == null || queueData.isEmpty()) {
-                // No queue data found, removing from queue
-                matchmakingBO.removePlayerFromRaceNowQueue(personaId);
-                return;
-            }
-            
-            Integer carClassHash = Integer.parseInt(queueData.get("carClass"));
-            Integer playerLevel = Integer.parseInt(queueData.get("level"));
-            Long timestamp = Long.parseLong(queueData.get("timestamp"));
-            
-            // Checking lobbies for persona
-            
-            // Vérifier que le joueur n'attend pas depuis trop longtemps (éviter les timeouts)
-            long maxWaitTime = 30 * 60 * 1000; // 30 minutes par défaut
+    private void monitorRaceNowQueue() {
+        Map<String, Map<String, String>> queueEntries = matchmakingBO.getRaceNowQueueEntries();
+        Set<Long> seen = new HashSet<>();
+        long now = System.currentTimeMillis();
+        long maxWaitTime = getMaxWaitTime();
+        long autoCreateDelay = getAutoCreateDelay();
+
+        for (Map.Entry<String, Map<String, String>> queueEntry : queueEntries.entrySet()) {
             try {
-                maxWaitTime = parameterBO.getIntParam("SBRWR_RACENOW_MAX_WAIT_MINUTES") * 60 * 1000;
-            } catch (Exception e) {
-                // Using default 30min wait time
-            }
-            if (System.currentTimeMillis() - timestamp > maxWaitTime) {
-                // RaceNow timeout, removing from queue
-                matchmakingBO.removePlayerFromRaceNowQueue(personaId);
-                return;
+                Long personaId = Long.parseLong(queueEntry.getKey());
+                Map<String, String> queueData = queueEntry.getValue();
+
+                if (queueData == null || queueData.isEmpty()) {
+                    // No queue data found, removing from queue
+                    matchmakingBO.removePlayerFromRaceNowQueue(personaId);
+                    continue;
+                }
+
+                QueuedPlayer queuedPlayer = new QueuedPlayer(personaId,
+                        Integer.parseInt(queueData.get("carClass")),
+                        Integer.parseInt(queueData.get("level")),
+                        Long.parseLong(queueData.get("timestamp")));
+                long waitTime = now - queuedPlayer.getQueuedAt();
+
+                if (waitTime > maxWaitTime) {
+                    // RaceNow timeout, removing from queue
+                    matchmakingBO.removePlayerFromRaceNowQueue(personaId);
+                    continue;
+                }
+
+                QueuedPlayer previous = queuedPlayers.put(personaId, queuedPlayer);
+                seen.add(personaId);
+
+                if (previous == null || !previous.isSameEntry(queuedPlayer) || waitTime >= autoCreateDelay) {
+                    dirtyPlayers.add(personaId);
+                }
+            } catch (NumberFormatException e) {
+                logger.error("RACENOW_MONITOR: Invalid queue entry for persona ID {}", queueEntry.getKey());
             }
-            
-            // Rechercher des lobbies disponibles par niveau uniquement
-            List<LobbyEntity> availableLobbies = lobbyDAO.findAllOpenByLevel(playerLevel);
-            
-            // Vérifier si les classes adjacentes sont autorisées (configurable)
-            boolean allowAdjacentClasses = false;
+        }
+
+        queuedPlayers.keySet().retainAll(seen);
+
+        drainDirtyPlayers();
+    }
+
+    private void requestDrain() {
+        if (!draining.get()) {
+            sessionContext.getBusinessObject(RaceNowMonitorBO.class).drain();
+        }
+    }
+
+    private void drainDirtyPlayers() {
+        // Un joueur marqué pendant une passe est repris par la passe suivante
+        while (!dirtyPlayers.isEmpty() && draining.compareAndSet(false, true)) {
             try {
-                allowAdjacentClasses = parameterBO.getBoolParam("SBRWR_ALLOW_ADJACENT_CAR_CLASSES");
+                runMatchPass();
             } catch (Exception e) {
-                // Valeur par défaut : false (désactivé)
+                logger.error("RACENOW_MONITOR: Match pass failed: {}", e.getMessage(), e);
+            } finally {
+                draining.set(false);
             }
-            
-            // Filtrer par compatibilité de classe de voiture (inclut classes adjacentes si activé)
-            List<LobbyEntity> compatibleLobbies = new ArrayList<>();
-            for (LobbyEntity lobby : availableLobbies) {
-                EventEntity event = lobby.getEvent();
-                Integer eventCarClass = event.getCarClassHash();
-                Integer lobbyLockedClass = lobby.getLockedCarClassHash();
-                
-                // CRITICAL FIX: Vérifier TOUJOURS la classe de l'événement ET le lock du lobby
-                // Un joueur ne peut rejoindre que si :
-                // 1. L'événement est OpenClass (607077938) OU la classe de l'événement correspond
-                // 2. ET le lobby n'a pas de lock OU le lock correspond
-                
-                boolean eventClassOK = (eventCarClass == 607077938) || (eventCarClass.equals(carClassHash));
-                boolean lobbyLockOK = (lobbyLockedClass == null) || (lobbyLockedClass == 607077938) || (lobbyLockedClass.equals(carClassHash));
-                
-                // Vérifier les deux conditions
-                if (eventClassOK && lobbyLockOK) {
-                    compatibleLobbies.add(lobby);
-                    continue;
-                }
-                
-                // Si les classes ne correspondent pas exactement, vérifier l'adjacence (seulement si activé)
-                if (allowAdjacentClasses && !eventClassOK) {
-                    try {
-                        CarClassListEntity playerClass = carClassListDAO.findByHash(carClassHash);
-                        CarClassListEntity eventClass = carClassListDAO.findByHash(eventCarClass);
-                        
-                        if (playerClass != null && eventClass != null) {
-                            int idDifference = Math.abs(playerClass.getId() - eventClass.getId());
-                            if (idDifference == 1 && lobbyLockOK) {
-                                compatibleLobbies.add(lobby);
-                                logger.debug("RACENOW_MONITOR: Adjacent car class accepted for PersonaId={}: Player class {} (id={}) joining event class {} (id={})",
-                                    personaId, playerClass.getName(), playerClass.getId(), eventClass.getName(), eventClass.getId());
-                            }
-                        }
-                    } catch (Exception e) {
-                        // Ignorer les erreurs de recherche de classe
-                    }
+        }
+    }
+
+    /**
+     * Traite les joueurs marqués, groupe par groupe : les lobbies compatibles d'un groupe
+     * (classe de voiture, tranche de niveau) ne sont calculés qu'une fois.
+     */
+    private void runMatchPass() {
+        if (!isPersistentEnabled()) {
+            dirtyPlayers.clear();
+            return;
+        }
+
+        Map<Long, List<QueuedPlayer>> groups = new HashMap<>();
+        for (Iterator<Long> iterator = dirtyPlayers.iterator(); iterator.hasNext(); ) {
+            QueuedPlayer queuedPlayer = queuedPlayers.get(iterator.next());
+            iterator.remove();
+
+            if (queuedPlayer != null) {
+                long groupKey = ((long) queuedPlayer.getCarClassHash() << 32) | (queuedPlayer.getLevel() / LEVEL_BAND_SIZE);
+                groups.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(queuedPlayer);
+            }
+        }
+
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        long maxWaitTime = getMaxWaitTime();
+        long autoCreateDelay = getAutoCreateDelay();
+        boolean allowAdjacentClasses = isAdjacentClassesAllowed();
+
+        // Invitations envoyées pendant cette passe, pour ne pas inviter plus de joueurs qu'il n'y a de places
+        Map<Long, Integer> invitesThisPass = new HashMap<>();
+
+        for (List<QueuedPlayer> group : groups.values()) {
+            QueuedPlayer first = group.get(0);
+            List<OpenLobbyIndexBO.OpenLobby> compatibleLobbies = findCompatibleLobbies(first.getCarClassHash(),
+                    first.getLevel(), allowAdjacentClasses);
+
+            for (QueuedPlayer queuedPlayer : group) {
+                try {
+                    matchPlayer(queuedPlayer, compatibleLobbies, invitesThisPass, maxWaitTime, autoCreateDelay);
+                } catch (Exception e) {
+                    logger.error("Error checking lobbies for PersonaId={}: {}", queuedPlayer.getPersonaId(), e.getMessage(), e);
                 }
             }
-            
-            List<LobbyEntity> levelVerifiedLobbies = compatibleLobbies;
-            if (levelVerifiedLobbies.size() != availableLobbies.size()) {
-                logger.debug("Found {} class-compatible lobbies from {} available (PersonaId={})", 
-                    levelVerifiedLobbies.size(), availableLobbies.size(), personaId);
+        }
+    }
+
+    /**
+     * Recherche les lobbies ouverts compatibles avec une classe de voiture, pour toute la tranche de niveau.
+     * Le niveau exact de chaque joueur est vérifié ensuite.
+     */
+    private List<OpenLobbyIndexBO.OpenLobby> findCompatibleLobbies(int carClassHash, int level, boolean allowAdjacentClasses) {
+        List<OpenLobbyIndexBO.OpenLobby> availableLobbies = openLobbyIndexBO.findOpenByLevelBand(level);
+        List<OpenLobbyIndexBO.OpenLobby> compatibleLobbies = new ArrayList<>();
+        Map<Integer, CarClassListEntity> carClasses = new HashMap<>();
+
+        for (OpenLobbyIndexBO.OpenLobby lobby : availableLobbies) {
+            Integer eventCarClass = lobby.getCarClassHash();
+            Integer lobbyLockedClass = lobby.getLockedCarClassHash();
+            
+            // CRITICAL FIX: Vérifier TOUJOURS la classe de l'événement ET le lock du lobby
+            // Un joueur ne peut rejoindre que si :
+            // 1. L'événement est OpenClass (607077938) OU la classe de l'événement correspond
+            // 2. ET le lobby n'a pas de lock OU le lock correspond
+            
+            boolean eventClassOK = (eventCarClass == OPEN_CLASS_HASH) || (eventCarClass.equals(carClassHash));
+            boolean lobbyLockOK = (lobbyLockedClass == null) || (lobbyLockedClass == OPEN_CLASS_HASH) || (lobbyLockedClass.equals(carClassHash));
+            
+            // Vérifier les deux conditions
+            if (eventClassOK && lobbyLockOK) {
+                compatibleLobbies.add(lobby);
+                continue;
             }
             
-            if (!levelVerifiedLobbies.isEmpty()) {
-                PersonaEntity personaEntity = personaDAO.find(personaId);
-                if (personaEntity != null) {
-                    // Found available lobbies, attempting to join
-                    // Faire rejoindre directement le joueur au lieu d'envoyer juste une invitation
-                    boolean joinedSuccessfully = attemptToJoinLobbyDirectly(personaEntity, levelVerifiedLobbies);
+            // Si les classes ne correspondent pas exactement, vérifier l'adjacence (seulement si activé)
+            if (allowAdjacentClasses && !eventClassOK && lobbyLockOK) {
+                try {
+                    CarClassListEntity playerClass = carClasses.computeIfAbsent(carClassHash, carClassListDAO::findByHash);
+                    CarClassListEntity eventClass = carClasses.computeIfAbsent(eventCarClass, carClassListDAO::findByHash);
                     
-                    if (joinedSuccessfully) {
-                        matchmakingBO.removePlayerFromRaceNowQueue(personaId);
-                        // Successfully auto-joined lobby
-                    } else {
-                        // Could not join any lobby, staying in queue
+                    if (playerClass != null && eventClass != null && Math.abs(playerClass.getId() - eventClass.getId()) == 1) {
+                        compatibleLobbies.add(lobby);
+                        logger.debug("RACENOW_MONITOR: Adjacent car class accepted: Player class {} (id={}) joining event class {} (id={})",
+                            playerClass.getName(), playerClass.getId(), eventClass.getName(), eventClass.getId());
                     }
-                } else {
-                    // PersonaEntity not found, removing from queue
-                    matchmakingBO.removePlayerFromRaceNowQueue(personaId);
-                }
-            } else {
-                // Aucun lobby disponible : vérifier si le joueur attend depuis assez longtemps
-                // pour créer automatiquement un lobby
-                long waitTime = System.currentTimeMillis() - timestamp;
-                long autoCreateDelay = 30 * 1000; // 30 secondes par défaut
-                
-                try {
-                    autoCreateDelay = parameterBO.getIntParam("SBRWR_RACENOW_AUTO_CREATE_DELAY") * 1000L;
                 } catch (Exception e) {
-                    logger.debug("Could not read SBRWR_RACENOW_AUTO_CREATE_DELAY parameter, using default 30s");
+                    // Ignorer les erreurs de recherche de classe
                 }
-                
-                if (waitTime >= autoCreateDelay) {
-                    logger.info("PersonaId={} has been waiting for {}s without finding a lobby, attempting to create one automatically", 
-                        personaId, waitTime / 1000);
-                    
-                    // Créer automatiquement un lobby
-                    boolean lobbyCreated = createAutoLobbyForPlayer(personaId, playerLevel, carClassHash);
-                    
-                    if (lobbyCreated) {
-                        logger.info("Successfully created auto-lobby for PersonaId={}", personaId);
-                        matchmakingBO.removePlayerFromRaceNowQueue(personaId);
-                    } else {
-                        logger.warn("Failed to create auto-lobby for PersonaId={}, player stays in queue", personaId);
-                    }
-                } else {
-                    logger.debug("PersonaId={} waiting for {}s (need {}s before auto-lobby creation)", 
-                        personaId, waitTime / 1000, autoCreateDelay / 1000);
+            }
+        }
+
+        return compatibleLobbies;
+    }
+    
+    /**
+     * Tente d'apparier un joueur en file avec les lobbies compatibles de son groupe,
+     * ou de lui créer un lobby s'il attend depuis assez longtemps.
+     */
+    private void matchPlayer(QueuedPlayer queuedPlayer, List<OpenLobbyIndexBO.OpenLobby> compatibleLobbies,
+                             Map<Long, Integer> invitesThisPass, long maxWaitTime, long autoCreateDelay) {
+        Long personaId = queuedPlayer.getPersonaId();
+        long waitTime = System.currentTimeMillis() - queuedPlayer.getQueuedAt();
+
+        // Vérifier que le joueur n'attend pas depuis trop longtemps (éviter les timeouts)
+        if (waitTime > maxWaitTime) {
+            // RaceNow timeout, removing from queue
+            matchmakingBO.removePlayerFromRaceNowQueue(personaId);
+            return;
+        }
+
+        List<OpenLobbyIndexBO.OpenLobby> levelVerifiedLobbies = new ArrayList<>();
+        for (OpenLobbyIndexBO.OpenLobby lobby : compatibleLobbies) {
+            if (lobby.acceptsLevel(queuedPlayer.getLevel())) {
+                levelVerifiedLobbies.add(lobby);
+            }
+        }
+
+        if (!levelVerifiedLobbies.isEmpty()) {
+            PersonaEntity personaEntity = personaDAO.find(personaId);
+            if (personaEntity != null) {
+                // Faire rejoindre directement le joueur au lieu d'envoyer juste une invitation
+                if (attemptToJoinLobbyDirectly(personaEntity, levelVerifiedLobbies, invitesThisPass)) {
+                    matchmakingBO.removePlayerFromRaceNowQueue(personaId);
                 }
+            } else {
+                // PersonaEntity not found, removing from queue
+                matchmakingBO.removePlayerFromRaceNowQueue(personaId);
             }
-            
+        } else if (waitTime >= autoCreateDelay) {
+            // Aucun lobby disponible : le joueur attend depuis assez longtemps pour créer automatiquement un lobby
+            logger.info("PersonaId={} has been waiting for {}s without finding a lobby, attempting to create one automatically", 
+                personaId, waitTime / 1000);
+
+            if (createAutoLobbyForPlayer(personaId, queuedPlayer.getLevel(), queuedPlayer.getCarClassHash())) {
+                logger.info("Successfully created auto-lobby for PersonaId={}", personaId);
+                matchmakingBO.removePlayerFromRaceNowQueue(personaId);
+            } else {
+                logger.warn("Failed to create auto-lobby for PersonaId={}, player stays in queue", personaId);
+            }
+        } else {
+            logger.debug("PersonaId={} waiting for {}s (need {}s before auto-lobby creation)", 
+                personaId, waitTime / 1000, autoCreateDelay / 1000);
+        }
+    }
+
+    private long getMaxWaitTime() {
+        try {
+            return parameterBO.getIntParam("SBRWR_RACENOW_MAX_WAIT_MINUTES") * 60 * 1000L;
+        } catch (Exception e) {
+            return 30 * 60 * 1000L; // 30 minutes par défaut
+        }
+    }
+
+    private long getAutoCreateDelay() {
+        try {
+            return parameterBO.getIntParam("SBRWR_RACENOW_AUTO_CREATE_DELAY") * 1000L;
+        } catch (Exception e) {
+            logger.debug("Could not read SBRWR_RACENOW_AUTO_CREATE_DELAY parameter, using default 30s");
+            return 30 * 1000L; // 30 secondes par défaut
+        }
+    }
+
+    private boolean isPersistentEnabled() {
+        try {
+            return parameterBO.getBoolParam("SBRWR_RACENOW_PERSISTENT_ENABLED");
+        } catch (Exception e) {
+            return true; // Par défaut activé
+        }
+    }
+
+    private boolean isAdjacentClassesAllowed() {
+        try {
+            return parameterBO.getBoolParam("SBRWR_ALLOW_ADJACENT_CAR_CLASSES");
         } catch (Exception e) {
-            logger.error("Error checking lobbies for PersonaId={}: {}", personaId, e.getMessage(), e);
+            return false; // Valeur par défaut : false (désactivé)
         }
     }
     
@@ -360,15 +484,26 @@ public class RaceNowMonitorBO {
      * 
      * @param personaEntity Le persona du joueur
      * @param availableLobbies Liste des lobbies disponibles
+     * @param invitesThisPass Invitations déjà envoyées par lobby pendant la passe en cours
      * @return true si le joueur a rejoint un lobby avec succès
      */
-    private boolean attemptToJoinLobbyDirectly(PersonaEntity personaEntity, List<LobbyEntity> availableLobbies) {
+    private boolean attemptToJoinLobbyDirectly(PersonaEntity personaEntity, List<OpenLobbyIndexBO.OpenLobby> availableLobbies,
+                                               Map<Long, Integer> invitesThisPass) {
         try {
-            // Créer une liste d'un seul lobby à la fois pour utiliser la méthode joinLobby de LobbyBO
-            for (LobbyEntity lobbyEntity : availableLobbies) {
-                if (lobbyEntity.getIsPrivate()) continue;
+            // Événements ignorés résolus en un seul aller-retour Redis pour tous les lobbies candidats
+            int[] eventIds = new int[availableLobbies.size()];
+            for (int i = 0; i < eventIds.length; i++) {
+                eventIds[i] = availableLobbies.get(i).getEventId();
+            }
+            BitSet ignoredEvents = matchmakingBO.findIgnoredEvents(personaEntity.getPersonaId(), eventIds);
 
-                EventEntity event = lobbyEntity.getEvent();
+            // Voiture active lue au plus une fois, au premier événement restreint
+            OwnedCarTrans defaultCar = null;
+
+            // L'index ne contient que des lobbies publics : seul le lobby retenu est relu en base
+            for (int i = 0; i < availableLobbies.size(); i++) {
+                OpenLobbyIndexBO.OpenLobby openLobby = availableLobbies.get(i);
+                EventEntity event = openLobby.getEvent();
                 
                 // Vérification de sécurité : niveau
                 if (personaEntity.getLevel() < event.getMinLevel() || personaEntity.getLevel() > event.getMaxLevel()) {
@@ -377,31 +512,36 @@ public class RaceNowMonitorBO {
                 }
                 
                 // Vérification des restrictions de voiture
-                if (event.getCarRestriction() != null && !event.getCarRestriction().trim().isEmpty()) {
-                    if (!eventBO.hasAllowedCarForEvent(personaEntity.getPersonaId(), event)) {
+                if (eventBO.isCarRestricted(event)) {
+                    if (defaultCar == null) {
+                        defaultCar = personaBO.getDefaultCar(personaEntity.getPersonaId());
+                    }
+                    if (!eventBO.hasAllowedCarForEvent(defaultCar, event)) {
                         // Does not have required car for event
                         continue;
                     }
                 }
                 
                 // Vérifier si l'événement est ignoré
-                if (matchmakingBO.isEventIgnored(personaEntity.getPersonaId(), event.getId())) {
+                if (ignoredEvents.get(i)) {
                     // Event ignored by player
                     continue;
                 }
 
                 // Refetch le lobby depuis la DB pour avoir les données les plus récentes
                 // (évite les race conditions où le lobby devient complet entre la récupération et maintenant)
-                LobbyEntity freshLobby = lobbyDAO.find(lobbyEntity.getId());
+                LobbyEntity freshLobby = lobbyDAO.find(openLobby.getLobbyId());
                 if (freshLobby == null || !freshLobby.getIsActive()) {
-                    logger.debug("RACENOW_MONITOR: Lobby {} no longer exists or is inactive", lobbyEntity.getId());
+                    logger.debug("RACENOW_MONITOR: Lobby {} no longer exists or is inactive", openLobby.getLobbyId());
+                    openLobbyIndexBO.remove(openLobby.getLobbyId());
                     continue;
                 }
 
                 int maxEntrants = event.getMaxPlayers();
                 int currentEntrants = freshLobby.getEntrants().size();
+                int pendingInvites = invitesThisPass.getOrDefault(freshLobby.getId(), 0);
 
-                if (currentEntrants < maxEntrants) {
+                if (currentEntrants + pendingInvites < maxEntrants) {
                     // Vérifier que le lobby a au moins 10 secondes restantes pour éviter les lobbies sur le point d'expirer
                     // SAUF pour les lobbies en attente (< 2 entrants) : ils n'ont pas de countdown actif,
                     // donc le "remaining time" est calculé sur startedTime qui est rafraîchi périodiquement
@@ -421,6 +561,7 @@ public class RaceNowMonitorBO {
                         try {
                             // Envoyer une invitation automatique que le client RaceNow devrait accepter
                             lobbyMessagingBO.sendLobbyInvitation(freshLobby, personaEntity, 10000);
+                            invitesThisPass.merge(freshLobby.getId(), 1, Integer::sum);
                             
                             // RaceNow auto-invitation sent
                             
@@ -435,9 +576,10 @@ public class RaceNowMonitorBO {
                         // Player already in lobby
                     }
                 } else {
-                    logger.debug("RACENOW_MONITOR: Skipping lobby {} for PersonaId={} - lobby is full ({}/{})",
-                        freshLobby.getId(), personaEntity.getPersonaId(), currentEntrants, maxEntrants);
+                    logger.debug("RACENOW_MONITOR: Skipping lobby {} for PersonaId={} - lobby is full ({}/{}, {} pending invites)",
+                        freshLobby.getId(), personaEntity.getPersonaId(), currentEntrants, maxEntrants, pendingInvites);
                     // Lobby is full
+                    openLobbyIndexBO.update(freshLobby);
                 }
             }
             
@@ -479,17 +621,29 @@ public class RaceNowMonitorBO {
             }
             
             // Filtrer les événements ignorés et ceux avec restriction de voiture
+            int[] eventIds = new int[eligibleEvents.size()];
+            for (int i = 0; i < eventIds.length; i++) {
+                eventIds[i] = eligibleEvents.get(i).getId();
+            }
+            BitSet ignoredEvents = matchmakingBO.findIgnoredEvents(personaId, eventIds);
+
+            // Voiture active lue au plus une fois, au premier événement restreint
+            OwnedCarTrans defaultCar = null;
             List<EventEntity> validEvents = new ArrayList<>();
-            for (EventEntity event : eligibleEvents) {
+            for (int i = 0; i < eligibleEvents.size(); i++) {
+                EventEntity event = eligibleEvents.get(i);
                 // Vérifier que l'événement n'est pas ignoré
-                if (matchmakingBO.isEventIgnored(personaId, event.getId())) {
+                if (ignoredEvents.get(i)) {
                     logger.debug("Event {} ignored by PersonaId={}, skipping", event.getId(), personaId);
                     continue;
                 }
                 
                 // Vérifier les restrictions de voiture si elles existent
-                if (event.getCarRestriction() != null && !event.getCarRestriction().trim().isEmpty()) {
-                    if (!eventBO.hasAllowedCarForEvent(personaId, event)) {
+                if (eventBO.isCarRestricted(event)) {
+                    if (defaultCar == null) {
+                        defaultCar = personaBO.getDefaultCar(personaId);
+                    }
+                    if (!eventBO.hasAllowedCarForEvent(defaultCar, event)) {
                         logger.debug("PersonaId={} does not have allowed car for Event {}, skipping", personaId, event.getId());
                         continue;
                     }
@@ -532,4 +686,44 @@ public class RaceNowMonitorBO {
     public void cleanup() {
         // RaceNow monitor shutting down
     }
+
+    /**
+     * Joueur en file RaceNow, tel que stocké dans la copie en mémoire.
+     */
+    private static final class QueuedPlayer {
+        private final Long personaId;
+        private final int carClassHash;
+        private final int level;
+        private final long queuedAt;
+
+        QueuedPlayer(Long personaId, int carClassHash, int level, long queuedAt) {
+            this.personaId = personaId;
+            this.carClassHash = carClassHash;
+            this.level = level;
+            this.queuedAt = queuedAt;
+        }
+
+        Long getPersonaId() {
+            return personaId;
+        }
+
+        int getCarClassHash() {
+            return carClassHash;
+        }
+
+        int getLevel() {
+            return level;
+        }
+
+        long getQueuedAt() {
+            return queuedAt;
+        }
+
+        /**
+         * @return true si l'autre entrée correspond au même passage en file, avec les mêmes critères
+         */
+        boolean isSameEntry(QueuedPlayer other) {
+            return carClassHash == other.carClassHash && level == other.level && queuedAt == other.queuedAt;
+        }
+    }
 }
@@ -0,0 +1,175 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.jaxb.util.JAXBUtility;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of serialized XML responses for endpoints whose content only changes on reload.
+ * <p>
+ * Entries are grouped by content name ("catalog", "levels"...). The BO owning the content calls
+ * {@link #bumpVersion(String)} when it reloads it; entries built from an older version are never served.
+ */
+@Startup
+@Singleton
+@Lock(LockType.READ)
+public class ResponseCacheBO {
+
+    private static final int MAX_ENTRIES = 4096;
+
+    private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        hitCounter = metricRegistry.counter("response_cache.hits");
+        missCounter = metricRegistry.counter("response_cache.misses");
+    }
+
+    // Injection hors conteneur (tests)
+    void setCounters(Counter hitCounter, Counter missCounter) {
+        this.hitCounter = hitCounter;
+        this.missCounter = missCounter;
+    }
+
+    /**
+     * Gets the serialized response for the given content and key, building it if needed.
+     *
+     * @param name   the content name
+     * @param key    the key of the response within the content
+     * @param loader builds the object to marshal
+     * @return the cached response
+     */
+    public CachedResponse get(String name, String key, Supplier<Object> loader) {
+        long version = getVersion(name).get();
+        String cacheKey = name + '\u0000' + key;
+        CachedResponse cachedResponse = entries.get(cacheKey);
+
+        if (cachedResponse != null && cachedResponse.version == version) {
+            hitCounter.inc();
+            return cachedResponse;
+        }
+
+        missCounter.inc();
+
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+
+        // Une erreur de sérialisation remonte à l'appelant : rien n'est mis en cache
+        cachedResponse = new CachedResponse(version, JAXBUtility.marshalToBytes(loader.get()));
+
+        // Une version plus récente a pu être publiée pendant la construction
+        if (getVersion(name).get() == version) {
+            entries.put(cacheKey, cachedResponse);
+        }
+
+        return cachedResponse;
+    }
+
+    /**
+     * Invalidates every cached response of the given content.
+     *
+     * @param name the content name
+     */
+    public void bumpVersion(String name) {
+        getVersion(name).incrementAndGet();
+        entries.keySet().removeIf(k -> k.startsWith(name + '\u0000'));
+    }
+
+    private AtomicLong getVersion(String name) {
+        return versions.computeIfAbsent(name, k -> new AtomicLong());
+    }
+
+    /**
+     * A serialized response, with its entity tag and its lazily compressed variant.
+     */
+    public static class CachedResponse {
+        private final long version;
+
+        private final byte[] body;
+
+        private final String etag;
+
+        private volatile byte[] gzipBody;
+
+        CachedResponse(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+            this.etag = digest(body);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getGzipBody() {
+            byte[] compressed = gzipBody;
+
+            if (compressed == null) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(body.length / 4 + 64);
+
+                try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+                    gzipOutputStream.write(body);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                compressed = outputStream.toByteArray();
+                gzipBody = compressed;
+            }
+
+            return compressed;
+        }
+
+        private static String digest(byte[] body) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-1").digest(body);
+                StringBuilder sb = new StringBuilder(hash.length * 2);
+
+                for (byte b : hash) {
+                    sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+
+                return sb.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
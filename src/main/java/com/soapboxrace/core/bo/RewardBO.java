@@ -44,7 +44,7 @@ public class RewardBO {
     private InventoryItemDAO inventoryItemDao;
 
     @Inject
-    private ProductDAO productDAO;
+    private ProductRegistryBO productRegistryBO;
 
     @Inject
     private ItemRewardBO itemRewardBO;
@@ -212,7 +212,7 @@ public class RewardBO {
         float skillMultiplier = 0f;
         float maxSkillMultiplier = parameterBO.getFloatParam("SKILL_" + skillModRewardType.toString() + "_MAX_VALUE", 30f);
         for (SkillModPartEntity skillModPartEntity : skillModParts) {
-            ProductEntity productEntity = productDAO.findByHash(skillModPartEntity.getSkillModPartAttribHash());
+            ProductEntity productEntity = productRegistryBO.findByHash(skillModPartEntity.getSkillModPartAttribHash());
             if (productEntity != null && productEntity.getProductTitle().contains(skillModRewardType.toString())) {
                 float skillValue = productEntity.getSkillValue();
                 skillMultiplier += skillValue;
@@ -1,51 +1,70 @@
 package com.soapboxrace.core.bo;
 
-import com.oracle.truffle.js.scriptengine.GraalJSScriptEngine;
-import org.graalvm.polyglot.Context;
-import org.graalvm.polyglot.Engine;
-import org.graalvm.polyglot.HostAccess;
+import com.soapboxrace.core.bo.util.ScriptEvaluator;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import org.graalvm.polyglot.PolyglotException;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.inject.Inject;
-import javax.script.ScriptEngine;
 import javax.script.ScriptException;
-import javax.script.SimpleBindings;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ScriptingBO is a bean that allows for the execution of JavaScript code.
+ * <p>
+ * Scripts are evaluated by a {@link ScriptEvaluator}: each distinct script is parsed once by the shared engine, and
+ * each evaluation gets a fresh context, so scripts never see each other's globals. {@link #invalidate()} drops the
+ * cached scripts, e.g. after the achievements have been reloaded.
  */
 @Startup
 @Singleton
+@Lock(LockType.READ)
 public class ScriptingBO {
 
+    private static final int MAX_CACHED_SCRIPTS = 4096;
+
     @Inject
     private Logger logger;
 
-    private ScriptEngine scriptEngine;
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private ScriptEvaluator scriptEvaluator;
+
+    private Timer evalTimer;
+
+    private Counter compileCounter;
 
     @PostConstruct
     public void init() {
+        evalTimer = metricRegistry.timer("scripting.eval");
+        compileCounter = metricRegistry.counter("scripting.compilations");
+
         try {
             System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
-            Engine engine = Engine.newBuilder()
-                    .option("engine.WarnInterpreterOnly", "false")
-                    .build();
-            scriptEngine = GraalJSScriptEngine.create(engine,
-                    Context.newBuilder("js")
-                            .allowExperimentalOptions(true)
-                            .allowHostAccess(HostAccess.ALL)
-                            .allowHostClassLookup(s -> true)
-                            .option("js.nashorn-compat", "true"));
+            scriptEvaluator = new ScriptEvaluator(MAX_CACHED_SCRIPTS, compileCounter::inc);
             logger.info("Initialized GraalVM JavaScript engine with host access enabled");
         } catch (Exception e) {
             logger.warn("Failed to initialize GraalVM JS engine: {}", e.getMessage());
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (scriptEvaluator != null) {
+            scriptEvaluator.close();
+        }
+    }
+
     /**
      * Evaluates JavaScript code and returns the result.
      *
@@ -55,9 +74,37 @@ public class ScriptingBO {
      * @throws ScriptException if an error occurs.
      */
     public Object eval(String script, Map<String, Object> bindings) throws ScriptException {
-        if (scriptEngine == null) {
+        if (scriptEvaluator == null) {
             throw new ScriptException("No JavaScript engine available");
         }
-        return scriptEngine.eval(script, new SimpleBindings(bindings));
+
+        long start = System.nanoTime();
+
+        try {
+            return scriptEvaluator.eval(script, bindings);
+        } catch (PolyglotException e) {
+            ScriptException scriptException = new ScriptException(e.getMessage());
+            scriptException.initCause(e);
+            throw scriptException;
+        } finally {
+            evalTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Drops every cached script. Scripts are parsed again on their next evaluation.
+     */
+    public void invalidate() {
+        if (scriptEvaluator != null) {
+            scriptEvaluator.invalidate();
+        }
+    }
+
+    public long getEvalCount() {
+        return evalTimer.getCount();
+    }
+
+    public int getCachedScriptCount() {
+        return scriptEvaluator != null ? scriptEvaluator.getCachedScriptCount() : 0;
     }
 }
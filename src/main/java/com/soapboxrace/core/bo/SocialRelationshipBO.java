@@ -9,6 +9,10 @@ import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
 
 import com.soapboxrace.core.dao.PersonaDAO;
 import com.soapboxrace.core.dao.SocialRelationshipDAO;
@@ -19,23 +23,43 @@ import com.soapboxrace.core.jpa.PersonaEntity;
 import com.soapboxrace.core.jpa.SocialRelationshipEntity;
 import com.soapboxrace.core.xmpp.OpenFireSoapBoxCli;
 import com.soapboxrace.jaxb.http.*;
+import com.soapboxrace.jaxb.util.JAXBUtility;
 import com.soapboxrace.jaxb.xmpp.XMPP_FriendPersonaType;
 import com.soapboxrace.jaxb.xmpp.XMPP_ResponseTypePersonaBase;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
-import javax.ejb.Asynchronous;
+import javax.annotation.Resource;
 import javax.ejb.Schedule;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 @Startup
 @Singleton
 @Lock(LockType.READ)
 public class SocialRelationshipBO {
+    private static final int FRIENDS_PRESENCE_REFRESH_BATCH_SIZE = 500;
+
+    private final Map<Long, Long> pendingPresences = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushingPresences = new AtomicBoolean();
+    private Counter friendsPresenceRefreshCounter;
+    private Counter droppedPresenceUpdatesCounter;
+
+    @Resource
+    private TimerService timerService;
     @Inject
     private SocialRelationshipDAO socialRelationshipDAO;
     @Inject
@@ -48,138 +72,111 @@ public class SocialRelationshipBO {
     private PresenceBO presenceBO;
     @Inject
     private Logger logger;
+    @Inject
+    private MetricRegistry metricRegistry;
+    @Inject
+    private ParameterBO parameterBO;
 
     @PostConstruct
     public void init() {
-        // Social relationship system initialized
-    }
+        this.friendsPresenceRefreshCounter = metricRegistry.counter("presence.friends_refreshed");
+        this.droppedPresenceUpdatesCounter = metricRegistry.counter("presence.updates_dropped");
+
+        // Fenêtre de regroupement des changements de présence (dernière valeur retenue par persona)
+        long coalesceWindow = parameterBO.getIntParam("SBRWR_PRESENCE_COALESCE_WINDOW_MS", 1000);
 
-    @PreDestroy
-    public void shutdown() {
-        // Social relationship system shutdown
+        TimerConfig timerConfig = new TimerConfig();
+        timerConfig.setInfo("PresenceFanOut");
+        timerConfig.setPersistent(false);
+        timerService.createIntervalTimer(coalesceWindow, coalesceWindow, timerConfig);
     }
 
-    @Asynchronous
+    /**
+     * Enregistre le changement de présence ; il sera diffusé aux amis lors du prochain regroupement.
+     * Plusieurs changements d'un même persona dans la fenêtre n'entraînent qu'une seule diffusion (dernier état).
+     */
     public void handlePersonaPresenceUpdated(@Observes PersonaPresenceUpdated personaPresenceUpdated) {
         if (personaPresenceUpdated == null || personaPresenceUpdated.getPersonaId() == null) {
             logger.warn("Received null PersonaPresenceUpdated event or null personaId");
             return;
         }
         
-        Long personaId = personaPresenceUpdated.getPersonaId();
-        Long personaPresence = personaPresenceUpdated.getPresence();
-        
-        if (personaPresence == null) {
-            logger.warn("Received PersonaPresenceUpdated with null presence for persona {}", personaId);
+        if (personaPresenceUpdated.getPresence() == null) {
+            logger.warn("Received PersonaPresenceUpdated with null presence for persona {}", personaPresenceUpdated.getPersonaId());
             return;
         }
-        
-        try {
-            PersonaEntity personaEntity = personaDAO.find(personaId);
-            
-            if (personaEntity == null) {
-                logger.warn("Cannot handle presence update for persona {}: persona not found", personaId);
-                return;
-            }
-            
-            if (personaEntity.getUser() == null) {
-                logger.warn("Cannot handle presence update for persona {}: user is null", personaId);
-                return;
-            }
-            
-            logger.debug("Handling presence update for persona {}: {}", personaEntity.getName(), personaPresence);
-            
-            // FIX: R\u00e9duit le d\u00e9lai de 100ms \u00e0 30ms pour r\u00e9duire les race conditions
-            // Ce d\u00e9lai permet \u00e0 Redis de se synchroniser avant de v\u00e9rifier la pr\u00e9sence
-            try {
-                Thread.sleep(30);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.warn("Interrupted while waiting to process presence update for persona {}", personaId);
-                return;
-            }
-            
-            // Vérifier que la présence est toujours valide après le délai
-            Long currentPresence = presenceBO.getPresence(personaId);
-            
-            if (currentPresence == null) {
-                logger.debug("Current presence is null for persona {}, using event presence {}", 
-                           personaId, personaPresence);
-                currentPresence = personaPresence;
-            }
-            
-            // FIX: Ne pas envoyer de mises à jour si le joueur a "Apparaître hors ligne" activé
-            if (personaEntity.getUser().isAppearOffline()) {
-                logger.debug("Persona {} has appearOffline enabled, broadcasting OFFLINE status", personaEntity.getName());
-                // Envoyer OFFLINE même si le joueur est en ligne
-                sendPresencePacketsWithRetry(personaEntity, PresenceBO.PRESENCE_OFFLINE);
-            } else if (currentPresence.equals(personaPresence)) {
-                // La présence n'a pas changé pendant le délai, envoyer la notification
-                sendPresencePacketsWithRetry(personaEntity, personaPresence);
-            } else {
-                // La présence a changé pendant le traitement, utiliser la valeur actuelle
-                logger.debug("Presence changed during processing for persona {}: event={}, current={}", 
-                           personaEntity.getName(), personaPresence, currentPresence);
-                sendPresencePacketsWithRetry(personaEntity, currentPresence);
-            }
-            
-        } catch (Exception e) {
-            logger.error("Unexpected error handling presence update for persona {}: {}", 
-                       personaId, e.getMessage(), e);
-        }
+
+        pendingPresences.put(personaPresenceUpdated.getPersonaId(), personaPresenceUpdated.getPresence());
     }
-    
+
     /**
-     * AMÉLIORATION: Envoi de paquets de présence avec retry en cas d'erreur
+     * Diffuse les changements de présence regroupés : les paquets sont construits et sérialisés une fois
+     * par persona, puis mis en file d'envoi XMPP (asynchrone) pour chaque destinataire.
      */
-    private void sendPresencePacketsWithRetry(PersonaEntity personaEntity, Long presence) {
-        int maxRetries = 3;
-        int retryCount = 0;
-        
-        while (retryCount < maxRetries) {
-            try {
-                sendPresencePackets(personaEntity, presence);
-                return; // Succès, sortir de la boucle
-            } catch (Exception e) {
-                retryCount++;
-                logger.warn("Error sending presence packets for persona {} (attempt {}/{}): {}", 
-                          personaEntity.getName(), retryCount, maxRetries, e.getMessage());
-                
-                if (retryCount < maxRetries) {
-                    try {
-                        Thread.sleep(50 * retryCount); // Délai exponentiel
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
+    @Timeout
+    public void flushPresenceUpdates(Timer timer) {
+        if (pendingPresences.isEmpty() || !flushingPresences.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            Map<Long, Long> updates = new HashMap<>();
+            for (Map.Entry<Long, Long> entry : pendingPresences.entrySet()) {
+                // Une valeur remplacée entre-temps reste en attente pour le prochain regroupement
+                if (pendingPresences.remove(entry.getKey(), entry.getValue())) {
+                    updates.put(entry.getKey(), entry.getValue());
                 }
             }
+
+            Map<Long, List<String>> packetsByRecipient = new LinkedHashMap<>();
+
+            for (Map.Entry<Long, Long> update : updates.entrySet()) {
+                try {
+                    collectPresencePackets(update.getKey(), update.getValue(), packetsByRecipient);
+                } catch (Exception e) {
+                    droppedPresenceUpdatesCounter.inc();
+                    logger.error("Unexpected error handling presence update for persona {}: {}", 
+                               update.getKey(), e.getMessage(), e);
+                }
+            }
+
+            for (Map.Entry<Long, List<String>> recipient : packetsByRecipient.entrySet()) {
+                for (String packet : recipient.getValue()) {
+                    openFireSoapBoxCli.send(packet, recipient.getKey());
+                }
+            }
+
+            logger.debug("Presence fan-out: {} persona updates, {} recipients",
+                    updates.size(), packetsByRecipient.size());
+        } finally {
+            flushingPresences.set(false);
         }
-        
-        logger.error("Failed to send presence packets for persona {} after {} attempts", 
-                    personaEntity.getName(), maxRetries);
     }
 
     public PersonaFriendsList getFriendsList(Long userId) {
         PersonaFriendsList personaFriendsList = new PersonaFriendsList();
         personaFriendsList.setFriendPersona(new ArrayOfFriendPersona());
 
-        List<SocialRelationshipEntity> socialRelationshipEntityList = this.socialRelationshipDAO.findByUserId(userId);
+        List<SocialRelationshipEntity> socialRelationshipEntityList = this.socialRelationshipDAO.findByUserIdWithRemotePersonas(userId);
+        // Amis dont la présence reste à lire, récupérée ensuite en un seul HMGET
+        Map<Long, FriendPersona> friendsByPersonaId = new HashMap<>();
 
         for (SocialRelationshipEntity socialRelationshipEntity : socialRelationshipEntityList) {
             if (socialRelationshipEntity.getStatus() == 0) {
                 this.addPendingRequestToList(personaFriendsList, socialRelationshipEntity);
             } else if (socialRelationshipEntity.getStatus() == 1) {
-                this.addFriendToList(personaFriendsList, socialRelationshipEntity);
+                this.addFriendToList(personaFriendsList, socialRelationshipEntity, friendsByPersonaId);
             }
         }
 
+        this.setFriendPresences(friendsByPersonaId);
+
         return personaFriendsList;
     }
 
     public ArrayOfBasicBlockPlayerInfo getBlockedUserList(Long userId) {
         List<SocialRelationshipEntity> socialRelationshipEntityList =
-                this.socialRelationshipDAO.findByUserIdAndStatus(userId, 2L);
+                this.socialRelationshipDAO.findByUserIdAndStatusWithRemotePersonas(userId, 2L);
         ArrayOfBasicBlockPlayerInfo arrayOfBasicBlockPlayerInfo = new ArrayOfBasicBlockPlayerInfo();
 
         for (SocialRelationshipEntity socialRelationshipEntity : socialRelationshipEntityList) {
@@ -446,7 +443,11 @@ public class SocialRelationshipBO {
     }
 
     private void addFriendToList(PersonaFriendsList personaFriendsList,
-                                 SocialRelationshipEntity socialRelationshipEntity) {
+                                 SocialRelationshipEntity socialRelationshipEntity,
+                                 Map<Long, FriendPersona> friendsByPersonaId) {
+        // FIX CRITIQUE: Respecter le paramètre "Apparaître hors ligne" de l'utilisateur
+        boolean appearOffline = socialRelationshipEntity.getRemoteUser().isAppearOffline();
+
         for (PersonaEntity personaEntity : socialRelationshipEntity.getRemoteUser().getPersonas()) {
             // AMÉLIORATION : Filtrer les personas supprimés
             if (personaEntity.getDeletedAt() != null) {
@@ -455,52 +456,42 @@ public class SocialRelationshipBO {
             }
             
             FriendPersona friendPersona = copyPersonaEntityToFriendPersona(personaEntity);
-            Long presence = getValidatedPresence(personaEntity.getPersonaId());
-            friendPersona.setPresence(presence);
+            friendPersona.setPresence(PresenceBO.PRESENCE_OFFLINE);
+
+            if (!appearOffline) {
+                friendsByPersonaId.put(personaEntity.getPersonaId(), friendPersona);
+            }
             
-            logger.debug("Added friend {} to list with validated presence {}", personaEntity.getName(), presence);
             personaFriendsList.getFriendPersona().getFriendPersona().add(friendPersona);
         }
     }
     
     /**
-     * AMÉLIORATION: Validation des présences avec gestion des erreurs
-     * Cette méthode valide et rafraîchit les présences pour éviter les incohérences
-     * FIX: Respecte désormais le paramètre appearOffline de l'utilisateur
+     * Lit en un seul HMGET la présence des amis donnés, puis rafraîchit en une série pipelinée
+     * celles des amis en ligne ou en course pour maintenir la cohérence.
+     * En cas d'erreur, les amis restent hors ligne.
      */
-    private Long getValidatedPresence(Long personaId) {
+    private void setFriendPresences(Map<Long, FriendPersona> friendsByPersonaId) {
+        if (friendsByPersonaId.isEmpty()) {
+            return;
+        }
+
         try {
-            PersonaEntity personaEntity = personaDAO.find(personaId);
-            
-            if (personaEntity == null) {
-                logger.debug("Persona {} not found, returning offline", personaId);
-                return PresenceBO.PRESENCE_OFFLINE;
-            }
-            
-            // FIX CRITIQUE: Vérifier si le joueur a activé "Apparaître hors ligne"
-            if (personaEntity.getUser().isAppearOffline()) {
-                logger.debug("Persona {} has appearOffline enabled, returning offline", personaId);
-                return PresenceBO.PRESENCE_OFFLINE;
-            }
-            
-            Long presence = presenceBO.getPresence(personaId);
-            
-            if (presence == null) {
-                logger.debug("Presence null for persona {}, returning offline", personaId);
-                return PresenceBO.PRESENCE_OFFLINE;
-            }
-            
-            // Rafraîchir la présence pour maintenir la cohérence
-            if (presence.equals(PresenceBO.PRESENCE_ONLINE) || presence.equals(PresenceBO.PRESENCE_IN_RACE)) {
-                presenceBO.refreshPresence(personaId);
-                logger.debug("Refreshed presence for persona {} to maintain consistency", personaId);
+            Map<Long, Long> presences = presenceBO.getPresences(friendsByPersonaId.keySet());
+            List<Long> personaIdsToRefresh = new ArrayList<>();
+
+            for (Map.Entry<Long, FriendPersona> entry : friendsByPersonaId.entrySet()) {
+                Long presence = presences.getOrDefault(entry.getKey(), PresenceBO.PRESENCE_OFFLINE);
+                entry.getValue().setPresence(presence);
+
+                if (presence.equals(PresenceBO.PRESENCE_ONLINE) || presence.equals(PresenceBO.PRESENCE_IN_RACE)) {
+                    personaIdsToRefresh.add(entry.getKey());
+                }
             }
-            
-            return presence;
-            
+
+            presenceBO.refreshPresencesIfExist(personaIdsToRefresh);
         } catch (Exception e) {
-            logger.warn("Error getting presence for persona {}: {}", personaId, e.getMessage());
-            return PresenceBO.PRESENCE_OFFLINE;
+            logger.warn("Error getting presences of {} friends: {}", friendsByPersonaId.size(), e.getMessage());
         }
     }
 
@@ -526,111 +517,86 @@ public class SocialRelationshipBO {
         return friendPersona;
     }
 
-    private void sendPresencePackets(PersonaEntity personaEntity, Long presence) {
-        Objects.requireNonNull(personaEntity, "personaEntity is null!");
-        
-        if (presence == null) {
-            logger.warn("Cannot send presence packets for persona {}: presence is null", personaEntity.getName());
+    private void collectPresencePackets(Long personaId, Long presence, Map<Long, List<String>> packetsByRecipient) {
+        PersonaEntity personaEntity = personaDAO.find(personaId);
+
+        if (personaEntity == null) {
+            logger.warn("Cannot handle presence update for persona {}: persona not found", personaId);
             return;
         }
-        
-        logger.debug("Sending presence packets for persona {} with presence {}", personaEntity.getName(), presence);
-        
-        int successCount = 0;
-        int failureCount = 0;
-        
+
+        if (personaEntity.getUser() == null) {
+            logger.warn("Cannot handle presence update for persona {}: user is null", personaId);
+            return;
+        }
+
+        // FIX: Ne pas envoyer de mises à jour si le joueur a "Apparaître hors ligne" activé
+        if (personaEntity.getUser().isAppearOffline()) {
+            logger.debug("Persona {} has appearOffline enabled, broadcasting OFFLINE status", personaEntity.getName());
+            presence = PresenceBO.PRESENCE_OFFLINE;
+        }
+
+        Set<Long> recipients = new HashSet<>();
+
         // Trouver toutes les relations où ce persona est l'ami distant (les personnes qui ont ce persona comme ami)
-        List<SocialRelationshipEntity> friendsWhoHaveThisPersona = socialRelationshipDAO.findByRemotePersonaId(personaEntity.getPersonaId());
-        
-        // Envoyer la mise à jour de présence seulement aux personnes qui ont ce persona comme ami
-        for (SocialRelationshipEntity relationship : friendsWhoHaveThisPersona) {
-            if (relationship.getStatus() == 1) { // Seulement les amis confirmés
-                try {
-                    // Obtenir le persona actif de l'utilisateur ami
-                    if (relationship.getUser() != null && !relationship.getUser().getPersonas().isEmpty()) {
-                        // Trouver le persona qui a une présence active (en ligne)
-                        PersonaEntity targetPersona = null;
-                        for (PersonaEntity p : relationship.getUser().getPersonas()) {
-                            if (p.getDeletedAt() == null) {
-                                Long friendPresence = presenceBO.getPresence(p.getPersonaId());
-                                if (friendPresence != null && !friendPresence.equals(PresenceBO.PRESENCE_OFFLINE)) {
-                                    targetPersona = p;
-                                    break;
-                                }
-                            }
-                        }
-                        
-                        if (targetPersona != null) {
-                            sendPresencePacketWithRetry(personaEntity, presence, targetPersona.getPersonaId());
-                            successCount++;
-                            logger.debug("Sent presence update for {} to friend {} (online)", 
-                                       personaEntity.getName(), targetPersona.getPersonaId());
-                        } else {
-                            logger.trace("Friend user {} has no online personas, skipping presence update", 
-                                       relationship.getUser().getId());
-                        }
+        List<PersonaEntity> candidates = new ArrayList<>();
+        // Seulement les amis confirmés, chargés avec leurs personas en une requête
+        for (SocialRelationshipEntity relationship : socialRelationshipDAO.findFriendsByRemotePersonaIdWithPersonas(personaId)) {
+            if (relationship.getUser() != null) {
+                for (PersonaEntity p : relationship.getUser().getPersonas()) {
+                    if (p.getDeletedAt() == null) {
+                        candidates.add(p);
                     }
-                } catch (Exception e) {
-                    failureCount++;
-                    logger.error("Error sending presence packet for persona {} to friend user {}: {}", 
-                               personaEntity.getName(), relationship.getUser().getId(), e.getMessage());
                 }
             }
         }
-        
-        // Également envoyer aux amis du joueur qui se connecte (relations bidirectionnelles)
+
+        // Également envoyer aux amis du joueur (relations bidirectionnelles)
         List<SocialRelationshipEntity> thisPersonaFriends = socialRelationshipDAO.findByUserIdAndStatus(personaEntity.getUser().getId(), 1L);
-        for (SocialRelationshipEntity relationship : thisPersonaFriends) {
-            try {
-                Long remotePersonaId = relationship.getRemotePersonaId();
-                
-                // Vérifier que l'ami distant est en ligne avant d'envoyer
-                Long remotePresence = presenceBO.getPresence(remotePersonaId);
-                if (remotePresence != null && !remotePresence.equals(PresenceBO.PRESENCE_OFFLINE)) {
-                    sendPresencePacketWithRetry(personaEntity, presence, remotePersonaId);
-                    successCount++;
-                    logger.debug("Sent presence update for {} to their online friend {}", 
-                               personaEntity.getName(), remotePersonaId);
-                } else {
-                    logger.trace("Friend persona {} is offline, skipping presence update", remotePersonaId);
-                }
-            } catch (Exception e) {
-                failureCount++;
-                logger.error("Error sending presence packet for persona {} to their friend {}: {}", 
-                           personaEntity.getName(), relationship.getRemotePersonaId(), e.getMessage());
+
+        // Présences de tous les destinataires possibles en un seul aller-retour Redis
+        Set<Long> candidateIds = candidates.stream().map(PersonaEntity::getPersonaId).collect(Collectors.toSet());
+        thisPersonaFriends.forEach(relationship -> candidateIds.add(relationship.getRemotePersonaId()));
+        Map<Long, Long> presences = presenceBO.getPresences(candidateIds);
+
+        // Un seul persona en ligne par utilisateur ami
+        Set<Long> servedUsers = new HashSet<>();
+        for (PersonaEntity p : candidates) {
+            if (isOnline(presences.get(p.getPersonaId())) && servedUsers.add(p.getUser().getId())) {
+                recipients.add(p.getPersonaId());
             }
         }
-        
-        logger.info("Presence packets sent for persona {}: {} succeeded, {} failed", 
-                   personaEntity.getName(), successCount, failureCount);
-    }
 
-    /**
-     * Envoie un paquet de présence avec retry automatique
-     */
-    private void sendPresencePacketWithRetry(PersonaEntity personaEntity, Long presence, Long targetPersonaId) {
-        int maxRetries = 2;
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                sendPresencePacket(personaEntity, presence, targetPersonaId);
-                return; // Succès
-            } catch (Exception e) {
-                if (attempt < maxRetries) {
-                    logger.debug("Retry {}/{} sending presence for {} to {}", 
-                               attempt, maxRetries, personaEntity.getName(), targetPersonaId);
-                    try {
-                        Thread.sleep(30 * attempt); // Délai croissant: 30ms, 60ms
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                } else {
-                    throw e; // Dernier essai échoué, propager l'exception
-                }
+        for (SocialRelationshipEntity relationship : thisPersonaFriends) {
+            if (isOnline(presences.get(relationship.getRemotePersonaId()))) {
+                recipients.add(relationship.getRemotePersonaId());
             }
         }
+
+        recipients.remove(0L);
+
+        if (recipients.isEmpty()) {
+            return;
+        }
+
+        XMPP_ResponseTypePersonaBase personaPacket = new XMPP_ResponseTypePersonaBase();
+        PersonaBase xmppPersonaBase = driverPersonaBO.getPersonaBase(personaEntity);
+        xmppPersonaBase.setPresence(presence);
+        personaPacket.setPersonaBase(xmppPersonaBase);
+        String packet = JAXBUtility.marshal(personaPacket);
+
+        for (Long recipient : recipients) {
+            packetsByRecipient.computeIfAbsent(recipient, k -> new ArrayList<>()).add(packet);
+        }
+
+        logger.debug("Presence packets queued for persona {} (presence={}): {} recipients",
+                personaEntity.getName(), presence, recipients.size());
     }
-    
+
+    private static boolean isOnline(Long presence) {
+        return presence != null && !presence.equals(PresenceBO.PRESENCE_OFFLINE);
+    }
+
     private void sendPresencePacket(PersonaEntity personaEntity, Long presence,
                                     Long targetPersonaId) {
         if (personaEntity == null || targetPersonaId == null || targetPersonaId.equals(0L)) {
@@ -657,39 +623,33 @@ public class SocialRelationshipBO {
 
     /**
      * AMÉLIORATION: Nettoyage périodique des présences des amis
-     * Cette méthode nettoie les présences incohérentes et actualise les listes d'amis
+     * Rafraîchit la présence des personas en ligne qui sont l'ami confirmé d'au moins un joueur.
+     * Seuls les personas présents dans le store de présence sont considérés (une fois chacun),
+     * et le rafraîchissement Redis est pipeliné par lots.
      */
     @Schedule(minute = "*/5", hour = "*", persistent = false)
     public void cleanupFriendsPresences() {
         logger.debug("Starting friends presence cleanup task");
         
         try {
-            // Récupérer toutes les relations d'amitié actives
-            List<SocialRelationshipEntity> friendships = socialRelationshipDAO.findByStatus(1L);
-            
+            List<Long> onlinePersonaIds = presenceBO.getOnlinePersonaIds();
             int refreshedCount = 0;
-            int errorCount = 0;
-            
-            for (SocialRelationshipEntity friendship : friendships) {
+            int checkedCount = 0;
+
+            for (int i = 0; i < onlinePersonaIds.size(); i += FRIENDS_PRESENCE_REFRESH_BATCH_SIZE) {
+                List<Long> batch = onlinePersonaIds.subList(i, Math.min(i + FRIENDS_PRESENCE_REFRESH_BATCH_SIZE, onlinePersonaIds.size()));
+
                 try {
-                    // Vérifier et rafraîchir les présences des amis
-                    if (friendship.getRemoteUser() != null && !friendship.getRemoteUser().getPersonas().isEmpty()) {
-                        for (PersonaEntity persona : friendship.getRemoteUser().getPersonas()) {
-                            if (persona.getDeletedAt() == null) {
-                                // Utiliser la méthode sécurisée qui ne recrée pas de présence
-                                if (presenceBO.refreshPresenceIfExists(persona.getPersonaId())) {
-                                    refreshedCount++;
-                                }
-                            }
-                        }
-                    }
+                    List<Long> withFriends = socialRelationshipDAO.findPersonaIdsWithFriends(batch);
+                    checkedCount += batch.size();
+                    refreshedCount += presenceBO.refreshPresencesIfExist(withFriends);
                 } catch (Exception e) {
-                    logger.warn("Error refreshing presence for friendship {}: {}", friendship.getId(), e.getMessage());
-                    errorCount++;
+                    logger.warn("Error refreshing a batch of friend presences: {}", e.getMessage());
                 }
             }
-            
-            logger.debug("Friends presence cleanup completed: {} refreshed, {} errors", refreshedCount, errorCount);
+
+            friendsPresenceRefreshCounter.inc(refreshedCount);
+            logger.debug("Friends presence cleanup completed: {} online personas checked, {} refreshed", checkedCount, refreshedCount);
             
         } catch (Exception e) {
             logger.error("Error during friends presence cleanup", e);
@@ -10,6 +10,10 @@ import com.soapboxrace.core.auth.AuthException;
 import com.soapboxrace.core.auth.AuthResultVO;
 import com.soapboxrace.core.auth.BanInfoVO;
 import com.soapboxrace.core.auth.verifiers.PasswordVerifier;
+import com.soapboxrace.core.bo.util.HashedWheelTimer;
+import com.soapboxrace.core.bo.util.InMemoryTokenSessionStore;
+import com.soapboxrace.core.bo.util.RedisTokenSessionStore;
+import com.soapboxrace.core.bo.util.TokenSessionStore;
 import com.soapboxrace.core.dao.UserDAO;
 import com.soapboxrace.core.engine.EngineException;
 import com.soapboxrace.core.engine.EngineExceptionCode;
@@ -17,23 +21,47 @@ import com.soapboxrace.core.jpa.BanEntity;
 import com.soapboxrace.core.jpa.PersonaEntity;
 import com.soapboxrace.core.jpa.TokenSessionEntity;
 import com.soapboxrace.core.jpa.UserEntity;
-
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.DependsOn;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import javax.inject.Inject;
-import javax.enterprise.context.ApplicationScoped;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.NotAuthorizedException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game sessions. They are kept in a {@link TokenSessionStore}: in the heap of this node by default, or in Redis
+ * (SBRWR_SESSION_STORE=redis) so that several core nodes can share them and sessions survive a restart.
+ * Changes to a session must go through this BO so that they reach the store.
+ * <p>
+ * Inactive sessions are expired by a timing wheel: each session has one timeout, moved on every heartbeat, and only
+ * the sessions whose timeout fired are examined, in batches (see {@link #expireInactiveSessions()}). Sessions already
+ * in the store at startup, and sessions first read by this node, are timed as well.
+ */
 @Startup
 @Singleton
+@DependsOn("UserWriteBehindBO")
+@Lock(LockType.READ)
 public class TokenSessionBO {
 
     @Inject
@@ -51,11 +79,76 @@ public class TokenSessionBO {
     @Inject
     private PresenceBO presenceBO;
 
+    @Inject
+    private UserWriteBehindBO userWriteBehindBO;
+
     @Inject
     private LobbyBO lobbyBO;
 
-    private final Map<String, TokenSessionEntity> sessionKeyToTokenMap = new ConcurrentHashMap<>();
-    private final Map<Long, String> userIdToSessionKeyMap = new ConcurrentHashMap<>();
+    @Inject
+    private RedisBO redisBO;
+
+    @Inject
+    private Logger logger;
+
+    @Resource
+    private ManagedThreadFactory managedThreadFactory;
+
+    private TokenSessionStore store;
+
+    private HashedWheelTimer expiryTimer;
+
+    // Timeout d'inactivité de chaque session connue de ce nœud
+    private final Map<String, HashedWheelTimer.Timeout> expiryTimeouts = new ConcurrentHashMap<>();
+
+    // Sessions dont le timeout a expiré, examinées au prochain passage de expireInactiveSessions
+    private final Queue<String> dueSessions = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    public void init() {
+        String storeType = parameterBO.getStrParam("SBRWR_SESSION_STORE", "memory");
+
+        if ("redis".equalsIgnoreCase(storeType)) {
+            if (parameterBO.getBoolParam("ENABLE_REDIS")) {
+                store = new RedisTokenSessionStore(redisBO.getConnection(), redisBO.createPubSub(), userDAO::findDetached);
+                logger.info("Game sessions are stored in Redis");
+            } else {
+                logger.warn("SBRWR_SESSION_STORE is redis but Redis is not enabled, sessions are kept in memory");
+            }
+        }
+
+        if (store == null) {
+            store = new InMemoryTokenSessionStore();
+        }
+
+        // La tâche se contente de mettre la session en file : elle tourne sur le thread de la roue
+        expiryTimer = new HashedWheelTimer("session-expiry", managedThreadFactory, Runnable::run, 1, TimeUnit.SECONDS, 512);
+
+        // Sessions restées dans le store (redémarrage) : sans timeout, personne ne les expirerait
+        try {
+            int activePersonaTimeout = getActivePersonaTimeout();
+            int count = 0;
+            for (String sessionKey : store.getSessionKeys()) {
+                scheduleExpiry(sessionKey, activePersonaTimeout);
+                count++;
+            }
+            if (count > 0) {
+                logger.info("Scheduled the expiry of {} sessions found in the store", count);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to list the sessions in the store, they are timed when first read: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (expiryTimer != null) {
+            expiryTimer.stop();
+        }
+        if (store != null) {
+            store.close();
+        }
+    }
 
     public String createToken(UserEntity userEntity, String clientHostName) {
         Date expirationDate = getMinutes(parameterBO.getIntParam("SESSION_LENGTH_MINUTES", 130));
@@ -75,14 +168,14 @@ public class TokenSessionBO {
             tokenSessionEntity.getAllowedPersonaIds().add(personaEntity.getPersonaId());
         }
 
-        this.sessionKeyToTokenMap.put(randomUUID, tokenSessionEntity);
-        this.userIdToSessionKeyMap.put(userEntity.getId(), randomUUID);
+        this.store.put(tokenSessionEntity);
+        scheduleExpiry(randomUUID, getActivePersonaTimeout());
 
         return randomUUID;
     }
 
     public TokenSessionEntity validateToken(Long userId, String securityToken) {
-        TokenSessionEntity tokenSessionEntity = sessionKeyToTokenMap.get(securityToken);
+        TokenSessionEntity tokenSessionEntity = getSession(securityToken);
         if (tokenSessionEntity == null || !tokenSessionEntity.getUserEntity().getId().equals(userId)) {
             throw new NotAuthorizedException("Invalid Token");
         }
@@ -97,10 +190,10 @@ public class TokenSessionBO {
     }
 
     public TokenSessionEntity findByUserId(Long userId) {
-        String sessionKey = this.userIdToSessionKeyMap.get(userId);
+        String sessionKey = this.store.getSessionKey(userId);
 
         if (sessionKey != null) {
-            return Objects.requireNonNull(this.sessionKeyToTokenMap.get(sessionKey), () -> String.format("User %d has session key, but session is missing!", userId));
+            return Objects.requireNonNull(getSession(sessionKey), () -> String.format("User %d has session key, but session is missing!", userId));
         }
 
         return null;
@@ -108,33 +201,62 @@ public class TokenSessionBO {
 
     public void removeSession(String sessionKey) {
         if (sessionKey != null) {	
-            this.sessionKeyToTokenMap.remove(sessionKey);	
+            this.store.remove(sessionKey);
         }
     }
 
 
     public void deleteByUserId(Long userId) {
-        String sessionKey = this.userIdToSessionKeyMap.remove(userId);
-        if (sessionKey != null) {
-            // CRITICAL FIX: Nettoyer les lobbies actifs avant de supprimer la session
-            // Cela évite les lobbies fantômes si un joueur crash/quitte sans décliner
-            TokenSessionEntity tokenSession = this.sessionKeyToTokenMap.get(sessionKey);
-            if (tokenSession != null && tokenSession.getAllowedPersonaIds() != null) {
-                // Retirer tous les personas de ce compte de leurs lobbies actifs
-                for (Long personaId : tokenSession.getAllowedPersonaIds()) {
-                    try {
-                        lobbyBO.removePersonaFromAllActiveLobbies(personaId);
-                    } catch (Exception e) {
-                        // Ne pas bloquer la déconnexion si le nettoyage échoue
-                        // Log en debug seulement pour éviter de spammer les logs
-                    }
-                }
-            }
-            
-            removeSession(sessionKey);
+        List<Long> personaIds = new ArrayList<>();
 
+        if (closeSession(userId, personaIds)) {
+            removeFromLobbies(personaIds);
             //and delete status for this persona in db:
-            userDAO.updateUserState(userId, "OFFLINE");
+            userWriteBehindBO.updateState(userId, "OFFLINE");
+        }
+    }
+
+    /**
+     * Removes the session of the given user, without updating the user. The personas of the user still have to be
+     * removed from their lobbies, see {@link #removeFromLobbies(Collection)}.
+     *
+     * @param userId     the user ID
+     * @param personaIds receives the personas of the session
+     * @return true if the user had a session
+     */
+    private boolean closeSession(Long userId, Collection<Long> personaIds) {
+        String sessionKey = this.store.removeUser(userId);
+        if (sessionKey == null) {
+            return false;
+        }
+
+        HashedWheelTimer.Timeout expiryTimeout = this.expiryTimeouts.remove(sessionKey);
+        if (expiryTimeout != null) {
+            expiryTimeout.cancel();
+        }
+
+        // Les personas de ce compte seront retirés de leurs lobbies actifs (évite les lobbies fantômes
+        // si un joueur crash/quitte sans décliner)
+        TokenSessionEntity tokenSession = this.store.get(sessionKey);
+        if (tokenSession != null && tokenSession.getAllowedPersonaIds() != null) {
+            personaIds.addAll(tokenSession.getAllowedPersonaIds());
+        }
+
+        removeSession(sessionKey);
+        return true;
+    }
+
+    /**
+     * Removes the given personas from their active lobbies, looking the lobbies up in a single query.
+     *
+     * @param personaIds the persona IDs
+     */
+    private void removeFromLobbies(Collection<Long> personaIds) {
+        try {
+            lobbyBO.removePersonasFromAllActiveLobbies(personaIds);
+        } catch (Exception e) {
+            // Ne pas bloquer la déconnexion si le nettoyage échoue
+            logger.debug("Failed to remove {} personas from their lobbies: {}", personaIds.size(), e.getMessage(), e);
         }
     }
 
@@ -176,7 +298,7 @@ public class TokenSessionBO {
         }
 
         Long userId = userEntity.getId();
-        userDAO.updateLastLogin(userId, LocalDateTime.now());
+        userWriteBehindBO.updateLastLogin(userId, LocalDateTime.now());
         // DON'T modify the managed entity - it would trigger automatic save with default values!
         deleteByUserId(userId);
         String randomUUID = createToken(userEntity, httpRequest.getRemoteHost());
@@ -200,21 +322,52 @@ public class TokenSessionBO {
         }
 
         tokenSessionEntity.setActivePersonaId(personaId);
+        store.save(tokenSessionEntity, TokenSessionStore.Field.ACTIVE_PERSONA_ID);
     }
 
     public void setActiveLobbyId(TokenSessionEntity tokenSessionEntity, Long lobbyId) {
         Objects.requireNonNull(tokenSessionEntity);
         tokenSessionEntity.setActiveLobbyId(lobbyId);
+        store.save(tokenSessionEntity, TokenSessionStore.Field.ACTIVE_LOBBY_ID);
     }
 
     public void setEventSessionId(TokenSessionEntity tokenSessionEntity, Long eventSessionId) {
         Objects.requireNonNull(tokenSessionEntity);
         tokenSessionEntity.setEventSessionId(eventSessionId);
+        store.save(tokenSessionEntity, TokenSessionStore.Field.EVENT_SESSION_ID);
     }
 
     public void setRelayCryptoTicket(TokenSessionEntity tokenSessionEntity, String relayCryptoTicket) {
         Objects.requireNonNull(tokenSessionEntity);
         tokenSessionEntity.setRelayCryptoTicket(relayCryptoTicket);
+        store.save(tokenSessionEntity, TokenSessionStore.Field.RELAY_CRYPTO_TICKET);
+    }
+
+    /**
+     * Marks the player as entering or leaving the safehouse.
+     *
+     * @param tokenSessionEntity the session of the player
+     * @param inSafehouse        true when the player enters the safehouse
+     */
+    public void setInSafehouse(TokenSessionEntity tokenSessionEntity, boolean inSafehouse) {
+        Objects.requireNonNull(tokenSessionEntity);
+        tokenSessionEntity.setInSafehouse(inSafehouse);
+        if (inSafehouse) {
+            tokenSessionEntity.setSafehouseEnteredAt(System.currentTimeMillis());
+        }
+        store.save(tokenSessionEntity, TokenSessionStore.Field.IN_SAFEHOUSE);
+    }
+
+    public void addAllowedPersonaId(TokenSessionEntity tokenSessionEntity, Long personaId) {
+        Objects.requireNonNull(tokenSessionEntity);
+        tokenSessionEntity.getAllowedPersonaIds().add(personaId);
+        store.save(tokenSessionEntity, TokenSessionStore.Field.ALLOWED_PERSONA_IDS);
+    }
+
+    public void removeAllowedPersonaId(TokenSessionEntity tokenSessionEntity, Long personaId) {
+        Objects.requireNonNull(tokenSessionEntity);
+        tokenSessionEntity.getAllowedPersonaIds().remove(personaId);
+        store.save(tokenSessionEntity, TokenSessionStore.Field.ALLOWED_PERSONA_IDS);
     }
 
     private Date getMinutes(int minutes) {
@@ -231,9 +384,11 @@ public class TokenSessionBO {
      */
     public void recordHeartbeat(String securityToken) {
         if (securityToken != null) {
-            TokenSessionEntity session = this.sessionKeyToTokenMap.get(securityToken);
+            TokenSessionEntity session = this.store.get(securityToken);
             if (session != null) {
                 session.setLastHeartbeatTime(System.currentTimeMillis());
+                this.store.saveHeartbeat(session);
+                scheduleExpiry(securityToken, getActivePersonaTimeout());
             }
         }
     }
@@ -259,65 +414,129 @@ public class TokenSessionBO {
      * - Sessions with active persona: expire after 3 minutes without heartbeat (default)
      * - Sessions without active persona: expire after 10 minutes without heartbeat (default)
      * 
-     * When a session expires, the user's presence is set to OFFLINE.
-     * This task runs every minute.
+     * Only the sessions whose timeout fired since the last run are examined. A session is first timed with the
+     * shorter (active persona) timeout, and timed again for the remaining time if it has no active persona or if a
+     * heartbeat was received by another node.
+     * When sessions expire, their personas are set OFFLINE in one batch and their users in one UPDATE.
+     * This task runs every 10 seconds.
      */
-    @Schedule(minute = "*/1", hour = "*", persistent = false)
+    @Schedule(second = "*/10", minute = "*", hour = "*", persistent = false)
     public void expireInactiveSessions() {
+        if (this.dueSessions.isEmpty()) {
+            return;
+        }
+
         long currentTime = System.currentTimeMillis();
-        int activePersonaTimeout = parameterBO.getIntParam("SESSION_HEARTBEAT_TIMEOUT_ACTIVE", 3) * 60 * 1000; // minutes to ms
+        int activePersonaTimeout = getActivePersonaTimeout();
         int inactivePersonaTimeout = parameterBO.getIntParam("SESSION_HEARTBEAT_TIMEOUT_INACTIVE", 10) * 60 * 1000; // minutes to ms
-        
-        int expiredCount = 0;
-        int expiredInRaceCount = 0;
-        
-        for (Map.Entry<String, TokenSessionEntity> entry : this.sessionKeyToTokenMap.entrySet()) {
-            TokenSessionEntity session = entry.getValue();
-            Long lastHeartbeat = session.getLastHeartbeatTime();
-            
-            if (lastHeartbeat == null) {
-                // No heartbeat recorded, skip expiration (shouldn't happen after this fix)
+
+        List<TokenSessionEntity> expiredSessions = new ArrayList<>();
+        String sessionKey;
+
+        while ((sessionKey = this.dueSessions.poll()) != null) {
+            // Le heartbeat a pu être reçu par un autre nœud : relire la session avant de l'expirer
+            TokenSessionEntity session = this.store.getLatest(sessionKey);
+            if (session == null || session.getLastHeartbeatTime() == null) {
                 continue;
             }
-            
-            long timeSinceLastHeartbeat = currentTime - lastHeartbeat;
+
             boolean hasActivePersona = session.getActivePersonaId() != null && !session.getActivePersonaId().equals(0L);
-            int timeoutThreshold = hasActivePersona ? activePersonaTimeout : inactivePersonaTimeout;
-            
+            long timeoutThreshold = hasActivePersona ? activePersonaTimeout : inactivePersonaTimeout;
+            long timeSinceLastHeartbeat = currentTime - session.getLastHeartbeatTime();
+
             if (timeSinceLastHeartbeat > timeoutThreshold) {
-                // Session has expired due to no heartbeat
-                Long userId = session.getUserEntity().getId();
-                Long activePersonaId = session.getActivePersonaId();
-                
-                // Vérifier si le joueur était en course lors de la déconnexion
-                boolean wasInRace = false;
-                if (activePersonaId != null && !activePersonaId.equals(0L)) {
-                    wasInRace = presenceBO.isPlayerInRace(activePersonaId);
-                    if (wasInRace) {
-                        expiredInRaceCount++;
-                    }
-                }
-                
-                System.out.println(String.format(
-                    "[TokenSessionBO] Expiring session for user %d (persona %d) - no heartbeat for %d ms (threshold: %d ms) - wasInRace: %s",
-                    userId, activePersonaId, timeSinceLastHeartbeat, timeoutThreshold, wasInRace
-                ));
-                
-                // Update presence to offline before deleting session
-                // Force la transition même si le joueur était en course
-                if (activePersonaId != null && !activePersonaId.equals(0L)) {
-                    presenceBO.forcePresenceOffline(activePersonaId);
-                }
-                
-                // Delete the session
-                deleteByUserId(userId);
-                expiredCount++;
+                expiredSessions.add(session);
+            } else {
+                scheduleExpiry(sessionKey, timeoutThreshold - timeSinceLastHeartbeat);
+            }
+        }
+
+        if (expiredSessions.isEmpty()) {
+            return;
+        }
+
+        List<Long> activePersonaIds = new ArrayList<>();
+        for (TokenSessionEntity session : expiredSessions) {
+            if (session.getActivePersonaId() != null && !session.getActivePersonaId().equals(0L)) {
+                activePersonaIds.add(session.getActivePersonaId());
             }
         }
-        
-        if (expiredCount > 0) {
-            System.out.println(String.format("[TokenSessionBO] Expired %d inactive sessions (%d were in race)", 
-                                            expiredCount, expiredInRaceCount));
+
+        // Vérifier si les joueurs étaient en course lors de la déconnexion (un seul HMGET)
+        Map<Long, Long> presences = presenceBO.getPresences(activePersonaIds);
+        List<Long> expiredUserIds = new ArrayList<>();
+        List<Long> offlinePersonaIds = new ArrayList<>();
+        List<Long> expiredPersonaIds = new ArrayList<>();
+        int expiredInRaceCount = 0;
+
+        for (TokenSessionEntity session : expiredSessions) {
+            Long userId = session.getUserEntity().getId();
+            Long activePersonaId = session.getActivePersonaId();
+            boolean wasInRace = activePersonaId != null && PresenceBO.PRESENCE_IN_RACE.equals(presences.get(activePersonaId));
+
+            // Un autre nœud a pu expirer la session entre-temps
+            if (!closeSession(userId, expiredPersonaIds)) {
+                continue;
+            }
+
+            logger.debug("Expired session for user {} (persona {}) - no heartbeat for {} ms - wasInRace: {}",
+                    userId, activePersonaId, currentTime - session.getLastHeartbeatTime(), wasInRace);
+
+            expiredUserIds.add(userId);
+            if (activePersonaId != null && !activePersonaId.equals(0L)) {
+                offlinePersonaIds.add(activePersonaId);
+            }
+            if (wasInRace) {
+                expiredInRaceCount++;
+            }
+        }
+
+        if (expiredUserIds.isEmpty()) {
+            return;
+        }
+
+        removeFromLobbies(expiredPersonaIds);
+
+        // Force la transition même si le joueur était en course
+        presenceBO.forcePresencesOffline(offlinePersonaIds);
+        userWriteBehindBO.updateStates(expiredUserIds, "OFFLINE");
+
+        logger.info("Expired {} inactive sessions ({} were in race)", expiredUserIds.size(), expiredInRaceCount);
+    }
+
+    private int getActivePersonaTimeout() {
+        return parameterBO.getIntParam("SESSION_HEARTBEAT_TIMEOUT_ACTIVE", 3) * 60 * 1000; // minutes to ms
+    }
+
+    /**
+     * Reads a session from the store. A session this node has no timeout for (created by another node, or before a
+     * restart) is timed from its last heartbeat, so that it expires even if it is never seen again by its creator.
+     */
+    private TokenSessionEntity getSession(String sessionKey) {
+        TokenSessionEntity session = this.store.get(sessionKey);
+
+        if (session != null && !this.expiryTimeouts.containsKey(sessionKey)) {
+            Long lastHeartbeatTime = session.getLastHeartbeatTime();
+            long elapsed = lastHeartbeatTime != null ? System.currentTimeMillis() - lastHeartbeatTime : 0;
+            scheduleExpiry(sessionKey, Math.max(0, getActivePersonaTimeout() - elapsed));
+        }
+
+        return session;
+    }
+
+    /**
+     * (Re)starts the inactivity timeout of a session, replacing the previous one.
+     */
+    private void scheduleExpiry(String sessionKey, long delayMillis) {
+        HashedWheelTimer.Timeout timeout = expiryTimer.newTimeout(t -> {
+            if (this.expiryTimeouts.remove(sessionKey, t)) {
+                this.dueSessions.add(sessionKey);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+
+        HashedWheelTimer.Timeout previous = this.expiryTimeouts.put(sessionKey, timeout);
+        if (previous != null) {
+            previous.cancel();
         }
     }
-}
\ No newline at end of file
+}
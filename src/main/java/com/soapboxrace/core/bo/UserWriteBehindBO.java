@@ -0,0 +1,228 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.dao.UserDAO;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for the user columns written on every login, logout and session expiry: state, last login,
+ * HWID and game hardware hash.
+ * <p>
+ * Writes are coalesced per user (the last value of each column wins) and flushed every second with one JDBC batch
+ * per column, outside of the request transactions. The buffer is flushed synchronously on shutdown.
+ * <p>
+ * These columns are mapped with {@code updatable = false} in {@link com.soapboxrace.core.jpa.UserEntity}, so that
+ * updating a whole user (admin tools, password recovery) never overwrites a buffered value with the one it read
+ * earlier; after the insert of a user they are only written here. The buffer is per node: a value buffered on
+ * another node is only visible once that node has flushed it.
+ */
+@Startup
+@Singleton
+@Lock(LockType.READ)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class UserWriteBehindBO {
+    private static final Logger logger = LoggerFactory.getLogger(UserWriteBehindBO.class);
+
+    private final Map<Long, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+
+    // Un seul flush à la fois, même si le précédent dure plus d'une seconde
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Inject
+    private UserDAO userDAO;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Counter flushedCounter;
+
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        flushedCounter = metricRegistry.counter("user_write_behind.flushed");
+        failedCounter = metricRegistry.counter("user_write_behind.failed");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushLock.lock();
+
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void updateState(Long userId, String state) {
+        pendingWrites.compute(userId, (k, write) -> {
+            PendingWrite pendingWrite = write != null ? write : new PendingWrite();
+            pendingWrite.state = state;
+            return pendingWrite;
+        });
+    }
+
+    public void updateStates(Collection<Long> userIds, String state) {
+        for (Long userId : userIds) {
+            updateState(userId, state);
+        }
+    }
+
+    public void updateLastLogin(Long userId, LocalDateTime lastLogin) {
+        pendingWrites.compute(userId, (k, write) -> {
+            PendingWrite pendingWrite = write != null ? write : new PendingWrite();
+            pendingWrite.lastLogin = lastLogin;
+            return pendingWrite;
+        });
+    }
+
+    public void updateHwid(Long userId, String hwid) {
+        pendingWrites.compute(userId, (k, write) -> {
+            PendingWrite pendingWrite = write != null ? write : new PendingWrite();
+            pendingWrite.hwid = hwid;
+            return pendingWrite;
+        });
+    }
+
+    public void updateGameHardwareHashAndState(Long userId, String gameHardwareHash, String state) {
+        pendingWrites.compute(userId, (k, write) -> {
+            PendingWrite pendingWrite = write != null ? write : new PendingWrite();
+            pendingWrite.state = state;
+            pendingWrite.gameHardwareHash = gameHardwareHash;
+            return pendingWrite;
+        });
+    }
+
+    /**
+     * Returns the game hardware hash of a user that has not been written yet, so that a reader of the column does not
+     * see a value up to one flush interval old. Only the writes buffered on this node are known.
+     *
+     * @param userId the user ID
+     * @return the buffered game hardware hash, or {@code null} if none is pending
+     */
+    public String getPendingGameHardwareHash(Long userId) {
+        PendingWrite write = pendingWrites.get(userId);
+        return write != null ? write.gameHardwareHash : null;
+    }
+
+    /**
+     * @return the number of users with buffered writes
+     */
+    public int getPendingCount() {
+        return pendingWrites.size();
+    }
+
+    @Schedule(second = "*", minute = "*", hour = "*", persistent = false)
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+
+        Map<Long, PendingWrite> writes = new HashMap<>();
+        for (Long userId : pendingWrites.keySet()) {
+            PendingWrite write = pendingWrites.remove(userId);
+            if (write != null) {
+                writes.put(userId, write);
+            }
+        }
+
+        Map<Long, String> states = new HashMap<>();
+        Map<Long, LocalDateTime> lastLogins = new HashMap<>();
+        Map<Long, String> hwids = new HashMap<>();
+        Map<Long, String> gameHardwareHashes = new HashMap<>();
+
+        for (Map.Entry<Long, PendingWrite> entry : writes.entrySet()) {
+            PendingWrite write = entry.getValue();
+
+            if (write.state != null) {
+                states.put(entry.getKey(), write.state);
+            }
+            if (write.lastLogin != null) {
+                lastLogins.put(entry.getKey(), write.lastLogin);
+            }
+            if (write.hwid != null) {
+                hwids.put(entry.getKey(), write.hwid);
+            }
+            if (write.gameHardwareHash != null) {
+                gameHardwareHashes.put(entry.getKey(), write.gameHardwareHash);
+            }
+        }
+
+        try {
+            userDAO.batchUpdateUserColumns(states, lastLogins, hwids, gameHardwareHashes);
+            flushedCounter.inc(writes.size());
+        } catch (Exception e) {
+            failedCounter.inc();
+            logger.error("Failed to write {} buffered user updates, retrying at the next flush: {}", writes.size(),
+                    e.getMessage(), e);
+
+            // Remettre les écritures en attente sans écraser celles reçues depuis
+            writes.forEach((userId, write) -> pendingWrites.merge(userId, write, PendingWrite::mergeOlder));
+        }
+    }
+
+    /**
+     * The buffered columns of a user; {@code null} means unchanged. Only modified inside
+     * {@link ConcurrentHashMap#compute}, so never concurrently; volatile so that they can be read outside of it.
+     */
+    private static class PendingWrite {
+        private volatile String state;
+        private volatile LocalDateTime lastLogin;
+        private volatile String hwid;
+        private volatile String gameHardwareHash;
+
+        static PendingWrite mergeOlder(PendingWrite newer, PendingWrite older) {
+            if (newer.state == null) {
+                newer.state = older.state;
+            }
+            if (newer.lastLogin == null) {
+                newer.lastLogin = older.lastLogin;
+            }
+            if (newer.hwid == null) {
+                newer.hwid = older.hwid;
+            }
+            if (newer.gameHardwareHash == null) {
+                newer.gameHardwareHash = older.gameHardwareHash;
+            }
+            return newer;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Translates simple achievement trigger scripts into Java predicates.
+ * <p>
+ * Supported subset: property paths on the bindings ({@code ctx.eventModeInt}, {@code persona.getLevel()}),
+ * number/string/boolean/null literals, {@code == != === !== < <= > >=}, {@code && || !} and parentheses.
+ * Anything else is not translated and stays on the script engine. At run time, a compiled trigger returns
+ * {@code null} whenever JavaScript would coerce or fail (mixed types, host objects, null dereference...),
+ * so that the caller can fall back to the script engine with identical results.
+ */
+public final class AchievementTriggerCompiler {
+
+    private static final Map<Class<?>, Map<String, Optional<Member>>> MEMBER_CACHE = new ConcurrentHashMap<>();
+
+    private AchievementTriggerCompiler() {
+    }
+
+    /**
+     * A trigger compiled to Java.
+     */
+    public interface CompiledTrigger {
+        /**
+         * Evaluates the trigger.
+         *
+         * @param bindings the script bindings
+         * @return the result, or {@code null} if the trigger must be evaluated by the script engine
+         */
+        Boolean test(Map<String, Object> bindings);
+    }
+
+    /**
+     * Compiles the given trigger script.
+     *
+     * @param script the script
+     * @return the compiled trigger, or {@code null} if the script is outside of the supported subset
+     */
+    public static CompiledTrigger compile(String script) {
+        if (script == null) {
+            return null;
+        }
+
+        String trimmed = script.trim();
+
+        if (trimmed.endsWith(";")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+        }
+
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+
+        try {
+            Parser parser = new Parser(tokenize(trimmed));
+            Node root = parser.parseOr();
+
+            if (!parser.atEnd()) {
+                return null;
+            }
+
+            return bindings -> {
+                try {
+                    Object result = root.eval(bindings);
+
+                    return result instanceof Boolean ? (Boolean) result : null;
+                } catch (Fallback e) {
+                    return null;
+                }
+            };
+        } catch (Fallback e) {
+            return null;
+        }
+    }
+
+    private interface Node {
+        Object eval(Map<String, Object> bindings);
+    }
+
+    /**
+     * Signals an expression or a value outside of the supported subset.
+     */
+    private static final class Fallback extends RuntimeException {
+        private static final Fallback INSTANCE = new Fallback();
+
+        private Fallback() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Tokenizer
+
+    private static List<String> tokenize(String source) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+
+        while (i < source.length()) {
+            char c = source.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i))) {
+                    i++;
+                }
+                tokens.add(source.substring(start, i));
+            } else if (Character.isDigit(c)) {
+                int start = i;
+                while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(source.substring(start, i));
+            } else if (c == '\'' || c == '"') {
+                int end = source.indexOf(c, i + 1);
+                if (end < 0 || source.substring(i + 1, end).indexOf('\\') >= 0) {
+                    throw Fallback.INSTANCE;
+                }
+                tokens.add(source.substring(i, end + 1));
+                i = end + 1;
+            } else if (source.startsWith("===", i) || source.startsWith("!==", i)) {
+                tokens.add(source.substring(i, i + 3));
+                i += 3;
+            } else if (source.startsWith("==", i) || source.startsWith("!=", i) || source.startsWith("<=", i)
+                    || source.startsWith(">=", i) || source.startsWith("&&", i) || source.startsWith("||", i)) {
+                tokens.add(source.substring(i, i + 2));
+                i += 2;
+            } else if ("<>!().-".indexOf(c) >= 0) {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else {
+                throw Fallback.INSTANCE;
+            }
+        }
+
+        return tokens;
+    }
+
+    // Parser
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() {
+            return position == tokens.size();
+        }
+
+        private String peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        private boolean accept(String token) {
+            if (token.equals(peek())) {
+                position++;
+                return true;
+            }
+
+            return false;
+        }
+
+        private String next() {
+            if (atEnd()) {
+                throw Fallback.INSTANCE;
+            }
+
+            return tokens.get(position++);
+        }
+
+        Node parseOr() {
+            Node left = parseAnd();
+
+            while (accept("||")) {
+                Node l = left;
+                Node r = parseAnd();
+                left = b -> asBoolean(l.eval(b)) || asBoolean(r.eval(b));
+            }
+
+            return left;
+        }
+
+        private Node parseAnd() {
+            Node left = parseEquality();
+
+            while (accept("&&")) {
+                Node l = left;
+                Node r = parseEquality();
+                left = b -> asBoolean(l.eval(b)) && asBoolean(r.eval(b));
+            }
+
+            return left;
+        }
+
+        private Node parseEquality() {
+            Node left = parseRelational();
+
+            while (true) {
+                String op = peek();
+
+                if (!"==".equals(op) && !"!=".equals(op) && !"===".equals(op) && !"!==".equals(op)) {
+                    return left;
+                }
+
+                position++;
+                Node l = left;
+                Node r = parseRelational();
+                boolean strict = op.length() == 3;
+                boolean negate = op.charAt(0) == '!';
+                left = b -> negate != equal(l.eval(b), r.eval(b), strict);
+            }
+        }
+
+        private Node parseRelational() {
+            Node left = parseUnary();
+
+            while (true) {
+                String op = peek();
+
+                if (!"<".equals(op) && !"<=".equals(op) && !">".equals(op) && !">=".equals(op)) {
+                    return left;
+                }
+
+                position++;
+                Node l = left;
+                Node r = parseUnary();
+                left = b -> compare(l.eval(b), r.eval(b), op);
+            }
+        }
+
+        private Node parseUnary() {
+            if (accept("!")) {
+                Node operand = parseUnary();
+                return b -> !asBoolean(operand.eval(b));
+            }
+
+            if (accept("-")) {
+                Double value = parseNumber(next());
+                return b -> -value;
+            }
+
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            String token = next();
+
+            if ("(".equals(token)) {
+                Node inner = parseOr();
+
+                if (!accept(")")) {
+                    throw Fallback.INSTANCE;
+                }
+
+                return inner;
+            }
+
+            if (token.charAt(0) == '\'' || token.charAt(0) == '"') {
+                String value = token.substring(1, token.length() - 1);
+                return b -> value;
+            }
+
+            if (Character.isDigit(token.charAt(0))) {
+                Double value = parseNumber(token);
+                return b -> value;
+            }
+
+            switch (token) {
+                case "true":
+                    return b -> Boolean.TRUE;
+                case "false":
+                    return b -> Boolean.FALSE;
+                case "null":
+                    return b -> null;
+                default:
+                    break;
+            }
+
+            if (!Character.isJavaIdentifierStart(token.charAt(0)) || "(".equals(peek())) {
+                throw Fallback.INSTANCE;
+            }
+
+            return parsePath(token);
+        }
+
+        private Node parsePath(String root) {
+            Node node = b -> {
+                if (!b.containsKey(root)) {
+                    throw Fallback.INSTANCE;
+                }
+
+                return b.get(root);
+            };
+
+            while (accept(".")) {
+                String name = next();
+
+                if (!Character.isJavaIdentifierStart(name.charAt(0))) {
+                    throw Fallback.INSTANCE;
+                }
+
+                Node target = node;
+
+                if (accept("(")) {
+                    if (!accept(")")) {
+                        throw Fallback.INSTANCE;
+                    }
+
+                    node = b -> invoke(target.eval(b), name, true);
+                } else {
+                    node = b -> invoke(target.eval(b), name, false);
+                }
+            }
+
+            return node;
+        }
+
+        private static Double parseNumber(String token) {
+            try {
+                return Double.valueOf(token);
+            } catch (NumberFormatException e) {
+                throw Fallback.INSTANCE;
+            }
+        }
+    }
+
+    // Runtime
+
+    private static boolean asBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+
+        throw Fallback.INSTANCE;
+    }
+
+    private static boolean isPrimitive(Object value) {
+        return value instanceof Number || value instanceof String || value instanceof Boolean;
+    }
+
+    private static boolean equal(Object left, Object right, boolean strict) {
+        if (left == null || right == null) {
+            if ((left != null && !isPrimitive(left)) || (right != null && !isPrimitive(right))) {
+                throw Fallback.INSTANCE;
+            }
+
+            return left == right;
+        }
+
+        if (left instanceof Number && right instanceof Number) {
+            return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+        }
+
+        if (!isPrimitive(left) || !isPrimitive(right)) {
+            throw Fallback.INSTANCE;
+        }
+
+        if (left.getClass() == right.getClass()) {
+            return left.equals(right);
+        }
+
+        // Différents types primitifs : égalité stricte fausse, égalité large avec coercition laissée au moteur JS
+        if (strict) {
+            return false;
+        }
+
+        throw Fallback.INSTANCE;
+    }
+
+    private static boolean compare(Object left, Object right, String op) {
+        int result;
+
+        if (left instanceof Number && right instanceof Number) {
+            double l = ((Number) left).doubleValue();
+            double r = ((Number) right).doubleValue();
+
+            if (Double.isNaN(l) || Double.isNaN(r)) {
+                return false;
+            }
+
+            result = Double.compare(l, r);
+        } else if (left instanceof String && right instanceof String) {
+            result = ((String) left).compareTo((String) right);
+        } else {
+            throw Fallback.INSTANCE;
+        }
+
+        switch (op) {
+            case "<":
+                return result < 0;
+            case "<=":
+                return result <= 0;
+            case ">":
+                return result > 0;
+            default:
+                return result >= 0;
+        }
+    }
+
+    private static Object invoke(Object target, String name, boolean call) {
+        if (target == null || isPrimitive(target) || target instanceof Map) {
+            throw Fallback.INSTANCE;
+        }
+
+        Member member = MEMBER_CACHE.computeIfAbsent(target.getClass(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent((call ? "()" : "") + name, k -> findMember(target.getClass(), name, call))
+                .orElseThrow(() -> Fallback.INSTANCE);
+
+        try {
+            Object value = member instanceof Method ? ((Method) member).invoke(target) : ((Field) member).get(target);
+
+            if (value instanceof Character || value instanceof Enum) {
+                throw Fallback.INSTANCE;
+            }
+
+            return value;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw Fallback.INSTANCE;
+        }
+    }
+
+    private static Optional<Member> findMember(Class<?> type, String name, boolean call) {
+        if (call) {
+            return findMethod(type, name);
+        }
+
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        Optional<Member> getter = findMethod(type, "get" + suffix);
+
+        if (!getter.isPresent()) {
+            getter = findMethod(type, "is" + suffix);
+        }
+
+        if (getter.isPresent()) {
+            return getter;
+        }
+
+        try {
+            Field field = type.getField(name);
+
+            if (!Modifier.isStatic(field.getModifiers()) && Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+                return Optional.of(field);
+            }
+        } catch (NoSuchFieldException e) {
+            // pas de champ public
+        }
+
+        return Optional.empty();
+    }
+
+    private static Optional<Member> findMethod(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+
+            if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class
+                    && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                return Optional.of(method);
+            }
+        } catch (NoSuchMethodException e) {
+            // pas de méthode publique sans argument
+        }
+
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Best time of each persona on an event, sorted by (time, persona ID).
+ * <p>
+ * The entries are kept in two parallel sorted arrays: the rank of a time is found by binary search in O(log n), and
+ * recording a better time shifts the entries in between (a single array copy). Excluded personas (e.g. banned ones)
+ * are not removed from the index: the ones ranked before are counted separately, in O(number of excluded personas).
+ * Instances are not thread-safe.
+ */
+public class BestTimeIndex {
+
+    private final Map<Long, Long> bestTimes = new HashMap<>();
+
+    private long[] times = new long[16];
+
+    private long[] personaIds = new long[16];
+
+    private int size;
+
+    /**
+     * Records a time, if it is the best time of the persona.
+     *
+     * @param personaId the persona ID
+     * @param time      the time, in milliseconds
+     * @return true if the time is the new best time of the persona
+     */
+    public boolean offer(long personaId, long time) {
+        Long previous = bestTimes.get(personaId);
+
+        if (previous != null && time >= previous) {
+            return false;
+        }
+
+        if (previous != null) {
+            int index = indexBefore(previous, personaId);
+            System.arraycopy(times, index + 1, times, index, size - index - 1);
+            System.arraycopy(personaIds, index + 1, personaIds, index, size - index - 1);
+            size--;
+        } else if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            personaIds = Arrays.copyOf(personaIds, size * 2);
+        }
+
+        int index = indexBefore(time, personaId);
+        System.arraycopy(times, index, times, index + 1, size - index);
+        System.arraycopy(personaIds, index, personaIds, index + 1, size - index);
+        times[index] = time;
+        personaIds[index] = personaId;
+        size++;
+
+        bestTimes.put(personaId, time);
+        return true;
+    }
+
+    /**
+     * @param personaId the persona ID
+     * @return the best time of the persona, or {@code null} if it has none
+     */
+    public Long getBestTime(long personaId) {
+        return bestTimes.get(personaId);
+    }
+
+    /**
+     * Gets the rank the given time would have for the given persona: 1 plus the number of other personas with a
+     * better time (or the same time and a lower persona ID), excluded personas aside.
+     *
+     * @param personaId the persona ID
+     * @param time      the time, in milliseconds
+     * @param excluded  the personas that are not ranked
+     * @return the rank, starting at 1
+     */
+    public int getRank(long personaId, long time, Set<Long> excluded) {
+        int before = indexBefore(time, personaId);
+
+        Long ownTime = bestTimes.get(personaId);
+        if (ownTime != null && compare(ownTime, personaId, time, personaId) < 0) {
+            before--;
+        }
+
+        for (Long excludedPersonaId : excluded) {
+            Long excludedTime = bestTimes.get(excludedPersonaId);
+
+            if (excludedTime != null && excludedPersonaId != personaId
+                    && compare(excludedTime, excludedPersonaId, time, personaId) < 0) {
+                before--;
+            }
+        }
+
+        return before + 1;
+    }
+
+    /**
+     * @param excluded the personas that are not ranked
+     * @return the best entry as {time, persona ID}, or {@code null} if there is none
+     */
+    public long[] getTop(Set<Long> excluded) {
+        for (int i = 0; i < size; i++) {
+            if (!excluded.contains(personaIds[i])) {
+                return new long[]{times[i], personaIds[i]};
+            }
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Nombre d'entrées strictement avant (time, personaId)
+    private int indexBefore(long time, long personaId) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (compare(times[middle], personaIds[middle], time, personaId) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private static int compare(long time1, long personaId1, long time2, long personaId2) {
+        return time1 != time2 ? Long.compare(time1, time2) : Long.compare(personaId1, personaId2);
+    }
+}
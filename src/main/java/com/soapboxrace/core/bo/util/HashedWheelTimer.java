@@ -0,0 +1,249 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel for large numbers of short-lived one-shot timeouts.
+ * <p>
+ * Scheduling and cancelling are O(1) and lock-free: new timeouts are queued and placed in their bucket by the wheel
+ * thread at the next tick, cancelled timeouts are only flagged and dropped when their bucket comes up. Expired
+ * timeouts are handed to the given executor, so that a slow task never delays the wheel. Timeouts fire at most one
+ * tick late (plus the executor queueing time).
+ */
+public class HashedWheelTimer {
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private static final int ST_PENDING = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private final String name;
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] buckets;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Executor executor;
+    private final Thread workerThread;
+    private final long startTime;
+
+    private volatile boolean stopped;
+
+    // Modifié uniquement par le thread de la roue
+    private long tick;
+
+    /**
+     * Creates and starts a timer.
+     *
+     * @param name          the timer name, for the logs
+     * @param threadFactory creates the wheel thread
+     * @param executor      runs the expired tasks
+     * @param tickDuration  the duration of a tick
+     * @param unit          the unit of tickDuration
+     * @param wheelSize     the number of buckets, rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, ThreadFactory threadFactory, Executor executor, long tickDuration,
+                            TimeUnit unit, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+
+        this.name = name;
+        this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            this.buckets[i] = new ArrayDeque<>();
+        }
+        this.executor = executor;
+        this.startTime = System.nanoTime();
+        this.workerThread = threadFactory.newThread(this::run);
+        this.workerThread.start();
+    }
+
+    /**
+     * Schedules a one-shot task.
+     *
+     * @param task  the task
+     * @param delay the delay before the task runs
+     * @param unit  the unit of delay
+     * @return the handle of the timeout
+     */
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new RejectedExecutionException("Timer " + name + " is stopped");
+        }
+
+        Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        pendingCount.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer. Pending timeouts never fire.
+     */
+    public void stop() {
+        stopped = true;
+        workerThread.interrupt();
+    }
+
+    /**
+     * @return the number of scheduled timeouts that have neither fired nor been cancelled
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    private void run() {
+        while (!stopped) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (stopped) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+
+            try {
+                transferNewTimeouts();
+                expire(buckets[(int) (tick & mask)], System.nanoTime());
+            } catch (Throwable t) {
+                logger.error("Timer {}: tick failed: {}", name, t.getMessage(), t);
+            }
+
+            tick++;
+        }
+    }
+
+    private void transferNewTimeouts() {
+        Timeout timeout;
+
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.state.get() != ST_PENDING) {
+                continue;
+            }
+
+            long calculated = (timeout.deadline - startTime) / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / buckets.length;
+            // Une échéance déjà passée part au tick courant
+            long ticks = Math.max(calculated, tick);
+            buckets[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long now) {
+        Iterator<Timeout> iterator = bucket.iterator();
+
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+
+            if (timeout.state.get() == ST_CANCELLED) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+                iterator.remove();
+
+                if (timeout.state.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+                    pendingCount.decrementAndGet();
+                    dispatch(timeout);
+                }
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    private void dispatch(Timeout timeout) {
+        try {
+            executor.execute(() -> {
+                try {
+                    timeout.task.run(timeout);
+                } catch (Exception e) {
+                    logger.error("Timer {}: task failed: {}", name, e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Timer {}: executor rejected an expired task", name);
+        }
+    }
+
+    /**
+     * A task run by the timer.
+     */
+    public interface TimerTask {
+        /**
+         * Runs the task.
+         *
+         * @param timeout the timeout that expired
+         */
+        void run(Timeout timeout) throws Exception;
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public class Timeout {
+        private final TimerTask task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+
+        // Modifié uniquement par le thread de la roue
+        private long remainingRounds;
+
+        Timeout(TimerTask task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout.
+         *
+         * @return {@code true} if the timeout was pending, {@code false} if it has already fired or been cancelled
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(ST_PENDING, ST_CANCELLED)) {
+                pendingCount.decrementAndGet();
+                return true;
+            }
+
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        /**
+         * @return how late the timeout is, in milliseconds (negative if it has not expired yet)
+         */
+        public long getLatenessMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deadline);
+        }
+    }
+}
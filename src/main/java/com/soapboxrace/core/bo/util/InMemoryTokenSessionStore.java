@@ -0,0 +1,76 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import com.soapboxrace.core.jpa.TokenSessionEntity;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessions kept in the heap of this node (default store). The sessions are lost on restart.
+ */
+public class InMemoryTokenSessionStore implements TokenSessionStore {
+
+    private final Map<String, TokenSessionEntity> sessionKeyToTokenMap = new ConcurrentHashMap<>();
+    private final Map<Long, String> userIdToSessionKeyMap = new ConcurrentHashMap<>();
+
+    @Override
+    public TokenSessionEntity get(String securityToken) {
+        return sessionKeyToTokenMap.get(securityToken);
+    }
+
+    @Override
+    public TokenSessionEntity getLatest(String securityToken) {
+        return sessionKeyToTokenMap.get(securityToken);
+    }
+
+    @Override
+    public String getSessionKey(Long userId) {
+        return userIdToSessionKeyMap.get(userId);
+    }
+
+    @Override
+    public void put(TokenSessionEntity session) {
+        sessionKeyToTokenMap.put(session.getSecurityToken(), session);
+        userIdToSessionKeyMap.put(session.getUserEntity().getId(), session.getSecurityToken());
+    }
+
+    @Override
+    public void save(TokenSessionEntity session, Field field) {
+        // Les sessions sont partagées par référence
+    }
+
+    @Override
+    public void saveHeartbeat(TokenSessionEntity session) {
+    }
+
+    @Override
+    public void remove(String securityToken) {
+        sessionKeyToTokenMap.remove(securityToken);
+    }
+
+    @Override
+    public String removeUser(Long userId) {
+        return userIdToSessionKeyMap.remove(userId);
+    }
+
+    @Override
+    public Collection<String> getSessionKeys() {
+        return sessionKeyToTokenMap.keySet();
+    }
+
+    @Override
+    public Collection<TokenSessionEntity> getLocalSessions() {
+        return sessionKeyToTokenMap.values();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -8,12 +8,18 @@ package com.soapboxrace.core.bo.util;
 
 import com.soapboxrace.core.jpa.*;
 import com.soapboxrace.jaxb.http.*;
+import org.apache.commons.codec.digest.DigestUtils;
 
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -38,6 +44,43 @@ public class OwnedCarConverter {
         return trans;
     }
 
+    /**
+     * Empreinte canonique du setup d'une voiture : SHA-1 (hex) d'un encodage binaire de la voiture de base, du profil
+     * physique, de la classe et des hashes des pièces de performance, skill mods et pièces visuelles, triés.
+     * Même contenu que {@link #makeCarSetupTrans(CarEntity)}, sans passer par JAXB, et indépendant de l'ordre des
+     * collections.
+     *
+     * @param carEntity la voiture
+     * @return l'empreinte du setup (40 caractères)
+     */
+    public static String calcSetupHash(CarEntity carEntity) {
+        int[] performanceParts = carEntity.getPerformanceParts().stream()
+                .mapToInt(PerformancePartEntity::getPerformancePartAttribHash).toArray();
+        int[] skillModParts = carEntity.getSkillModParts().stream()
+                .mapToInt(SkillModPartEntity::getSkillModPartAttribHash).toArray();
+        int[] visualParts = carEntity.getVisualParts().stream()
+                .mapToInt(VisualPartEntity::getPartHash).toArray();
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (6 + performanceParts.length + skillModParts.length + visualParts.length));
+        buffer.putInt(carEntity.getBaseCar());
+        buffer.putInt(carEntity.getPhysicsProfileHash());
+        buffer.putInt(carEntity.getCarClassHash());
+        putSorted(buffer, performanceParts);
+        putSorted(buffer, skillModParts);
+        putSorted(buffer, visualParts);
+
+        return DigestUtils.sha1Hex(buffer.array());
+    }
+
+    private static void putSorted(ByteBuffer buffer, int[] hashes) {
+        Arrays.sort(hashes);
+        // Le nombre d'éléments sépare les listes : deux setups différents ne peuvent pas donner les mêmes octets
+        buffer.putInt(hashes.length);
+        for (int hash : hashes) {
+            buffer.putInt(hash);
+        }
+    }
+
     public static String getPerformanceParts(CarEntity carEntity) {
         List<Integer> performancePartTransList = new ArrayList<Integer>();
         Set<PerformancePartEntity> performanceParts = carEntity.getPerformanceParts();
@@ -168,6 +211,126 @@ public class OwnedCarConverter {
         return ownedCarTrans;
     }
 
+    /**
+     * Construit les voitures d'un garage directement à partir des colonnes des requêtes garage de
+     * {@link com.soapboxrace.core.dao.CarDAO} (mêmes colonnes que {@link #entity2Trans(CarEntity)}).
+     *
+     * @param cars             les voitures, dans l'ordre du garage
+     * @param paints           les peintures
+     * @param performanceParts les pièces de performance
+     * @param skillModParts    les skill mods
+     * @param vinyls           les vinyles
+     * @param visualParts      les pièces visuelles
+     * @return les voitures, dans l'ordre de {@code cars}
+     */
+    public static List<OwnedCarTrans> garageRows2Trans(List<Object[]> cars, List<Object[]> paints,
+                                                       List<Object[]> performanceParts, List<Object[]> skillModParts,
+                                                       List<Object[]> vinyls, List<Object[]> visualParts) {
+        List<OwnedCarTrans> ownedCars = new ArrayList<>(cars.size());
+        Map<Long, CustomCarTrans> customCarsById = new HashMap<>(cars.size() * 2);
+
+        for (Object[] row : cars) {
+            OwnedCarTrans ownedCarTrans = new OwnedCarTrans();
+            ownedCarTrans.setId((Long) row[0]);
+            ownedCarTrans.setDurability((Integer) row[1]);
+            ownedCarTrans.setHeat((Float) row[2]);
+            if (row[3] != null)
+                ownedCarTrans.setExpirationDate(TimeConverter.generateGregorianCalendar(GregorianCalendar.from(((LocalDateTime) row[3]).atZone(ZoneId.systemDefault()))));
+            ownedCarTrans.setOwnershipType((String) row[4]);
+
+            CustomCarTrans customCarTrans = new CustomCarTrans();
+            customCarTrans.setBaseCar((Integer) row[5]);
+            customCarTrans.setCarClassHash((Integer) row[6]);
+            customCarTrans.setId(((Long) row[0]).intValue());
+            customCarTrans.setIsPreset((Boolean) row[7]);
+            customCarTrans.setLevel((Integer) row[8]);
+            customCarTrans.setName((String) row[9]);
+            customCarTrans.setPhysicsProfileHash((Integer) row[10]);
+            customCarTrans.setRating((Integer) row[11]);
+            customCarTrans.setResalePrice((Float) row[12]);
+            customCarTrans.setRideHeightDrop((Float) row[13]);
+            customCarTrans.setSkillModSlotCount((Integer) row[14]);
+            customCarTrans.setVersion((Integer) row[15]);
+            customCarTrans.setPaints(new ArrayOfCustomPaintTrans());
+            customCarTrans.setPerformanceParts(new ArrayOfPerformancePartTrans());
+            customCarTrans.setSkillModParts(new ArrayOfSkillModPartTrans());
+            customCarTrans.setVinyls(new ArrayOfCustomVinylTrans());
+            customCarTrans.setVisualParts(new ArrayOfVisualPartTrans());
+
+            ownedCarTrans.setCustomCar(customCarTrans);
+            ownedCars.add(ownedCarTrans);
+            customCarsById.put((Long) row[0], customCarTrans);
+        }
+
+        for (Object[] row : paints) {
+            CustomCarTrans customCarTrans = customCarsById.get((Long) row[0]);
+            if (customCarTrans == null) continue;
+            CustomPaintTrans customPaintTrans = new CustomPaintTrans();
+            customPaintTrans.setGroup((Integer) row[1]);
+            customPaintTrans.setHue((Integer) row[2]);
+            customPaintTrans.setSat((Integer) row[3]);
+            customPaintTrans.setSlot((Integer) row[4]);
+            customPaintTrans.setVar((Integer) row[5]);
+            customCarTrans.getPaints().getCustomPaintTrans().add(customPaintTrans);
+        }
+
+        for (Object[] row : performanceParts) {
+            CustomCarTrans customCarTrans = customCarsById.get((Long) row[0]);
+            if (customCarTrans == null) continue;
+            PerformancePartTrans performancePartTrans = new PerformancePartTrans();
+            performancePartTrans.setPerformancePartAttribHash((Integer) row[1]);
+            customCarTrans.getPerformanceParts().getPerformancePartTrans().add(performancePartTrans);
+        }
+
+        for (Object[] row : skillModParts) {
+            CustomCarTrans customCarTrans = customCarsById.get((Long) row[0]);
+            if (customCarTrans == null) continue;
+            SkillModPartTrans skillModPartTrans = new SkillModPartTrans();
+            skillModPartTrans.setIsFixed((Boolean) row[1]);
+            skillModPartTrans.setSkillModPartAttribHash((Integer) row[2]);
+            customCarTrans.getSkillModParts().getSkillModPartTrans().add(skillModPartTrans);
+        }
+
+        for (Object[] row : vinyls) {
+            CustomCarTrans customCarTrans = customCarsById.get((Long) row[0]);
+            if (customCarTrans == null) continue;
+            CustomVinylTrans customVinylTrans = new CustomVinylTrans();
+            customVinylTrans.setHash((Integer) row[1]);
+            customVinylTrans.setHue1((Integer) row[2]);
+            customVinylTrans.setHue2((Integer) row[3]);
+            customVinylTrans.setHue3((Integer) row[4]);
+            customVinylTrans.setHue4((Integer) row[5]);
+            customVinylTrans.setLayer((Integer) row[6]);
+            customVinylTrans.setMir((Boolean) row[7]);
+            customVinylTrans.setRot((Integer) row[8]);
+            customVinylTrans.setSat1((Integer) row[9]);
+            customVinylTrans.setSat2((Integer) row[10]);
+            customVinylTrans.setSat3((Integer) row[11]);
+            customVinylTrans.setSat4((Integer) row[12]);
+            customVinylTrans.setScaleX((Integer) row[13]);
+            customVinylTrans.setScaleY((Integer) row[14]);
+            customVinylTrans.setShear((Integer) row[15]);
+            customVinylTrans.setTranX((Integer) row[16]);
+            customVinylTrans.setTranY((Integer) row[17]);
+            customVinylTrans.setVar1((Integer) row[18]);
+            customVinylTrans.setVar2((Integer) row[19]);
+            customVinylTrans.setVar3((Integer) row[20]);
+            customVinylTrans.setVar4((Integer) row[21]);
+            customCarTrans.getVinyls().getCustomVinylTrans().add(customVinylTrans);
+        }
+
+        for (Object[] row : visualParts) {
+            CustomCarTrans customCarTrans = customCarsById.get((Long) row[0]);
+            if (customCarTrans == null) continue;
+            VisualPartTrans visualPartTrans = new VisualPartTrans();
+            visualPartTrans.setPartHash((Integer) row[1]);
+            visualPartTrans.setSlotHash((Integer) row[2]);
+            customCarTrans.getVisualParts().getVisualPartTrans().add(visualPartTrans);
+        }
+
+        return ownedCars;
+    }
+
     public static void trans2Entity(OwnedCarTrans ownedCarTrans, CarEntity carEntity) {
         carEntity.setDurability(ownedCarTrans.getDurability());
         // ownedCarEntity.setExpirationDate(expirationDate);
@@ -0,0 +1,377 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import com.soapboxrace.core.jpa.TokenSessionEntity;
+import com.soapboxrace.core.jpa.UserEntity;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanIterator;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Sessions shared between the core nodes through Redis, with a near-cache on each node.
+ * <p>
+ * A session is a hash ({@code game_session:<token>}) and each user points to its session
+ * ({@code game_session_user:<userId>}); both keys expire with the session. Reads are served from the near-cache, so
+ * validating a token does not reach Redis once the session is known to the node. Every change is published on
+ * {@value #INVALIDATION_CHANNEL}, and the other nodes drop their copy. A change only writes the fields it concerns,
+ * so a stale near-cache copy never overwrites newer values. Heartbeats are written without notification: a node reads
+ * the session again before expiring it. Redis keys expire silently, so a near-cache copy past its
+ * expiration date is read again, and dropped if its key is gone.
+ */
+public class RedisTokenSessionStore implements TokenSessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(RedisTokenSessionStore.class);
+
+    public static final String INVALIDATION_CHANNEL = "game_session_invalidations";
+
+    private static final String SESSION_KEY_PREFIX = "game_session:";
+    private static final String USER_KEY_PREFIX = "game_session_user:";
+
+    // Lit et supprime en une fois : un seul nœud récupère la session d'un utilisateur
+    private static final String GET_AND_DELETE_SCRIPT =
+            "local v = redis.call('GET', KEYS[1]) " +
+            "if v then redis.call('DEL', KEYS[1]) end " +
+            "return v";
+
+    // N'écrit que si la session existe encore : une clé expirée ne doit pas être recréée sans TTL
+    private static final String HSET_IF_EXISTS_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+            "redis.call('HSET', KEYS[1], unpack(ARGV)) return 1 end " +
+            "return 0";
+
+    // Crée la session et la clé de l'utilisateur avec leur expiration en une fois
+    private static final String PUT_SCRIPT =
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HSET', KEYS[1], unpack(ARGV, 3)) " +
+            "redis.call('PEXPIREAT', KEYS[1], ARGV[1]) " +
+            "redis.call('SET', KEYS[2], ARGV[2]) " +
+            "redis.call('PEXPIREAT', KEYS[2], ARGV[1]) " +
+            "return 1";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, TokenSessionEntity> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, String> userIdToSessionKeyMap = new ConcurrentHashMap<>();
+
+    private final StatefulRedisConnection<String, String> connection;
+    private final StatefulRedisPubSubConnection<String, String> pubSubConnection;
+    private final Function<Long, UserEntity> userLoader;
+
+    /**
+     * Creates the store and subscribes to the invalidations.
+     *
+     * @param connection       the connection used for the commands
+     * @param pubSubConnection a connection dedicated to the invalidation subscription
+     * @param userLoader       loads the user of a session read from Redis
+     */
+    public RedisTokenSessionStore(StatefulRedisConnection<String, String> connection,
+                                  StatefulRedisPubSubConnection<String, String> pubSubConnection,
+                                  Function<Long, UserEntity> userLoader) {
+        this.connection = connection;
+        this.pubSubConnection = pubSubConnection;
+        this.userLoader = userLoader;
+
+        this.pubSubConnection.addListener(new RedisPubSubAdapter<String, String>() {
+            @Override
+            public void message(String channel, String message) {
+                onInvalidation(message);
+            }
+        });
+        this.pubSubConnection.sync().subscribe(INVALIDATION_CHANNEL);
+    }
+
+    @Override
+    public TokenSessionEntity get(String securityToken) {
+        TokenSessionEntity session = sessions.get(securityToken);
+
+        // Les clés Redis expirent sans notification : une copie expirée est relue (et retirée si la clé a disparu)
+        return session != null && !isExpired(session) ? session : getLatest(securityToken);
+    }
+
+    @Override
+    public TokenSessionEntity getLatest(String securityToken) {
+        Map<String, String> fields = commands().hgetall(SESSION_KEY_PREFIX + securityToken);
+
+        if (fields == null || fields.isEmpty()) {
+            TokenSessionEntity removed = sessions.remove(securityToken);
+            if (removed != null) {
+                userIdToSessionKeyMap.remove(removed.getUserEntity().getId(), securityToken);
+            }
+            return null;
+        }
+
+        TokenSessionEntity previous = sessions.get(securityToken);
+        Long userId = Long.valueOf(fields.get("userId"));
+        UserEntity userEntity = previous != null && previous.getUserEntity().getId().equals(userId)
+                ? previous.getUserEntity() : userLoader.apply(userId);
+
+        if (userEntity == null) {
+            return null;
+        }
+
+        TokenSessionEntity session = decode(securityToken, userEntity, fields);
+        sessions.put(securityToken, session);
+        return session;
+    }
+
+    @Override
+    public String getSessionKey(Long userId) {
+        String sessionKey = userIdToSessionKeyMap.get(userId);
+
+        if (sessionKey != null) {
+            TokenSessionEntity session = sessions.get(sessionKey);
+
+            if (session != null && isExpired(session)) {
+                userIdToSessionKeyMap.remove(userId, sessionKey);
+                sessionKey = null;
+            }
+        }
+
+        if (sessionKey == null) {
+            sessionKey = commands().get(USER_KEY_PREFIX + userId);
+
+            if (sessionKey != null) {
+                userIdToSessionKeyMap.put(userId, sessionKey);
+            }
+        }
+
+        return sessionKey;
+    }
+
+    @Override
+    public void put(TokenSessionEntity session) {
+        String sessionKey = SESSION_KEY_PREFIX + session.getSecurityToken();
+        String userKey = USER_KEY_PREFIX + session.getUserEntity().getId();
+        Map<String, String> fields = encode(session);
+        List<String> args = new ArrayList<>(2 + fields.size() * 2);
+
+        args.add(String.valueOf(session.getExpirationDate().getTime()));
+        args.add(session.getSecurityToken());
+        fields.forEach((name, value) -> {
+            args.add(name);
+            args.add(value);
+        });
+
+        commands().eval(PUT_SCRIPT, ScriptOutputType.INTEGER, new String[]{sessionKey, userKey},
+                args.toArray(new String[0]));
+
+        sessions.put(session.getSecurityToken(), session);
+        userIdToSessionKeyMap.put(session.getUserEntity().getId(), session.getSecurityToken());
+        publish('u', session.getUserEntity().getId().toString());
+    }
+
+    @Override
+    public void save(TokenSessionEntity session, Field field) {
+        if (hsetIfExists(session, encode(session, field))) {
+            publish('t', session.getSecurityToken());
+        }
+    }
+
+    @Override
+    public void saveHeartbeat(TokenSessionEntity session) {
+        hsetIfExists(session, "lastHeartbeatTime", toString(session.getLastHeartbeatTime()));
+    }
+
+    @Override
+    public void remove(String securityToken) {
+        commands().del(SESSION_KEY_PREFIX + securityToken);
+        sessions.remove(securityToken);
+        publish('t', securityToken);
+    }
+
+    @Override
+    public String removeUser(Long userId) {
+        String sessionKey = commands().eval(GET_AND_DELETE_SCRIPT, ScriptOutputType.VALUE, USER_KEY_PREFIX + userId);
+
+        userIdToSessionKeyMap.remove(userId);
+
+        if (sessionKey != null) {
+            publish('u', userId.toString());
+        }
+
+        return sessionKey;
+    }
+
+    @Override
+    public Collection<String> getSessionKeys() {
+        List<String> sessionKeys = new ArrayList<>();
+        ScanIterator<String> iterator = ScanIterator.scan(commands(),
+                ScanArgs.Builder.matches(SESSION_KEY_PREFIX + "*").limit(500));
+
+        while (iterator.hasNext()) {
+            sessionKeys.add(iterator.next().substring(SESSION_KEY_PREFIX.length()));
+        }
+
+        return sessionKeys;
+    }
+
+    @Override
+    public Collection<TokenSessionEntity> getLocalSessions() {
+        return sessions.values();
+    }
+
+    @Override
+    public void close() {
+        pubSubConnection.close();
+    }
+
+    private static boolean isExpired(TokenSessionEntity session) {
+        return session.getExpirationDate().getTime() <= System.currentTimeMillis();
+    }
+
+    private boolean hsetIfExists(TokenSessionEntity session, String... fieldsAndValues) {
+        Long written = commands().eval(HSET_IF_EXISTS_SCRIPT, ScriptOutputType.INTEGER,
+                new String[]{SESSION_KEY_PREFIX + session.getSecurityToken()}, fieldsAndValues);
+
+        return written != null && written == 1L;
+    }
+
+    private RedisCommands<String, String> commands() {
+        return connection.sync();
+    }
+
+    private void publish(char type, String key) {
+        try {
+            commands().publish(INVALIDATION_CHANNEL, nodeId + '|' + type + key);
+        } catch (Exception e) {
+            logger.warn("Failed to publish session invalidation {}{}: {}", type, key, e.getMessage());
+        }
+    }
+
+    private void onInvalidation(String message) {
+        int separator = message.indexOf('|');
+
+        if (separator < 0 || separator + 1 >= message.length() || message.startsWith(nodeId + '|')) {
+            return;
+        }
+
+        char type = message.charAt(separator + 1);
+        String key = message.substring(separator + 2);
+
+        if (type == 't') {
+            sessions.remove(key);
+        } else if (type == 'u') {
+            try {
+                userIdToSessionKeyMap.remove(Long.valueOf(key));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid session invalidation message: {}", message);
+            }
+        }
+    }
+
+    private static Map<String, String> encode(TokenSessionEntity session) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("userId", session.getUserEntity().getId().toString());
+        fields.put("expirationDate", String.valueOf(session.getExpirationDate().getTime()));
+        fields.put("activePersonaId", toString(session.getActivePersonaId()));
+        fields.put("relayCryptoTicket", toString(session.getRelayCryptoTicket()));
+        fields.put("activeLobbyId", toString(session.getActiveLobbyId()));
+        fields.put("premium", String.valueOf(session.isPremium()));
+        fields.put("clientHostIp", toString(session.getClientHostIp()));
+        fields.put("webToken", toString(session.getWebToken()));
+        fields.put("eventSessionId", toString(session.getEventSessionId()));
+        fields.put("lastHeartbeatTime", toString(session.getLastHeartbeatTime()));
+        fields.put("inSafehouse", String.valueOf(session.isInSafehouse()));
+        fields.put("safehouseEnteredAt", String.valueOf(session.getSafehouseEnteredAt()));
+        fields.put("allowedPersonaIds", encodeAllowedPersonaIds(session));
+
+        return fields;
+    }
+
+    // Champs et valeurs à écrire pour un changement, dans l'ordre attendu par HSET
+    private static String[] encode(TokenSessionEntity session, Field field) {
+        switch (field) {
+            case ACTIVE_PERSONA_ID:
+                return new String[]{"activePersonaId", toString(session.getActivePersonaId())};
+            case ACTIVE_LOBBY_ID:
+                return new String[]{"activeLobbyId", toString(session.getActiveLobbyId())};
+            case EVENT_SESSION_ID:
+                return new String[]{"eventSessionId", toString(session.getEventSessionId())};
+            case RELAY_CRYPTO_TICKET:
+                return new String[]{"relayCryptoTicket", toString(session.getRelayCryptoTicket())};
+            case IN_SAFEHOUSE:
+                return new String[]{"inSafehouse", String.valueOf(session.isInSafehouse()),
+                        "safehouseEnteredAt", String.valueOf(session.getSafehouseEnteredAt())};
+            case ALLOWED_PERSONA_IDS:
+                return new String[]{"allowedPersonaIds", encodeAllowedPersonaIds(session)};
+            default:
+                throw new IllegalArgumentException("Unknown session field: " + field);
+        }
+    }
+
+    private static String encodeAllowedPersonaIds(TokenSessionEntity session) {
+        StringBuilder allowedPersonaIds = new StringBuilder();
+        for (Long personaId : session.getAllowedPersonaIds()) {
+            if (allowedPersonaIds.length() > 0) {
+                allowedPersonaIds.append(',');
+            }
+            allowedPersonaIds.append(personaId);
+        }
+        return allowedPersonaIds.toString();
+    }
+
+    private static TokenSessionEntity decode(String securityToken, UserEntity userEntity, Map<String, String> fields) {
+        TokenSessionEntity session = new TokenSessionEntity();
+        session.setSecurityToken(securityToken);
+        session.setUserEntity(userEntity);
+        session.setExpirationDate(new Date(Long.parseLong(fields.get("expirationDate"))));
+        session.setActivePersonaId(toLong(fields.get("activePersonaId")));
+        session.setRelayCryptoTicket(toNullableString(fields.get("relayCryptoTicket")));
+        session.setActiveLobbyId(toLong(fields.get("activeLobbyId")));
+        session.setPremium(Boolean.parseBoolean(fields.get("premium")));
+        session.setClientHostIp(toNullableString(fields.get("clientHostIp")));
+        session.setWebToken(toNullableString(fields.get("webToken")));
+        session.setEventSessionId(toLong(fields.get("eventSessionId")));
+        session.setLastHeartbeatTime(toLong(fields.get("lastHeartbeatTime")));
+        session.setInSafehouse(Boolean.parseBoolean(fields.get("inSafehouse")));
+
+        Long safehouseEnteredAt = toLong(fields.get("safehouseEnteredAt"));
+        session.setSafehouseEnteredAt(safehouseEnteredAt != null ? safehouseEnteredAt : 0);
+
+        Set<Long> allowedPersonaIds = new HashSet<>();
+        String allowed = fields.get("allowedPersonaIds");
+        if (allowed != null && !allowed.isEmpty()) {
+            for (String personaId : allowed.split(",")) {
+                allowedPersonaIds.add(Long.valueOf(personaId));
+            }
+        }
+        session.setAllowedPersonaIds(allowedPersonaIds);
+
+        return session;
+    }
+
+    // Redis ne stocke pas null dans un hash : chaîne vide à la place
+    private static String toString(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    private static String toNullableString(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static Long toLong(String value) {
+        return value == null || value.isEmpty() ? null : Long.valueOf(value);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evaluates JavaScript scripts with a shared GraalJS {@link Engine}.
+ * <p>
+ * Every evaluation runs in a new context, so that the globals and the declarations of a script are never visible to
+ * the next one. Each distinct script is turned into a cached {@link Source} once: the engine parses it the first
+ * time, and the contexts created afterwards reuse the parsed code. Scripts are evaluated as programs; their result
+ * is the completion value of the program.
+ */
+public class ScriptEvaluator implements AutoCloseable {
+
+    private final Engine engine;
+
+    private final int maxCachedScripts;
+
+    private final Runnable compileListener;
+
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxCachedScripts the number of scripts above which the cache is cleared
+     * @param compileListener  called each time a script is added to the cache
+     */
+    public ScriptEvaluator(int maxCachedScripts, Runnable compileListener) {
+        this.maxCachedScripts = maxCachedScripts;
+        this.compileListener = compileListener;
+        this.engine = Engine.newBuilder()
+                .option("engine.WarnInterpreterOnly", "false")
+                .build();
+    }
+
+    /**
+     * Evaluates a script.
+     *
+     * @param script   the JavaScript code
+     * @param bindings the global variables of the script
+     * @return the result of the script, converted to a Java object. The context is closed before returning, so the
+     * result must be a primitive value or a host object.
+     * @throws PolyglotException if the script fails
+     */
+    public Object eval(String script, Map<String, Object> bindings) {
+        try (Context context = Context.newBuilder("js")
+                .engine(engine)
+                .allowExperimentalOptions(true)
+                .allowHostAccess(HostAccess.ALL)
+                .allowHostClassLookup(s -> true)
+                .option("js.nashorn-compat", "true")
+                .build()) {
+            Value globals = context.getBindings("js");
+            bindings.forEach(globals::putMember);
+
+            return context.eval(getSource(script)).as(Object.class);
+        }
+    }
+
+    /**
+     * Drops every cached script.
+     */
+    public void invalidate() {
+        sources.clear();
+    }
+
+    public int getCachedScriptCount() {
+        return sources.size();
+    }
+
+    @Override
+    public void close() {
+        engine.close();
+    }
+
+    private Source getSource(String script) {
+        Source source = sources.get(script);
+
+        if (source == null) {
+            if (sources.size() >= maxCachedScripts) {
+                invalidate();
+            }
+
+            source = sources.computeIfAbsent(script, s -> {
+                compileListener.run();
+                return Source.newBuilder("js", s, "script")
+                        .cached(true)
+                        .buildLiteral();
+            });
+        }
+
+        return source;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import com.soapboxrace.core.jpa.TokenSessionEntity;
+
+import java.util.Collection;
+
+/**
+ * Storage of the game sessions used by {@link com.soapboxrace.core.bo.TokenSessionBO}.
+ * <p>
+ * A session is indexed by its security token, and each user has at most one session. Sessions returned by the store
+ * may be shared between threads; changes made to a session are only guaranteed to be visible to the other nodes
+ * once {@link #save(TokenSessionEntity, Field)} has been called.
+ */
+public interface TokenSessionStore {
+
+    /**
+     * The parts of a session that can be changed once it has been added to the store. The heartbeat time is not one
+     * of them: it is written with {@link #saveHeartbeat(TokenSessionEntity)}.
+     */
+    enum Field {
+        ACTIVE_PERSONA_ID,
+        ACTIVE_LOBBY_ID,
+        EVENT_SESSION_ID,
+        RELAY_CRYPTO_TICKET,
+        /**
+         * Whether the player is in the safehouse, and since when.
+         */
+        IN_SAFEHOUSE,
+        ALLOWED_PERSONA_IDS
+    }
+
+    /**
+     * @param securityToken the security token
+     * @return the session, or {@code null} if there is none
+     */
+    TokenSessionEntity get(String securityToken);
+
+    /**
+     * Reads the session again from the shared storage, bypassing any local copy.
+     *
+     * @param securityToken the security token
+     * @return the session, or {@code null} if there is none
+     */
+    TokenSessionEntity getLatest(String securityToken);
+
+    /**
+     * @param userId the user ID
+     * @return the security token of the session of the given user, or {@code null} if there is none
+     */
+    String getSessionKey(Long userId);
+
+    /**
+     * Adds a new session and makes it the session of its user.
+     *
+     * @param session the session
+     */
+    void put(TokenSessionEntity session);
+
+    /**
+     * Publishes a change made to a session. Only the given field is written, so that changes made concurrently to
+     * other fields (possibly by other nodes) are kept. Nothing is written if the session is no longer in the store.
+     *
+     * @param session the session
+     * @param field   the field that was changed
+     */
+    void save(TokenSessionEntity session, Field field);
+
+    /**
+     * Publishes a new heartbeat time. Unlike {@link #save(TokenSessionEntity, Field)}, other nodes are not notified: they
+     * read the latest value with {@link #getLatest(String)} before expiring a session.
+     *
+     * @param session the session
+     */
+    void saveHeartbeat(TokenSessionEntity session);
+
+    /**
+     * Removes the session with the given security token.
+     *
+     * @param securityToken the security token
+     */
+    void remove(String securityToken);
+
+    /**
+     * Detaches the session of the given user from the user. The session itself is left in the store.
+     *
+     * @param userId the user ID
+     * @return the security token of the session, or {@code null} if the user had no session (or if another caller
+     * detached it first)
+     */
+    String removeUser(Long userId);
+
+    /**
+     * @return the security tokens of all the sessions in the store, including those this node never read
+     */
+    Collection<String> getSessionKeys();
+
+    /**
+     * @return the sessions known to this node
+     */
+    Collection<TokenSessionEntity> getLocalSessions();
+
+    /**
+     * Releases the resources of the store.
+     */
+    void close();
+}
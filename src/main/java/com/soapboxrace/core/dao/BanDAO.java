@@ -33,6 +33,10 @@ public class BanDAO extends LongKeyedDAO<BanEntity> {
         return results.isEmpty() ? null : results.get(0);
     }
 
+    public List<Long> findBannedPersonaIds() {
+        return entityManager.createNamedQuery("BanEntity.findBannedPersonaIds", Long.class).getResultList();
+    }
+
     public List<BanEntity> findAllExpired() {
         return entityManager.createNamedQuery("BanEntity.findAllExpired", BanEntity.class).getResultList();
     }
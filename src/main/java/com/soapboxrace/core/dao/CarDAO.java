@@ -7,10 +7,13 @@
 package com.soapboxrace.core.dao;
 
 import com.soapboxrace.core.dao.util.LongKeyedDAO;
+import com.soapboxrace.core.events.GarageChanged;
 import com.soapboxrace.core.jpa.CarEntity;
 import com.soapboxrace.core.jpa.PersonaEntity;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
 import javax.transaction.Transactional;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
@@ -21,10 +24,36 @@ import java.util.List;
 @Transactional
 public class CarDAO extends LongKeyedDAO<CarEntity> {
 
+    // Même filtre que CarEntity.findByPersonaId, appliqué aux tables enfants (une requête par table pour tout le garage)
+    private static final String GARAGE_CHILD_FILTER = " WHERE obj.car.persona.personaId = :persona " +
+            "AND (obj.car.expirationDate IS NULL OR obj.car.expirationDate > CURRENT_TIMESTAMP) ORDER BY obj.car.id, obj.id";
+
+    @Inject
+    private Event<GarageChanged> garageChangedEvent;
+
     public CarDAO() {
         super(CarEntity.class);
     }
 
+    // Toute écriture sur une voiture invalide le garage en cache du persona (GarageCacheBO)
+    @Override
+    public void insert(CarEntity entity) {
+        super.insert(entity);
+        fireGarageChanged(entity);
+    }
+
+    @Override
+    public void update(CarEntity entity) {
+        super.update(entity);
+        fireGarageChanged(entity);
+    }
+
+    @Override
+    public void delete(CarEntity entity) {
+        super.delete(entity);
+        fireGarageChanged(entity);
+    }
+
     public List<CarEntity> findByPersonaId(Long personaId) {
         TypedQuery<CarEntity> query = entityManager.createNamedQuery("CarEntity.findByPersonaId",
                 CarEntity.class);
@@ -32,6 +61,67 @@ public class CarDAO extends LongKeyedDAO<CarEntity> {
         return query.getResultList();
     }
 
+    /**
+     * Garage de l'inventaire, en colonnes (sans charger les entités), dans le même ordre que {@link #findByPersonaId}.
+     * Colonnes : id, durability, heat, expirationDate, ownershipType, baseCar, carClassHash, isPreset, level, name,
+     * physicsProfileHash, rating, resalePrice, rideHeightDrop, skillModSlotCount, version.
+     */
+    public List<Object[]> findGarageCars(Long personaId) {
+        return findGarageRows("SELECT obj.id, obj.durability, obj.heat, obj.expirationDate, obj.ownershipType, obj.baseCar, " +
+                "obj.carClassHash, obj.isPreset, obj.level, obj.name, obj.physicsProfileHash, obj.rating, obj.resalePrice, " +
+                "obj.rideHeightDrop, obj.skillModSlotCount, obj.version FROM CarEntity obj " +
+                "WHERE obj.persona.personaId = :persona " +
+                "AND (obj.expirationDate IS NULL OR obj.expirationDate > CURRENT_TIMESTAMP) ORDER BY obj.id", personaId);
+    }
+
+    /**
+     * Peintures de toutes les voitures du garage. Colonnes : carId, group, hue, sat, slot, var.
+     */
+    public List<Object[]> findGaragePaints(Long personaId) {
+        return findGarageRows("SELECT obj.car.id, obj.group, obj.hue, obj.sat, obj.slot, obj.var FROM PaintEntity obj" +
+                GARAGE_CHILD_FILTER, personaId);
+    }
+
+    /**
+     * Pièces de performance de toutes les voitures du garage. Colonnes : carId, performancePartAttribHash.
+     */
+    public List<Object[]> findGaragePerformanceParts(Long personaId) {
+        return findGarageRows("SELECT obj.car.id, obj.performancePartAttribHash FROM PerformancePartEntity obj" +
+                GARAGE_CHILD_FILTER, personaId);
+    }
+
+    /**
+     * Skill mods de toutes les voitures du garage. Colonnes : carId, isFixed, skillModPartAttribHash.
+     */
+    public List<Object[]> findGarageSkillModParts(Long personaId) {
+        return findGarageRows("SELECT obj.car.id, obj.isFixed, obj.skillModPartAttribHash FROM SkillModPartEntity obj" +
+                GARAGE_CHILD_FILTER, personaId);
+    }
+
+    /**
+     * Vinyles de toutes les voitures du garage. Colonnes : carId, hash, hue1-4, layer, mir, rot, sat1-4, scalex,
+     * scaley, shear, tranx, trany, var1-4.
+     */
+    public List<Object[]> findGarageVinyls(Long personaId) {
+        return findGarageRows("SELECT obj.car.id, obj.hash, obj.hue1, obj.hue2, obj.hue3, obj.hue4, obj.layer, obj.mir, " +
+                "obj.rot, obj.sat1, obj.sat2, obj.sat3, obj.sat4, obj.scalex, obj.scaley, obj.shear, obj.tranx, obj.trany, " +
+                "obj.var1, obj.var2, obj.var3, obj.var4 FROM VinylEntity obj" + GARAGE_CHILD_FILTER, personaId);
+    }
+
+    /**
+     * Pièces visuelles de toutes les voitures du garage. Colonnes : carId, partHash, slotHash.
+     */
+    public List<Object[]> findGarageVisualParts(Long personaId) {
+        return findGarageRows("SELECT obj.car.id, obj.partHash, obj.slotHash FROM VisualPartEntity obj" +
+                GARAGE_CHILD_FILTER, personaId);
+    }
+
+    private List<Object[]> findGarageRows(String jpql, Long personaId) {
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class);
+        query.setParameter("persona", personaId);
+        return query.getResultList();
+    }
+
     public CarEntity findByPersonaIdEager(Long personaId, int index) {
         TypedQuery<CarEntity> query = entityManager.createNamedQuery("CarEntity.findByPersonaIdEager",
                 CarEntity.class);
@@ -71,6 +161,13 @@ public class CarDAO extends LongKeyedDAO<CarEntity> {
         Query query = entityManager.createNamedQuery("CarEntity.deleteByPersona");
         query.setParameter("persona", personaEntity);
         query.executeUpdate();
+        garageChangedEvent.fire(new GarageChanged(personaEntity.getPersonaId()));
+    }
+
+    private void fireGarageChanged(CarEntity carEntity) {
+        if (carEntity.getPersona() != null) {
+            garageChangedEvent.fire(new GarageChanged(carEntity.getPersona().getPersonaId()));
+        }
     }
 
 }
@@ -43,4 +43,17 @@ public class EventDataDAO extends LongKeyedDAO<EventDataEntity> {
         query.setParameter("eventid", eventid);
         return query.getResultList();
     }
+
+    /**
+     * Gets the best ranked time of every persona on the given event, with the filters of the leaderboard
+     * (legit, finished, not busted, known car class).
+     *
+     * @param eventid the event ID
+     * @return rows of [personaId, best time in milliseconds]
+     */
+    public List<Object[]> getBestTimes(int eventid) {
+        TypedQuery<Object[]> query = entityManager.createNamedQuery("EventDataEntity.getBestTimes", Object[].class);
+        query.setParameter("eventid", eventid);
+        return query.getResultList();
+    }
 }
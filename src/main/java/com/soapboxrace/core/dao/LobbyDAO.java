@@ -6,6 +6,7 @@
 
 package com.soapboxrace.core.dao;
 
+import com.soapboxrace.core.bo.OpenLobbyIndexBO;
 import com.soapboxrace.core.bo.ParameterBO;
 import com.soapboxrace.core.dao.util.LongKeyedDAO;
 import com.soapboxrace.core.jpa.EventEntity;
@@ -19,7 +20,6 @@ import javax.transaction.Transactional;
 import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -33,15 +33,30 @@ public class LobbyDAO extends LongKeyedDAO<LobbyEntity> {
     @Inject
     private ParameterBO parameterBO;
 
+    @Inject
+    private OpenLobbyIndexBO openLobbyIndexBO;
+
     public LobbyDAO() {
         super(LobbyEntity.class);
     }
 
+    @Override
+    public void insert(LobbyEntity entity) {
+        super.insert(entity);
+        openLobbyIndexBO.update(entity);
+    }
+
+    @Override
+    public void update(LobbyEntity entity) {
+        super.update(entity);
+        openLobbyIndexBO.update(entity);
+    }
+
     /**
      * Récupère le temps de fenêtre de recherche de lobbies depuis le paramètre DB.
      * Utilisé pour déterminer combien de temps un lobby reste visible dans les recherches.
      */
-    private int getLobbySearchWindowSeconds() {
+    public int getLobbySearchWindowSeconds() {
         // Essayer de lire le paramètre LOBBY_COUNTDOWN_TIME
         int countdownMs = parameterBO.getIntParam("LOBBY_COUNTDOWN_TIME", 0);
         
@@ -147,54 +162,24 @@ public class LobbyDAO extends LongKeyedDAO<LobbyEntity> {
         return query.getResultList();
     }
 
-    public List<LobbyEntity> findAllEmptyOlderThan(LocalDateTime cutoff) {
-        return entityManager.createQuery(
-            "SELECT obj FROM LobbyEntity obj WHERE obj.isActive = true AND obj.startedTime < :cutoff AND size(obj.entrants) = 0",
-            LobbyEntity.class
-        ).setParameter("cutoff", cutoff).getResultList();
-    }
-
     /**
-     * Trouve tous les lobbies publics plus anciens qu'un certain temps (pour cleanup)
-     * Utilisé pour nettoyer les lobbies abandonnés où les joueurs ont déconnecté sans quitter
+     * Trouve tous les lobbies publics actifs (utilisé pour reconstruire l'index des lobbies ouverts)
      */
-    public List<LobbyEntity> findAllOlderThan(LocalDateTime cutoff) {
+    public List<LobbyEntity> findAllActivePublic() {
         return entityManager.createQuery(
-            "SELECT obj FROM LobbyEntity obj WHERE obj.isActive = true AND obj.isPrivate = false AND obj.startedTime < :cutoff",
+            "SELECT DISTINCT obj FROM LobbyEntity obj JOIN FETCH obj.event LEFT JOIN FETCH obj.entrants WHERE obj.isActive = true AND obj.isPrivate = false",
             LobbyEntity.class
-        ).setParameter("cutoff", cutoff).getResultList();
+        ).getResultList();
     }
 
     /**
-     * Trouve tous les lobbies publics avec 0 ou 1 joueur
-     * Utilisé pour rafraîchir les lobbies en attente dans la feature LOBBY_WAIT_FOR_MIN_PLAYERS
-     * et nettoyer les lobbies jamais acceptés
+     * Trouve tous les lobbies privés actifs avec 0 ou 1 joueur (utilisé pour reconstruire l'ensemble des lobbies en attente)
      */
-    public List<LobbyEntity> findAllWithOnePlayer() {
-        logger.info("FINDONEPLAYERDAO: Executing query to find lobbies with 0 or 1 player");
-        
-        // Première approche : charger tous les lobbies publics actifs et filtrer en Java
-        List<LobbyEntity> allLobbies = entityManager.createQuery(
-            "SELECT obj FROM LobbyEntity obj WHERE obj.isActive = true AND obj.isPrivate = false",
+    public List<LobbyEntity> findAllActivePrivateWaiting() {
+        return entityManager.createQuery(
+            "SELECT DISTINCT obj FROM LobbyEntity obj LEFT JOIN FETCH obj.entrants WHERE obj.isActive = true AND obj.isPrivate = true AND size(obj.entrants) <= 1",
             LobbyEntity.class
         ).getResultList();
-        
-        logger.info("FINDONEPLAYERDAO: Found {} public lobbies total", allLobbies.size());
-        
-        List<LobbyEntity> result = new ArrayList<>();
-        for (LobbyEntity lobby : allLobbies) {
-            int entrantCount = lobby.getEntrants().size();
-            logger.info("FINDONEPLAYERDAO: Lobby ID={}, isPrivate={}, entrants={}, startedTime={}", 
-                lobby.getId(), lobby.getIsPrivate(), entrantCount, lobby.getStartedTime());
-            
-            if (entrantCount <= 1) {
-                result.add(lobby);
-                logger.info("FINDONEPLAYERDAO: -> Lobby {} MATCHES criteria ({} player(s))", lobby.getId(), entrantCount);
-            }
-        }
-        
-        logger.info("FINDONEPLAYERDAO: Returning {} lobbies with exactly 1 player", result.size());
-        return result;
     }
 
     public List<LobbyEntity> findByEventStarted(EventEntity eventEntity) {
@@ -15,6 +15,7 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.transaction.Transactional;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import java.util.Collection;
 import java.util.List;
 
 @ApplicationScoped
@@ -94,4 +95,14 @@ public class LobbyEntrantDAO extends LongKeyedDAO<LobbyEntrantEntity> {
             Long.class
         ).setParameter("personaId", personaId).getResultList();
     }
+
+    /**
+     * Retourne les couples (ID du persona, ID du lobby) des lobbies actifs dans lesquels les personas donnés sont présents.
+     */
+    public List<Object[]> findActiveLobbyMemberships(Collection<Long> personaIds) {
+        return entityManager.createQuery(
+            "SELECT DISTINCT e.persona.personaId, e.lobby.id FROM LobbyEntrantEntity e WHERE e.persona.personaId IN :personaIds AND e.lobby.isActive = true",
+            Object[].class
+        ).setParameter("personaIds", personaIds).getResultList();
+    }
 }
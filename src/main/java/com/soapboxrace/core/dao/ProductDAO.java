@@ -9,9 +9,6 @@ package com.soapboxrace.core.dao;
 import com.soapboxrace.core.dao.util.LongKeyedDAO;
 import com.soapboxrace.core.jpa.ProductEntity;
 
-import com.soapboxrace.core.bo.*;
-
-import javax.inject.Inject;
 import javax.enterprise.context.ApplicationScoped;
 import javax.transaction.Transactional;
 import javax.persistence.TypedQuery;
@@ -26,9 +23,6 @@ import java.util.List;
 
 @Transactional
 public class ProductDAO extends LongKeyedDAO<ProductEntity> {
-    @Inject
-    private ParameterBO parameterBO;
-
     public ProductDAO() {
         super(ProductEntity.class);
     }
@@ -46,54 +40,26 @@ public class ProductDAO extends LongKeyedDAO<ProductEntity> {
         return query.getResultList();
     }
 
-    public ProductEntity findByProductId(String productId) {
-        TypedQuery<ProductEntity> query = entityManager.createNamedQuery("ProductEntity.findByProductId",
+    public List<ProductEntity> findAllEnabled() {
+        TypedQuery<ProductEntity> query = entityManager.createNamedQuery("ProductEntity.findAllEnabled",
                 ProductEntity.class);
-        query.setParameter("productId", productId);
-
-        List<ProductEntity> results = query.getResultList();
-
-        if (results.isEmpty()) {
-            throw new RuntimeException("Could not find product with ID: " + productId);
-        }
-
-        return results.get(0);
-        //        return query.getSingleResult();
+        return query.getResultList();
     }
 
-    public ProductEntity findByEntitlementTag(String entitlementTag) {
-        TypedQuery<ProductEntity> query = entityManager.createNamedQuery("ProductEntity.findByEntitlementTag",
+    public List<ProductEntity> findAllWithBundleItems() {
+        TypedQuery<ProductEntity> query = entityManager.createNamedQuery("ProductEntity.findAllWithBundleItems",
                 ProductEntity.class);
-        query.setParameter("entitlementTag", entitlementTag);
-
-        List<ProductEntity> results = query.getResultList();
-
-        if (results.isEmpty()) {
-            throw new RuntimeException("Could not find product with tag: " + entitlementTag);
-        }
-
-        return results.get(0);
+        return query.getResultList();
     }
 
-    public ProductEntity findByHash(Integer hash) {
-        TypedQuery<ProductEntity> query = entityManager.createNamedQuery("ProductEntity.findByHash",
-                ProductEntity.class);
-        query.setParameter("hash", hash);
-
-        List<ProductEntity> results = query.getResultList();
-
-        if (results.isEmpty()) {
-            if(parameterBO.getBoolParam("SBRWR_BYPASS_MISSING_HASH") == true) {
-                ProductEntity entity = new ProductEntity();
-                entity.setHash(hash);
-
-                return entity;
-            } else {
-                throw new RuntimeException("Could not find product with hash: " + hash);
-            }
-        }
-
-        return results.get(0);
+    /**
+     * Gets a reference to the given product, without loading it, to be attached to a managed entity.
+     *
+     * @param id the product ID
+     * @return the reference
+     */
+    public ProductEntity getReference(Long id) {
+        return entityManager.getReference(ProductEntity.class, id);
     }
 
     public List<ProductEntity> findDropsByType(String type) {
@@ -12,6 +12,7 @@ import com.soapboxrace.core.jpa.SocialRelationshipEntity;
 import javax.enterprise.context.ApplicationScoped;
 import javax.transaction.Transactional;
 import javax.persistence.TypedQuery;
+import java.util.Collection;
 import java.util.List;
 
 @ApplicationScoped
@@ -59,6 +60,53 @@ public class SocialRelationshipDAO extends LongKeyedDAO<SocialRelationshipEntity
         return query.getResultList();
     }
 
+    /**
+     * Same as {@link #findByUserId(Long)}, with the remote users and their personas loaded by the same query.
+     */
+    public List<SocialRelationshipEntity> findByUserIdWithRemotePersonas(Long userId) {
+        TypedQuery<SocialRelationshipEntity> query = entityManager.createNamedQuery(
+                "SocialRelationshipEntity.findByUserWithRemotePersonas", SocialRelationshipEntity.class);
+        query.setParameter("id", userId);
+        return query.getResultList();
+    }
+
+    /**
+     * Same as {@link #findByUserIdAndStatus(Long, Long)}, with the remote users and their personas loaded by the same
+     * query.
+     */
+    public List<SocialRelationshipEntity> findByUserIdAndStatusWithRemotePersonas(Long userId, Long status) {
+        TypedQuery<SocialRelationshipEntity> query = entityManager.createNamedQuery(
+                "SocialRelationshipEntity.findByUserAndStatusWithRemotePersonas", SocialRelationshipEntity.class);
+        query.setParameter("id", userId);
+        query.setParameter("status", status);
+        return query.getResultList();
+    }
+
+    /**
+     * Finds the accepted friendships pointing to the given persona, with the users on the other side and their
+     * personas loaded by the same query.
+     */
+    public List<SocialRelationshipEntity> findFriendsByRemotePersonaIdWithPersonas(Long remotePersonaId) {
+        TypedQuery<SocialRelationshipEntity> query = entityManager.createNamedQuery(
+                "SocialRelationshipEntity.findFriendsByRemotePersonaIdWithPersonas", SocialRelationshipEntity.class);
+        query.setParameter("remotePersonaId", remotePersonaId);
+        return query.getResultList();
+    }
+
+    /**
+     * Filters the given personas down to the ones that are someone's confirmed friend.
+     *
+     * @param personaIds the persona IDs to check
+     * @return the IDs of the (non-deleted) personas having at least one accepted friendship
+     */
+    public List<Long> findPersonaIdsWithFriends(Collection<Long> personaIds) {
+        TypedQuery<Long> query = entityManager.createQuery(
+                "SELECT DISTINCT p.personaId FROM PersonaEntity p, SocialRelationshipEntity obj " +
+                        "WHERE obj.remoteUser = p.user AND obj.status = 1 AND p.deleted_at IS NULL AND p.personaId IN :personaIds", Long.class);
+        query.setParameter("personaIds", personaIds);
+        return query.getResultList();
+    }
+
     public List<SocialRelationshipEntity> findByStatus(Long status) {
         TypedQuery<SocialRelationshipEntity> query = entityManager.createQuery(
                 "SELECT obj FROM SocialRelationshipEntity obj WHERE obj.status = :status", SocialRelationshipEntity.class);
@@ -8,12 +8,19 @@ package com.soapboxrace.core.dao;
 
 import com.soapboxrace.core.dao.util.LongKeyedDAO;
 import com.soapboxrace.core.jpa.UserEntity;
+import org.hibernate.Session;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.transaction.Transactional;
 import javax.persistence.TypedQuery;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.logging.Logger;
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 
@@ -57,27 +64,6 @@ public class UserDAO extends LongKeyedDAO<UserEntity> {
         return entityManager.createNamedQuery("UserEntity.countUsers", Long.class).getSingleResult();
     }
     
-    public void updateLastLogin(Long userId, java.time.LocalDateTime lastLogin) {
-        entityManager.createQuery("UPDATE UserEntity SET lastLogin = :lastLogin WHERE id = :userId")
-                .setParameter("lastLogin", lastLogin)
-                .setParameter("userId", userId)
-                .executeUpdate();
-    }
-    
-    public void updateUserState(Long userId, String state) {
-        entityManager.createQuery("UPDATE UserEntity SET state = :state WHERE id = :userId")
-                .setParameter("state", state)
-                .setParameter("userId", userId)
-                .executeUpdate();
-    }
-    
-    public void updateHwid(Long userId, String hwid) {
-        entityManager.createQuery("UPDATE UserEntity SET hwid = :hwid WHERE id = :userId")
-                .setParameter("hwid", hwid)
-                .setParameter("userId", userId)
-                .executeUpdate();
-    }
-    
     public void updateSelectedPersonaIndex(Long userId, int selectedPersonaIndex) {
         entityManager.createQuery("UPDATE UserEntity SET selectedPersonaIndex = :selectedPersonaIndex WHERE id = :userId")
                 .setParameter("selectedPersonaIndex", selectedPersonaIndex)
@@ -85,12 +71,40 @@ public class UserDAO extends LongKeyedDAO<UserEntity> {
                 .executeUpdate();
     }
     
-    public void updateGameHardwareHashAndState(Long userId, String gameHardwareHash, String state) {
-        entityManager.createQuery("UPDATE UserEntity SET gameHardwareHash = :gameHardwareHash, state = :state WHERE id = :userId")
-                .setParameter("gameHardwareHash", gameHardwareHash)
-                .setParameter("state", state)
-                .setParameter("userId", userId)
-                .executeUpdate();
+    /**
+     * Writes the given columns of several users with JDBC batches, one batch per column.
+     * The USER entity is not in the second-level cache, so nothing has to be evicted.
+     *
+     * @param states             the new state of each user
+     * @param lastLogins         the new last login of each user
+     * @param hwids              the new HWID of each user
+     * @param gameHardwareHashes the new game hardware hash of each user
+     */
+    public void batchUpdateUserColumns(Map<Long, String> states, Map<Long, LocalDateTime> lastLogins,
+                                       Map<Long, String> hwids, Map<Long, String> gameHardwareHashes) {
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            executeBatch(connection, "UPDATE USER SET state = ? WHERE ID = ?", states);
+            executeBatch(connection, "UPDATE USER SET lastLogin = ? WHERE ID = ?", lastLogins);
+            executeBatch(connection, "UPDATE USER SET HWID = ? WHERE ID = ?", hwids);
+            executeBatch(connection, "UPDATE USER SET gameHardwareHash = ? WHERE ID = ?", gameHardwareHashes);
+        });
+    }
+
+    private static void executeBatch(Connection connection, String sql, Map<Long, ?> values) throws SQLException {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Map.Entry<Long, ?> entry : values.entrySet()) {
+                Object value = entry.getValue();
+                statement.setObject(1, value instanceof LocalDateTime ? Timestamp.valueOf((LocalDateTime) value) : value);
+                statement.setLong(2, entry.getKey());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
     }
     
     public void updateLocked(Long userId, boolean locked) {
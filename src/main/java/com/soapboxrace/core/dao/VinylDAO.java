@@ -1,10 +1,13 @@
 package com.soapboxrace.core.dao;
 
 import com.soapboxrace.core.dao.util.LongKeyedDAO;
+import com.soapboxrace.core.events.GarageChanged;
 import com.soapboxrace.core.jpa.CarEntity;
 import com.soapboxrace.core.jpa.VinylEntity;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
 import javax.transaction.Transactional;
 import java.util.List;
 import javax.persistence.TypedQuery;
@@ -14,10 +17,33 @@ import javax.persistence.Query;
 
 @Transactional
 public class VinylDAO extends LongKeyedDAO<VinylEntity> {
+
+    @Inject
+    private Event<GarageChanged> garageChangedEvent;
+
     public VinylDAO() {
         super(VinylEntity.class);
     }
 
+    // Les vinyls font partie du garage en cache du persona (GarageCacheBO), comme dans CarDAO
+    @Override
+    public void insert(VinylEntity entity) {
+        super.insert(entity);
+        fireGarageChanged(entity.getCar());
+    }
+
+    @Override
+    public void update(VinylEntity entity) {
+        super.update(entity);
+        fireGarageChanged(entity.getCar());
+    }
+
+    @Override
+    public void delete(VinylEntity entity) {
+        super.delete(entity);
+        fireGarageChanged(entity.getCar());
+    }
+
     public VinylEntity findByCarId(Long id) {
         TypedQuery<VinylEntity> query = entityManager.createNamedQuery("VinylEntity.findByCarId", VinylEntity.class);
         query.setParameter("carid", id);
@@ -30,5 +56,12 @@ public class VinylDAO extends LongKeyedDAO<VinylEntity> {
         Query query = entityManager.createNamedQuery("VinylEntity.deleteByCar");
         query.setParameter("customCar", carEntity);
         query.executeUpdate();
+        fireGarageChanged(carEntity);
+    }
+
+    private void fireGarageChanged(CarEntity carEntity) {
+        if (carEntity != null && carEntity.getPersona() != null) {
+            garageChangedEvent.fire(new GarageChanged(carEntity.getPersona().getPersonaId()));
+        }
     }
 }
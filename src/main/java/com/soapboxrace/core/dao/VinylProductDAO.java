@@ -53,4 +53,9 @@ public class VinylProductDAO extends LongKeyedDAO<VinylProductEntity> {
         return query.getResultList();
     }
 
+    public List<VinylProductEntity> findAllEnabled() {
+        TypedQuery<VinylProductEntity> query = entityManager.createNamedQuery("VinylProductEntity.findAllEnabled",
+                VinylProductEntity.class);
+        return query.getResultList();
+    }
 }
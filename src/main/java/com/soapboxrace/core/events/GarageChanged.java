@@ -0,0 +1,12 @@
+package com.soapboxrace.core.events;
+
+import lombok.Data;
+
+@Data
+public class GarageChanged {
+    private Long personaId;
+
+    public GarageChanged(Long personaId) {
+        this.personaId = personaId;
+    }
+}
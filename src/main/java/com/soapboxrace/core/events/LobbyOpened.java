@@ -0,0 +1,12 @@
+package com.soapboxrace.core.events;
+
+import lombok.Data;
+
+@Data
+public class LobbyOpened {
+    private Long lobbyId;
+
+    public LobbyOpened(Long lobbyId) {
+        this.lobbyId = lobbyId;
+    }
+}
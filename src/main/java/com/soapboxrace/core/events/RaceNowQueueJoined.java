@@ -0,0 +1,18 @@
+package com.soapboxrace.core.events;
+
+import lombok.Data;
+
+@Data
+public class RaceNowQueueJoined {
+    private Long personaId;
+    private Integer carClassHash;
+    private Integer level;
+    private Long queuedAt;
+
+    public RaceNowQueueJoined(Long personaId, Integer carClassHash, Integer level, Long queuedAt) {
+        this.personaId = personaId;
+        this.carClassHash = carClassHash;
+        this.level = level;
+        this.queuedAt = queuedAt;
+    }
+}
@@ -0,0 +1,12 @@
+package com.soapboxrace.core.events;
+
+import lombok.Data;
+
+@Data
+public class RaceNowQueueLeft {
+    private Long personaId;
+
+    public RaceNowQueueLeft(Long personaId) {
+        this.personaId = personaId;
+    }
+}
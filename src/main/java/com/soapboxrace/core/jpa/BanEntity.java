@@ -15,7 +15,9 @@ import java.time.LocalDateTime;
         @NamedQuery(name = "BanEntity.findAllExpired",
                 query = "SELECT obj FROM BanEntity obj WHERE obj.endsAt IS NOT NULL AND obj.endsAt <= CURRENT_TIMESTAMP AND obj.active = true"),
         @NamedQuery(name = "BanEntity.findByUser",
-                query = "SELECT obj FROM BanEntity obj WHERE obj.userEntity = :user AND (obj.endsAt IS NULL OR obj.endsAt > CURRENT_TIMESTAMP) AND obj.active = true")
+                query = "SELECT obj FROM BanEntity obj WHERE obj.userEntity = :user AND (obj.endsAt IS NULL OR obj.endsAt > CURRENT_TIMESTAMP) AND obj.active = true"),
+        @NamedQuery(name = "BanEntity.findBannedPersonaIds",
+                query = "SELECT p.personaId FROM PersonaEntity p, BanEntity obj WHERE p.user = obj.userEntity AND (obj.endsAt IS NULL OR obj.endsAt > CURRENT_TIMESTAMP) AND obj.active = true")
 })
 public class BanEntity {
     @Id
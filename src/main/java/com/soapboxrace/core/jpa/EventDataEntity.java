@@ -17,7 +17,8 @@ import com.soapboxrace.core.bo.util.RacerStatus;
         @NamedQuery(name = "EventDataEntity.getRacers", query = "SELECT obj FROM EventDataEntity obj WHERE obj.eventSessionId = :eventSessionId"),
         @NamedQuery(name = "EventDataEntity.findByPersonaAndType", query = "SELECT obj FROM EventDataEntity obj WHERE obj.personaId = :personaId AND obj.eventModeId = :eventModeId"),
         @NamedQuery(name = "EventDataEntity.findByPersonaAndEventSessionId", query = "SELECT obj FROM EventDataEntity obj WHERE obj.personaId = :personaId AND obj.eventSessionId = :eventSessionId"),
-        @NamedQuery(name = "EventDataEntity.getRankings", query = "SELECT obj FROM EventDataEntity obj WHERE obj.event.id = :eventid AND obj.isLegit = true AND obj.hacksDetected IN (0,22,32) AND obj.finishReason = 22 ORDER BY obj.eventDurationInMilliseconds ASC")
+        @NamedQuery(name = "EventDataEntity.getRankings", query = "SELECT obj FROM EventDataEntity obj WHERE obj.event.id = :eventid AND obj.isLegit = true AND obj.hacksDetected IN (0,22,32) AND obj.finishReason = 22 ORDER BY obj.eventDurationInMilliseconds ASC"),
+        @NamedQuery(name = "EventDataEntity.getBestTimes", query = "SELECT obj.personaId, MIN(obj.eventDurationInMilliseconds) FROM EventDataEntity obj WHERE obj.event.id = :eventid AND obj.isLegit = true AND obj.hacksDetected IN (0,22,32) AND obj.finishReason = 22 AND obj.bustedCount = 0 AND obj.carClassHash <> 0 GROUP BY obj.personaId")
 })
 public class EventDataEntity {
 
@@ -27,6 +27,10 @@ import java.util.Set;
                         + "(obj.adminOnly = false or obj.adminOnly = :admin) AND " //
                         + "obj.categoryName = :categoryName AND "//
                         + "obj.productType = :productType"), //
+        @NamedQuery(name = "ProductEntity.findAllEnabled", query = "SELECT obj FROM ProductEntity obj WHERE obj" +
+                ".enabled = true ORDER BY obj.id"), //
+        @NamedQuery(name = "ProductEntity.findAllWithBundleItems", query = "SELECT DISTINCT obj FROM ProductEntity obj " +
+                "LEFT JOIN FETCH obj.bundleItems ORDER BY obj.id"), //
         @NamedQuery(name = "ProductEntity.findForEndRace", //
                 query = "SELECT obj FROM ProductEntity obj WHERE " //
                         + "obj.enabled = true AND " //
@@ -34,12 +38,6 @@ import java.util.Set;
                         + "obj.categoryName = :categoryName AND " //
                         + "obj.isDropable = true AND " //
                         + "obj.productType = :productType"), //
-        @NamedQuery(name = "ProductEntity.findByProductId", query = "SELECT obj FROM ProductEntity obj WHERE obj" +
-                ".productId = :productId"), //
-        @NamedQuery(name = "ProductEntity.findByEntitlementTag", query = "SELECT obj FROM ProductEntity obj WHERE obj" +
-                ".entitlementTag = :entitlementTag"), //
-        @NamedQuery(name = "ProductEntity.findByHash", query = "SELECT obj FROM ProductEntity obj WHERE obj.hash = " +
-                ":hash"), //
         @NamedQuery(name = "ProductEntity.findByType", query = "SELECT obj FROM ProductEntity obj WHERE obj" +
                 ".productType = :type AND obj.enabled=true"), //
         @NamedQuery(name = "ProductEntity.findDropsByType", query = "SELECT obj FROM ProductEntity obj WHERE obj" +
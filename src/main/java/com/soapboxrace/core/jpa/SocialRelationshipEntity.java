@@ -21,6 +21,15 @@ import javax.persistence.*;
                 "SocialRelationshipEntity obj WHERE obj.remoteUser.id = :remoteId AND obj.status=:status"), //
         @NamedQuery(name = "SocialRelationshipEntity.findByRemotePersonaId", query = "SELECT obj FROM " +
                 "SocialRelationshipEntity obj WHERE obj.remotePersonaId = :remotePersonaId"), //
+        @NamedQuery(name = "SocialRelationshipEntity.findByUserWithRemotePersonas", query = "SELECT DISTINCT obj " +
+                "FROM SocialRelationshipEntity obj JOIN FETCH obj.remoteUser remoteUser LEFT JOIN FETCH " +
+                "remoteUser.personas WHERE obj.user.id = :id"), //
+        @NamedQuery(name = "SocialRelationshipEntity.findByUserAndStatusWithRemotePersonas", query = "SELECT " +
+                "DISTINCT obj FROM SocialRelationshipEntity obj JOIN FETCH obj.remoteUser remoteUser LEFT JOIN FETCH " +
+                "remoteUser.personas WHERE obj.user.id = :id AND obj.status = :status"), //
+        @NamedQuery(name = "SocialRelationshipEntity.findFriendsByRemotePersonaIdWithPersonas", query = "SELECT " +
+                "DISTINCT obj FROM SocialRelationshipEntity obj JOIN FETCH obj.user localUser LEFT JOIN FETCH " +
+                "localUser.personas WHERE obj.remotePersonaId = :remotePersonaId AND obj.status = 1"), //
         @NamedQuery(name = "SocialRelationshipEntity.findByLocalAndRemoteUser", query = "SELECT obj FROM " +
                 "SocialRelationshipEntity" +
                 " obj" +
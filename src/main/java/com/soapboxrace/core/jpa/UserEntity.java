@@ -36,9 +36,11 @@ public class UserEntity {
     @Column(name = "PASSWORD", length = 50)
     private String password;
 
-    @Column(name = "HWID")
+    // Colonnes écrites uniquement par UserWriteBehindBO : une mise à jour de l'entité ne doit pas les écraser
+    @Column(name = "HWID", updatable = false)
     private String hwid;
 
+    @Column(updatable = false)
     private String gameHardwareHash;
 
     @Column(name = "IP_ADDRESS")
@@ -72,10 +74,10 @@ public class UserEntity {
     @Column(name = "created")
     private LocalDateTime created;
 
-    @Column(name = "lastLogin")
+    @Column(name = "lastLogin", updatable = false)
     private LocalDateTime lastLogin;
 
-    @Column(name = "state")
+    @Column(name = "state", updatable = false)
     private String state;
 
     @Column(columnDefinition = "integer default 0")
@@ -6,12 +6,15 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import java.util.List;
  
 @Startup
 @Singleton
+@Lock(LockType.READ)
 public class OpenFireRestApiCli {
     private static final Logger logger = LoggerFactory.getLogger(OpenFireRestApiCli.class);
     
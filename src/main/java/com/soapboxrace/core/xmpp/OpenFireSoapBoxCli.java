@@ -20,16 +20,12 @@ import javax.transaction.Transactional;
 @Transactional
 public class OpenFireSoapBoxCli {
     private static final Logger logger = LoggerFactory.getLogger(OpenFireSoapBoxCli.class);
-    
-    // Augmentation des retries et délais pour connexions LTE/4G instables
-    private static final int MAX_RETRIES = 5; // Augmenté de 2 à 5
-    private static final int RETRY_DELAY_MS = 150; // Augmenté de 50ms à 150ms
 
     @Inject
-    private OpenFireRestApiCli restApi;
+    private XmppDeliveryQueue deliveryQueue;
 
     /**
-     * Envoie un message texte avec retry automatique
+     * Met un message texte en file d'envoi (retry automatique, voir {@link XmppDeliveryQueue})
      */
     public void send(String msg, Long to) {
         if (msg == null || to == null || to.equals(0L)) {
@@ -38,14 +34,11 @@ public class OpenFireSoapBoxCli {
             return;
         }
         
-        sendWithRetry(() -> {
-            restApi.sendMessage(to, msg);
-            logger.trace("String message sent to PersonaId={}", to);
-        }, "String", to);
+        deliveryQueue.enqueue(to, msg);
     }
 
     /**
-     * Envoie un objet JAXB avec retry automatique
+     * Met un objet JAXB en file d'envoi (retry automatique, voir {@link XmppDeliveryQueue})
      */
     public void send(Object object, Long to) {
         if (object == null || to == null || to.equals(0L)) {
@@ -53,52 +46,17 @@ public class OpenFireSoapBoxCli {
                       object != null ? object.getClass().getSimpleName() : "null", to);
             return;
         }
-        
-        String objectType = object.getClass().getSimpleName();
-        
-        sendWithRetry(() -> {
-            String xmlMessage = JAXBUtility.marshal(object);
-            restApi.sendMessage(to, xmlMessage);
-            logger.trace("Object message ({}) sent to PersonaId={}", objectType, to);
-        }, objectType, to);
-    }
-    
-    /**
-     * M\u00e9thode utilitaire pour envoyer avec retry automatique
-     */
-    private void sendWithRetry(MessageSender sender, String messageType, Long targetPersonaId) {
-        Exception lastException = null;
-        
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
-            try {
-                sender.send();
-                return; // Succ\u00e8s
-            } catch (Exception e) {
-                lastException = e;
-                
-                if (attempt < MAX_RETRIES) {
-                    logger.debug("Retry {}/{} sending {} to PersonaId={}: {}", 
-                               attempt, MAX_RETRIES, messageType, targetPersonaId, e.getMessage());
-                    try {
-                        Thread.sleep(RETRY_DELAY_MS * attempt);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        logger.warn("Interrupted while retrying message send to PersonaId={}", targetPersonaId);
-                        break;
-                    }
-                }
-            }
+
+        // Sérialisé immédiatement : l'objet peut être modifié par l'appelant après l'appel
+        String xmlMessage;
+        try {
+            xmlMessage = JAXBUtility.marshal(object);
+        } catch (Exception e) {
+            logger.error("Failed to marshal {} message for PersonaId={}: {}",
+                       object.getClass().getSimpleName(), to, e.getMessage(), e);
+            return;
         }
-        
-        // Tous les essais ont \u00e9chou\u00e9
-        logger.error("Failed to send {} message to PersonaId={} after {} attempts: {}", 
-                   messageType, targetPersonaId, MAX_RETRIES, 
-                   lastException != null ? lastException.getMessage() : "unknown error", 
-                   lastException);
-    }
-    
-    @FunctionalInterface
-    private interface MessageSender {
-        void send() throws Exception;
+
+        deliveryQueue.enqueue(to, xmlMessage);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,243 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.xmpp;
+
+import com.soapboxrace.core.bo.ParameterBO;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * File d'envoi des messages XMPP sortants.
+ * <p>
+ * Chaque destinataire a sa propre file bornée, vidée par un pool d'envoi dédié : l'ordre des messages est conservé
+ * par destinataire et l'appelant (souvent un thread de requête dans une transaction) n'attend jamais le serveur XMPP.
+ * Les échecs sont réessayés avec un délai croissant via le scheduler, sans occuper de thread d'envoi.
+ * Quand la file d'un destinataire est pleine, le message le plus ancien est abandonné.
+ */
+@Startup
+@Singleton
+@Lock(LockType.READ)
+public class XmppDeliveryQueue {
+    private static final Logger logger = LoggerFactory.getLogger(XmppDeliveryQueue.class);
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_DELAY_MS = 150;
+    // Nombre de messages envoyés d'affilée pour un destinataire avant de laisser la place aux autres
+    private static final int MAX_MESSAGES_PER_DRAIN = 32;
+
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor senderPool;
+
+    private int queueCapacity;
+
+    private Counter sentCounter;
+
+    private Counter retryCounter;
+
+    private Counter failedCounter;
+
+    private Counter overflowCounter;
+
+    @Resource
+    private ManagedThreadFactory managedThreadFactory;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduledExecutorService;
+
+    @Inject
+    private OpenFireRestApiCli restApi;
+
+    @Inject
+    private ParameterBO parameterBO;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @PostConstruct
+    public void init() {
+        int senderThreads = parameterBO.getIntParam("SBRWR_XMPP_SENDER_THREADS", 4);
+        this.queueCapacity = parameterBO.getIntParam("SBRWR_XMPP_QUEUE_CAPACITY", 256);
+
+        this.sentCounter = metricRegistry.counter("xmpp.sent");
+        this.retryCounter = metricRegistry.counter("xmpp.retries");
+        this.failedCounter = metricRegistry.counter("xmpp.failed");
+        this.overflowCounter = metricRegistry.counter("xmpp.overflow");
+
+        // Au plus une tâche en attente par destinataire : la file du pool reste bornée par le nombre de destinataires
+        this.senderPool = new ThreadPoolExecutor(senderThreads, senderThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), managedThreadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (this.senderPool != null) {
+            this.senderPool.shutdown();
+        }
+    }
+
+    /**
+     * Met un message en file pour le destinataire donné.
+     *
+     * @param recipient the persona ID of the recipient
+     * @param message   the message to send
+     */
+    public void enqueue(long recipient, String message) {
+        Mailbox mailbox;
+
+        while (true) {
+            mailbox = mailboxes.computeIfAbsent(recipient, Mailbox::new);
+
+            synchronized (mailbox) {
+                // Boîte retirée entre-temps par la tâche d'envoi : en reprendre une nouvelle
+                if (mailbox.closed) {
+                    continue;
+                }
+
+                while (!mailbox.messages.offer(message)) {
+                    if (mailbox.messages.poll() != null) {
+                        overflowCounter.inc();
+                        logger.warn("XMPP queue full for PersonaId={}, dropping oldest message", recipient);
+                    }
+                }
+            }
+
+            break;
+        }
+
+        schedule(mailbox);
+    }
+
+    /**
+     * @return the number of messages waiting to be sent
+     */
+    public int getPendingCount() {
+        int pending = 0;
+
+        for (Mailbox mailbox : mailboxes.values()) {
+            pending += mailbox.messages.size();
+        }
+
+        return pending;
+    }
+
+    private void schedule(Mailbox mailbox) {
+        if (mailbox.scheduled.compareAndSet(false, true)) {
+            submit(mailbox);
+        }
+    }
+
+    private void submit(Mailbox mailbox) {
+        try {
+            senderPool.execute(() -> drain(mailbox));
+        } catch (RejectedExecutionException e) {
+            mailbox.scheduled.set(false);
+            logger.warn("XMPP sender pool is shut down, {} message(s) for PersonaId={} not sent",
+                    mailbox.messages.size(), mailbox.recipient);
+        }
+    }
+
+    private void drain(Mailbox mailbox) {
+        for (int sent = 0; sent < MAX_MESSAGES_PER_DRAIN; sent++) {
+            String message = mailbox.messages.peek();
+
+            if (message == null) {
+                mailbox.scheduled.set(false);
+
+                // Un message a pu arriver entre peek() et la remise à false
+                if (!mailbox.messages.isEmpty() && mailbox.scheduled.compareAndSet(false, true)) {
+                    continue;
+                }
+
+                // Retirée sous son verrou : enqueue ne peut plus déposer dans une boîte qui n'est plus dans la map,
+                // il n'y a donc jamais deux boîtes (ni deux tâches d'envoi) pour un même destinataire
+                synchronized (mailbox) {
+                    if (mailbox.messages.isEmpty()) {
+                        mailbox.closed = true;
+                        mailboxes.remove(mailbox.recipient, mailbox);
+                    }
+                }
+                return;
+            }
+
+            try {
+                restApi.sendMessage(mailbox.recipient, message);
+                mailbox.messages.remove(message);
+                mailbox.attempts = 0;
+                sentCounter.inc();
+            } catch (Exception e) {
+                mailbox.attempts++;
+
+                if (mailbox.attempts >= MAX_ATTEMPTS) {
+                    mailbox.messages.remove(message);
+                    mailbox.attempts = 0;
+                    failedCounter.inc();
+                    logger.error("Failed to send XMPP message to PersonaId={} after {} attempts: {}",
+                            mailbox.recipient, MAX_ATTEMPTS, e.getMessage(), e);
+                    continue;
+                }
+
+                retryCounter.inc();
+                logger.debug("Retry {}/{} sending XMPP message to PersonaId={}: {}",
+                        mailbox.attempts, MAX_ATTEMPTS, mailbox.recipient, e.getMessage());
+
+                try {
+                    scheduledExecutorService.schedule(() -> submit(mailbox), RETRY_DELAY_MS * mailbox.attempts,
+                            TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException re) {
+                    mailbox.scheduled.set(false);
+                }
+                return;
+            }
+        }
+
+        // Laisse passer les autres destinataires, la tâche reprendra ensuite
+        submit(mailbox);
+    }
+
+    /**
+     * Messages en attente d'un destinataire. Une seule tâche d'envoi à la fois par destinataire.
+     */
+    private class Mailbox {
+        private final long recipient;
+
+        private final ArrayBlockingQueue<String> messages = new ArrayBlockingQueue<>(queueCapacity);
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // Retirée de la map ; protégé par le verrou de la boîte
+        private boolean closed;
+
+        // Modifié uniquement par la tâche d'envoi en cours
+        private volatile int attempts;
+
+        Mailbox(long recipient) {
+            this.recipient = recipient;
+        }
+    }
+}
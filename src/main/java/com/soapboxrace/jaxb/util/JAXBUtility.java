@@ -12,18 +12,39 @@ import javax.xml.bind.annotation.XmlType;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamReader;
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Marshalling helpers. Marshallers and unmarshallers are not thread-safe, so each thread keeps its own instance
+ * per class; the {@link JAXBContext} and the {@link XMLInputFactory} are shared.
+ */
 public class JAXBUtility {
 
+    // Au-delà, le tampon du thread n'est pas conservé pour ne pas garder de grosses réponses en mémoire
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
     private static final Map<Class<?>, JAXBContext> contextStore = new ConcurrentHashMap<>();
 
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newFactory();
+
+    private static final ThreadLocal<Map<Class<?>, Marshaller>> marshallers = ThreadLocal.withInitial(HashMap::new);
+
+    private static final ThreadLocal<Map<Class<?>, Unmarshaller>> unmarshallers = ThreadLocal.withInitial(HashMap::new);
+
+    private static final ThreadLocal<StringWriter> stringWriters = ThreadLocal.withInitial(StringWriter::new);
+
+    private static final ThreadLocal<ByteArrayOutputStream> byteBuffers = ThreadLocal.withInitial(ByteArrayOutputStream::new);
+
     protected static JAXBContext getContextInstance(Class<?> objectClass) throws JAXBException {
         JAXBContext context = contextStore.get(objectClass);
         if (context == null) {
@@ -33,49 +54,152 @@ public class JAXBUtility {
         return context;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Marshals the given object to a string.
+     *
+     * @param obj the object to marshal
+     * @return the XML, or an empty string if obj is null
+     * @throws RuntimeException if the object cannot be marshalled
+     */
     public static String marshal(Object obj) {
         if (obj == null) {
             return "";
         }
 
-        StringWriter stringWriter = new StringWriter();
+        StringWriter stringWriter = stringWriters.get();
+        stringWriter.getBuffer().setLength(0);
         try {
-            JAXBContext jaxbContext = getContextInstance(obj.getClass());
-            Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-            jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
-            jaxbMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
-            XmlRootElement xmlRootAnnotation = obj.getClass().getAnnotation(XmlRootElement.class);
-            if (xmlRootAnnotation == null) {
-                XmlType xmlTypeAnnotation = obj.getClass().getAnnotation(XmlType.class);
-                QName qname = new QName("", xmlTypeAnnotation.name());
-                JAXBElement<Object> jaxbElement = new JAXBElement<>(qname, (Class<Object>) obj.getClass(), null, obj);
-                jaxbMarshaller.marshal(jaxbElement, stringWriter);
+            doMarshal(obj, stringWriter, null);
+            return stringWriter.toString();
+        } catch (JAXBException | RuntimeException e) {
+            throw marshalFailure(obj, e);
+        } finally {
+            if (stringWriter.getBuffer().capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                stringWriters.remove();
+            }
+        }
+    }
+
+    /**
+     * Marshals the given object as UTF-8 to a byte array. Nothing is returned if marshalling fails half-way, unlike
+     * {@link #marshal(Object, OutputStream)}.
+     *
+     * @param obj the object to marshal
+     * @return the XML, empty if obj is null
+     * @throws RuntimeException if the object cannot be marshalled
+     */
+    public static byte[] marshalToBytes(Object obj) {
+        if (obj == null) {
+            return new byte[0];
+        }
+
+        ByteArrayOutputStream buffer = byteBuffers.get();
+        buffer.reset();
+        try {
+            doMarshal(obj, null, buffer);
+            return buffer.toByteArray();
+        } catch (JAXBException | RuntimeException e) {
+            throw marshalFailure(obj, e);
+        } finally {
+            if (buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+                byteBuffers.remove();
+            }
+        }
+    }
+
+    /**
+     * Marshals the given object as UTF-8 directly into the given stream. On failure, part of the XML may already
+     * have been written.
+     *
+     * @param obj          the object to marshal
+     * @param outputStream the stream to write to
+     * @throws RuntimeException if the object cannot be marshalled
+     */
+    public static void marshal(Object obj, OutputStream outputStream) {
+        if (obj == null) {
+            return;
+        }
+
+        try {
+            doMarshal(obj, null, outputStream);
+        } catch (JAXBException | RuntimeException e) {
+            throw marshalFailure(obj, e);
+        }
+    }
+
+    private static RuntimeException marshalFailure(Object obj, Exception e) {
+        return new RuntimeException("Failed to marshal " + obj.getClass().getCanonicalName() + " instance", e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void doMarshal(Object obj, StringWriter writer, OutputStream outputStream) throws JAXBException {
+        Marshaller jaxbMarshaller = getMarshaller(obj.getClass());
+        Object element = obj;
+        XmlRootElement xmlRootAnnotation = obj.getClass().getAnnotation(XmlRootElement.class);
+        if (xmlRootAnnotation == null) {
+            XmlType xmlTypeAnnotation = obj.getClass().getAnnotation(XmlType.class);
+            QName qname = new QName("", xmlTypeAnnotation.name());
+            element = new JAXBElement<>(qname, (Class<Object>) obj.getClass(), null, obj);
+        }
+        try {
+            if (writer != null) {
+                jaxbMarshaller.marshal(element, writer);
             } else {
-                jaxbMarshaller.marshal(obj, stringWriter);
+                jaxbMarshaller.marshal(element, outputStream);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (JAXBException | RuntimeException e) {
+            // L'état du marshaller après une erreur n'est pas garanti
+            marshallers.get().remove(obj.getClass());
+            throw e;
+        }
+    }
+
+    private static Marshaller getMarshaller(Class<?> objectClass) throws JAXBException {
+        Map<Class<?>, Marshaller> threadMarshallers = marshallers.get();
+        Marshaller jaxbMarshaller = threadMarshallers.get(objectClass);
+        if (jaxbMarshaller == null) {
+            jaxbMarshaller = getContextInstance(objectClass).createMarshaller();
+            jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+            jaxbMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            jaxbMarshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+            threadMarshallers.put(objectClass, jaxbMarshaller);
+        }
+        return jaxbMarshaller;
+    }
+
+    private static Unmarshaller getUnmarshaller(Class<?> objectClass) throws JAXBException {
+        Map<Class<?>, Unmarshaller> threadUnmarshallers = unmarshallers.get();
+        Unmarshaller jaxbUnmarshaller = threadUnmarshallers.get(objectClass);
+        if (jaxbUnmarshaller == null) {
+            jaxbUnmarshaller = getContextInstance(objectClass).createUnmarshaller();
+            threadUnmarshallers.put(objectClass, jaxbUnmarshaller);
         }
-        return stringWriter.toString();
+        return jaxbUnmarshaller;
     }
 
     public static <T> T unMarshal(InputStream is, Class<T> classz) {
+        return unMarshal(new InputStreamReader(is, StandardCharsets.UTF_8), classz);
+    }
+
+    public static <T> T unMarshal(String xmlStr, Class<T> classz) {
+        return unMarshal(new StringReader(xmlStr), classz);
+    }
+
+    private static <T> T unMarshal(Reader reader, Class<T> classz) {
         try {
-            InputStreamReader inputStreamReader = new InputStreamReader(is);
-            JAXBContext jaxbContext = getContextInstance(classz);
-            Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-            XMLStreamReader xsr = XMLInputFactory.newFactory().createXMLStreamReader(inputStreamReader);
+            XMLStreamReader xsr = xmlInputFactory.createXMLStreamReader(reader);
             XMLReaderWithoutNamespace xr = new XMLReaderWithoutNamespace(xsr);
-            JAXBElement<T> jaxbElement = jaxbUnmarshaller.unmarshal(xr, classz);
-            return jaxbElement.getValue();
+            try {
+                JAXBElement<T> jaxbElement = getUnmarshaller(classz).unmarshal(xr, classz);
+                return jaxbElement.getValue();
+            } catch (JAXBException | RuntimeException e) {
+                unmarshallers.get().remove(classz);
+                throw e;
+            } finally {
+                xsr.close();
+            }
         } catch (Exception e) {
             throw new RuntimeException("Failed to unmarshal stream to " + classz.getCanonicalName() + " instance", e);
         }
     }
-
-    public static <T> T unMarshal(String xmlStr, Class<T> classz) {
-        InputStream is = new ByteArrayInputStream(xmlStr.getBytes(StandardCharsets.UTF_8));
-        return unMarshal(is, classz);
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.core.dao.LobbyDAO;
+import com.soapboxrace.core.events.LobbyOpened;
+import com.soapboxrace.core.jpa.EventEntity;
+import com.soapboxrace.core.jpa.LobbyEntity;
+import com.soapboxrace.core.jpa.LobbyEntrantEntity;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.enterprise.event.Event;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OpenLobbyIndexBOTest {
+
+    private static final int OPEN_CLASS_HASH = 607077938;
+    private static final int A_CLASS_HASH = -405837480;
+    private static final int B_CLASS_HASH = -406473455;
+
+    private OpenLobbyIndexBO openLobbyIndexBO;
+
+    private final List<Long> openedLobbyIds = new ArrayList<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void createIndex() {
+        openLobbyIndexBO = new OpenLobbyIndexBO();
+        openLobbyIndexBO.setLobbyDAO(new LobbyDAO() {
+            @Override
+            public int getLobbySearchWindowSeconds() {
+                return 60;
+            }
+        });
+        openLobbyIndexBO.setLobbyOpenedEvent((Event<LobbyOpened>) Proxy.newProxyInstance(Event.class.getClassLoader(),
+                new Class<?>[]{Event.class}, (proxy, method, args) -> {
+                    if ("fire".equals(method.getName())) {
+                        openedLobbyIds.add(((LobbyOpened) args[0]).getLobbyId());
+                    }
+                    return null;
+                }));
+    }
+
+    @Test
+    public void findsJoinableLobbiesOfClassAndLevel() {
+        openLobbyIndexBO.update(lobby(1L, event(1, A_CLASS_HASH, 30, 40), 2));
+        openLobbyIndexBO.update(lobby(2L, event(2, OPEN_CLASS_HASH, 1, 100), 3));
+        // Autre classe, niveau hors de l'événement, complet, vide, hors de la fenêtre de recherche
+        openLobbyIndexBO.update(lobby(3L, event(3, B_CLASS_HASH, 30, 40), 2));
+        openLobbyIndexBO.update(lobby(4L, event(4, A_CLASS_HASH, 36, 50), 2));
+        openLobbyIndexBO.update(lobby(5L, event(5, A_CLASS_HASH, 30, 40), 8));
+        openLobbyIndexBO.update(lobby(6L, event(6, A_CLASS_HASH, 30, 40), 0));
+        LobbyEntity old = lobby(7L, event(7, A_CLASS_HASH, 30, 40), 2);
+        old.setStartedTime(LocalDateTime.now().minusMinutes(5));
+        openLobbyIndexBO.update(old);
+
+        assertEquals(ids(1L, 2L), lobbyIds(openLobbyIndexBO.findOpen(A_CLASS_HASH, 35)));
+        assertEquals(ids(2L, 3L), lobbyIds(openLobbyIndexBO.findOpen(B_CLASS_HASH, 35)));
+        assertEquals(ids(1L, 2L, 3L), lobbyIds(openLobbyIndexBO.findOpenByLevel(35)));
+        assertEquals(ids(1L, 2L, 3L, 4L), lobbyIds(openLobbyIndexBO.findOpenByLevelBand(35)));
+    }
+
+    @Test
+    public void excludesLobbiesLockedToAnotherClass() {
+        LobbyEntity locked = lobby(1L, event(1, OPEN_CLASS_HASH, 1, 100), 2);
+        locked.setLockedCarClassHash(B_CLASS_HASH);
+        openLobbyIndexBO.update(locked);
+
+        assertTrue(openLobbyIndexBO.findOpen(A_CLASS_HASH, 10).isEmpty());
+        assertEquals(ids(1L), lobbyIds(openLobbyIndexBO.findOpen(B_CLASS_HASH, 10)));
+    }
+
+    @Test
+    public void rebucketsWhenEventChanges() {
+        LobbyEntity lobbyEntity = lobby(1L, event(1, A_CLASS_HASH, 30, 40), 2);
+        openLobbyIndexBO.update(lobbyEntity);
+
+        lobbyEntity.setEvent(event(2, B_CLASS_HASH, 60, 70));
+        openLobbyIndexBO.update(lobbyEntity);
+
+        assertTrue(openLobbyIndexBO.findOpen(A_CLASS_HASH, 35).isEmpty());
+        assertEquals(ids(1L), lobbyIds(openLobbyIndexBO.findOpen(B_CLASS_HASH, 65)));
+        assertEquals(1, openLobbyIndexBO.size());
+    }
+
+    @Test
+    public void removesInactiveAndPrivateLobbies() {
+        LobbyEntity inactive = lobby(1L, event(1, A_CLASS_HASH, 30, 40), 1);
+        openLobbyIndexBO.update(inactive);
+        inactive.setIsActive(false);
+        openLobbyIndexBO.update(inactive);
+
+        LobbyEntity privateLobby = lobby(2L, event(2, A_CLASS_HASH, 30, 40), 1);
+        privateLobby.setIsPrivate(true);
+        openLobbyIndexBO.update(privateLobby);
+
+        assertNull(openLobbyIndexBO.get(1L));
+        assertNull(openLobbyIndexBO.get(2L));
+        assertEquals(0, openLobbyIndexBO.size());
+        // Un lobby privé en attente reste dans l'ensemble des lobbies en attente, mais n'est pas public
+        assertEquals(1, openLobbyIndexBO.getWaitingCount());
+        assertTrue(openLobbyIndexBO.findWaitingPublic().isEmpty());
+    }
+
+    @Test
+    public void tracksWaitingLobbies() {
+        LobbyEntity empty = lobby(1L, event(1, A_CLASS_HASH, 30, 40), 0);
+        empty.setStartedTime(LocalDateTime.now().minusMinutes(10));
+        openLobbyIndexBO.update(empty);
+        openLobbyIndexBO.update(lobby(2L, event(2, A_CLASS_HASH, 30, 40), 1));
+        openLobbyIndexBO.update(lobby(3L, event(3, A_CLASS_HASH, 30, 40), 2));
+
+        assertEquals(ids(1L, 2L), new TreeSet<>(openLobbyIndexBO.findWaitingPublic()));
+        assertEquals(Collections.singletonList(1L),
+                openLobbyIndexBO.findEmptyStartedBefore(LocalDateTime.now().minusMinutes(5)));
+
+        openLobbyIndexBO.remove(2L);
+        assertEquals(ids(1L), new TreeSet<>(openLobbyIndexBO.findWaitingPublic()));
+    }
+
+    @Test
+    public void firesLobbyOpenedWhenSeatFrees() {
+        LobbyEntity lobbyEntity = lobby(1L, event(1, A_CLASS_HASH, 30, 40), 1);
+        openLobbyIndexBO.update(lobbyEntity);
+        openLobbyIndexBO.update(lobbyEntity);
+        assertEquals(Collections.singletonList(1L), openedLobbyIds);
+
+        lobbyEntity.setEntrants(entrants(lobbyEntity, 8));
+        openLobbyIndexBO.update(lobbyEntity);
+        lobbyEntity.setEntrants(entrants(lobbyEntity, 7));
+        openLobbyIndexBO.update(lobbyEntity);
+        assertEquals(List.of(1L, 1L), openedLobbyIds);
+    }
+
+    private static EventEntity event(int id, int carClassHash, int minLevel, int maxLevel) {
+        EventEntity eventEntity = new EventEntity();
+        eventEntity.setId(id);
+        eventEntity.setCarClassHash(carClassHash);
+        eventEntity.setMinLevel(minLevel);
+        eventEntity.setMaxLevel(maxLevel);
+        eventEntity.setMaxPlayers(8);
+        return eventEntity;
+    }
+
+    private static LobbyEntity lobby(Long id, EventEntity eventEntity, int entrantCount) {
+        LobbyEntity lobbyEntity = new LobbyEntity();
+        lobbyEntity.setId(id);
+        lobbyEntity.setEvent(eventEntity);
+        lobbyEntity.setIsPrivate(false);
+        lobbyEntity.setIsActive(true);
+        lobbyEntity.setStartedTime(LocalDateTime.now().minusSeconds(5));
+        lobbyEntity.setEntrants(entrants(lobbyEntity, entrantCount));
+        return lobbyEntity;
+    }
+
+    private static List<LobbyEntrantEntity> entrants(LobbyEntity lobbyEntity, int count) {
+        List<LobbyEntrantEntity> entrants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LobbyEntrantEntity lobbyEntrantEntity = new LobbyEntrantEntity();
+            lobbyEntrantEntity.setLobby(lobbyEntity);
+            entrants.add(lobbyEntrantEntity);
+        }
+        return entrants;
+    }
+
+    private static Set<Long> ids(Long... ids) {
+        Set<Long> set = new TreeSet<>();
+        Collections.addAll(set, ids);
+        return set;
+    }
+
+    private static Set<Long> lobbyIds(List<OpenLobbyIndexBO.OpenLobby> openLobbies) {
+        Set<Long> set = new TreeSet<>();
+        for (OpenLobbyIndexBO.OpenLobby openLobby : openLobbies) {
+            set.add(openLobby.getLobbyId());
+        }
+        return set;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo;
+
+import com.soapboxrace.jaxb.http.ArrayOfOwnedCarTrans;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
+import org.eclipse.microprofile.metrics.Counter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ResponseCacheBOTest {
+
+    private ResponseCacheBO responseCacheBO;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Before
+    public void createCache() {
+        responseCacheBO = new ResponseCacheBO();
+        responseCacheBO.setCounters(new TestCounter(), new TestCounter());
+    }
+
+    @Test
+    public void servesCachedResponseUntilVersionBump() {
+        ResponseCacheBO.CachedResponse first = responseCacheBO.get("carclasses", "all", () -> cars(1));
+        ResponseCacheBO.CachedResponse second = responseCacheBO.get("carclasses", "all", () -> cars(1));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+
+        responseCacheBO.bumpVersion("carclasses");
+        ResponseCacheBO.CachedResponse third = responseCacheBO.get("carclasses", "all", () -> cars(1));
+
+        assertEquals(2, loads.get());
+        assertArrayEquals(first.getBody(), third.getBody());
+        assertEquals(first.getEtag(), third.getEtag());
+    }
+
+    @Test
+    public void versionsAreIndependentPerContent() {
+        ResponseCacheBO.CachedResponse levels = responseCacheBO.get("levels", "all", () -> cars(1));
+        responseCacheBO.get("carclasses", "all", () -> cars(2));
+
+        responseCacheBO.bumpVersion("carclasses");
+
+        assertSame(levels, responseCacheBO.get("levels", "all", () -> cars(1)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void keysAreDistinctWithinContent() {
+        ResponseCacheBO.CachedResponse one = responseCacheBO.get("catalog", "1", () -> cars(1));
+        ResponseCacheBO.CachedResponse two = responseCacheBO.get("catalog", "2", () -> cars(2));
+
+        assertNotEquals(one.getEtag(), two.getEtag());
+        assertEquals(40, one.getEtag().length());
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        try {
+            responseCacheBO.get("catalog", "1", () -> {
+                throw new IllegalStateException("test");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // attendu
+        }
+
+        responseCacheBO.get("catalog", "1", () -> cars(1));
+        responseCacheBO.get("catalog", "1", () -> cars(1));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void gzipBodyDecompressesToBody() throws IOException {
+        ResponseCacheBO.CachedResponse response = responseCacheBO.get("catalog", "1", () -> cars(3));
+
+        byte[] gzipBody = response.getGzipBody();
+
+        assertSame(gzipBody, response.getGzipBody());
+        assertArrayEquals(response.getBody(), gunzip(gzipBody));
+    }
+
+    private ArrayOfOwnedCarTrans cars(int count) {
+        loads.incrementAndGet();
+        ArrayOfOwnedCarTrans cars = new ArrayOfOwnedCarTrans();
+        for (int i = 0; i < count; i++) {
+            OwnedCarTrans ownedCarTrans = new OwnedCarTrans();
+            ownedCarTrans.setId(i + 1);
+            ownedCarTrans.setOwnershipType("CustomizedCar");
+            cars.getOwnedCarTrans().add(ownedCarTrans);
+        }
+        return cars;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static class TestCounter implements Counter {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void inc() {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void inc(long n) {
+            count.addAndGet(n);
+        }
+
+        @Override
+        public long getCount() {
+            return count.get();
+        }
+    }
+}
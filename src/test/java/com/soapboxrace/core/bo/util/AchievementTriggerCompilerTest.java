@@ -0,0 +1,215 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AchievementTriggerCompilerTest {
+
+    private static final List<String> SUPPORTED_SCRIPTS = Arrays.asList(
+            "ctx.eventModeInt === 4",
+            "ctx.eventModeInt == 4 && persona.getLevel() >= 10",
+            "ctx.eventModeInt !== 4 || !ctx.singlePlayer",
+            "(ctx.rank <= 3 && ctx.carClassHash == -2142411446) || persona.level > 50;",
+            "ctx.name === 'Drag' && ctx.rank < 2",
+            "ctx.name != \"Sprint\"",
+            "ctx.reason === null",
+            "ctx.rank > 1.5 && ctx.rank >= -1",
+            "ctx.name < 'M'",
+            "true && !false");
+
+    private static Context context;
+
+    @BeforeClass
+    public static void createContext() {
+        // Mêmes options que ScriptingBO
+        context = Context.newBuilder("js")
+                .allowExperimentalOptions(true)
+                .allowHostAccess(HostAccess.ALL)
+                .option("js.nashorn-compat", "true")
+                .option("engine.WarnInterpreterOnly", "false")
+                .build();
+    }
+
+    @AfterClass
+    public static void closeContext() {
+        context.close();
+    }
+
+    @Test
+    public void compilesSupportedScripts() {
+        for (String script : SUPPORTED_SCRIPTS) {
+            assertNotNull(script, AchievementTriggerCompiler.compile(script));
+        }
+    }
+
+    @Test
+    public void matchesScriptEngine() {
+        List<Map<String, Object>> bindingSets = Arrays.asList(
+                bindings(new RaceContext(4, true, 1, -2142411446, "Drag", null), new Persona(10)),
+                bindings(new RaceContext(4, false, 3, 0, "Sprint", null), new Persona(9)),
+                bindings(new RaceContext(2, false, 5, -2142411446, "Circuit", null), new Persona(60)),
+                bindings(new RaceContext(9, true, 2, 12, "Drag", "QUIT"), new Persona(1)));
+        int compared = 0;
+
+        for (String script : SUPPORTED_SCRIPTS) {
+            AchievementTriggerCompiler.CompiledTrigger trigger = AchievementTriggerCompiler.compile(script);
+
+            for (Map<String, Object> bindings : bindingSets) {
+                Boolean compiledResult = trigger.test(bindings);
+
+                if (compiledResult != null) {
+                    assertEquals(script + " with " + bindings, evalScript(script, bindings), compiledResult);
+                    compared++;
+                }
+            }
+        }
+
+        assertEquals(SUPPORTED_SCRIPTS.size() * bindingSets.size(), compared);
+    }
+
+    @Test
+    public void rejectsScriptsOutsideOfSubset() {
+        assertNull(AchievementTriggerCompiler.compile(null));
+        assertNull(AchievementTriggerCompiler.compile("  ;"));
+        assertNull(AchievementTriggerCompiler.compile("ctx.rank + 1 > 2"));
+        assertNull(AchievementTriggerCompiler.compile("ctx.rank = 1"));
+        assertNull(AchievementTriggerCompiler.compile("Math.max(ctx.rank, 2) > 1"));
+        assertNull(AchievementTriggerCompiler.compile("ctx.name === 'a\\'b'"));
+        assertNull(AchievementTriggerCompiler.compile("ctx.rank > 1 ctx.rank"));
+        assertNull(AchievementTriggerCompiler.compile("(ctx.rank > 1"));
+    }
+
+    @Test
+    public void fallsBackWhenScriptEngineWouldCoerce() {
+        Map<String, Object> bindings = bindings(new RaceContext(4, true, 1, 0, "Drag", null), new Persona(10));
+
+        // Égalité large entre types différents : coercition JS
+        assertNull(AchievementTriggerCompiler.compile("ctx.eventModeInt == '4'").test(bindings));
+        // Résultat non booléen
+        assertNull(AchievementTriggerCompiler.compile("ctx.rank").test(bindings));
+        assertNull(AchievementTriggerCompiler.compile("ctx.rank && true").test(bindings));
+        // Binding absent, propriété inconnue, déréférencement de null
+        assertNull(AchievementTriggerCompiler.compile("event.id === 1").test(bindings));
+        assertNull(AchievementTriggerCompiler.compile("ctx.unknown === 1").test(bindings));
+        assertNull(AchievementTriggerCompiler.compile("ctx.reason.length === 1").test(bindings));
+        // Comparaison d'un objet hôte
+        assertNull(AchievementTriggerCompiler.compile("ctx == persona").test(bindings));
+    }
+
+    @Test
+    public void strictEqualityBetweenTypesIsFalse() {
+        Map<String, Object> bindings = bindings(new RaceContext(4, true, 1, 0, "Drag", null), new Persona(10));
+
+        assertFalse(AchievementTriggerCompiler.compile("ctx.eventModeInt === '4'").test(bindings));
+        assertTrue(AchievementTriggerCompiler.compile("ctx.eventModeInt !== '4'").test(bindings));
+        assertFalse(evalScript("ctx.eventModeInt === '4'", bindings));
+    }
+
+    private static Map<String, Object> bindings(RaceContext ctx, Persona persona) {
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("ctx", ctx);
+        bindings.put("persona", persona);
+        return bindings;
+    }
+
+    private static Boolean evalScript(String script, Map<String, Object> bindings) {
+        Value globals = context.getBindings("js");
+        bindings.forEach(globals::putMember);
+
+        try {
+            return context.eval("js", "{\n" + script + "\n}").as(Boolean.class);
+        } catch (PolyglotException e) {
+            throw new AssertionError(script + " failed in the script engine", e);
+        } finally {
+            for (String name : bindings.keySet()) {
+                globals.removeMember(name);
+            }
+        }
+    }
+
+    public static class RaceContext {
+        private final int eventModeInt;
+        private final boolean singlePlayer;
+        private final int rank;
+        private final int carClassHash;
+        private final String name;
+        private final String reason;
+
+        RaceContext(int eventModeInt, boolean singlePlayer, int rank, int carClassHash, String name, String reason) {
+            this.eventModeInt = eventModeInt;
+            this.singlePlayer = singlePlayer;
+            this.rank = rank;
+            this.carClassHash = carClassHash;
+            this.name = name;
+            this.reason = reason;
+        }
+
+        public int getEventModeInt() {
+            return eventModeInt;
+        }
+
+        public boolean isSinglePlayer() {
+            return singlePlayer;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public int getCarClassHash() {
+            return carClassHash;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "RaceContext{eventModeInt=" + eventModeInt + ", rank=" + rank + ", name=" + name + "}";
+        }
+    }
+
+    public static class Persona {
+        private final int level;
+
+        Persona(int level) {
+            this.level = level;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        @Override
+        public String toString() {
+            return "Persona{level=" + level + "}";
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BestTimeIndexTest {
+
+    @Test
+    public void keepsOnlyTheBestTimeOfEachPersona() {
+        BestTimeIndex index = new BestTimeIndex();
+
+        assertTrue(index.offer(1, 5000));
+        assertFalse(index.offer(1, 6000));
+        assertTrue(index.offer(1, 4000));
+
+        assertEquals(Long.valueOf(4000), index.getBestTime(1));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void ranksByTimeThenPersona() {
+        BestTimeIndex index = new BestTimeIndex();
+        index.offer(3, 1000);
+        index.offer(1, 2000);
+        index.offer(2, 2000);
+
+        assertEquals(1, index.getRank(3, 1000, Collections.emptySet()));
+        assertEquals(2, index.getRank(1, 2000, Collections.emptySet()));
+        assertEquals(3, index.getRank(2, 2000, Collections.emptySet()));
+        // Un temps moins bon que son meilleur n'est pas compté deux fois
+        assertEquals(2, index.getRank(1, 1500, Collections.emptySet()));
+    }
+
+    @Test
+    public void excludedPersonasAreNotRanked() {
+        BestTimeIndex index = new BestTimeIndex();
+        index.offer(1, 1000);
+        index.offer(2, 2000);
+        index.offer(3, 3000);
+        Set<Long> excluded = Collections.singleton(1L);
+
+        assertEquals(2, index.getRank(3, 3000, excluded));
+        assertArrayEquals(new long[]{2000, 2}, index.getTop(excluded));
+        assertNull(new BestTimeIndex().getTop(excluded));
+    }
+
+    @Test
+    public void matchesAFullScan() {
+        Random random = new Random(42);
+        BestTimeIndex index = new BestTimeIndex();
+        Map<Long, Long> bestTimes = new HashMap<>();
+        Set<Long> excluded = new HashSet<>();
+
+        for (int i = 0; i < 5000; i++) {
+            long personaId = random.nextInt(500);
+            long time = 60000 + random.nextInt(20000);
+            index.offer(personaId, time);
+            bestTimes.merge(personaId, time, Math::min);
+
+            if (random.nextInt(50) == 0) {
+                excluded.add(personaId);
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            long personaId = random.nextInt(600);
+            long time = 60000 + random.nextInt(20000);
+            int expected = 1;
+
+            for (Map.Entry<Long, Long> entry : bestTimes.entrySet()) {
+                long otherId = entry.getKey();
+                long otherTime = entry.getValue();
+
+                if (otherId != personaId && !excluded.contains(otherId)
+                        && (otherTime < time || (otherTime == time && otherId < personaId))) {
+                    expected++;
+                }
+            }
+
+            assertEquals(expected, index.getRank(personaId, time, excluded));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashedWheelTimerTest {
+
+    private static final long TICK_MS = 10;
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void createTimer() {
+        // 4 cases de 10 ms : au-delà de 40 ms, une échéance attend plusieurs tours de roue
+        timer = new HashedWheelTimer("test", r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }, Runnable::run, TICK_MS, TimeUnit.MILLISECONDS, 4);
+    }
+
+    @After
+    public void stopTimer() {
+        timer.stop();
+    }
+
+    @Test
+    public void firesAfterDelayAcrossRounds() throws InterruptedException {
+        long[] delays = {5, 45, 95, 170};
+        List<Long> fired = new CopyOnWriteArrayList<>();
+        long[] elapsedMs = new long[delays.length];
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            timer.newTimeout(t -> {
+                elapsedMs[index] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                fired.add(delays[index]);
+                latch.countDown();
+            }, delays[i], TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(delays.length, fired.size());
+        for (int i = 0; i < delays.length; i++) {
+            assertEquals(Long.valueOf(delays[i]), fired.get(i));
+            assertTrue("fired after " + elapsedMs[i] + " ms, delay " + delays[i], elapsedMs[i] >= delays[i]);
+        }
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void firesPastDeadlineAtNextTick() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(t -> latch.countDown(), -1, TimeUnit.SECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertTrue(timeout.getLatenessMillis() >= 0);
+    }
+
+    @Test
+    public void cancelledTimeoutNeverFires() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch later = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(t -> runs.incrementAndGet(), 30, TimeUnit.MILLISECONDS);
+        timer.newTimeout(t -> later.countDown(), 80, TimeUnit.MILLISECONDS);
+        assertEquals(2, timer.getPendingCount());
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(1, timer.getPendingCount());
+
+        assertTrue(later.await(1, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void cancelAfterFiringFails() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(t -> latch.countDown(), 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.isCancelled());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        timer.newTimeout(t -> {
+            throw new IllegalStateException("test");
+        }, 10, TimeUnit.MILLISECONDS);
+        timer.newTimeout(t -> latch.countDown(), 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stopDropsPendingTimeouts() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+
+        timer.newTimeout(t -> runs.incrementAndGet(), 30, TimeUnit.MILLISECONDS);
+        timer.stop();
+
+        Thread.sleep(100);
+        assertEquals(0, runs.get());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectsTimeoutsOnceStopped() {
+        timer.stop();
+        timer.newTimeout(t -> {
+        }, 10, TimeUnit.MILLISECONDS);
+    }
+}
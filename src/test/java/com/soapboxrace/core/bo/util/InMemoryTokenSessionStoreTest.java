@@ -0,0 +1,88 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import com.soapboxrace.core.jpa.TokenSessionEntity;
+import com.soapboxrace.core.jpa.UserEntity;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryTokenSessionStoreTest {
+
+    private final InMemoryTokenSessionStore store = new InMemoryTokenSessionStore();
+
+    @Test
+    public void indexesSessionsByTokenAndUser() {
+        TokenSessionEntity session = session("token-1", 1L);
+        store.put(session);
+
+        assertSame(session, store.get("token-1"));
+        assertSame(session, store.getLatest("token-1"));
+        assertEquals("token-1", store.getSessionKey(1L));
+        assertNull(store.get("token-2"));
+        assertNull(store.getSessionKey(2L));
+    }
+
+    @Test
+    public void newSessionReplacesUserSession() {
+        store.put(session("token-1", 1L));
+        store.put(session("token-2", 1L));
+
+        assertEquals("token-2", store.getSessionKey(1L));
+        assertEquals(new HashSet<>(Arrays.asList("token-1", "token-2")), new HashSet<>(store.getSessionKeys()));
+    }
+
+    @Test
+    public void removeUserDetachesSessionOnce() {
+        store.put(session("token-1", 1L));
+
+        assertEquals("token-1", store.removeUser(1L));
+        assertNull(store.removeUser(1L));
+        assertNull(store.getSessionKey(1L));
+        // La session elle-même reste jusqu'à remove()
+        assertEquals("token-1", store.get("token-1").getSecurityToken());
+
+        store.remove("token-1");
+        assertNull(store.get("token-1"));
+        assertTrue(store.getSessionKeys().isEmpty());
+        assertTrue(store.getLocalSessions().isEmpty());
+    }
+
+    @Test
+    public void listsAllSessions() {
+        store.put(session("token-1", 1L));
+        store.put(session("token-2", 2L));
+
+        Set<String> keys = new HashSet<>(store.getSessionKeys());
+
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains("token-1") && keys.contains("token-2"));
+        assertEquals(2, store.getLocalSessions().size());
+    }
+
+    private static TokenSessionEntity session(String securityToken, Long userId) {
+        UserEntity userEntity = new UserEntity();
+        userEntity.setId(userId);
+
+        TokenSessionEntity session = new TokenSessionEntity();
+        session.setSecurityToken(securityToken);
+        session.setUserEntity(userEntity);
+        session.setExpirationDate(new Date(System.currentTimeMillis() + 60000));
+        session.setAllowedPersonaIds(new HashSet<>(Collections.singleton(userId * 10)));
+        return session;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import com.soapboxrace.core.jpa.*;
+import com.soapboxrace.jaxb.http.ArrayOfOwnedCarTrans;
+import com.soapboxrace.jaxb.http.CustomCarTrans;
+import com.soapboxrace.jaxb.http.OwnedCarTrans;
+import com.soapboxrace.jaxb.util.JAXBUtility;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OwnedCarConverterTest {
+
+    @Test
+    public void garageRowsMatchEntityConversion() {
+        CarEntity rented = newCar(12L, LocalDateTime.of(2030, 1, 2, 3, 4, 5), "RentalCar");
+        addParts(rented, 1);
+        CarEntity owned = newCar(10L, null, "CustomizedCar");
+        addParts(owned, 2);
+        CarEntity bare = newCar(11L, null, "PresetCar");
+        List<CarEntity> garage = Arrays.asList(rented, owned, bare);
+
+        List<OwnedCarTrans> fromRows = garageRows2Trans(garage);
+
+        ArrayOfOwnedCarTrans expected = new ArrayOfOwnedCarTrans();
+        ArrayOfOwnedCarTrans actual = new ArrayOfOwnedCarTrans();
+        for (int i = 0; i < garage.size(); i++) {
+            expected.getOwnedCarTrans().add(OwnedCarConverter.entity2Trans(garage.get(i)));
+            actual.getOwnedCarTrans().add(fromRows.get(i));
+        }
+
+        String expectedXml = JAXBUtility.marshal(expected);
+        assertTrue(expectedXml.contains("<Hash>3001</Hash>"));
+        assertEquals(expectedXml, JAXBUtility.marshal(actual));
+    }
+
+    @Test
+    public void keepsCarOrderAndChildRowOrder() {
+        List<Object[]> cars = Arrays.asList(carRow(newCar(3L, null, "CustomizedCar")),
+                carRow(newCar(1L, null, "CustomizedCar")));
+        List<Object[]> performanceParts = Arrays.asList(new Object[]{1L, 300}, new Object[]{3L, 100},
+                new Object[]{1L, 200}, new Object[]{3L, 50});
+
+        List<OwnedCarTrans> ownedCars = OwnedCarConverter.garageRows2Trans(cars, Collections.emptyList(),
+                performanceParts, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+        assertEquals(2, ownedCars.size());
+        assertEquals(3L, ownedCars.get(0).getId());
+        assertEquals(1L, ownedCars.get(1).getId());
+        assertEquals(Arrays.asList(100, 50), performancePartHashes(ownedCars.get(0).getCustomCar()));
+        assertEquals(Arrays.asList(300, 200), performancePartHashes(ownedCars.get(1).getCustomCar()));
+    }
+
+    @Test
+    public void ignoresRowsOfUnknownCars() {
+        List<Object[]> cars = Collections.singletonList(carRow(newCar(5L, null, "CustomizedCar")));
+        List<Object[]> paints = Collections.singletonList(new Object[]{6L, 1, 2, 3, 4, 5});
+        List<Object[]> visualParts = Arrays.asList(new Object[]{6L, 7, 8}, new Object[]{5L, 9, 10});
+
+        List<OwnedCarTrans> ownedCars = OwnedCarConverter.garageRows2Trans(cars, paints, Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), visualParts);
+
+        CustomCarTrans customCar = ownedCars.get(0).getCustomCar();
+        assertTrue(customCar.getPaints().getCustomPaintTrans().isEmpty());
+        assertEquals(1, customCar.getVisualParts().getVisualPartTrans().size());
+        assertEquals(9, customCar.getVisualParts().getVisualPartTrans().get(0).getPartHash());
+        assertNull(ownedCars.get(0).getExpirationDate());
+    }
+
+    @Test
+    public void emptyGarage() {
+        assertTrue(OwnedCarConverter.garageRows2Trans(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList()).isEmpty());
+    }
+
+    private static List<OwnedCarTrans> garageRows2Trans(List<CarEntity> garage) {
+        List<Object[]> cars = new ArrayList<>();
+        List<Object[]> paints = new ArrayList<>();
+        List<Object[]> performanceParts = new ArrayList<>();
+        List<Object[]> skillModParts = new ArrayList<>();
+        List<Object[]> vinyls = new ArrayList<>();
+        List<Object[]> visualParts = new ArrayList<>();
+
+        // Mêmes colonnes que les requêtes garage de CarDAO
+        for (CarEntity car : garage) {
+            Long id = car.getId();
+            cars.add(carRow(car));
+            for (PaintEntity paint : car.getPaints()) {
+                paints.add(new Object[]{id, paint.getGroup(), paint.getHue(), paint.getSat(), paint.getSlot(),
+                        paint.getVar()});
+            }
+            for (PerformancePartEntity part : car.getPerformanceParts()) {
+                performanceParts.add(new Object[]{id, part.getPerformancePartAttribHash()});
+            }
+            for (SkillModPartEntity part : car.getSkillModParts()) {
+                skillModParts.add(new Object[]{id, part.isFixed(), part.getSkillModPartAttribHash()});
+            }
+            for (VinylEntity vinyl : car.getVinyls()) {
+                vinyls.add(new Object[]{id, vinyl.getHash(), vinyl.getHue1(), vinyl.getHue2(), vinyl.getHue3(),
+                        vinyl.getHue4(), vinyl.getLayer(), vinyl.isMir(), vinyl.getRot(), vinyl.getSat1(),
+                        vinyl.getSat2(), vinyl.getSat3(), vinyl.getSat4(), vinyl.getScalex(), vinyl.getScaley(),
+                        vinyl.getShear(), vinyl.getTranx(), vinyl.getTrany(), vinyl.getVar1(), vinyl.getVar2(),
+                        vinyl.getVar3(), vinyl.getVar4()});
+            }
+            for (VisualPartEntity part : car.getVisualParts()) {
+                visualParts.add(new Object[]{id, part.getPartHash(), part.getSlotHash()});
+            }
+        }
+
+        return OwnedCarConverter.garageRows2Trans(cars, paints, performanceParts, skillModParts, vinyls,
+                visualParts);
+    }
+
+    private static Object[] carRow(CarEntity car) {
+        return new Object[]{car.getId(), car.getDurability(), car.getHeat(), car.getExpirationDate(),
+                car.getOwnershipType(), car.getBaseCar(), car.getCarClassHash(), car.isPreset(), car.getLevel(),
+                car.getName(), car.getPhysicsProfileHash(), car.getRating(), car.getResalePrice(),
+                car.getRideHeightDrop(), car.getSkillModSlotCount(), car.getVersion()};
+    }
+
+    private static CarEntity newCar(Long id, LocalDateTime expirationDate, String ownershipType) {
+        CarEntity car = new CarEntity();
+        car.setId(id);
+        car.setDurability(100);
+        car.setHeat(1.5f);
+        car.setExpirationDate(expirationDate);
+        car.setOwnershipType(ownershipType);
+        car.setBaseCar(1816139026);
+        car.setCarClassHash(-2142411446);
+        car.setPreset("PresetCar".equals(ownershipType));
+        car.setLevel(0);
+        car.setName("car" + id);
+        car.setPhysicsProfileHash(-846723009);
+        car.setRating(750 + id.intValue());
+        car.setResalePrice(42000.5f);
+        car.setRideHeightDrop(0.25f);
+        car.setSkillModSlotCount(5);
+        car.setVersion(0);
+        car.setPaints(new HashSet<>());
+        car.setPerformanceParts(new HashSet<>());
+        car.setSkillModParts(new HashSet<>());
+        car.setVinyls(new HashSet<>());
+        car.setVisualParts(new HashSet<>());
+        return car;
+    }
+
+    // Un seul élément par collection : l'ordre des Set de l'entité est alors sans effet sur la comparaison
+    private static void addParts(CarEntity car, int seed) {
+        PaintEntity paint = new PaintEntity();
+        paint.setCar(car);
+        paint.setGroup(seed);
+        paint.setHue(seed + 1);
+        paint.setSat(seed + 2);
+        paint.setSlot(seed + 3);
+        paint.setVar(seed + 4);
+        car.getPaints().add(paint);
+
+        PerformancePartEntity performancePart = new PerformancePartEntity();
+        performancePart.setCar(car);
+        performancePart.setPerformancePartAttribHash(1000 + seed);
+        car.getPerformanceParts().add(performancePart);
+
+        SkillModPartEntity skillModPart = new SkillModPartEntity();
+        skillModPart.setCar(car);
+        skillModPart.setFixed(seed % 2 == 0);
+        skillModPart.setSkillModPartAttribHash(2000 + seed);
+        car.getSkillModParts().add(skillModPart);
+
+        VinylEntity vinyl = new VinylEntity();
+        vinyl.setCar(car);
+        vinyl.setHash(3000 + seed);
+        vinyl.setHue1(1);
+        vinyl.setHue2(2);
+        vinyl.setHue3(3);
+        vinyl.setHue4(4);
+        vinyl.setLayer(seed);
+        vinyl.setMir(true);
+        vinyl.setRot(5);
+        vinyl.setSat1(6);
+        vinyl.setSat2(7);
+        vinyl.setSat3(8);
+        vinyl.setSat4(9);
+        vinyl.setScalex(10);
+        vinyl.setScaley(11);
+        vinyl.setShear(12);
+        vinyl.setTranx(13);
+        vinyl.setTrany(14);
+        vinyl.setVar1(15);
+        vinyl.setVar2(16);
+        vinyl.setVar3(17);
+        vinyl.setVar4(18);
+        car.getVinyls().add(vinyl);
+
+        VisualPartEntity visualPart = new VisualPartEntity();
+        visualPart.setCar(car);
+        visualPart.setPartHash(4000 + seed);
+        visualPart.setSlotHash(5000 + seed);
+        car.getVisualParts().add(visualPart);
+    }
+
+    private static List<Integer> performancePartHashes(CustomCarTrans customCar) {
+        List<Integer> hashes = new ArrayList<>();
+        customCar.getPerformanceParts().getPerformancePartTrans()
+                .forEach(part -> hashes.add(part.getPerformancePartAttribHash()));
+        return hashes;
+    }
+}
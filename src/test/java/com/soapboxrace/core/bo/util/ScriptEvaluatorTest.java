@@ -0,0 +1,92 @@
+/*
+ * This file is part of the Soapbox Race World core source code.
+ * If you use any of this code for third-party purposes, please provide attribution.
+ * Copyright (c) 2020.
+ */
+
+package com.soapboxrace.core.bo.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScriptEvaluatorTest {
+
+    private final AtomicInteger compilations = new AtomicInteger();
+
+    private ScriptEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        evaluator = new ScriptEvaluator(16, compilations::incrementAndGet);
+    }
+
+    @After
+    public void tearDown() {
+        evaluator.close();
+    }
+
+    @Test
+    public void globalsAreNotSharedBetweenScripts() {
+        evaluator.eval("leaked = 42; var declared = 1; function f() { return 2; }", Collections.emptyMap());
+
+        assertEquals("undefined", evaluator.eval("typeof leaked", Collections.emptyMap()));
+        assertEquals("undefined", evaluator.eval("typeof declared", Collections.emptyMap()));
+        assertEquals("undefined", evaluator.eval("typeof f", Collections.emptyMap()));
+    }
+
+    @Test
+    public void topLevelDeclarationsCanBeEvaluatedAgain() {
+        String script = "let x = a * 2; const y = x + 1; y";
+
+        assertEquals(7, evaluator.eval(script, bindings(3)));
+        assertEquals(11, evaluator.eval(script, bindings(5)));
+    }
+
+    @Test
+    public void bindingsAreNotKeptAfterTheEvaluation() {
+        evaluator.eval("a", bindings(1));
+
+        assertEquals("undefined", evaluator.eval("typeof a", Collections.emptyMap()));
+    }
+
+    @Test
+    public void scriptsAreCompiledOnce() {
+        for (int i = 0; i < 3; i++) {
+            evaluator.eval("a + 1", bindings(i));
+        }
+
+        assertEquals(1, compilations.get());
+        assertEquals(1, evaluator.getCachedScriptCount());
+
+        evaluator.invalidate();
+        evaluator.eval("a + 1", bindings(0));
+
+        assertEquals(2, compilations.get());
+    }
+
+    @Test
+    public void hostObjectsCanBeReturned() {
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("builder", new StringBuilder("ab"));
+
+        Object result = evaluator.eval("builder.append('c')", bindings);
+
+        assertTrue(result instanceof StringBuilder);
+        assertEquals("abc", result.toString());
+    }
+
+    private static Map<String, Object> bindings(int a) {
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("a", a);
+        return bindings;
+    }
+}